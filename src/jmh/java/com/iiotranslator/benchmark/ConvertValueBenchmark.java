@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.benchmark;
+
+import com.iiotranslator.device.drivers.DriverUtil;
+import com.iiotranslator.opc.OpcServer;
+import com.iiotranslator.opc.VariableNode;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.milo.opcua.stack.core.Identifiers;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures {@link DriverUtil#convertValue}, which converts the textual values of the drivers to the variable's data
+ * type. The data types are checked in order, so later types take longer to convert than Double.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConvertValueBenchmark {
+    private VariableNode doubleVariable, int64Variable, booleanVariable, stringVariable;
+
+    @Setup
+    public void setup() throws Exception {
+        var folder = new OpcServer(Set.of("localhost"), "127.0.0.1", 0, "user", "password")
+                .getRootNode()
+                .addFolder("Device");
+        doubleVariable = folder.addVariableReadOnly("Double", Identifiers.Double);
+        int64Variable = folder.addVariableReadOnly("Int64", Identifiers.Int64);
+        booleanVariable = folder.addVariableReadOnly("Boolean", Identifiers.Boolean);
+        stringVariable = folder.addVariableReadOnly("String", Identifiers.String);
+    }
+
+    @Benchmark
+    public DataValue toDouble() {
+        return DriverUtil.convertValue(doubleVariable, "23.51");
+    }
+
+    @Benchmark
+    public DataValue toInt64() {
+        return DriverUtil.convertValue(int64Variable, "1353041");
+    }
+
+    @Benchmark
+    public DataValue toBoolean() {
+        return DriverUtil.convertValue(booleanVariable, "true");
+    }
+
+    @Benchmark
+    public DataValue toText() {
+        return DriverUtil.convertValue(stringVariable, "Ramp 40C");
+    }
+
+    @Benchmark
+    public DataValue invalidNumber() {
+        return DriverUtil.convertValue(doubleVariable, "-----");
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.benchmark;
+
+import com.iiotranslator.device.Device;
+import com.iiotranslator.device.DeviceRequest;
+import com.iiotranslator.device.DeviceRequestCompletionListener;
+import com.iiotranslator.device.drivers.DeviceDriver;
+import com.iiotranslator.device.drivers.KnownDeviceDrivers;
+import com.iiotranslator.opc.FolderNode;
+import com.iiotranslator.opc.OpcServer;
+import com.iiotranslator.simulator.DeviceSimulator;
+import com.iiotranslator.simulator.SimulationProfile;
+import com.iiotranslator.simulator.Simulators;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures how long the polling drivers take to read all of their variables from a local simulator that responds
+ * without delay, i.e. the drivers' own overhead including the network stack. The Weiss and Inficon drivers are not
+ * included, as they answer reads from the values pushed by the device.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DriverSimulatorBenchmark {
+    @Param({"keyence_mku", "binder_kb", "binder_kbf", "tasmota", "ipswitch", "modbus_tcp"})
+    private String driver;
+
+    private DeviceSimulator simulator;
+    private DeviceDriver deviceDriver;
+    private final List<DeviceRequest> requests = new ArrayList<>();
+
+    @Setup
+    public void setup() throws Exception {
+        simulator = Simulators.start(driver, SimulationProfile.IDEAL);
+        var options = new HashMap<>(simulator.getDeviceOptions());
+        options.put("driver", driver);
+        var device = new Device("Simulated", driver, options);
+        var folder = new OpcServer(Set.of("localhost"), "127.0.0.1", 0, "user", "password")
+                .getRootNode()
+                .addFolder(device.getName());
+        deviceDriver = KnownDeviceDrivers.getDriverSupplier(device).get();
+        deviceDriver.initialize(device, folder);
+        addReadRequests(folder);
+    }
+
+    private void addReadRequests(FolderNode folder) {
+        folder.getChildVariables().forEach(variable -> requests.add(new DeviceRequest.ReadRequest(variable)));
+        folder.getChildFolders().forEach(this::addReadRequests);
+    }
+
+    @TearDown
+    public void tearDown() {
+        simulator.close();
+    }
+
+    @Benchmark
+    public void readAll(Blackhole blackhole) {
+        deviceDriver.process(requests, new DeviceRequestCompletionListener() {
+            @Override
+            public void completeReadRequest(DeviceRequest.ReadRequest request, DataValue value) {
+                blackhole.consume(value);
+            }
+
+            @Override
+            public void completeWriteRequestExceptionally(DeviceRequest.WriteRequest request) {}
+
+            @Override
+            public void completeWriteRequestExceptionally(DeviceRequest.WriteRequest request, Exception e) {}
+        });
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.benchmark;
+
+import com.iiotranslator.device.DeviceRequest;
+import com.iiotranslator.opc.DataValues;
+import com.iiotranslator.opc.OpcServer;
+import com.iiotranslator.opc.VariableNode;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.milo.opcua.stack.core.Identifiers;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Compares the request-queue de-duplication and the driver value-map lookups with identity-based keys (current) against
+ * keys that hash and compare the node's path, as DeviceRequest and Node used to do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestLookupBenchmark {
+    @Param({"10", "1000"})
+    private int variableCount;
+
+    private OpcServer server;
+    private List<VariableNode> variables;
+
+    /**
+     * The path keys of the variables, built once like the path that Node used to store, so that the path variants
+     * only measure hashing and comparing the paths.
+     */
+    private List<PathKey> pathKeys;
+
+    private final Map<DeviceRequest, Set<CompletableFuture<?>>> pendingRequests = new LinkedHashMap<>();
+    private final Map<PathReadRequest, Set<CompletableFuture<?>>> pendingPathRequests = new LinkedHashMap<>();
+    private final Map<VariableNode, DataValue> values = new HashMap<>();
+    private final Map<PathKey, DataValue> pathValues = new HashMap<>();
+
+    private int next;
+
+    @Setup
+    public void setup() throws Exception {
+        server = new OpcServer(Set.of("localhost"), "127.0.0.1", 0, "user", "password");
+        var folder = server.getRootNode().addFolder("Device").addFolder("Registers");
+        variables = new ArrayList<>();
+        pathKeys = new ArrayList<>();
+        for (int i = 0; i < variableCount; i++) {
+            var variable = folder.addVariableReadOnly("Register " + i, Identifiers.Double);
+            var pathKey = new PathKey(variable.getPath());
+            variables.add(variable);
+            pathKeys.add(pathKey);
+            pendingRequests.put(new DeviceRequest.ReadRequest(variable), new HashSet<>());
+            pendingPathRequests.put(new PathReadRequest(pathKey), new HashSet<>());
+            values.put(variable, DataValues.of((double) i));
+            pathValues.put(pathKey, DataValues.of((double) i));
+        }
+    }
+
+    private VariableNode nextVariable() {
+        next = (next + 1) % variableCount;
+        return variables.get(next);
+    }
+
+    private PathKey nextPathKey() {
+        next = (next + 1) % variableCount;
+        return pathKeys.get(next);
+    }
+
+    @Benchmark
+    public Set<CompletableFuture<?>> requestQueueIdentity() {
+        return pendingRequests.computeIfAbsent(new DeviceRequest.ReadRequest(nextVariable()), k -> new HashSet<>());
+    }
+
+    @Benchmark
+    public Set<CompletableFuture<?>> requestQueuePath() {
+        return pendingPathRequests.computeIfAbsent(new PathReadRequest(nextPathKey()), k -> new HashSet<>());
+    }
+
+    @Benchmark
+    public DataValue valueMapIdentity() {
+        return values.getOrDefault(nextVariable(), DataValues.BAD);
+    }
+
+    @Benchmark
+    public DataValue valueMapPath() {
+        return pathValues.getOrDefault(nextPathKey(), DataValues.BAD);
+    }
+
+    /**
+     * Equivalent of the former {@code @EqualsAndHashCode(of = "path")} on Node.
+     */
+    private record PathKey(List<String> path) {}
+
+    /**
+     * Equivalent of the former {@code @EqualsAndHashCode} on DeviceRequest.ReadRequest.
+     */
+    private record PathReadRequest(PathKey variable) {}
+}
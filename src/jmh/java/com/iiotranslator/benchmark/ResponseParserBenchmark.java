@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.benchmark;
+
+import com.iiotranslator.device.Device;
+import com.iiotranslator.device.drivers.binder.BinderKBFDriver;
+import com.iiotranslator.device.drivers.keyence.KeyenceDriver;
+import com.iiotranslator.device.drivers.other.TasmotaDriver;
+import com.iiotranslator.device.drivers.weiss.WeissLabEventDriver;
+import com.iiotranslator.opc.OpcServer;
+import com.iiotranslator.opc.VariableNode;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures the response parsing of the drivers on payloads in the format returned by the devices, without any network
+ * I/O. The Binder payload is compressed during setup, as the controller sends it zlib-compressed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseParserBenchmark {
+    private static final String BINDER_RESPONSE = "2.416.1.0.0=<Wert>23.4</Wert>//2.227.0.0.0=<Wert>25.0</Wert>"
+            + "//2.416.3.0.0=<Wert>41.7</Wert>//2.413.1.0.0=<Wert>-----</Wert>//2.227.2.0.0=<Wert>50</Wert>";
+
+    private static final String TASMOTA_RESPONSE = "{\"StatusSNS\":{\"Time\":\"2023-06-29T17:42:21\",\"ENERGY\":"
+            + "{\"TotalStartTime\":\"2020-02-16T07:24:07\",\"Total\":1353.041,\"Yesterday\":0.676,\"Today\":1.093,"
+            + "\"Power\":105,\"ApparentPower\":122,\"ReactivePower\":63,\"Factor\":0.86,\"Voltage\":287,"
+            + "\"Current\":0.427}}}";
+
+    private static final String WEISS_VALUE_MESSAGE = "@val:CV.1.ActualValue:23.51";
+
+    private static final String WEISS_MULTI_MESSAGE = "{\"cmd\":\"multi\",\"data\":[\"@val:CV.1.ActualValue:23.51\","
+            + "\"@val:CV.1.SetPoint:25.00\",\"@val:CV.1.State:1\",\"@val:MV.1.ActualValue:41.2\","
+            + "\"@val:PG.ProfileName:Ramp 40C\",\"@val:PG.RemainTime:01:23:45\",\"@val:DO.1.State:0\"]}";
+
+    private static final String KEYENCE_ERROR_RESPONSE = "EV,7,9,11", KEYENCE_STATUS_RESPONSE = "SB,1";
+
+    private byte[] binderResponse;
+    private BinderKBFDriver binderDriver;
+    private TasmotaDriver tasmotaDriver;
+    private WeissLabEventDriver weissDriver;
+    private KeyenceDriver keyenceDriver;
+
+    @Setup
+    public void setup() throws Exception {
+        var rootNode = new OpcServer(Set.of("localhost"), "127.0.0.1", 0, "user", "password").getRootNode();
+        var options = Map.of("hostname", "localhost");
+
+        binderDriver = new BinderKBFDriver();
+        binderDriver.initialize(new Device("Binder", "binder_kbf", options), rootNode.addFolder("Binder"));
+        var deflater = new Deflater();
+        deflater.setInput(BINDER_RESPONSE.getBytes(StandardCharsets.UTF_8));
+        deflater.finish();
+        var buffer = new byte[1024];
+        int length = deflater.deflate(buffer);
+        deflater.end();
+        binderResponse = new byte[length];
+        System.arraycopy(buffer, 0, binderResponse, 0, length);
+
+        tasmotaDriver = new TasmotaDriver();
+        tasmotaDriver.initialize(new Device("Tasmota", "tasmota", options), rootNode.addFolder("Tasmota"));
+
+        weissDriver = new WeissLabEventDriver();
+        weissDriver.initialize(new Device("Weiss", "weiss_labevent", options), rootNode.addFolder("Weiss"));
+
+        keyenceDriver = new KeyenceDriver();
+        keyenceDriver.initialize(new Device("Keyence", "keyence_mku", options), rootNode.addFolder("Keyence"));
+    }
+
+    @Benchmark
+    public Map<VariableNode, DataValue> binderKBF() throws DataFormatException {
+        return binderDriver.parseResponse(binderResponse);
+    }
+
+    @Benchmark
+    public Map<VariableNode, DataValue> tasmota() {
+        return tasmotaDriver.parseStatus8(TASMOTA_RESPONSE);
+    }
+
+    @Benchmark
+    public void weissValue() {
+        weissDriver.handleMessage(WEISS_VALUE_MESSAGE);
+    }
+
+    @Benchmark
+    public void weissMulti() {
+        weissDriver.handleMessage(WEISS_MULTI_MESSAGE);
+    }
+
+    @Benchmark
+    public void keyence() throws IOException {
+        keyenceDriver.parseErrorCodes(KeyenceDriver.parseResponse("EV", KEYENCE_ERROR_RESPONSE));
+        keyenceDriver.parseSystemStatus(KeyenceDriver.parseResponse("SB", KEYENCE_STATUS_RESPONSE));
+    }
+}
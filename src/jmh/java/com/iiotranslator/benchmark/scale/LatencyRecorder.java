@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.benchmark.scale;
+
+import java.util.Arrays;
+
+/**
+ * Records latencies in nanoseconds. All of them are kept, which is fine for the few million reads of a harness run.
+ */
+class LatencyRecorder {
+    private long[] latencies = new long[1024];
+    private int size;
+    private boolean sorted;
+
+    synchronized void record(long nanos) {
+        if (size == latencies.length) {
+            latencies = Arrays.copyOf(latencies, size * 2);
+        }
+        latencies[size++] = nanos;
+        sorted = false;
+    }
+
+    synchronized void addAll(LatencyRecorder other) {
+        long[] otherLatencies;
+        int otherSize;
+        synchronized (other) {
+            otherLatencies = other.latencies;
+            otherSize = other.size;
+        }
+        for (int i = 0; i < otherSize; i++) {
+            record(otherLatencies[i]);
+        }
+    }
+
+    synchronized void reset() {
+        size = 0;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @param percentile between 0 and 1
+     * @return the latency in nanoseconds, or 0 if nothing was recorded
+     */
+    synchronized long percentile(double percentile) {
+        if (size == 0) {
+            return 0;
+        }
+        if (!sorted) {
+            Arrays.sort(latencies, 0, size);
+            sorted = true;
+        }
+        int index = (int) Math.ceil(percentile * size) - 1;
+        return latencies[Math.max(0, Math.min(index, size - 1))];
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.benchmark.scale;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Samples the thread count, heap usage and CPU time of this JVM once per second.
+ */
+class ResourceSampler {
+    private final com.sun.management.OperatingSystemMXBean os =
+            (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+
+    private ScheduledFuture<?> task;
+    private long startNanos, startCpuNanos, endNanos, endCpuNanos;
+    private int maxThreads, lastThreads;
+    private long maxHeapBytes, lastHeapBytes;
+    private int samples;
+
+    void start(ScheduledExecutorService scheduler) {
+        startNanos = System.nanoTime();
+        startCpuNanos = os.getProcessCpuTime();
+        task = scheduler.scheduleAtFixedRate(this::sample, 0, 1, TimeUnit.SECONDS);
+    }
+
+    void stop() {
+        task.cancel(false);
+        endNanos = System.nanoTime();
+        endCpuNanos = os.getProcessCpuTime();
+        sample();
+    }
+
+    private synchronized void sample() {
+        lastThreads = ManagementFactory.getThreadMXBean().getThreadCount();
+        lastHeapBytes = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        maxThreads = Math.max(maxThreads, lastThreads);
+        maxHeapBytes = Math.max(maxHeapBytes, lastHeapBytes);
+        samples++;
+    }
+
+    synchronized Map<String, Object> toReport() {
+        var report = new LinkedHashMap<String, Object>();
+        report.put("samples", samples);
+        report.put("threadsMax", maxThreads);
+        report.put("threadsEnd", lastThreads);
+        report.put("heapUsedMbMax", maxHeapBytes / (1024.0 * 1024.0));
+        report.put("heapUsedMbEnd", lastHeapBytes / (1024.0 * 1024.0));
+        // Average number of cores busy with this process, including the clients and GC
+        report.put("cpuCoresAverage", (double) (endCpuNanos - startCpuNanos) / (endNanos - startNanos));
+        report.put("availableProcessors", os.getAvailableProcessors());
+        return report;
+    }
+}
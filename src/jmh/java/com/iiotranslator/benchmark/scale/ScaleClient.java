@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.benchmark.scale;
+
+import static org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.Unsigned.uint;
+
+import com.iiotranslator.opc.OpcNamespace;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.Getter;
+import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
+import org.eclipse.milo.opcua.sdk.client.api.identity.UsernameProvider;
+import org.eclipse.milo.opcua.stack.core.AttributeId;
+import org.eclipse.milo.opcua.stack.core.security.SecurityPolicy;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.QualifiedName;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.MonitoringMode;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.TimestampsToReturn;
+import org.eclipse.milo.opcua.stack.core.types.structured.MonitoredItemCreateRequest;
+import org.eclipse.milo.opcua.stack.core.types.structured.MonitoringParameters;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReadValueId;
+
+/**
+ * An OPC UA client of the scale harness, which reads random variables at a fixed rate and counts the notifications of
+ * its subscription.
+ */
+class ScaleClient {
+    // Larger requests may exceed the server's operation limits
+    private static final int MONITORED_ITEMS_PER_REQUEST = 1000;
+
+    private final OpcUaClient client;
+
+    @Getter
+    private final int namespaceIndex;
+
+    @Getter
+    private final LatencyRecorder latencies = new LatencyRecorder();
+
+    @Getter
+    private final LongAdder notifications = new LongAdder(), readFailures = new LongAdder(), badReads = new LongAdder();
+
+    private ScaleClient(OpcUaClient client) {
+        this.client = client;
+        this.namespaceIndex =
+                client.getNamespaceTable().getIndex(OpcNamespace.NAMESPACE_URI).intValue();
+    }
+
+    static ScaleClient connect(String endpointUrl, String username, String password) throws Exception {
+        var client = OpcUaClient.create(
+                endpointUrl,
+                endpoints -> endpoints.stream()
+                        .filter(endpoint -> SecurityPolicy.None.getUri().equals(endpoint.getSecurityPolicyUri()))
+                        .findFirst(),
+                builder -> builder.setIdentityProvider(new UsernameProvider(username, password))
+                        .setRequestTimeout(uint(10_000))
+                        .build());
+        client.connect().get();
+        return new ScaleClient(client);
+    }
+
+    void subscribe(List<NodeId> nodeIds, double samplingInterval) throws Exception {
+        var subscription = client.getSubscriptionManager()
+                .createSubscription(samplingInterval)
+                .get();
+        for (int start = 0; start < nodeIds.size(); start += MONITORED_ITEMS_PER_REQUEST) {
+            var requests = new ArrayList<MonitoredItemCreateRequest>();
+            for (var nodeId : nodeIds.subList(start, Math.min(start + MONITORED_ITEMS_PER_REQUEST, nodeIds.size()))) {
+                var parameters = new MonitoringParameters(
+                        subscription.nextClientHandle(), samplingInterval, null, uint(1), true);
+                requests.add(new MonitoredItemCreateRequest(
+                        new ReadValueId(nodeId, AttributeId.Value.uid(), null, QualifiedName.NULL_VALUE),
+                        MonitoringMode.Reporting,
+                        parameters));
+            }
+            subscription
+                    .createMonitoredItems(
+                            TimestampsToReturn.Both,
+                            requests,
+                            (item, index) -> item.setValueConsumer(value -> notifications.increment()))
+                    .get();
+        }
+    }
+
+    /**
+     * Reads a random variable of the given list readRate times per second. The reads are asynchronous, so slow
+     * responses do not lower the rate.
+     */
+    void startReading(ScheduledExecutorService scheduler, List<NodeId> nodeIds, double readRate) {
+        if (readRate <= 0) {
+            return;
+        }
+        long periodNanos = (long) (1e9 / readRate);
+        scheduler.scheduleAtFixedRate(
+                () -> {
+                    var nodeId = nodeIds.get(ThreadLocalRandom.current().nextInt(nodeIds.size()));
+                    long start = System.nanoTime();
+                    client.readValue(0, TimestampsToReturn.Neither, nodeId).whenComplete((value, e) -> {
+                        if (e != null) {
+                            readFailures.increment();
+                            return;
+                        }
+                        latencies.record(System.nanoTime() - start);
+                        if (value.getStatusCode().isBad()) {
+                            badReads.increment();
+                        }
+                    });
+                },
+                ThreadLocalRandom.current().nextLong(periodNanos),
+                periodNanos,
+                TimeUnit.NANOSECONDS);
+    }
+
+    void reset() {
+        latencies.reset();
+        notifications.reset();
+        readFailures.reset();
+        badReads.reset();
+    }
+
+    void disconnect() throws Exception {
+        client.disconnect().get();
+    }
+}
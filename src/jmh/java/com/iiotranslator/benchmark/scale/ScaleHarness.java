@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.benchmark.scale;
+
+import com.google.gson.GsonBuilder;
+import com.iiotranslator.IIoTranslatorApplication;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.Executors;
+import org.eclipse.milo.opcua.stack.core.Stack;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+
+/**
+ * Starts IIoTranslator with generated devices using the "test" driver and connects several OPC UA clients to it, which
+ * read and subscribe to the devices' variables. Everything runs in this JVM and on localhost, so the thread count, heap
+ * and CPU usage in the report include the clients.
+ * <p>
+ * Run using {@code mvn -Pbenchmarks test-compile exec:exec@scale -Dscale.args="--devices=1000 --clients=8"}, see
+ * {@link Options} for all arguments. The results are written as JSON to the file given by {@code --report}.
+ */
+public class ScaleHarness {
+    private static final String USERNAME = "scale", PASSWORD = "scale";
+
+    /**
+     * The command line arguments, which are given as {@code --name=value}.
+     */
+    static class Options {
+        /** Number of generated devices, each has three variables */
+        int devices = 100;
+        /** Delay of each device read in milliseconds */
+        int deviceDelay = 10;
+        /** Number of OPC UA clients */
+        int clients = 4;
+        /** Reads per second of each client, each read requests a single random variable */
+        double readRate = 100;
+        /** Number of distinct random variables each client subscribes to */
+        int subscriptions = 100;
+        /** Sampling and publishing interval of the subscriptions in milliseconds */
+        double samplingInterval = 1000;
+        /** Seconds before the measurement is started */
+        int warmup = 10;
+        /** Seconds of measurement */
+        int duration = 60;
+
+        String report = "target/scale-report.json";
+
+        static Options parse(String[] args) {
+            var options = new Options();
+            for (String arg : args) {
+                if (!arg.startsWith("--") || !arg.contains("=")) {
+                    throw new IllegalArgumentException("Arguments must be given as --name=value: " + arg);
+                }
+                var name = arg.substring(2, arg.indexOf('='));
+                var value = arg.substring(arg.indexOf('=') + 1);
+                switch (name) {
+                    case "devices" -> options.devices = Integer.parseInt(value);
+                    case "deviceDelay" -> options.deviceDelay = Integer.parseInt(value);
+                    case "clients" -> options.clients = Integer.parseInt(value);
+                    case "readRate" -> options.readRate = Double.parseDouble(value);
+                    case "subscriptions" -> options.subscriptions = Integer.parseInt(value);
+                    case "samplingInterval" -> options.samplingInterval = Double.parseDouble(value);
+                    case "warmup" -> options.warmup = Integer.parseInt(value);
+                    case "duration" -> options.duration = Integer.parseInt(value);
+                    case "report" -> options.report = value;
+                    default -> throw new IllegalArgumentException("Unknown argument: " + name);
+                }
+            }
+            return options;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        var options = Options.parse(args);
+        int port;
+        try (var socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+
+        System.out.printf("Starting IIoTranslator with %d devices on port %d%n", options.devices, port);
+        long startupStart = System.nanoTime();
+        var context = new SpringApplicationBuilder(IIoTranslatorApplication.class)
+                .logStartupInfo(false)
+                .run(serverArguments(options, port));
+        long startupMillis = (System.nanoTime() - startupStart) / 1_000_000;
+
+        var endpointUrl = "opc.tcp://localhost:" + port + "/";
+        var random = new Random(0);
+        var scheduler = Executors.newScheduledThreadPool(2);
+        var clients = new ArrayList<ScaleClient>();
+        System.out.printf("Connecting %d clients%n", options.clients);
+        for (int i = 0; i < options.clients; i++) {
+            var client = ScaleClient.connect(endpointUrl, USERNAME, PASSWORD);
+            var variables = variableNodeIds(options, client.getNamespaceIndex());
+            // Distinct variables, so that the number of monitored items matches the report
+            var shuffled = new ArrayList<>(variables);
+            Collections.shuffle(shuffled, random);
+            var subscribed = shuffled.subList(0, Math.min(options.subscriptions, shuffled.size()));
+            client.subscribe(subscribed, options.samplingInterval);
+            client.startReading(scheduler, variables, options.readRate);
+            clients.add(client);
+        }
+
+        System.out.printf("Warming up for %d s%n", options.warmup);
+        Thread.sleep(options.warmup * 1000L);
+        clients.forEach(ScaleClient::reset);
+        var resources = new ResourceSampler();
+        resources.start(scheduler);
+        System.out.printf("Measuring for %d s%n", options.duration);
+        long measurementStart = System.nanoTime();
+        Thread.sleep(options.duration * 1000L);
+        double seconds = (System.nanoTime() - measurementStart) / 1e9;
+        resources.stop();
+
+        var report = report(options, startupMillis, seconds, clients, resources);
+        var json = new GsonBuilder().setPrettyPrinting().create().toJson(report);
+        var reportFile = Path.of(options.report);
+        if (reportFile.toAbsolutePath().getParent() != null) {
+            Files.createDirectories(reportFile.toAbsolutePath().getParent());
+        }
+        Files.writeString(reportFile, json);
+        System.out.println(json);
+        System.out.println("Report written to " + reportFile.toAbsolutePath());
+
+        scheduler.shutdownNow();
+        for (var client : clients) {
+            client.disconnect();
+        }
+        context.close();
+        Stack.releaseSharedResources();
+        // The device driver threads are not stopped when the context is closed
+        System.exit(0);
+    }
+
+    private static String[] serverArguments(Options options, int port) {
+        var arguments = new ArrayList<String>();
+        // Ignores the application.properties in the working directory, which configures its own devices
+        arguments.add("--spring.config.location=classpath:/application.properties");
+        // Otherwise, two lines are logged per device
+        arguments.add("--logging.level.com.iiotranslator=WARN");
+        arguments.add("--iiot.opcua.bindAddress=127.0.0.1");
+        arguments.add("--iiot.opcua.bindPortTcp=" + port);
+        arguments.add("--iiot.opcua.hostnames=localhost");
+        arguments.add("--iiot.opcua.username=" + USERNAME);
+        arguments.add("--iiot.opcua.password=" + PASSWORD);
+        for (int i = 0; i < options.devices; i++) {
+            arguments.add("--iiot.devices." + deviceName(i) + ".driver=test");
+            arguments.add("--iiot.devices." + deviceName(i) + ".delay=" + options.deviceDelay);
+        }
+        return arguments.toArray(new String[0]);
+    }
+
+    private static String deviceName(int index) {
+        return String.format("Device%05d", index);
+    }
+
+    /**
+     * The NodeIds of the variables created by the test driver, see TestDriver.
+     */
+    private static List<NodeId> variableNodeIds(Options options, int namespaceIndex) {
+        var nodeIds = new ArrayList<NodeId>();
+        for (int i = 0; i < options.devices; i++) {
+            var device = deviceName(i);
+            nodeIds.add(new NodeId(namespaceIndex, device + "/test"));
+            nodeIds.add(new NodeId(namespaceIndex, device + "/ExampleFolder/Variable1"));
+            nodeIds.add(new NodeId(namespaceIndex, device + "/ExampleFolder/Variable2"));
+        }
+        return nodeIds;
+    }
+
+    private static Map<String, Object> report(
+            Options options, long startupMillis, double seconds, List<ScaleClient> clients, ResourceSampler resources) {
+        var latencies = new LatencyRecorder();
+        long notifications = 0, readFailures = 0, badReads = 0;
+        for (var client : clients) {
+            latencies.addAll(client.getLatencies());
+            notifications += client.getNotifications().sum();
+            readFailures += client.getReadFailures().sum();
+            badReads += client.getBadReads().sum();
+        }
+
+        var report = new LinkedHashMap<String, Object>();
+        report.put("options", options);
+        report.put("startupMillis", startupMillis);
+        report.put("durationSeconds", seconds);
+
+        var reads = new LinkedHashMap<String, Object>();
+        reads.put("count", latencies.size());
+        reads.put("perSecond", latencies.size() / seconds);
+        reads.put("failures", readFailures);
+        reads.put("badStatus", badReads);
+        var latencyMillis = new LinkedHashMap<String, Object>();
+        latencyMillis.put("p50", latencies.percentile(0.5) / 1e6);
+        latencyMillis.put("p90", latencies.percentile(0.9) / 1e6);
+        latencyMillis.put("p99", latencies.percentile(0.99) / 1e6);
+        latencyMillis.put("p99.9", latencies.percentile(0.999) / 1e6);
+        latencyMillis.put("max", latencies.percentile(1.0) / 1e6);
+        reads.put("latencyMillis", latencyMillis);
+        report.put("reads", reads);
+
+        var subscriptions = new LinkedHashMap<String, Object>();
+        subscriptions.put(
+                "monitoredItems", (long) options.clients * Math.min(options.subscriptions, options.devices * 3));
+        subscriptions.put("notifications", notifications);
+        subscriptions.put("notificationsPerSecond", notifications / seconds);
+        report.put("subscriptions", subscriptions);
+
+        report.put("resources", resources.toReport());
+        return report;
+    }
+
+    private ScaleHarness() {
+        // This class is not meant to be instantiated.
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.benchmark.startup;
+
+import static org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.Unsigned.uint;
+
+import com.google.gson.GsonBuilder;
+import com.iiotranslator.opc.OpcNamespace;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
+import org.eclipse.milo.opcua.sdk.client.api.identity.UsernameProvider;
+import org.eclipse.milo.opcua.stack.core.Stack;
+import org.eclipse.milo.opcua.stack.core.StatusCodes;
+import org.eclipse.milo.opcua.stack.core.security.SecurityPolicy;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.TimestampsToReturn;
+
+/**
+ * Measures the startup time of IIoTranslator with generated devices using the "test" driver, as seen by an OPC UA
+ * client: the time from launching the process until the first session could be opened, and until the variable of the
+ * last device could be read. Each run starts a new process, so the launch command can be used to compare e.g. the plain
+ * .jar with the AOT-processed one and a class data sharing archive, see the Fast Startup section of the README.
+ * <p>
+ * Run using {@code mvn package -Pbenchmarks test-compile exec:exec@startup -Dstartup.args="--runs=5"}, see
+ * {@link Options} for all arguments. The results are written as JSON to the file given by {@code --report}.
+ */
+public class StartupBenchmark {
+    private static final String USERNAME = "startup", PASSWORD = "startup";
+    private static final long POLL_MILLIS = 20;
+
+    /**
+     * The command line arguments, which are given as {@code --name=value}.
+     */
+    static class Options {
+        /** Comma-separated numbers of generated devices, each is measured separately */
+        List<Integer> devices = List.of(1, 100, 1000);
+        /** Number of variables per device, or 0 for the test driver's default variables */
+        int variables = 0;
+        /** Number of process launches for each number of devices */
+        int runs = 3;
+        /** Command that launches IIoTranslator, split at spaces. The configuration is appended as arguments. */
+        String launch = "java -jar target/iiotranslator-1.0-SNAPSHOT.jar";
+        /** Seconds after which a launch is considered to have failed */
+        int timeout = 300;
+
+        String report = "target/startup-report.json";
+
+        static Options parse(String[] args) {
+            var options = new Options();
+            for (String arg : args) {
+                if (!arg.startsWith("--") || !arg.contains("=")) {
+                    throw new IllegalArgumentException("Arguments must be given as --name=value: " + arg);
+                }
+                var name = arg.substring(2, arg.indexOf('='));
+                var value = arg.substring(arg.indexOf('=') + 1);
+                switch (name) {
+                    case "devices" -> options.devices = Arrays.stream(value.split(","))
+                            .map(String::trim)
+                            .map(Integer::parseInt)
+                            .toList();
+                    case "variables" -> options.variables = Integer.parseInt(value);
+                    case "runs" -> options.runs = Integer.parseInt(value);
+                    case "launch" -> options.launch = value;
+                    case "timeout" -> options.timeout = Integer.parseInt(value);
+                    case "report" -> options.report = value;
+                    default -> throw new IllegalArgumentException("Unknown argument: " + name);
+                }
+            }
+            return options;
+        }
+    }
+
+    /**
+     * The times of a single launch in milliseconds.
+     */
+    record Run(long firstSessionMillis, long allDevicesMillis) {}
+
+    public static void main(String[] args) throws Exception {
+        var options = Options.parse(args);
+        var results = new LinkedHashMap<String, Object>();
+        for (int devices : options.devices) {
+            var runs = new ArrayList<Run>();
+            for (int i = 0; i < options.runs; i++) {
+                var run = launch(options, devices);
+                System.out.printf(
+                        "%d devices, run %d: first session after %d ms, all devices after %d ms%n",
+                        devices, i + 1, run.firstSessionMillis(), run.allDevicesMillis());
+                runs.add(run);
+            }
+            var result = new LinkedHashMap<String, Object>();
+            result.put("firstSessionMillis", summary(runs.stream().mapToLong(Run::firstSessionMillis)));
+            result.put("allDevicesMillis", summary(runs.stream().mapToLong(Run::allDevicesMillis)));
+            result.put("runs", runs);
+            results.put(Integer.toString(devices), result);
+        }
+
+        var report = new LinkedHashMap<String, Object>();
+        report.put("options", options);
+        report.put("devices", results);
+        var json = new GsonBuilder().setPrettyPrinting().create().toJson(report);
+        var reportFile = Path.of(options.report);
+        if (reportFile.toAbsolutePath().getParent() != null) {
+            Files.createDirectories(reportFile.toAbsolutePath().getParent());
+        }
+        Files.writeString(reportFile, json);
+        System.out.println(json);
+        System.out.println("Report written to " + reportFile.toAbsolutePath());
+        Stack.releaseSharedResources();
+    }
+
+    private static Run launch(Options options, int devices) throws Exception {
+        int port;
+        try (var socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        var configuration = writeConfiguration(devices, options.variables, port);
+        var log = Files.createTempFile("startup-benchmark", ".log");
+        var command = new ArrayList<>(List.of(options.launch.trim().split(" +")));
+        // Keeps the defaults, but ignores the application.properties in the working directory, which configures its
+        // own devices
+        command.add("--spring.config.location=classpath:/application.properties,file:" + configuration);
+
+        long start = System.nanoTime();
+        var process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(log.toFile())
+                .start();
+        try {
+            long deadline = start + TimeUnit.SECONDS.toNanos(options.timeout);
+            var client = connect("opc.tcp://127.0.0.1:" + port + "/", process, deadline, log);
+            long firstSession = System.nanoTime();
+            try {
+                int namespaceIndex = client.getNamespaceTable()
+                        .getIndex(OpcNamespace.NAMESPACE_URI)
+                        .intValue();
+                // The test driver creates these variables on initialization, see TestDriver
+                var lastVariable = new NodeId(
+                        namespaceIndex,
+                        deviceName(devices - 1)
+                                + (options.variables > 0 ? "/Variable" + (options.variables - 1) : "/test"));
+                while (StatusCodes.Bad_NodeIdUnknown
+                        == client.readValue(0, TimestampsToReturn.Neither, lastVariable)
+                                .get()
+                                .getStatusCode()
+                                .getValue()) {
+                    checkAlive(process, deadline, log);
+                    Thread.sleep(POLL_MILLIS);
+                }
+            } finally {
+                client.disconnect().get();
+            }
+            long allDevices = System.nanoTime();
+            Files.delete(log);
+            return new Run(
+                    TimeUnit.NANOSECONDS.toMillis(firstSession - start),
+                    TimeUnit.NANOSECONDS.toMillis(allDevices - start));
+        } finally {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+            Files.delete(configuration);
+        }
+    }
+
+    /**
+     * Tries to open a session until it succeeds.
+     */
+    private static OpcUaClient connect(String endpointUrl, Process process, long deadline, Path log) throws Exception {
+        while (true) {
+            checkAlive(process, deadline, log);
+            try {
+                var client = OpcUaClient.create(
+                        endpointUrl,
+                        endpoints -> endpoints.stream()
+                                .filter(endpoint ->
+                                        SecurityPolicy.None.getUri().equals(endpoint.getSecurityPolicyUri()))
+                                .findFirst(),
+                        builder -> builder.setIdentityProvider(new UsernameProvider(USERNAME, PASSWORD))
+                                .setRequestTimeout(uint(10_000))
+                                .build());
+                client.connect().get();
+                return client;
+            } catch (Exception e) {
+                // The server is not listening yet
+                Thread.sleep(POLL_MILLIS);
+            }
+        }
+    }
+
+    private static void checkAlive(Process process, long deadline, Path log) throws IOException {
+        if (!process.isAlive()) {
+            throw new IOException("IIoTranslator exited with code " + process.exitValue() + ", see " + log);
+        }
+        if (System.nanoTime() > deadline) {
+            throw new IOException("IIoTranslator did not start before the timeout, see " + log);
+        }
+    }
+
+    private static Path writeConfiguration(int devices, int variables, int port) throws IOException {
+        var lines = new ArrayList<String>();
+        // Otherwise, two lines are logged per device
+        lines.add("logging.level.com.iiotranslator=WARN");
+        lines.add("iiot.opcua.bindAddress=127.0.0.1");
+        lines.add("iiot.opcua.bindPortTcp=" + port);
+        lines.add("iiot.opcua.hostnames=127.0.0.1");
+        lines.add("iiot.opcua.username=" + USERNAME);
+        lines.add("iiot.opcua.password=" + PASSWORD);
+        for (int i = 0; i < devices; i++) {
+            lines.add("iiot.devices." + deviceName(i) + ".driver=test");
+            if (variables > 0) {
+                lines.add("iiot.devices." + deviceName(i) + ".variables=" + variables);
+            }
+        }
+        var file = Files.createTempFile("startup-benchmark", ".properties");
+        Files.write(file, lines);
+        return file.toAbsolutePath();
+    }
+
+    private static String deviceName(int index) {
+        return String.format("Device%05d", index);
+    }
+
+    private static Map<String, Long> summary(LongStream values) {
+        var sorted = values.sorted().toArray();
+        var summary = new LinkedHashMap<String, Long>();
+        summary.put("min", sorted[0]);
+        summary.put("median", sorted[sorted.length / 2]);
+        summary.put("max", sorted[sorted.length - 1]);
+        return summary;
+    }
+
+    private StartupBenchmark() {
+        // This class is not meant to be instantiated.
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.device;
+
+import com.iiotranslator.device.drivers.DeviceDriver;
+import com.iiotranslator.opc.DataValues;
+import com.iiotranslator.opc.FolderNode;
+import com.iiotranslator.opc.OpcServer;
+import com.iiotranslator.opc.VariableNode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.milo.opcua.stack.core.Identifiers;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures the request pipeline of a {@link DeviceDriverThread}: enqueueing reads from several producer threads,
+ * de-duplicating them in the pending request map and completing their futures. The driver answers all requests
+ * immediately, so only the overhead of the pipeline itself is measured. With a single variable, all producers share
+ * the same pending request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class DeviceDriverThreadBenchmark {
+    private static final DataValue VALUE = DataValues.of(42.0);
+
+    @Param({"1", "64"})
+    private int variableCount;
+
+    @Param({"false", "true"})
+    private boolean diagnostics;
+
+    private DeviceDriverThread driverThread;
+    private List<VariableNode> variables;
+
+    @Setup
+    public void setup() throws Exception {
+        var server = new OpcServer(Set.of("localhost"), "127.0.0.1", 0, "user", "password");
+        FolderNode deviceFolder = server.getRootNode().addFolder("Device");
+        variables = new ArrayList<>();
+        for (int i = 0; i < variableCount; i++) {
+            variables.add(deviceFolder.addVariableReadOnly("Variable " + i, Identifiers.Double));
+        }
+        var device = new Device("Device", "benchmark", Map.of());
+        driverThread = new DeviceDriverThread(device, deviceFolder, ImmediateDriver::new, diagnostics);
+    }
+
+    @TearDown
+    public void tearDown() {
+        driverThread.stop();
+    }
+
+    @Benchmark
+    public DataValue read() {
+        var variable = variables.get(ThreadLocalRandom.current().nextInt(variableCount));
+        return driverThread.read(variable).join();
+    }
+
+    private static class ImmediateDriver implements DeviceDriver {
+        @Override
+        public void initialize(Device device, FolderNode deviceFolderNode) {}
+
+        @Override
+        public void process(List<DeviceRequest> requestQueue, DeviceRequestCompletionListener listener) {
+            for (var request : requestQueue) {
+                if (request instanceof DeviceRequest.ReadRequest readRequest) {
+                    listener.completeReadRequest(readRequest, VALUE);
+                } else if (request instanceof DeviceRequest.WriteRequest writeRequest) {
+                    listener.completeWriteRequestExceptionally(writeRequest);
+                }
+            }
+        }
+    }
+}
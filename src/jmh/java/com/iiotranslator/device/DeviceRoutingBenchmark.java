@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.device;
+
+import com.iiotranslator.device.drivers.DeviceDriver;
+import com.iiotranslator.opc.FolderNode;
+import com.iiotranslator.opc.OpcServer;
+import com.iiotranslator.opc.VariableNode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.milo.opcua.stack.core.Identifiers;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures how long {@link DevicesService} takes to find the driver thread of a variable, which happens for every read
+ * and write. Each variable is nested two folders deep below its device folder.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DeviceRoutingBenchmark {
+    @Param({"1", "10", "100"})
+    private int deviceCount;
+
+    private DevicesService devicesService;
+    private final List<DeviceDriverThread> driverThreads = new ArrayList<>();
+    private final List<VariableNode> variables = new ArrayList<>();
+
+    private int next;
+
+    @Setup
+    public void setup() throws Exception {
+        var rootNode = new OpcServer(Set.of("localhost"), "127.0.0.1", 0, "user", "password").getRootNode();
+        devicesService = new DevicesService(null, null, null, null);
+        for (int i = 0; i < deviceCount; i++) {
+            var device = new Device("Device " + i, "benchmark", Map.of());
+            var deviceFolder = rootNode.addFolder(device.getName());
+            variables.add(deviceFolder
+                    .addFolder("Folder")
+                    .addFolder("Subfolder")
+                    .addVariableReadOnly("Variable", Identifiers.Double));
+            var driverThread = new DeviceDriverThread(device, deviceFolder, IdleDriver::new, false);
+            driverThreads.add(driverThread);
+            devicesService.addDevice(deviceFolder, driverThread);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        driverThreads.forEach(DeviceDriverThread::stop);
+    }
+
+    @Benchmark
+    public DeviceDriverThread getDriver() {
+        next = (next + 1) % deviceCount;
+        return devicesService.getDriver(variables.get(next));
+    }
+
+    private static class IdleDriver implements DeviceDriver {
+        @Override
+        public void initialize(Device device, FolderNode deviceFolderNode) {}
+
+        @Override
+        public void process(List<DeviceRequest> requestQueue, DeviceRequestCompletionListener listener) {}
+    }
+}
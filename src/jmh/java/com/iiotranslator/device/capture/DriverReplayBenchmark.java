@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.device.capture;
+
+import com.iiotranslator.device.Device;
+import com.iiotranslator.device.DeviceRequest;
+import com.iiotranslator.device.DeviceRequestCompletionListener;
+import com.iiotranslator.device.drivers.DeviceDriver;
+import com.iiotranslator.device.drivers.KnownDeviceDrivers;
+import com.iiotranslator.opc.FolderNode;
+import com.iiotranslator.opc.OpcServer;
+import com.iiotranslator.simulator.SimulationProfile;
+import com.iiotranslator.simulator.Simulators;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures how long the polling drivers take to read all of their variables from a {@link ReplayServer}, i.e. the
+ * drivers' parsing and request overhead on recorded traffic. A recording made with iiot.capture.mode=record can be
+ * passed using e.g. {@code -p driver=binder_kbf -p recording=captures/Oven.wire}; by default, a short recording of the
+ * driver's simulator is made first. With {@code -p speed=1}, the device's recorded response times are included.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DriverReplayBenchmark {
+    private static final int RECORDED_POLLS = 100;
+
+    @Param({"keyence_mku", "binder_kb", "binder_kbf", "tasmota", "ipswitch"})
+    private String driver;
+
+    @Param("")
+    private String recording;
+
+    @Param("0")
+    private double speed;
+
+    private ReplayServer replayServer;
+    private DeviceDriver deviceDriver;
+    private final List<DeviceRequest> requests = new ArrayList<>();
+
+    @Setup
+    public void setup() throws Exception {
+        Path file;
+        if (recording.isEmpty()) {
+            file = Files.createTempFile("replay-benchmark", WireCaptureService.FILE_EXTENSION);
+            file.toFile().deleteOnExit();
+            record(file);
+        } else {
+            file = Path.of(recording);
+        }
+        replayServer = new ReplayServer(driver, WireRecording.read(file), speed, true);
+        deviceDriver = createDriver(replayServer.getPort(), Map.of("hostname", "replay"), requests);
+    }
+
+    /**
+     * Records the traffic of the driver with its simulator, by polling all variables a number of times.
+     */
+    private void record(Path file) throws Exception {
+        try (var simulator = Simulators.start(driver, SimulationProfile.IDEAL)) {
+            var simulatedDevice = new Device("Simulated", driver, simulator.getDeviceOptions());
+            var target = WireCaptureService.getTarget(simulatedDevice);
+            try (var proxy = new CaptureProxy(driver, target, 1000, new WireRecording.Writer(file))) {
+                var recordRequests = new ArrayList<DeviceRequest>();
+                var recordDriver = createDriver(proxy.getPort(), simulator.getDeviceOptions(), recordRequests);
+                for (int i = 0; i < RECORDED_POLLS; i++) {
+                    recordDriver.process(recordRequests, new ConsumingListener(null));
+                }
+            }
+        }
+    }
+
+    private DeviceDriver createDriver(int port, Map<String, String> deviceOptions, List<DeviceRequest> requests)
+            throws Exception {
+        var options = new HashMap<>(deviceOptions);
+        options.put("driver", driver);
+        var device = new Device("Replayed", driver, options);
+        device = new Device(device.getName(), driver, WireCaptureService.redirect(device, port));
+        var folder = new OpcServer(Set.of("localhost"), "127.0.0.1", 0, "user", "password")
+                .getRootNode()
+                .addFolder(device.getName());
+        var deviceDriver = KnownDeviceDrivers.getDriverSupplier(device).get();
+        deviceDriver.initialize(device, folder);
+        addReadRequests(folder, requests);
+        return deviceDriver;
+    }
+
+    private static void addReadRequests(FolderNode folder, List<DeviceRequest> requests) {
+        folder.getChildVariables().forEach(variable -> requests.add(new DeviceRequest.ReadRequest(variable)));
+        folder.getChildFolders().forEach(child -> addReadRequests(child, requests));
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        replayServer.close();
+    }
+
+    @Benchmark
+    public void readAll(Blackhole blackhole) {
+        deviceDriver.process(requests, new ConsumingListener(blackhole));
+    }
+
+    private record ConsumingListener(Blackhole blackhole) implements DeviceRequestCompletionListener {
+        @Override
+        public void completeReadRequest(DeviceRequest.ReadRequest request, DataValue value) {
+            if (blackhole != null) {
+                blackhole.consume(value);
+            }
+        }
+
+        @Override
+        public void completeWriteRequestExceptionally(DeviceRequest.WriteRequest request) {}
+
+        @Override
+        public void completeWriteRequestExceptionally(DeviceRequest.WriteRequest request, Exception e) {}
+    }
+}
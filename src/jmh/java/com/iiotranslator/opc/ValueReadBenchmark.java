@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.opc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.milo.opcua.sdk.server.nodes.UaVariableNode;
+import org.eclipse.milo.opcua.stack.core.Identifiers;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures a client read of a variable's Value attribute through the attribute filter installed by
+ * {@link OpcNamespace}: requesting a new value from the accessor, storing the answer and returning the last known value
+ * with the server timestamp. The accessor answers immediately, so no device is involved.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValueReadBenchmark {
+    @Param({"10", "1000"})
+    private int variableCount;
+
+    private final List<UaVariableNode> uaVariableNodes = new ArrayList<>();
+
+    private int next;
+
+    @Setup
+    public void setup() throws Exception {
+        var server = new OpcServer(Set.of("localhost"), "127.0.0.1", 0, "user", "password");
+        server.getNamespaceReady().get();
+        var folder = server.getRootNode().addFolder("Device");
+        for (int i = 0; i < variableCount; i++) {
+            var variable = folder.addVariableReadOnly("Variable " + i, Identifiers.Double);
+            uaVariableNodes.add((UaVariableNode) variable.getUaNode());
+        }
+        var value = CompletableFuture.completedFuture(DataValues.of(42.0));
+        server.setVariableNodeAccessor(new OpcVariableNodeAccessor() {
+            @Override
+            public CompletableFuture<DataValue> read(VariableNode variable) {
+                return value;
+            }
+
+            @Override
+            public CompletableFuture<Void> write(WritableVariableNode variable, DataValue value) {
+                return CompletableFuture.completedFuture(null);
+            }
+        });
+    }
+
+    @Benchmark
+    public DataValue readValue() {
+        next = (next + 1) % variableCount;
+        return uaVariableNodes.get(next).getValue();
+    }
+}
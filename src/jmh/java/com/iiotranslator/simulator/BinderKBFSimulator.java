@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.simulator;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.zip.Deflater;
+
+/**
+ * Simulates the web interface of a Binder KBF climate chamber, which returns the requested values zlib-compressed at
+ * {@code /UE/ZIP/<id>//<id>...}.
+ */
+public class BinderKBFSimulator extends HttpSimulator {
+    private static final String PREFIX = "/UE/ZIP/";
+
+    public BinderKBFSimulator(SimulationProfile profile) throws IOException {
+        super(profile);
+    }
+
+    @Override
+    protected byte[] respond(URI uri) {
+        var path = uri.getRawPath();
+        if (!path.startsWith(PREFIX)) {
+            return null;
+        }
+        var response = Arrays.stream(path.substring(PREFIX.length()).split("//"))
+                .map(id -> id + "=<Wert>" + value(id) + "</Wert>")
+                .collect(Collectors.joining("//"));
+        return compress(response.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String value(String id) {
+        return switch (id) {
+            case "2.416.1.0.0" -> String.format("%.1f", profile.value(id, 25, 0.5));
+            case "2.227.0.0.0" -> "25.0";
+            case "2.416.3.0.0" -> String.format("%.1f", profile.value(id, 50, 2));
+            case "2.413.1.0.0" -> "50.0";
+            case "2.227.2.0.0" -> "50";
+            default -> "-----";
+        };
+    }
+
+    private static byte[] compress(byte[] data) {
+        var deflater = new Deflater();
+        deflater.setInput(data);
+        deflater.finish();
+        var buffer = new byte[data.length + 64];
+        int length = deflater.deflate(buffer);
+        deflater.end();
+        return Arrays.copyOf(buffer, length);
+    }
+
+    @Override
+    public String getDriver() {
+        return "binder_kbf";
+    }
+
+    @Override
+    public Map<String, String> getDeviceOptions() {
+        return hostnameOption();
+    }
+}
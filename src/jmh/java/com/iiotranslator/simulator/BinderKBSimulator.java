@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.simulator;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Simulates the TCP interface of a Binder KB climate chamber, answering {@code CANIDGetValue:<id>} commands with a
+ * line containing the length of the response, followed by the response itself. Temperatures are given in Kelvin.
+ */
+public class BinderKBSimulator extends TcpLineSimulator {
+    private static final String GET_VALUE = "CANIDGetValue:";
+
+    public BinderKBSimulator(SimulationProfile profile) throws IOException {
+        super(profile);
+    }
+
+    @Override
+    protected String respond(String command) {
+        String value;
+        if (command.startsWith(GET_VALUE)) {
+            var id = command.substring(GET_VALUE.length());
+            value = switch (id) {
+                case "10010010" -> "OK";
+                case "112000E1" -> format(profile.value(id, 50, 1));
+                case "114000C0" -> format(298.15);
+                case "11400080" -> format(profile.value(id, 298.15, 0.5));
+                case "11400082" -> format(profile.value(id, 296.15, 0.5));
+                default -> "-";};
+        } else {
+            value = "-";
+        }
+        var response = command + "=" + value;
+        return response.length() + "\r\n" + response + "\r\n";
+    }
+
+    private static String format(double value) {
+        return String.format("%.2f", value);
+    }
+
+    @Override
+    public String getDriver() {
+        return "binder_kb";
+    }
+
+    @Override
+    public Map<String, String> getDeviceOptions() {
+        return Map.of("hostname", "127.0.0.1", "port", Integer.toString(getPort()));
+    }
+}
@@ -0,0 +1,26 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.simulator;
+
+import java.io.Closeable;
+import java.util.Map;
+
+/**
+ * A device that speaks the protocol of one of the drivers, listening on a random port on localhost.
+ */
+public interface DeviceSimulator extends Closeable {
+    /**
+     * The name of the driver that talks to this simulator, as used in the configuration.
+     */
+    String getDriver();
+
+    /**
+     * The device options that connect the driver to this simulator, i.e. its hostname and port.
+     */
+    Map<String, String> getDeviceOptions();
+
+    @Override
+    void close();
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.simulator;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Base class of the simulators of devices with an HTTP interface, using the JDK's HTTP server.
+ */
+@Slf4j
+abstract class HttpSimulator implements DeviceSimulator {
+    static {
+        // Otherwise, Nagle's algorithm delays the responses by up to 40 ms, as headers and body are sent separately
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    protected final SimulationProfile profile;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        var thread = new Thread(runnable, getClass().getSimpleName());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    HttpSimulator(SimulationProfile profile) throws IOException {
+        this.profile = profile;
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * @return the response body, or null to respond with 404 Not Found
+     */
+    protected abstract byte[] respond(URI uri);
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            profile.delay();
+            if (profile.shouldDrop()) {
+                // Closing the exchange without sending headers makes the server close the connection
+                return;
+            }
+            var response = respond(exchange.getRequestURI());
+            if (response == null) {
+                exchange.sendResponseHeaders(404, -1);
+            } else {
+                exchange.sendResponseHeaders(200, response.length);
+                exchange.getResponseBody().write(response);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            log.warn("Error handling {}", exchange.getRequestURI(), e);
+        }
+    }
+
+    /**
+     * The hostname option of the HTTP drivers, which includes the port.
+     */
+    protected Map<String, String> hostnameOption() {
+        return Map.of("hostname", "127.0.0.1:" + server.getAddress().getPort());
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.simulator;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Simulates an IPswitch-S0m-WiFi energy meter: the S0 impulse counter at {@code /?S0=?}, which can be set using
+ * {@code /?S0=<count>}, and the values at {@code /csv.html}.
+ */
+public class IPSwitchSimulator extends HttpSimulator {
+    private static final long IMPULSES_PER_KWH = 1000, IMPULSES_PER_INTERVAL = 5;
+
+    /**
+     * Added to the simulated impulse counter, so that the counter can be set.
+     */
+    private volatile long impulseOffset = 12_345;
+
+    public IPSwitchSimulator(SimulationProfile profile) throws IOException {
+        super(profile);
+    }
+
+    private long impulses() {
+        return impulseOffset + profile.counter(IMPULSES_PER_INTERVAL);
+    }
+
+    @Override
+    protected byte[] respond(URI uri) {
+        String response;
+        if (uri.getPath().equals("/csv.html")) {
+            long power = Math.round(profile.value("Power", 250, 50));
+            response = "IPswitch-S0m-WiFi,1.0,name:,Simulator,mac:,00:11:22:33:44:55,S01:,"
+                    + impulses() * 1000 / IMPULSES_PER_KWH + ",Verbrauch_Ver:," + power + ",rssi:,"
+                    + Math.round(profile.value("rssi", -60, 5)) + ",";
+        } else if (uri.getPath().equals("/") && "S0=?".equals(uri.getQuery())) {
+            long impulses = impulses();
+            response = impulses * 1000 / IMPULSES_PER_KWH + "Wh = " + impulses + "Imp, imp= " + IMPULSES_PER_KWH
+                    + "imp/kWh";
+        } else if (uri.getPath().equals("/")
+                && uri.getQuery() != null
+                && uri.getQuery().startsWith("S0=")) {
+            impulseOffset =
+                    Long.parseLong(uri.getQuery().substring("S0=".length())) - profile.counter(IMPULSES_PER_INTERVAL);
+            response = "OK";
+        } else if (uri.getPath().equals("/") && "eep=1".equals(uri.getQuery())) {
+            response = "OK";
+        } else {
+            return null;
+        }
+        return response.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String getDriver() {
+        return "ipswitch";
+    }
+
+    @Override
+    public Map<String, String> getDeviceOptions() {
+        return hostnameOption();
+    }
+}
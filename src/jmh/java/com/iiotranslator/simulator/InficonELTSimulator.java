@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.simulator;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import org.java_websocket.WebSocket;
+import org.java_websocket.drafts.Draft_6455;
+import org.java_websocket.handshake.ClientHandshake;
+
+/**
+ * Simulates an Inficon ELT leak detector, which emits "MeasurementData" events using socket.io 2.x, i.e. version 3 of
+ * the Engine.IO protocol. Only the WebSocket transport is supported, as the driver does not use long-polling.
+ */
+public class InficonELTSimulator extends WebSocketSimulator {
+    private static final String ENGINE_IO_OPEN = "0", ENGINE_IO_PING = "2", ENGINE_IO_PONG = "3";
+    private static final String SOCKET_IO_CONNECT = "40", SOCKET_IO_EVENT = "42";
+
+    public InficonELTSimulator(SimulationProfile profile) {
+        super(profile, List.of(new Draft_6455()));
+    }
+
+    @Override
+    public void onOpen(WebSocket connection, ClientHandshake handshake) {
+        var open = new JsonObject();
+        open.addProperty("sid", UUID.randomUUID().toString());
+        open.add("upgrades", new JsonArray());
+        open.addProperty("pingInterval", 25_000);
+        open.addProperty("pingTimeout", 60_000);
+        connection.send(ENGINE_IO_OPEN + open);
+        connection.send(SOCKET_IO_CONNECT);
+    }
+
+    @Override
+    public void onMessage(WebSocket connection, String message) {
+        if (message.startsWith(ENGINE_IO_PING)) {
+            // Also answers the "2probe" ping with "3probe"
+            connection.send(ENGINE_IO_PONG + message.substring(ENGINE_IO_PING.length()));
+        }
+    }
+
+    @Override
+    protected void push(WebSocket connection) {
+        var data = new JsonObject();
+        data.addProperty("operatingUnitState", 3);
+        data.addProperty("operationSequence", 1);
+        data.addProperty("p1", profile.value("p1", 1e-3, 1e-4));
+        data.addProperty("p2", profile.value("p2", 2e-2, 1e-3));
+        data.addProperty("p3", profile.value("p3", 1013, 5));
+        double leakRate = profile.value("leakrate", 5e-7, 4e-7);
+        data.addProperty("trigger1Exceeded", leakRate > 8e-7);
+        data.addProperty("trigger2Exceeded", false);
+        data.addProperty("rawIon", profile.value("rawIon", 1e-10, 5e-11));
+        data.addProperty("leakrateRawMbarls", leakRate);
+        data.addProperty("deviceState", 2);
+        data.addProperty("operationModus", 1);
+        data.addProperty("timestamp", System.currentTimeMillis());
+        var event = new JsonArray();
+        event.add("MeasurementData");
+        event.add(data);
+        connection.send(SOCKET_IO_EVENT + event);
+    }
+
+    @Override
+    public String getDriver() {
+        return "inficon_elt";
+    }
+
+    @Override
+    public Map<String, String> getDeviceOptions() {
+        return Map.of("hostname", "127.0.0.1:" + getPort());
+    }
+}
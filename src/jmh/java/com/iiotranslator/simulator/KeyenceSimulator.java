@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.simulator;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+
+/**
+ * Simulates a Keyence MK-U6000 ink-jet printer, answering the EV, SB, FL/FM, DB, FR and UZ commands used by the
+ * keyence_mku driver. Other commands are answered with an error response.
+ */
+public class KeyenceSimulator extends TcpLineSimulator {
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yy,MM,dd,HH,mm,ss");
+    private static final int PROGRAM = 1;
+
+    /**
+     * The global settings returned by "FL,CMN,0" and replaced by "FM", the 10th value is the line speed in 0.1 mm/s.
+     */
+    private volatile String globalSettings = "CMN,0,0,0,0,0,0,0,0,500,0,0";
+
+    public KeyenceSimulator(SimulationProfile profile) throws IOException {
+        super(profile);
+    }
+
+    @Override
+    protected String respond(String command) {
+        var split = command.split(",", -1);
+        var response =
+                switch (split[0]) {
+                    case "EV" -> profile.value("EV", 0, 1) > 0.8 ? "EV,7" : "EV";
+                    case "SB" -> "SB,1";
+                    case "FL" -> "FL," + globalSettings;
+                    case "FM" -> {
+                        globalSettings = command.substring("FM,".length());
+                        yield "FM";
+                    }
+                    case "DB" -> "DB," + LocalDateTime.now().format(TIME_FORMAT);
+                    case "FR" -> "FR," + PROGRAM;
+                    case "UZ" -> "UZ," + PROGRAM + ",0," + profile.counter(1);
+                    default -> "ER," + split[0] + ",0";
+                };
+        return response + "\r\n";
+    }
+
+    @Override
+    public String getDriver() {
+        return "keyence_mku";
+    }
+
+    @Override
+    public Map<String, String> getDeviceOptions() {
+        return Map.of("hostname", "127.0.0.1", "port", Integer.toString(getPort()));
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.simulator;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Simulates a Modbus TCP controller of a climate chamber with 100 holding and input registers each, which supports
+ * reading holding and input registers and writing multiple holding registers. Requests are answered in the order they
+ * were received, so pipelined requests are delayed by the latency only once.
+ */
+@Slf4j
+public class ModbusTcpSimulator implements DeviceSimulator {
+    /**
+     * The register map of the simulated values, in the format of the driver's "registers" option.
+     */
+    static final String REGISTERS = "Temperature=input 0 float32;Humidity=input 2 float32;"
+            + "Operating Seconds=input 4 uint32;Setpoint=holding 0 int16 rw;Mode=holding 1 uint16 rw;"
+            + "Label=holding 10 string8 rw";
+
+    private static final int REGISTER_COUNT = 100;
+
+    private final SimulationProfile profile;
+    private final ServerSocket serverSocket;
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    private final ByteBuffer holding = ByteBuffer.allocate(REGISTER_COUNT * 2);
+
+    public ModbusTcpSimulator(SimulationProfile profile) throws IOException {
+        this.profile = profile;
+        holding.putShort(0, (short) 25);
+        holding.put(20, "Simulated".getBytes(StandardCharsets.US_ASCII));
+        serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        var thread = new Thread(this::accept, getClass().getSimpleName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                var socket = serverSocket.accept();
+                connections.add(socket);
+                var thread = new Thread(() -> serve(socket), getClass().getSimpleName() + " connection");
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    log.warn("Error accepting connection", e);
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket) {
+            var in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            var out = new BufferedOutputStream(socket.getOutputStream());
+            var header = new byte[7];
+            boolean flushed = true;
+            while (true) {
+                in.readFully(header);
+                var pdu = new byte[(ByteBuffer.wrap(header).getShort(4) & 0xFFFF) - 1];
+                in.readFully(pdu);
+                // Requests that arrive while responses are still buffered were sent at the same time as the previous
+                // ones, and are answered without another delay
+                if (flushed) {
+                    profile.delay();
+                }
+                if (profile.shouldDrop()) {
+                    return;
+                }
+                var response = respond(ByteBuffer.wrap(pdu));
+                out.write(ByteBuffer.allocate(7)
+                        .put(header, 0, 4)
+                        .putShort((short) (response.length + 1))
+                        .put(header[6])
+                        .array());
+                out.write(response);
+                flushed = in.available() == 0;
+                if (flushed) {
+                    out.flush();
+                }
+            }
+        } catch (IOException | InterruptedException e) {
+            // The connection was closed
+        } finally {
+            connections.remove(socket);
+        }
+    }
+
+    private byte[] respond(ByteBuffer pdu) {
+        int function = pdu.get(0), address = pdu.getShort(1) & 0xFFFF, count = pdu.getShort(3) & 0xFFFF;
+        if (function != 3 && function != 4 && function != 16) {
+            // Illegal function
+            return new byte[] {(byte) (function | 0x80), 1};
+        } else if (address + count > REGISTER_COUNT) {
+            // Illegal data address
+            return new byte[] {(byte) (function | 0x80), 2};
+        }
+        synchronized (holding) {
+            if (function == 16) {
+                holding.put(address * 2, pdu.array(), 6, count * 2);
+                return ByteBuffer.allocate(5).put(pdu.array(), 0, 5).array();
+            }
+            var registers = function == 3 ? holding : inputRegisters();
+            return ByteBuffer.allocate(2 + count * 2)
+                    .put((byte) function)
+                    .put((byte) (count * 2))
+                    .put(registers.array(), address * 2, count * 2)
+                    .array();
+        }
+    }
+
+    private ByteBuffer inputRegisters() {
+        return ByteBuffer.allocate(REGISTER_COUNT * 2)
+                .putFloat(0, (float) profile.value("temperature", 22, 0.5))
+                .putFloat(4, (float) profile.value("humidity", 45, 5))
+                .putInt(8, (int) profile.counter(Math.max(1, profile.getUpdateIntervalMillis() / 1000)));
+    }
+
+    @Override
+    public String getDriver() {
+        return "modbus_tcp";
+    }
+
+    @Override
+    public Map<String, String> getDeviceOptions() {
+        return Map.of(
+                "hostname", "127.0.0.1", "port", Integer.toString(serverSocket.getLocalPort()), "registers", REGISTERS);
+    }
+
+    @Override
+    public void close() {
+        try {
+            serverSocket.close();
+        } catch (IOException ignored) {
+        }
+        for (var socket : connections) {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.simulator;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * How a simulated device behaves: how long it takes to respond, how often it drops the connection and how often its
+ * values change.
+ * <p>
+ * A dropped request closes the connection without a response, so that the drivers' reconnect handling is exercised.
+ * Simulators that push values drop the connection instead of sending an update.
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class SimulationProfile {
+    /**
+     * Responds immediately, never drops the connection and changes the values every second.
+     */
+    public static final SimulationProfile IDEAL = new SimulationProfile(0, 0, 0.0, 1000);
+
+    private final long latencyMillis, jitterMillis;
+
+    /**
+     * Probability between 0 and 1 that a request or update is dropped.
+     */
+    private final double dropRate;
+
+    /**
+     * How often the simulated values change, and how often they are pushed by simulators that push them.
+     */
+    private final long updateIntervalMillis;
+
+    @ToString.Exclude
+    private final long startMillis = System.currentTimeMillis();
+
+    /**
+     * Parses {@code --latency=}, {@code --jitter=}, {@code --dropRate=} and {@code --updateInterval=} arguments, times
+     * are given in milliseconds. Other arguments are ignored.
+     */
+    public static SimulationProfile parse(String[] args) {
+        long latency = IDEAL.latencyMillis, jitter = IDEAL.jitterMillis, updateInterval = IDEAL.updateIntervalMillis;
+        double dropRate = IDEAL.dropRate;
+        for (String arg : args) {
+            var value = arg.substring(arg.indexOf('=') + 1);
+            if (arg.startsWith("--latency=")) {
+                latency = Long.parseLong(value);
+            } else if (arg.startsWith("--jitter=")) {
+                jitter = Long.parseLong(value);
+            } else if (arg.startsWith("--dropRate=")) {
+                dropRate = Double.parseDouble(value);
+            } else if (arg.startsWith("--updateInterval=")) {
+                updateInterval = Long.parseLong(value);
+            }
+        }
+        return new SimulationProfile(latency, jitter, dropRate, updateInterval);
+    }
+
+    /**
+     * Waits for the latency plus a random jitter.
+     */
+    void delay() throws InterruptedException {
+        long millis =
+                latencyMillis + (jitterMillis > 0 ? ThreadLocalRandom.current().nextLong(jitterMillis + 1) : 0);
+        if (millis > 0) {
+            Thread.sleep(millis);
+        }
+    }
+
+    boolean shouldDrop() {
+        return dropRate > 0 && ThreadLocalRandom.current().nextDouble() < dropRate;
+    }
+
+    /**
+     * A value that stays the same for one update interval, and then randomly changes to another value within
+     * base ± amplitude. Values with different names change independently.
+     */
+    double value(String name, double base, double amplitude) {
+        long interval = System.currentTimeMillis() / Math.max(1, updateIntervalMillis);
+        var random = new SplittableRandom(name.hashCode() * 0x9E3779B97F4A7C15L + interval);
+        return base + (random.nextDouble() * 2 - 1) * amplitude;
+    }
+
+    /**
+     * A counter that increases by the given amount per update interval, starting when this profile was created.
+     */
+    long counter(long increasePerInterval) {
+        return (System.currentTimeMillis() - startMillis) / Math.max(1, updateIntervalMillis) * increasePerInterval;
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.simulator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Starts the simulators. When run as an application, one simulator per driver is started and the configuration for
+ * connecting IIoTranslator to them is printed, so that the drivers can be tested without hardware: {@code mvn
+ * -Pbenchmarks test-compile exec:exec@simulators -Dsimulator.args="--latency=20 --jitter=10 --dropRate=0.01"}.
+ */
+public final class Simulators {
+    public static final List<String> DRIVERS = List.of(
+            "keyence_mku",
+            "binder_kb",
+            "binder_kbf",
+            "tasmota",
+            "ipswitch",
+            "weiss_labevent",
+            "inficon_elt",
+            "modbus_tcp");
+
+    private Simulators() {
+        // This class is not meant to be instantiated.
+    }
+
+    public static DeviceSimulator start(String driver, SimulationProfile profile) throws IOException {
+        return switch (driver) {
+            case "keyence_mku" -> new KeyenceSimulator(profile);
+            case "binder_kb" -> new BinderKBSimulator(profile);
+            case "binder_kbf" -> new BinderKBFSimulator(profile);
+            case "tasmota" -> new TasmotaSimulator(profile);
+            case "ipswitch" -> new IPSwitchSimulator(profile);
+            case "weiss_labevent" -> new WeissLabEventSimulator(profile);
+            case "inficon_elt" -> new InficonELTSimulator(profile);
+            case "modbus_tcp" -> new ModbusTcpSimulator(profile);
+            default -> throw new IllegalArgumentException("No simulator for driver " + driver);
+        };
+    }
+
+    public static void main(String[] args) throws Exception {
+        var profile = SimulationProfile.parse(args);
+        var simulators = new ArrayList<DeviceSimulator>();
+        System.out.println("# Simulated devices, " + profile);
+        for (var driver : DRIVERS) {
+            var simulator = start(driver, profile);
+            simulators.add(simulator);
+            var name = "Simulated_" + driver;
+            System.out.println("iiot.devices." + name + ".driver=" + driver);
+            simulator
+                    .getDeviceOptions()
+                    .forEach((key, value) -> System.out.println("iiot.devices." + name + "." + key + "=" + value));
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> simulators.forEach(DeviceSimulator::close)));
+        System.out.println("# Press Ctrl+C to stop the simulators");
+        Thread.currentThread().join();
+    }
+}
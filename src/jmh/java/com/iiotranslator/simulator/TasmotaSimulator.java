@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.simulator;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Simulates a Tasmota smart plug with energy monitoring, answering the {@code /cm?cmnd=status 8} command.
+ */
+public class TasmotaSimulator extends HttpSimulator {
+    public TasmotaSimulator(SimulationProfile profile) throws IOException {
+        super(profile);
+    }
+
+    @Override
+    protected byte[] respond(URI uri) {
+        if (!uri.getPath().equals("/cm") || !"cmnd=status 8".equals(uri.getQuery())) {
+            return null;
+        }
+        long power = Math.round(profile.value("Power", 100, 20));
+        double factor = 0.86;
+        double current = power / factor / 230.0;
+        var response = String.format(
+                Locale.ROOT,
+                "{\"StatusSNS\":{\"Time\":\"%s\",\"ENERGY\":{\"TotalStartTime\":\"2020-02-16T07:24:07\","
+                        + "\"Total\":%.3f,\"Yesterday\":0.676,\"Today\":1.093,\"Power\":%d,\"ApparentPower\":%d,"
+                        + "\"ReactivePower\":%d,\"Factor\":%.2f,\"Voltage\":230,\"Current\":%.3f}}}",
+                LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS),
+                1353.041 + profile.counter(1) / 1000.0,
+                power,
+                Math.round(power / factor),
+                Math.round(power * 0.6),
+                factor,
+                current);
+        return response.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String getDriver() {
+        return "tasmota";
+    }
+
+    @Override
+    public Map<String, String> getDeviceOptions() {
+        return hostnameOption();
+    }
+}
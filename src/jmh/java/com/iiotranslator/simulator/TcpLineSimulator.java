@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.simulator;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Base class of the simulators of devices with a line-based TCP protocol. Each connection is served by its own thread,
+ * and commands may be terminated by either CR or LF.
+ */
+@Slf4j
+abstract class TcpLineSimulator implements DeviceSimulator {
+    protected final SimulationProfile profile;
+    private final ServerSocket serverSocket;
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+
+    TcpLineSimulator(SimulationProfile profile) throws IOException {
+        this.profile = profile;
+        serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        var thread = new Thread(this::accept, getClass().getSimpleName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    protected int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * @return the response including its line terminator(s)
+     */
+    protected abstract String respond(String command);
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                var socket = serverSocket.accept();
+                connections.add(socket);
+                var thread = new Thread(() -> serve(socket), getClass().getSimpleName() + " connection");
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    log.warn("Error accepting connection", e);
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket) {
+            var in = new BufferedInputStream(socket.getInputStream());
+            var out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+            String command;
+            while ((command = readCommand(in)) != null) {
+                profile.delay();
+                if (profile.shouldDrop()) {
+                    return;
+                }
+                out.write(respond(command));
+                out.flush();
+            }
+        } catch (IOException | InterruptedException e) {
+            // The connection was closed
+        } finally {
+            connections.remove(socket);
+        }
+    }
+
+    private static String readCommand(InputStream in) throws IOException {
+        var command = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\r' || b == '\n') {
+                if (command.size() > 0) {
+                    return command.toString(StandardCharsets.UTF_8);
+                }
+            } else {
+                command.write(b);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void close() {
+        try {
+            serverSocket.close();
+        } catch (IOException ignored) {
+        }
+        for (var socket : connections) {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
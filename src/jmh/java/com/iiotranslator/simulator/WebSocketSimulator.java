@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.simulator;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import org.java_websocket.WebSocket;
+import org.java_websocket.drafts.Draft;
+import org.java_websocket.server.WebSocketServer;
+
+/**
+ * Base class of the simulators of devices that push their values over a WebSocket. Every update interval, the values
+ * are pushed to each connection after the simulated latency, or the connection is dropped. The server threads are not
+ * daemon threads, so simulators must be closed.
+ */
+@Slf4j
+abstract class WebSocketSimulator extends WebSocketServer implements DeviceSimulator {
+    protected final SimulationProfile profile;
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        var thread = new Thread(runnable, getClass().getSimpleName() + " updates");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @SneakyThrows(InterruptedException.class)
+    WebSocketSimulator(SimulationProfile profile, List<Draft> drafts) {
+        super(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), drafts);
+        this.profile = profile;
+        setReuseAddr(true);
+        start();
+        started.await();
+        scheduler.scheduleAtFixedRate(
+                this::pushAll,
+                profile.getUpdateIntervalMillis(),
+                profile.getUpdateIntervalMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sends the current values to a connection.
+     */
+    protected abstract void push(WebSocket connection);
+
+    private void pushAll() {
+        try {
+            profile.delay();
+            for (var connection : getConnections()) {
+                if (!connection.isOpen()) {
+                    continue;
+                }
+                if (profile.shouldDrop()) {
+                    connection.close();
+                } else {
+                    push(connection);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            log.warn("Error pushing values", e);
+        }
+    }
+
+    @Override
+    public void onStart() {
+        started.countDown();
+    }
+
+    @Override
+    public void onClose(WebSocket connection, int code, String reason, boolean remote) {}
+
+    @Override
+    public void onError(WebSocket connection, Exception e) {
+        log.debug("WebSocket error", e);
+    }
+
+    @Override
+    @SneakyThrows(InterruptedException.class)
+    public void close() {
+        scheduler.shutdownNow();
+        stop(1000);
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.simulator;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import org.java_websocket.WebSocket;
+import org.java_websocket.drafts.Draft_6455;
+import org.java_websocket.handshake.ClientHandshake;
+import org.java_websocket.protocols.Protocol;
+
+/**
+ * Simulates the "smarthmi-connect" WebSocket interface of a Weiss LabEvent oven. Clients subscribe to variables using
+ * {@code {"cmd":"sub","data":[...]}}, and receive their values as {@code @val:<name>:<value>} messages, which are
+ * batched in a {@code {"cmd":"multi","data":[...]}} message once per update interval.
+ */
+public class WeissLabEventSimulator extends WebSocketSimulator {
+    private static final Set<String> STRING_VARIABLES = Set.of(
+            "AV_Temp",
+            "CV.FormatValues",
+            "PG.FinishTime",
+            "PG.Owner",
+            "PG.ProfileName",
+            "PG.ProfileTime",
+            "PG.RemainTime",
+            "PG.SegementRemainTime",
+            "PG.SegmentTotalTime",
+            "PG.StartTime");
+
+    public WeissLabEventSimulator(SimulationProfile profile) {
+        super(profile, List.of(new Draft_6455(Collections.emptyList(), List.of(new Protocol("smarthmi-connect")))));
+    }
+
+    @Override
+    public void onOpen(WebSocket connection, ClientHandshake handshake) {
+        connection.setAttachment(ConcurrentHashMap.<String>newKeySet());
+    }
+
+    @Override
+    public void onMessage(WebSocket connection, String message) {
+        if (!message.startsWith("{")) {
+            // "app" and "user:<user>,<password>,<application>" are acknowledged, the driver ignores the answers
+            connection.send("@" + message.split(":", 2)[0] + ":ok");
+            return;
+        }
+        var command = JsonParser.parseString(message).getAsJsonObject();
+        Set<String> subscriptions = connection.getAttachment();
+        var data = command.get("data");
+        var names = new ArrayList<String>();
+        if (data != null && data.isJsonArray()) {
+            data.getAsJsonArray().forEach(name -> names.add(name.getAsString()));
+        }
+        switch (command.get("cmd").getAsString()) {
+            case "sub" -> {
+                subscriptions.addAll(names);
+                send(connection, names);
+            }
+            case "unsub" -> subscriptions.removeAll(names);
+            default -> {
+                // e.g. the "ver" command
+            }
+        }
+    }
+
+    @Override
+    protected void push(WebSocket connection) {
+        Set<String> subscriptions = connection.getAttachment();
+        if (subscriptions != null && !subscriptions.isEmpty()) {
+            send(connection, subscriptions);
+        }
+    }
+
+    private void send(WebSocket connection, Collection<String> names) {
+        var data = new JsonArray();
+        for (var name : names) {
+            data.add("@val:" + name + ":" + value(name));
+        }
+        var message = new JsonObject();
+        message.addProperty("cmd", "multi");
+        message.add("data", data);
+        connection.send(message.toString());
+    }
+
+    private String value(String name) {
+        if (STRING_VARIABLES.contains(name)) {
+            return name.startsWith("PG.") && name.endsWith("Time") ? "00:42:00" : "Simulator";
+        } else if (name.endsWith("ActualValue") || name.equals("MC.2.AV_Abs")) {
+            return String.format(Locale.ROOT, "%.2f", profile.value(name, 23, 2));
+        } else if (name.endsWith("SetPoint")) {
+            return "25.00";
+        } else if (name.startsWith("CV.1.Tol")) {
+            return "2.00";
+        } else {
+            return Long.toString(Math.round(profile.value(name, 0.5, 0.5)));
+        }
+    }
+
+    @Override
+    public String getDriver() {
+        return "weiss_labevent";
+    }
+
+    @Override
+    public Map<String, String> getDeviceOptions() {
+        return Map.of("hostname", "127.0.0.1", "port", Integer.toString(getPort()));
+    }
+}
@@ -13,6 +13,10 @@ import org.springframework.boot.context.properties.EnableConfigurationProperties
 @EnableConfigurationProperties(DevicesConfiguration.class)
 public class IIoTranslatorApplication {
     public static void main(String[] args) {
-        SpringApplication.run(IIoTranslatorApplication.class, args);
+        var context = SpringApplication.run(IIoTranslatorApplication.class, args);
+        if (context.getEnvironment().getProperty("iiot.exitAfterStartup", Boolean.class, false)) {
+            // Used by the training run that creates the class data sharing archive, see the Dockerfile
+            System.exit(SpringApplication.exit(context));
+        }
     }
 }
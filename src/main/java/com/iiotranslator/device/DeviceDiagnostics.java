@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.device;
+
+import com.iiotranslator.opc.CoarseClock;
+import com.iiotranslator.opc.DataValues;
+import com.iiotranslator.opc.FolderNode;
+import com.iiotranslator.opc.VariableNode;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import org.eclipse.milo.opcua.stack.core.Identifiers;
+import org.eclipse.milo.opcua.stack.core.StatusCodes;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
+import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
+
+/**
+ * The "_Diagnostics" folder of a device, which shows the health of its driver to OPC UA clients.
+ * <p>
+ * All values are updated by the {@link DeviceDriverThread} as requests are processed, including the latency
+ * percentiles, which are calculated from a ring buffer of the most recent process() durations every
+ * {@value #LATENCY_UPDATE_INTERVAL} polls. Reads of the diagnostics variables are answered directly from these fields
+ * and never reach the driver.
+ * <p>
+ * A poll, i.e. one process() call, counts as successful if at least one of its reads returned a good or uncertain
+ * value, so "Consecutive Errors" counts failed polls rather than failed reads.
+ */
+class DeviceDiagnostics {
+    static final String FOLDER_NAME = "_Diagnostics";
+    static final String STATE_INITIALIZING = "Initializing",
+            STATE_CONNECTED = "Connected",
+            STATE_DISCONNECTED = "Disconnected",
+            STATE_IDLE = "Idle",
+            STATE_ERROR = "Error",
+            STATE_FAILED = "Failed";
+    private static final int LATENCY_SAMPLES = 256;
+    private static final int LATENCY_UPDATE_INTERVAL = 16;
+
+    private final FolderNode folder;
+    private final VariableNode lastSuccessfulPoll,
+            latencyP50,
+            latencyP99,
+            consecutiveErrorsNode,
+            connectionState,
+            pendingRequestsNode,
+            cpuTime;
+
+    private volatile long lastSuccessMillis;
+    private volatile double p50Millis, p99Millis;
+    private volatile long consecutiveErrors;
+    private volatile String state = STATE_INITIALIZING;
+    private volatile int pendingRequests;
+    private volatile double cpuTimeMillis;
+
+    // Only accessed by the driver thread
+    private final long[] latencies = new long[LATENCY_SAMPLES];
+    private final long[] sortedLatencies = new long[LATENCY_SAMPLES];
+    private int latencyCount, latencyIndex;
+
+    // Only accessed by the driver thread, the outcome of the reads of the current poll
+    private int pollGoodReads, pollBadReads;
+    private StatusCode pollBadStatus;
+
+    DeviceDiagnostics(FolderNode deviceFolder) {
+        folder = deviceFolder.addFolder(FOLDER_NAME);
+        lastSuccessfulPoll = folder.addVariableReadOnly("Last Successful Poll", Identifiers.DateTime);
+        latencyP50 = folder.addVariableReadOnly("Poll Latency p50 (ms)", Identifiers.Double);
+        latencyP99 = folder.addVariableReadOnly("Poll Latency p99 (ms)", Identifiers.Double);
+        consecutiveErrorsNode = folder.addVariableReadOnly("Consecutive Errors", Identifiers.Int64);
+        connectionState = folder.addVariableReadOnly("Connection State", Identifiers.String);
+        pendingRequestsNode = folder.addVariableReadOnly("Pending Requests", Identifiers.Int64);
+        cpuTime = folder.addVariableReadOnly("Driver Thread CPU Time (ms)", Identifiers.Double);
+    }
+
+    boolean isDiagnosticsVariable(VariableNode variable) {
+        return variable.getParent() == folder;
+    }
+
+    DataValue read(VariableNode variable) {
+        Object value;
+        if (variable == lastSuccessfulPoll) {
+            long millis = lastSuccessMillis;
+            if (millis == 0L) {
+                return DataValues.BAD_WAITING_FOR_INITIAL_DATA;
+            }
+            value = CoarseClock.toDateTime(millis);
+        } else if (variable == latencyP50) {
+            value = p50Millis;
+        } else if (variable == latencyP99) {
+            value = p99Millis;
+        } else if (variable == consecutiveErrorsNode) {
+            value = consecutiveErrors;
+        } else if (variable == connectionState) {
+            value = state;
+        } else if (variable == pendingRequestsNode) {
+            value = (long) pendingRequests;
+        } else if (variable == cpuTime) {
+            value = cpuTimeMillis;
+        } else {
+            return DataValues.BAD;
+        }
+        return DataValues.of(new Variant(value));
+    }
+
+    void setState(String state) {
+        this.state = state;
+    }
+
+    void setPendingRequests(int pendingRequests) {
+        this.pendingRequests = pendingRequests;
+    }
+
+    /**
+     * Called by the driver thread after each process() call, i.e. at the end of each poll.
+     */
+    void recordProcess(long nanos) {
+        latencies[latencyIndex] = nanos;
+        latencyIndex = (latencyIndex + 1) % LATENCY_SAMPLES;
+        latencyCount = Math.min(latencyCount + 1, LATENCY_SAMPLES);
+        // Sorting the buffer after every poll would cost more than most polls, so the first polls are reflected
+        // immediately and later ones in batches
+        if (latencyCount < LATENCY_UPDATE_INTERVAL || latencyIndex % LATENCY_UPDATE_INTERVAL == 0) {
+            updateLatencyPercentiles();
+        }
+        if (pollGoodReads > 0) {
+            lastSuccessMillis = System.currentTimeMillis();
+            consecutiveErrors = 0;
+            state = STATE_CONNECTED;
+        } else if (pollBadReads > 0) {
+            consecutiveErrors++;
+            state = isCommunicationError(pollBadStatus) ? STATE_DISCONNECTED : STATE_ERROR;
+        }
+        pollGoodReads = 0;
+        pollBadReads = 0;
+        pollBadStatus = null;
+        var threads = ManagementFactory.getThreadMXBean();
+        if (threads.isCurrentThreadCpuTimeSupported()) {
+            cpuTimeMillis = threads.getCurrentThreadCpuTime() / 1e6;
+        }
+    }
+
+    private void updateLatencyPercentiles() {
+        System.arraycopy(latencies, 0, sortedLatencies, 0, latencyCount);
+        Arrays.sort(sortedLatencies, 0, latencyCount);
+        p50Millis = percentile(0.5) / 1e6;
+        p99Millis = percentile(0.99) / 1e6;
+    }
+
+    private long percentile(double percentile) {
+        int index = (int) Math.ceil(percentile * latencyCount) - 1;
+        return sortedLatencies[Math.max(0, Math.min(index, latencyCount - 1))];
+    }
+
+    /**
+     * Called by the driver thread when a read request of a device variable is completed. The outcome is recorded at
+     * the end of the poll by {@link #recordProcess(long)}.
+     */
+    void recordRead(DataValue value) {
+        var status = value.getStatusCode();
+        if (status.isGood() || status.isUncertain()) {
+            pollGoodReads++;
+        } else {
+            pollBadReads++;
+            pollBadStatus = status;
+        }
+    }
+
+    private static boolean isCommunicationError(StatusCode status) {
+        long code = status.getValue();
+        return code == StatusCodes.Bad_NoCommunication
+                || code == StatusCodes.Bad_CommunicationError
+                || code == StatusCodes.Bad_Timeout;
+    }
+}
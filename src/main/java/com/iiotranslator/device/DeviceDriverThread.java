@@ -4,7 +4,10 @@
  */
 package com.iiotranslator.device;
 
+import com.iiotranslator.device.drivers.ConnectableDeviceDriver;
+import com.iiotranslator.device.drivers.ConnectionStrategy;
 import com.iiotranslator.device.drivers.DeviceDriver;
+import com.iiotranslator.opc.DataValues;
 import com.iiotranslator.opc.FolderNode;
 import com.iiotranslator.opc.OpcVariableNodeAccessor;
 import com.iiotranslator.opc.VariableNode;
@@ -12,7 +15,11 @@ import com.iiotranslator.opc.WritableVariableNode;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.Supplier;
+import lombok.AccessLevel;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import org.eclipse.milo.opcua.stack.core.StatusCodes;
+import org.eclipse.milo.opcua.stack.core.UaException;
 import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
 
 /**
@@ -24,9 +31,34 @@ public class DeviceDriverThread implements OpcVariableNodeAccessor {
     private final Device device;
     private DeviceDriver deviceDriver;
     private final FolderNode deviceFolder;
-    private final Map<DeviceRequest, Set<CompletableFuture<?>>> pendingRequests =
+    private final Map<DeviceRequest, PendingRequest> pendingRequests =
             Collections.synchronizedMap(new LinkedHashMap<>());
 
+    @Getter(AccessLevel.PACKAGE)
+    private final DeviceMetrics metrics;
+
+    /**
+     * The device's diagnostics folder, or null if diagnostics are disabled for this device.
+     */
+    private final DeviceDiagnostics diagnostics;
+
+    private final Thread thread;
+    private volatile boolean stopped;
+
+    /**
+     * Completed when the driver has been initialized and, if it connects eagerly, has connected, or when either failed.
+     */
+    @Getter(AccessLevel.PACKAGE)
+    private final CompletableFuture<Void> initialized = new CompletableFuture<>();
+
+    /**
+     * The connection strategy of the driver, or null if it does not implement {@link ConnectableDeviceDriver}. Only
+     * accessed by the driver thread, like the time of the last request or keep-alive probe.
+     */
+    private ConnectionStrategy connectionStrategy;
+
+    private long lastActivityNanos;
+
     private final DeviceRequestCompletionListener threadRequestCompletionListener =
             new DeviceRequestCompletionListener() {
                 @Override
@@ -45,80 +77,284 @@ public class DeviceDriverThread implements OpcVariableNodeAccessor {
                 }
             };
 
-    DeviceDriverThread(Device device, FolderNode deviceFolder, Supplier<DeviceDriver> driverSupplier) {
+    DeviceDriverThread(
+            Device device, FolderNode deviceFolder, Supplier<DeviceDriver> driverSupplier, boolean diagnosticsEnabled) {
         this.device = device;
         this.deviceFolder = deviceFolder;
-        Thread thread = new Thread(() -> thread(driverSupplier));
+        this.metrics = new DeviceMetrics(device, pendingRequests);
+        this.diagnostics = diagnosticsEnabled ? new DeviceDiagnostics(deviceFolder) : null;
+        thread = new Thread(() -> thread(driverSupplier));
         thread.setDaemon(false);
         thread.setName("DeviceDriver \"" + device.getDriver() + "\" for device \"" + device.getName() + "\"");
         thread.start();
     }
 
     private void thread(Supplier<DeviceDriver> driverSupplier) {
+        boolean initializedSuccessfully;
         try {
-            deviceDriver = driverSupplier.get();
-        } catch (Exception e) {
-            log.error("[{}]: Could not instantiate device driver", device.getName(), e);
-            return;
+            initializedSuccessfully = initializeDriver(driverSupplier);
+        } finally {
+            initialized.complete(null);
         }
-        try {
-            deviceDriver.initialize(device, deviceFolder);
-        } catch (Exception e) {
-            log.error("[{}]: Error in device driver initialization", device.getName(), e);
+        if (!initializedSuccessfully) {
             return;
         }
         try {
             List<DeviceRequest> requests;
-            while (true) {
+            boolean asynchronous = deviceDriver.completesRequestsAsynchronously();
+            while (!stopped) {
                 synchronized (pendingRequests) {
-                    requests = new ArrayList<>(pendingRequests.keySet());
-                    if (pendingRequests.isEmpty()) {
-                        pendingRequests.wait();
+                    // Requests that the driver left open are dispatched again, unless it completes them asynchronously
+                    requests = new ArrayList<>();
+                    long now = System.nanoTime();
+                    for (var entry : pendingRequests.entrySet()) {
+                        var pendingRequest = entry.getValue();
+                        if (!pendingRequest.dispatched) {
+                            pendingRequest.dispatched = true;
+                            metrics.recordQueueWait(now - pendingRequest.enqueuedNanos);
+                            requests.add(entry.getKey());
+                        } else if (!asynchronous) {
+                            requests.add(entry.getKey());
+                        }
+                    }
+                    if (requests.isEmpty()) {
+                        pendingRequests.wait(connectionWaitMillis());
                     }
                 }
                 if (!requests.isEmpty()) {
+                    long start = System.nanoTime();
                     deviceDriver.process(requests, threadRequestCompletionListener);
+                    long duration = System.nanoTime() - start;
+                    metrics.recordProcess(requests.size(), duration);
+                    if (diagnostics != null) {
+                        diagnostics.recordProcess(duration);
+                        diagnostics.setPendingRequests(pendingRequests.size());
+                    }
+                    lastActivityNanos = System.nanoTime();
+                } else {
+                    maintainConnection();
                 }
             }
         } catch (Exception e) {
+            if (stopped) {
+                log.debug("[{}]: Device driver thread stopped", device.getName());
+                return;
+            }
+            metrics.countDriverError();
+            setDiagnosticsState(DeviceDiagnostics.STATE_FAILED);
             log.error("[{}]: Error in device driver loop", device.getName(), e);
+        } finally {
+            if (stopped) {
+                closeDriver();
+            }
+        }
+    }
+
+    /**
+     * Instantiates and initializes the driver, and connects to the device if it connects eagerly.
+     *
+     * @return false if the driver could not be initialized
+     */
+    private boolean initializeDriver(Supplier<DeviceDriver> driverSupplier) {
+        try {
+            deviceDriver = driverSupplier.get();
+        } catch (Exception e) {
+            log.error("[{}]: Could not instantiate device driver", device.getName(), e);
+            setDiagnosticsState(DeviceDiagnostics.STATE_FAILED);
+            return false;
+        }
+        try {
+            if (deviceDriver instanceof ConnectableDeviceDriver connectable) {
+                connectionStrategy = ConnectionStrategy.of(device, connectable.getDefaultConnectionMode());
+            } else if (ConnectionStrategy.isConfigured(device)) {
+                log.warn(
+                        "[{}]: The {} driver does not keep a connection, ignoring the connection options",
+                        device.getName(),
+                        device.getDriver());
+            }
+            deviceDriver.initialize(device, deviceFolder);
+            if (connectionStrategy != null && connectionStrategy.mode() == ConnectionStrategy.Mode.EAGER) {
+                boolean connected = ((ConnectableDeviceDriver) deviceDriver).connect();
+                setDiagnosticsState(
+                        connected ? DeviceDiagnostics.STATE_CONNECTED : DeviceDiagnostics.STATE_DISCONNECTED);
+            }
+            lastActivityNanos = System.nanoTime();
+        } catch (Exception e) {
+            if (stopped) {
+                log.debug("[{}]: Device driver thread stopped during initialization", device.getName());
+                return false;
+            }
+            log.error("[{}]: Error in device driver initialization", device.getName(), e);
+            setDiagnosticsState(DeviceDiagnostics.STATE_FAILED);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns how long the driver thread may wait for requests before {@link #maintainConnection()} is due, or 0 if it
+     * may wait indefinitely.
+     */
+    private long connectionWaitMillis() {
+        if (connectionStrategy == null) {
+            return 0;
+        }
+        long interval;
+        if (connectionStrategy.mode() == ConnectionStrategy.Mode.EAGER) {
+            interval = connectionStrategy.keepAliveMillis();
+        } else if (connectionStrategy.idleDisconnectMillis() > 0
+                && ((ConnectableDeviceDriver) deviceDriver).isConnected()) {
+            interval = connectionStrategy.idleDisconnectMillis();
+        } else {
+            return 0;
+        }
+        long idleMillis = (System.nanoTime() - lastActivityNanos) / 1_000_000;
+        return Math.max(1, interval - idleMillis);
+    }
+
+    /**
+     * Sends a keep-alive probe or closes an idle connection, if the connection strategy requires it by now.
+     */
+    private void maintainConnection() {
+        if (connectionStrategy == null) {
+            return;
+        }
+        var connectable = (ConnectableDeviceDriver) deviceDriver;
+        long idleMillis = (System.nanoTime() - lastActivityNanos) / 1_000_000;
+        if (connectionStrategy.mode() == ConnectionStrategy.Mode.EAGER) {
+            if (idleMillis >= connectionStrategy.keepAliveMillis()) {
+                boolean connected = connectable.keepAlive();
+                setDiagnosticsState(
+                        connected ? DeviceDiagnostics.STATE_CONNECTED : DeviceDiagnostics.STATE_DISCONNECTED);
+                lastActivityNanos = System.nanoTime();
+            }
+        } else if (connectionStrategy.idleDisconnectMillis() > 0
+                && idleMillis >= connectionStrategy.idleDisconnectMillis()
+                && connectable.isConnected()) {
+            log.debug("[{}]: Disconnecting, as the device has not been read for {} ms", device.getName(), idleMillis);
+            connectable.disconnect();
+            setDiagnosticsState(DeviceDiagnostics.STATE_IDLE);
+        }
+    }
+
+    private void closeDriver() {
+        try {
+            deviceDriver.close();
+        } catch (Exception e) {
+            log.warn("[{}]: Error closing device driver", device.getName(), e);
+        }
+    }
+
+    /**
+     * Stops the driver thread by interrupting it, after which the driver is closed and the device's meters are removed.
+     * Requests that are still pending are completed with Bad_NoCommunication, as are requests that arrive afterwards,
+     * so that no OPC UA service thread keeps waiting for a device that no longer exists.
+     */
+    void stop() {
+        List<Map.Entry<DeviceRequest, PendingRequest>> abandoned;
+        synchronized (pendingRequests) {
+            stopped = true;
+            abandoned = new ArrayList<>(pendingRequests.entrySet());
+            pendingRequests.clear();
+        }
+        thread.interrupt();
+        for (var entry : abandoned) {
+            if (entry.getKey() instanceof DeviceRequest.ReadRequest) {
+                entry.getValue().futures.forEach(future -> ((CompletableFuture<DataValue>) future)
+                        .complete(DataValues.BAD_NO_COMMUNICATION));
+            } else {
+                entry.getValue().futures.forEach(future -> future.completeExceptionally(deviceStopped()));
+            }
+        }
+        metrics.remove();
+    }
+
+    /**
+     * Waits until the driver thread has ended after {@link #stop()}, e.g. so that a device that only accepts one
+     * connection is not connected to again before the old connection has been closed.
+     *
+     * @return false if the thread is still running after the timeout, e.g. because it is blocked in socket I/O
+     */
+    boolean awaitTermination(long timeoutMillis) throws InterruptedException {
+        thread.join(timeoutMillis);
+        return !thread.isAlive();
+    }
+
+    private static UaException deviceStopped() {
+        return new UaException(StatusCodes.Bad_NoCommunication, "The device has been stopped");
+    }
+
+    private void setDiagnosticsState(String state) {
+        if (diagnostics != null) {
+            diagnostics.setState(state);
         }
     }
 
     private void completeReadRequest(DeviceRequest.ReadRequest request, DataValue value) {
-        var futures = pendingRequests.remove(request);
+        var futures = removePendingRequest(request);
+        if (value.getStatusCode().isBad()) {
+            metrics.countReadError();
+        }
+        if (diagnostics != null) {
+            diagnostics.recordRead(value);
+        }
         if (futures != null) {
             futures.forEach(future -> ((CompletableFuture<DataValue>) future).complete(value));
-        } else {
+        } else if (!stopped) {
+            // The requests of a stopped device have already been completed
             throw new IllegalStateException("No pending requests for " + request);
         }
     }
 
     private void completeWriteRequest(DeviceRequest.WriteRequest request) {
-        var futures = pendingRequests.remove(request);
+        var futures = removePendingRequest(request);
         if (futures != null) {
             futures.forEach(future -> future.complete(null));
-        } else {
+        } else if (!stopped) {
+            // The requests of a stopped device have already been completed
             throw new IllegalStateException("No pending requests for " + request);
         }
     }
 
     private void completeWriteRequest(DeviceRequest.WriteRequest request, Exception e) {
-        var futures = pendingRequests.remove(request);
+        var futures = removePendingRequest(request);
+        metrics.countWriteError();
         if (futures != null) {
             futures.forEach(future -> future.completeExceptionally(e));
-        } else {
+        } else if (!stopped) {
+            // The requests of a stopped device have already been completed
             throw new IllegalStateException("No pending requests for " + request);
         }
     }
 
+    private Set<CompletableFuture<?>> removePendingRequest(DeviceRequest request) {
+        var pendingRequest = pendingRequests.remove(request);
+        if (pendingRequest == null) {
+            return null;
+        }
+        metrics.recordCompletion(pendingRequest.futures.size());
+        return pendingRequest.futures;
+    }
+
     public CompletableFuture<DataValue> read(VariableNode variable) {
+        if (diagnostics != null && diagnostics.isDiagnosticsVariable(variable)) {
+            // Diagnostics are answered directly, so that they are available even if the driver is stuck
+            return CompletableFuture.completedFuture(diagnostics.read(variable));
+        }
         var future = new CompletableFuture<DataValue>();
         synchronized (pendingRequests) {
+            if (stopped) {
+                future.complete(DataValues.BAD_NO_COMMUNICATION);
+                return future;
+            }
             pendingRequests
-                    .computeIfAbsent(new DeviceRequest.ReadRequest(variable), k -> new HashSet<>())
+                    .computeIfAbsent(new DeviceRequest.ReadRequest(variable), k -> new PendingRequest())
+                    .futures
                     .add(future);
             pendingRequests.notify();
+            if (diagnostics != null) {
+                diagnostics.setPendingRequests(pendingRequests.size());
+            }
         }
         return future;
     }
@@ -126,11 +362,28 @@ public class DeviceDriverThread implements OpcVariableNodeAccessor {
     public CompletableFuture<Void> write(WritableVariableNode variable, DataValue value) {
         var future = new CompletableFuture<Void>();
         synchronized (pendingRequests) {
+            if (stopped) {
+                future.completeExceptionally(deviceStopped());
+                return future;
+            }
             pendingRequests
-                    .computeIfAbsent(new DeviceRequest.WriteRequest(variable, value), k -> new HashSet<>())
+                    .computeIfAbsent(new DeviceRequest.WriteRequest(variable, value), k -> new PendingRequest())
+                    .futures
                     .add(future);
             pendingRequests.notify();
+            if (diagnostics != null) {
+                diagnostics.setPendingRequests(pendingRequests.size());
+            }
         }
         return future;
     }
+
+    /**
+     * The futures waiting for a request, and when the request was first queued.
+     */
+    private static final class PendingRequest {
+        private final long enqueuedNanos = System.nanoTime();
+        private final Set<CompletableFuture<?>> futures = new HashSet<>();
+        private boolean dispatched;
+    }
 }
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.device;
+
+import io.micrometer.core.instrument.*;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The meters of a single device's request pipeline, tagged with the device name and driver. They are registered with
+ * {@link Metrics#globalRegistry}, so they are only recorded if a registry has been added to it.
+ */
+class DeviceMetrics {
+    private final Counter readErrors, writeErrors, driverErrors;
+    private final Timer queueWait, processDuration, readDuration, writeDuration;
+    private final DistributionSummary batchSize, futuresPerRequest;
+
+    private final String deviceName;
+
+    DeviceMetrics(Device device, Map<?, ?> pendingRequests) {
+        deviceName = device.getName();
+        var registry = Metrics.globalRegistry;
+        var tags = Tags.of("device", device.getName(), "driver", device.getDriver());
+        Gauge.builder("iiot.device.queue.depth", pendingRequests, Map::size)
+                .description("Number of distinct requests waiting to be processed by the driver")
+                .tags(tags)
+                .register(registry);
+        queueWait = Timer.builder("iiot.device.queue.wait")
+                .description("Time between a request being queued and being handed to the driver")
+                .tags(tags)
+                .register(registry);
+        // Only this timer publishes a histogram, as the buckets of every timer of hundreds of devices would add tens
+        // of thousands of series
+        processDuration = Timer.builder("iiot.device.process")
+                .description("Duration of the driver's process() calls")
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(registry);
+        batchSize = DistributionSummary.builder("iiot.device.batch.size")
+                .description("Number of requests per process() call")
+                .tags(tags)
+                .register(registry);
+        futuresPerRequest = DistributionSummary.builder("iiot.device.request.futures")
+                .description("Number of futures completed per request, i.e. how many reads were coalesced")
+                .tags(tags)
+                .register(registry);
+        readDuration = Timer.builder("iiot.device.request.duration")
+                .description("Time until a read or write request is completed, including the time in the queue")
+                .tags(tags)
+                .tag("operation", "read")
+                .register(registry);
+        writeDuration = Timer.builder("iiot.device.request.duration")
+                .description("Time until a read or write request is completed, including the time in the queue")
+                .tags(tags)
+                .tag("operation", "write")
+                .register(registry);
+        readErrors = errorCounter(registry, tags, "read");
+        writeErrors = errorCounter(registry, tags, "write");
+        driverErrors = errorCounter(registry, tags, "driver");
+    }
+
+    private static Counter errorCounter(MeterRegistry registry, Tags tags, String type) {
+        return Counter.builder("iiot.device.errors")
+                .description("Reads completed with a bad status, failed writes and errors in the driver")
+                .tags(tags)
+                .tag("type", type)
+                .register(registry);
+    }
+
+    /**
+     * Removes all meters of the device, including those of its driver, so that a new driver thread for a device of
+     * the same name registers new ones.
+     */
+    void remove() {
+        var registry = Metrics.globalRegistry;
+        registry.getMeters().stream()
+                .filter(meter -> deviceName.equals(meter.getId().getTag("device")))
+                .forEach(registry::remove);
+    }
+
+    void recordQueueWait(long nanos) {
+        queueWait.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    void recordProcess(int requests, long nanos) {
+        batchSize.record(requests);
+        processDuration.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    void recordCompletion(int futures) {
+        futuresPerRequest.record(futures);
+    }
+
+    void recordReadDuration(long nanos) {
+        readDuration.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    void recordWriteDuration(long nanos) {
+        writeDuration.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    void countReadError() {
+        readErrors.increment();
+    }
+
+    void countWriteError() {
+        writeErrors.increment();
+    }
+
+    void countDriverError() {
+        driverErrors.increment();
+    }
+}
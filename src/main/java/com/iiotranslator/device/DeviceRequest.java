@@ -6,24 +6,60 @@ package com.iiotranslator.device;
 
 import com.iiotranslator.opc.VariableNode;
 import com.iiotranslator.opc.WritableVariableNode;
-import lombok.EqualsAndHashCode;
 import lombok.Getter;
-import lombok.RequiredArgsConstructor;
+import lombok.NonNull;
 import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
 
-public class DeviceRequest {
-    @EqualsAndHashCode(callSuper = false)
-    @RequiredArgsConstructor
+/**
+ * A request that is queued in the {@link DeviceDriverThread}. Requests are used as keys for de-duplicating requests,
+ * so their hash is computed once in the constructor, and variables are compared by identity (see
+ * {@link com.iiotranslator.opc.Node}).
+ */
+public abstract class DeviceRequest {
+    private final int hash;
+
+    private DeviceRequest(int hash) {
+        this.hash = hash;
+    }
+
+    @Override
+    public final int hashCode() {
+        return hash;
+    }
+
     @Getter
     public static class ReadRequest extends DeviceRequest {
         private final VariableNode variable;
+
+        public ReadRequest(@NonNull VariableNode variable) {
+            super(variable.hashCode());
+            this.variable = variable;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o || (o instanceof ReadRequest other && variable == other.variable);
+        }
     }
 
-    @EqualsAndHashCode(callSuper = false)
-    @RequiredArgsConstructor
     @Getter
     public static class WriteRequest extends DeviceRequest {
         private final WritableVariableNode variable;
         private final DataValue value;
+
+        public WriteRequest(@NonNull WritableVariableNode variable, @NonNull DataValue value) {
+            super(31 * variable.hashCode() + value.hashCode());
+            this.variable = variable;
+            this.value = value;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o
+                    || (o instanceof WriteRequest other
+                            && hashCode() == other.hashCode()
+                            && variable == other.variable
+                            && value.equals(other.value));
+        }
     }
 }
@@ -4,14 +4,14 @@
  */
 package com.iiotranslator.device;
 
-import org.eclipse.milo.opcua.stack.core.StatusCodes;
+import com.iiotranslator.opc.DataValues;
 import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
 
 public interface DeviceRequestCompletionListener {
     void completeReadRequest(DeviceRequest.ReadRequest request, DataValue value);
 
     default void completeReadRequestExceptionally(DeviceRequest.ReadRequest request, Exception e) {
-        completeReadRequest(request, new DataValue(StatusCodes.Bad_InternalError));
+        completeReadRequest(request, DataValues.BAD_INTERNAL_ERROR);
     }
 
     void completeWriteRequestExceptionally(DeviceRequest.WriteRequest request);
@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.device;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.bind.PropertySourcesPlaceholdersResolver;
+import org.springframework.boot.context.properties.source.ConfigurationPropertySources;
+import org.springframework.boot.env.PropertiesPropertySourceLoader;
+import org.springframework.boot.env.PropertySourceLoader;
+import org.springframework.boot.env.YamlPropertySourceLoader;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MutablePropertySources;
+import org.springframework.core.env.PropertySource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.stereotype.Service;
+
+/**
+ * Watches the configuration file and applies changes to the configured devices while the server keeps running, see
+ * {@link DevicesService#reconfigure}. Only the iiot.devices properties are reloaded, other changes require a restart.
+ * <p>
+ * The devices are bound from the whole environment, in which the reloaded file takes the place of the version that was
+ * loaded on startup, so that devices configured outside the file, e.g. on the command line, are kept, and placeholders
+ * are resolved as on startup.
+ * <p>
+ * The file is the one that Spring Boot loaded the configuration from, unless iiot.reload.file is set. It is checked
+ * whenever its directory changes, and in addition every iiot.reload.interval, as changes to mounted directories are not
+ * always reported.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class DevicesConfigurationWatcher {
+    private static final Pattern FILE_PROPERTY_SOURCE = Pattern.compile("file \\[(.+?)]");
+
+    /**
+     * Editors may write a file in several steps, so changes are only read after no more changes have been reported for
+     * this long.
+     */
+    private static final long SETTLE_MILLIS = 500;
+
+    private final DevicesService devicesService;
+
+    private final ConfigurableEnvironment environment;
+
+    @Value("${iiot.reload.enabled:false}")
+    private boolean enabled;
+
+    @Value("${iiot.reload.file:}")
+    private String file;
+
+    @Value("${iiot.reload.interval:5s}")
+    private Duration interval;
+
+    private Thread thread;
+
+    @PostConstruct
+    void initialize() {
+        if (!enabled) {
+            return;
+        }
+        var path = file.isEmpty() ? findConfigFile() : Path.of(file);
+        if (path == null) {
+            log.warn("Could not find the configuration file to watch for device changes, please set iiot.reload.file");
+            return;
+        }
+        var absolutePath = path.toAbsolutePath();
+        thread = new Thread(() -> watch(absolutePath), "DevicesConfigurationWatcher");
+        thread.setDaemon(true);
+        thread.start();
+        log.info("Watching {} for device configuration changes", absolutePath);
+    }
+
+    /**
+     * Returns the configuration file with the highest precedence that was loaded by Spring Boot.
+     */
+    private Path findConfigFile() {
+        for (var source : environment.getPropertySources()) {
+            var matcher = FILE_PROPERTY_SOURCE.matcher(source.getName());
+            if (matcher.find()) {
+                return Path.of(matcher.group(1));
+            }
+        }
+        return null;
+    }
+
+    private void watch(Path path) {
+        try (var watchService = path.getFileSystem().newWatchService()) {
+            path.getParent()
+                    .register(
+                            watchService,
+                            StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_MODIFY,
+                            StandardWatchEventKinds.OVERFLOW);
+            var lastModified = lastModified(path);
+            while (!Thread.currentThread().isInterrupted()) {
+                var key = watchService.poll(interval.toMillis(), TimeUnit.MILLISECONDS);
+                while (key != null) {
+                    key.pollEvents();
+                    key.reset();
+                    key = watchService.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS);
+                }
+                var modified = lastModified(path);
+                if (modified != null && !modified.equals(lastModified)) {
+                    lastModified = modified;
+                    reload(path);
+                }
+            }
+        } catch (IOException e) {
+            log.error("Could not watch {} for device configuration changes", path, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void reload(Path path) {
+        log.info("Reloading the device configuration from {}", path);
+        DevicesConfiguration config;
+        try {
+            config = load(path, environment);
+        } catch (IOException | RuntimeException e) {
+            log.error("Could not load the device configuration from {}, keeping the current devices", path, e);
+            return;
+        }
+        devicesService.reconfigure(config);
+    }
+
+    /**
+     * Reads the devices from a .properties or .yml file in the same way as Spring Boot does on startup. The file's
+     * properties replace those it had on startup in the environment, or take precedence over all other properties if it
+     * was not loaded on startup.
+     */
+    static DevicesConfiguration load(Path path, ConfigurableEnvironment environment) throws IOException {
+        var name = path.getFileName().toString();
+        PropertySourceLoader loader = name.endsWith(".yml") || name.endsWith(".yaml")
+                ? new YamlPropertySourceLoader()
+                : new PropertiesPropertySourceLoader();
+        var fileSources = loader.load(path.toString(), new FileSystemResource(path));
+        var sources = new MutablePropertySources();
+        boolean replaced = false;
+        for (var source : environment.getPropertySources()) {
+            if (!isLoadedFrom(source, path)) {
+                sources.addLast(source);
+            } else if (!replaced) {
+                // A YAML file with several documents is loaded as several consecutive sources
+                fileSources.forEach(sources::addLast);
+                replaced = true;
+            }
+        }
+        if (!replaced) {
+            for (int i = fileSources.size() - 1; i >= 0; i--) {
+                sources.addFirst(fileSources.get(i));
+            }
+        }
+        var type = ResolvableType.forClassWithGenerics(
+                Map.class,
+                ResolvableType.forClass(String.class),
+                ResolvableType.forClassWithGenerics(Map.class, String.class, String.class));
+        @SuppressWarnings("unchecked")
+        var devices = (Map<String, Map<String, String>>)
+                new Binder(ConfigurationPropertySources.from(sources), new PropertySourcesPlaceholdersResolver(sources))
+                        .bind("iiot.devices", Bindable.of(type))
+                        .orElse(null);
+        return new DevicesConfiguration(devices);
+    }
+
+    private static boolean isLoadedFrom(PropertySource<?> source, Path path) {
+        var matcher = FILE_PROPERTY_SOURCE.matcher(source.getName());
+        return matcher.find()
+                && Path.of(matcher.group(1))
+                        .toAbsolutePath()
+                        .normalize()
+                        .equals(path.toAbsolutePath().normalize());
+    }
+
+    private static FileTime lastModified(Path path) throws IOException {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (NoSuchFileException e) {
+            // The file is being replaced
+            return null;
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+}
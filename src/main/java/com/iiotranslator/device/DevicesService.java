@@ -4,17 +4,27 @@
  */
 package com.iiotranslator.device;
 
+import com.iiotranslator.device.capture.WireCaptureService;
+import com.iiotranslator.device.cluster.ClusterService;
+import com.iiotranslator.device.cluster.ShardProxyDriver;
+import com.iiotranslator.device.drivers.DeviceDriver;
 import com.iiotranslator.device.drivers.KnownDeviceDrivers;
 import com.iiotranslator.opc.*;
 import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
 import lombok.RequiredArgsConstructor;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 /**
@@ -25,44 +35,198 @@ import org.springframework.stereotype.Service;
 @Slf4j
 @RequiredArgsConstructor
 public class DevicesService implements OpcVariableNodeAccessor {
+    /**
+     * How long to wait for the driver thread of a stopped device to end, e.g. while it is blocked in socket I/O.
+     */
+    private static final long STOP_TIMEOUT_MILLIS = 5000;
+
     private final OpcServerService opcServer;
 
     private final DevicesConfiguration config;
 
+    private final WireCaptureService wireCapture;
+
+    private final ClusterService cluster;
+
     private final Map<FolderNode, DeviceDriverThread> devices = new ConcurrentHashMap<>();
 
+    /**
+     * The configuration of each device, by name, including those that are owned by other cluster members or could not
+     * be started.
+     */
+    private final Map<String, Device> configuredDevices = new ConcurrentHashMap<>();
+
+    private RootNode rootNode;
+
+    /**
+     * Whether to create a diagnostics folder for each device, can be overridden per device using the "diagnostics"
+     * option.
+     */
+    @Value("${iiot.diagnostics.enabled:false}")
+    private boolean diagnosticsEnabled;
+
+    /**
+     * Starts the devices while the OPC UA server is being created, so that the drivers are initialized and connect in
+     * parallel to it, and waits until the server has started.
+     */
     @SneakyThrows({InterruptedException.class, ExecutionException.class})
     @PostConstruct
-    private void initialize() {
-        var rootNode = opcServer.getServer().getRootNode().get();
+    void initialize() {
+        rootNode = opcServer.getServer().getRootNode();
         log.info("Starting device driver threads");
-        config.getDevices().parallelStream().forEach(device -> {
-            log.debug("[{}]: Initializing device", device.getName());
-            var deviceFolder = rootNode.addFolder(device.getName());
-            try {
-                var driverSupplier = KnownDeviceDrivers.getDriverSupplier(device);
-                var driverThread = new DeviceDriverThread(device, deviceFolder, driverSupplier);
-                devices.put(deviceFolder, driverThread);
-                log.info("[{}]: Device driver thread started", device.getName());
-            } catch (KnownDeviceDrivers.UnknownDriverException e) {
-                log.error("[{}]: Unknown driver {}, device not initialized", device.getName(), device.getDriver());
+        config.getDevices().parallelStream().forEach(this::startDevice);
+        opcServer.getServer().setVariableNodeAccessor(this);
+        log.info("All device driver threads started after {} ms", OpcServerService.uptimeMillis());
+        var initialized = devices.values().stream()
+                .map(DeviceDriverThread::getInitialized)
+                .toArray(CompletableFuture[]::new);
+        CompletableFuture.allOf(initialized).thenRun(() -> {
+            log.info(
+                    "All {} device drivers initialized after {} ms",
+                    initialized.length,
+                    OpcServerService.uptimeMillis());
+            int discarded = opcServer.getServer().discardUnusedSnapshotValues();
+            if (discarded > 0) {
+                log.info("Discarded {} last known values of variables that no longer exist", discarded);
             }
         });
-        log.info("All device driver threads started");
-        opcServer.getServer().setVariableNodeAccessor(this);
+        try {
+            opcServer.awaitStartup();
+        } catch (ExecutionException e) {
+            // Otherwise, the driver threads would keep the application running
+            stopDevices();
+            throw e;
+        }
+    }
+
+    /**
+     * Stops all devices and removes their folders.
+     */
+    void stopDevices() {
+        List.copyOf(configuredDevices.values()).forEach(this::stopDevice);
+    }
+
+    /**
+     * Applies a changed device configuration: the devices that were removed or whose driver or options have changed
+     * are stopped and their folders removed, then the changed and added devices are started. All other devices keep
+     * running, so their values and the clients' subscriptions to them are not affected.
+     */
+    public synchronized void reconfigure(DevicesConfiguration newConfig) {
+        var newDevices = new HashMap<String, Device>();
+        newConfig.getDevices().forEach(device -> newDevices.put(device.getName(), device));
+        var stopped = new ArrayList<Device>();
+        for (var device : configuredDevices.values()) {
+            if (!device.equals(newDevices.get(device.getName()))) {
+                stopped.add(device);
+            }
+        }
+        var started = new ArrayList<Device>();
+        for (var device : newDevices.values()) {
+            if (!device.equals(configuredDevices.get(device.getName()))) {
+                started.add(device);
+            }
+        }
+        if (stopped.isEmpty() && started.isEmpty()) {
+            log.info("Device configuration reloaded, no devices changed");
+            return;
+        }
+        stopped.parallelStream().forEach(this::stopDevice);
+        started.parallelStream().forEach(this::startDevice);
+        log.info(
+                "Device configuration reloaded: {} devices stopped, {} started, {} unchanged",
+                stopped.size(),
+                started.size(),
+                newDevices.size() - started.size());
+    }
+
+    private void startDevice(Device device) {
+        configuredDevices.put(device.getName(), device);
+        var owner = cluster.getOwner(device);
+        if (owner != null && !cluster.isAggregator()) {
+            log.debug("[{}]: Device is owned by cluster member {}", device.getName(), owner);
+            return;
+        }
+        log.debug("[{}]: Initializing device", device.getName());
+        var deviceFolder =
+                rootNode.addFolder(device.getName(), KnownDeviceDrivers.getDeviceTypeName(device.getDriver()));
+        if (owner != null) {
+            // The owner's diagnostics folder is mirrored along with the device's other nodes
+            Supplier<DeviceDriver> proxySupplier = () -> new ShardProxyDriver(cluster, owner);
+            addDevice(deviceFolder, new DeviceDriverThread(device, deviceFolder, proxySupplier, false));
+            log.info("[{}]: Proxying device of cluster member {}", device.getName(), owner);
+            return;
+        }
+        try {
+            // The options of the device are redirected to a local proxy if wire capture is enabled
+            var driverDevice = wireCapture.apply(device);
+            var driverSupplier = KnownDeviceDrivers.getDriverSupplier(driverDevice);
+            boolean diagnostics = Boolean.parseBoolean(
+                    device.getOptionOrDefault("diagnostics", Boolean.toString(diagnosticsEnabled)));
+            var driverThread = new DeviceDriverThread(driverDevice, deviceFolder, driverSupplier, diagnostics);
+            addDevice(deviceFolder, driverThread);
+            log.info("[{}]: Device driver thread started", device.getName());
+        } catch (KnownDeviceDrivers.UnknownDriverException e) {
+            log.error("[{}]: Unknown driver {}, device not initialized", device.getName(), device.getDriver());
+        } catch (IOException e) {
+            log.error("[{}]: Could not set up wire capture, device not initialized", device.getName(), e);
+        }
+    }
+
+    private void stopDevice(Device device) {
+        configuredDevices.remove(device.getName());
+        var deviceFolder = rootNode.getChild(device.getName());
+        if (deviceFolder == null) {
+            // Owned by another cluster member
+            return;
+        }
+        var driverThread = devices.remove(deviceFolder);
+        if (driverThread != null) {
+            driverThread.stop();
+            awaitTermination(device, driverThread);
+        }
+        rootNode.removeChild(device.getName());
+        wireCapture.release(device.getName());
+        log.info("[{}]: Device stopped", device.getName());
+    }
+
+    /**
+     * Waits for the driver thread to close its connection, as some devices only accept one connection at a time and
+     * would reject the replacement driver otherwise.
+     */
+    private static void awaitTermination(Device device, DeviceDriverThread driverThread) {
+        try {
+            if (!driverThread.awaitTermination(STOP_TIMEOUT_MILLIS)) {
+                log.warn(
+                        "[{}]: Device driver thread did not stop within {} ms, it may still be connected",
+                        device.getName(),
+                        STOP_TIMEOUT_MILLIS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     @Override
     public CompletableFuture<DataValue> read(VariableNode variable) {
-        return getDriver(variable).read(variable);
+        var driver = getDriver(variable);
+        long start = System.nanoTime();
+        return driver.read(variable)
+                .whenComplete((value, e) -> driver.getMetrics().recordReadDuration(System.nanoTime() - start));
     }
 
     @Override
     public CompletableFuture<Void> write(WritableVariableNode variable, DataValue value) {
-        return getDriver(variable).write(variable, value);
+        var driver = getDriver(variable);
+        long start = System.nanoTime();
+        return driver.write(variable, value)
+                .whenComplete((result, e) -> driver.getMetrics().recordWriteDuration(System.nanoTime() - start));
+    }
+
+    void addDevice(FolderNode deviceFolder, DeviceDriverThread driverThread) {
+        devices.put(deviceFolder, driverThread);
     }
 
-    private DeviceDriverThread getDriver(Node node) {
+    DeviceDriverThread getDriver(Node node) {
         for (var entry : devices.entrySet()) {
             if (entry.getKey().isParentOf(node)) {
                 return entry.getValue();
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.device.capture;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.*;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A TCP proxy on the loopback interface, which forwards the connections of a driver to its device and records all
+ * bytes exchanged in both directions to a {@link WireRecording}.
+ */
+@Slf4j
+public class CaptureProxy implements Closeable {
+    private final String name;
+    private final InetSocketAddress target;
+    private final int connectTimeout;
+    private final WireRecording.Writer recording;
+    private final ServerSocket serverSocket;
+    private final Set<Socket> sockets = ConcurrentHashMap.newKeySet();
+
+    @Getter
+    private final int port;
+
+    private volatile boolean closed;
+
+    /**
+     * @param name the name of the device, used for logging and thread names
+     * @param target the address of the device
+     * @param connectTimeout the timeout for connecting to the device in milliseconds
+     * @param recording the recording to write to, which is closed together with the proxy
+     */
+    public CaptureProxy(String name, InetSocketAddress target, int connectTimeout, WireRecording.Writer recording)
+            throws IOException {
+        this.name = name;
+        this.target = target;
+        this.connectTimeout = connectTimeout;
+        this.recording = recording;
+        serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        port = serverSocket.getLocalPort();
+        var thread = new Thread(this::accept, "CaptureProxy for device \"" + name + "\"");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void accept() {
+        while (!closed) {
+            try {
+                var driverSocket = serverSocket.accept();
+                var deviceSocket = new Socket();
+                try {
+                    deviceSocket.connect(target, connectTimeout);
+                } catch (IOException e) {
+                    // The driver sees the same error as if it had connected to the device directly
+                    log.debug("[{}]: Could not connect to {}", name, target, e);
+                    driverSocket.close();
+                    continue;
+                }
+                driverSocket.setTcpNoDelay(true);
+                deviceSocket.setTcpNoDelay(true);
+                sockets.add(driverSocket);
+                sockets.add(deviceSocket);
+                int connection = recording.connect();
+                pump(driverSocket, deviceSocket, connection, WireRecording.TO_DEVICE, WireRecording.DRIVER_CLOSED);
+                pump(deviceSocket, driverSocket, connection, WireRecording.FROM_DEVICE, WireRecording.DEVICE_CLOSED);
+            } catch (IOException e) {
+                if (!closed) {
+                    log.error("[{}]: Error in capture proxy", name, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts a thread that forwards and records the bytes received from one socket to the other.
+     */
+    private void pump(Socket from, Socket to, int connection, byte type, byte closeType) {
+        var thread = new Thread(
+                () -> {
+                    var buffer = new byte[16 * 1024];
+                    try (InputStream in = from.getInputStream()) {
+                        OutputStream out = to.getOutputStream();
+                        int length;
+                        while ((length = in.read(buffer)) != -1) {
+                            recording.write(connection, type, buffer, length);
+                            out.write(buffer, 0, length);
+                        }
+                        recording.write(connection, closeType, null, 0);
+                    } catch (IOException e) {
+                        log.trace("[{}]: Connection {} closed", name, connection, e);
+                    } finally {
+                        closeQuietly(from);
+                        closeQuietly(to);
+                    }
+                },
+                "CaptureProxy connection " + connection + " for device \"" + name + "\"");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void closeQuietly(Socket socket) {
+        sockets.remove(socket);
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Already closed
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        serverSocket.close();
+        sockets.forEach(this::closeQuietly);
+        recording.close();
+    }
+}
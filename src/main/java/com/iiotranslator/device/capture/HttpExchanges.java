@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.device.capture;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * The HTTP requests and responses of a recording, by request line. Used by the {@link ReplayServer} to answer HTTP
+ * requests regardless of the connection they were sent on, as HTTP clients distribute requests over their pooled
+ * connections in no particular order.
+ */
+class HttpExchanges {
+    private static final List<String> METHODS = List.of("GET ", "POST ", "PUT ", "DELETE ", "HEAD ", "OPTIONS ");
+
+    /**
+     * A recorded response.
+     *
+     * @param delayNanos the time between the end of the request and the start of the response
+     */
+    record Exchange(long delayNanos, byte[] response) {}
+
+    private final Map<String, List<Exchange>> byRequestLine = new HashMap<>();
+    private final Map<String, List<Exchange>> byPath = new HashMap<>();
+    private final Map<List<Exchange>, Integer> nextIndex = new IdentityHashMap<>();
+
+    private HttpExchanges() {}
+
+    /**
+     * Returns the HTTP exchanges of a recording, or null if any of its connections contains something other than plain
+     * HTTP requests and responses, e.g. a WebSocket upgrade.
+     */
+    static HttpExchanges of(List<List<WireRecording.Event>> connections) {
+        var exchanges = new HttpExchanges();
+        for (var events : connections) {
+            var request = new ByteArrayOutputStream();
+            var response = new ByteArrayOutputStream();
+            long requestNanos = 0, responseNanos = 0;
+            for (var event : events) {
+                if (event.type() == WireRecording.TO_DEVICE) {
+                    if (response.size() > 0) {
+                        if (!exchanges.add(request, responseNanos - requestNanos, response)) {
+                            return null;
+                        }
+                        request.reset();
+                        response.reset();
+                    }
+                    request.writeBytes(event.data());
+                    requestNanos = event.nanos();
+                } else if (event.type() == WireRecording.FROM_DEVICE && request.size() > 0) {
+                    if (response.size() == 0) {
+                        responseNanos = event.nanos();
+                    }
+                    response.writeBytes(event.data());
+                }
+            }
+            if (response.size() > 0 && !exchanges.add(request, responseNanos - requestNanos, response)) {
+                return null;
+            }
+        }
+        return exchanges.byRequestLine.isEmpty() ? null : exchanges;
+    }
+
+    private boolean add(ByteArrayOutputStream request, long delayNanos, ByteArrayOutputStream response) {
+        var head = request.toString(StandardCharsets.ISO_8859_1);
+        if (!isPlainHttpRequest(head)) {
+            return false;
+        }
+        var exchange = new Exchange(delayNanos, response.toByteArray());
+        var requestLine = requestLine(head);
+        byRequestLine.computeIfAbsent(requestLine, key -> new ArrayList<>()).add(exchange);
+        byPath.computeIfAbsent(path(requestLine), key -> new ArrayList<>()).add(exchange);
+        return true;
+    }
+
+    static boolean isPlainHttpRequest(String head) {
+        return METHODS.stream().anyMatch(head::startsWith)
+                && !head.toLowerCase(Locale.ROOT).contains("\nupgrade:");
+    }
+
+    static String requestLine(String head) {
+        int end = head.indexOf("\r\n");
+        return end == -1 ? head : head.substring(0, end);
+    }
+
+    /**
+     * Returns the method and path of a request line, without the query and protocol.
+     */
+    private static String path(String requestLine) {
+        int end = requestLine.indexOf('?');
+        if (end == -1) {
+            end = requestLine.lastIndexOf(' ');
+        }
+        return end <= 0 ? requestLine : requestLine.substring(0, end);
+    }
+
+    /**
+     * Returns the next recorded exchange for the request line, or for the same method and path if the request line
+     * was not recorded, starting over when all of them have been returned.
+     *
+     * @return the exchange, or null if nothing matches the request
+     */
+    synchronized Exchange next(String requestLine) {
+        var exchanges = byRequestLine.get(requestLine);
+        if (exchanges == null) {
+            exchanges = byPath.get(path(requestLine));
+            if (exchanges == null) {
+                return null;
+            }
+        }
+        int index = nextIndex.getOrDefault(exchanges, 0);
+        nextIndex.put(exchanges, (index + 1) % exchanges.size());
+        return exchanges.get(index);
+    }
+}
@@ -0,0 +1,336 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.device.capture;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A TCP server on the loopback interface, which plays the device's side of a {@link WireRecording} to a driver.
+ * <p>
+ * Each connection of the driver is assigned the next recorded connection, starting over at the first one when all have
+ * been played. The bytes the device sent are played back once the driver has sent as many bytes as it did in the
+ * recording, or has sent something and then paused for {@value #IDLE_MILLIS}ms, e.g. because a request contains a
+ * timestamp of a different length. The recorded delays between events are divided by the speed, so that the device's
+ * response times and the intervals between values it pushed are preserved or scaled; with a speed of 0, there are no
+ * delays. The content of the driver's requests is not checked, so the driver must send the same requests in the same
+ * order as in the recording. The only exception are WebSocket handshakes, whose Sec-WebSocket-Accept header is
+ * recalculated from the driver's new key.
+ * <p>
+ * Optionally, connections are looped, so that a short recording can be replayed for as long as needed, e.g. in
+ * benchmarks.
+ * <p>
+ * If the recording only contains plain HTTP requests, each request is instead answered with a recorded response to the
+ * same request line, see {@link HttpExchanges}. These recordings are always looped.
+ */
+@Slf4j
+public class ReplayServer implements Closeable {
+    private static final long IDLE_MILLIS = 500;
+    private static final Pattern WEBSOCKET_KEY = Pattern.compile("Sec-WebSocket-Key: *([A-Za-z0-9+/=]+)");
+    private static final Pattern WEBSOCKET_ACCEPT = Pattern.compile("Sec-WebSocket-Accept: *([A-Za-z0-9+/=]+)");
+    private static final Pattern CONTENT_LENGTH = Pattern.compile("(?i)\r\ncontent-length: *([0-9]+)");
+    private static final byte[] NOT_RECORDED =
+            "HTTP/1.1 404 Not Found\r\nContent-Length: 0\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+    private static final String WEBSOCKET_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+
+    private final String name;
+    private final List<List<WireRecording.Event>> connections;
+    private final double speed;
+    private final boolean loop;
+    private final HttpExchanges httpExchanges;
+    private final ServerSocket serverSocket;
+    private final Set<Socket> sockets = ConcurrentHashMap.newKeySet();
+
+    @Getter
+    private final int port;
+
+    private volatile boolean closed;
+    private int nextConnection;
+
+    /**
+     * @param name the name of the device, used for logging and thread names
+     * @param connections the recorded connections, see {@link WireRecording#read}
+     * @param speed the replay speed, e.g. 1 for the original speed, 10 for 10 times faster, 0 for no delays
+     * @param loop whether to start over at the first request when the end of a connection has been reached and the
+     *     device did not close it. Only suitable for protocols without a handshake, such as TCP lines or HTTP.
+     */
+    public ReplayServer(String name, List<List<WireRecording.Event>> connections, double speed, boolean loop)
+            throws IOException {
+        if (connections.isEmpty()) {
+            throw new IllegalArgumentException("The recording of device " + name + " contains no connections");
+        }
+        if (speed < 0) {
+            throw new IllegalArgumentException("Replay speed must not be negative: " + speed);
+        }
+        this.name = name;
+        this.connections = connections;
+        this.speed = speed;
+        this.loop = loop;
+        httpExchanges = HttpExchanges.of(connections);
+        serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        port = serverSocket.getLocalPort();
+        var thread = new Thread(this::accept, "ReplayServer for device \"" + name + "\"");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void accept() {
+        while (!closed) {
+            try {
+                var socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                sockets.add(socket);
+                int connection = nextConnection;
+                nextConnection = (nextConnection + 1) % connections.size();
+                Runnable replay = httpExchanges != null
+                        ? () -> replayHttp(socket)
+                        : () -> replay(socket, connections.get(connection));
+                var thread =
+                        new Thread(replay, "ReplayServer connection " + connection + " for device \"" + name + "\"");
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                if (!closed) {
+                    log.error("[{}]: Error in replay server", name, e);
+                }
+            }
+        }
+    }
+
+    private void replay(Socket socket, List<WireRecording.Event> events) {
+        try (socket) {
+            var driver = new DriverInput(socket.getInputStream());
+            OutputStream out = socket.getOutputStream();
+            // The number of bytes sent by the driver that have been matched to recorded requests. If the driver sent
+            // fewer bytes than recorded, it is reset to the number received, so that the following requests are not
+            // affected. The driver may send several requests before receiving a response, so it is not simply the
+            // number of bytes received.
+            long requestBytes = 0, consumedBytes = 0;
+            long previousEventNanos = events.get(0).nanos(), previousReplayNanos = System.nanoTime();
+            int start = 0, loopStart = firstRequest(events);
+            do {
+                for (var event : events.subList(start, events.size())) {
+                    if (event.type() == WireRecording.TO_DEVICE) {
+                        requestBytes += event.data().length;
+                        previousEventNanos = event.nanos();
+                        continue;
+                    }
+                    if (requestBytes > 0) {
+                        if (!driver.await(consumedBytes + requestBytes, consumedBytes)) {
+                            return;
+                        }
+                        consumedBytes = Math.min(consumedBytes + requestBytes, driver.getReceived());
+                        requestBytes = 0;
+                        previousReplayNanos = System.nanoTime();
+                    }
+                    if (event.type() == WireRecording.FROM_DEVICE) {
+                        if (speed > 0) {
+                            long wait = previousReplayNanos
+                                    + (long) ((event.nanos() - previousEventNanos) / speed)
+                                    - System.nanoTime();
+                            if (wait > 0) {
+                                Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+                            }
+                        }
+                        out.write(patchWebSocketAccept(event.data(), driver.getHead()));
+                        out.flush();
+                        previousEventNanos = event.nanos();
+                        previousReplayNanos = System.nanoTime();
+                    } else if (event.type() == WireRecording.DEVICE_CLOSED) {
+                        return;
+                    }
+                }
+                start = loopStart;
+            } while (loop && loopStart != -1 && !closed);
+            // Keeps the connection open until the driver closes it, as the device did in the recording
+            driver.await(Long.MAX_VALUE, Long.MAX_VALUE);
+        } catch (IOException e) {
+            log.trace("[{}]: Replayed connection closed", name, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            sockets.remove(socket);
+        }
+    }
+
+    private void replayHttp(Socket socket) {
+        try (socket) {
+            var in = new BufferedInputStream(socket.getInputStream());
+            OutputStream out = socket.getOutputStream();
+            String head;
+            while ((head = readHttpRequest(in)) != null) {
+                var requestLine = HttpExchanges.requestLine(head);
+                var exchange = httpExchanges.next(requestLine);
+                if (exchange == null) {
+                    log.debug("[{}]: Request \"{}\" was not recorded", name, requestLine);
+                    out.write(NOT_RECORDED);
+                } else {
+                    if (speed > 0) {
+                        long wait = (long) (exchange.delayNanos() / speed);
+                        Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+                    }
+                    out.write(exchange.response());
+                }
+                out.flush();
+            }
+        } catch (IOException e) {
+            log.trace("[{}]: Replayed connection closed", name, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            sockets.remove(socket);
+        }
+    }
+
+    /**
+     * Reads an HTTP request, skipping its body.
+     *
+     * @return the request line and headers, or null if the connection was closed
+     */
+    private static String readHttpRequest(InputStream in) throws IOException {
+        var head = new StringBuilder();
+        int b;
+        while ((b = in.read()) != -1) {
+            head.append((char) b);
+            if (b == '\n' && head.length() >= 4 && head.lastIndexOf("\r\n\r\n") == head.length() - 4) {
+                var matcher = CONTENT_LENGTH.matcher(head);
+                if (matcher.find()) {
+                    in.skipNBytes(Long.parseLong(matcher.group(1)));
+                }
+                return head.toString();
+            }
+        }
+        return null;
+    }
+
+    private static int firstRequest(List<WireRecording.Event> events) {
+        for (int i = 0; i < events.size(); i++) {
+            if (events.get(i).type() == WireRecording.TO_DEVICE) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Replaces the Sec-WebSocket-Accept header in a recorded handshake response with the one for the key of the
+     * driver's handshake request, as the key is random.
+     */
+    static byte[] patchWebSocketAccept(byte[] data, String driverHead) {
+        var response = new String(data, StandardCharsets.ISO_8859_1);
+        var accept = WEBSOCKET_ACCEPT.matcher(response);
+        var key = WEBSOCKET_KEY.matcher(driverHead);
+        if (!accept.find() || !key.find()) {
+            return data;
+        }
+        try {
+            var digest = MessageDigest.getInstance("SHA-1")
+                    .digest((key.group(1) + WEBSOCKET_GUID).getBytes(StandardCharsets.ISO_8859_1));
+            var patched = response.substring(0, accept.start(1))
+                    + Base64.getEncoder().encodeToString(digest)
+                    + response.substring(accept.end(1));
+            return patched.getBytes(StandardCharsets.ISO_8859_1);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        serverSocket.close();
+        for (var socket : sockets) {
+            socket.close();
+        }
+    }
+
+    /**
+     * Reads and counts the bytes sent by the driver on a separate thread, keeping the beginning of the most recent
+     * request for {@link #patchWebSocketAccept}.
+     */
+    private class DriverInput {
+        private static final int HEAD_LENGTH = 4096;
+
+        private long received;
+        private long lastReceivedNanos = System.nanoTime();
+        private boolean closed;
+        private String head = "";
+
+        DriverInput(InputStream in) {
+            var thread = new Thread(
+                    () -> {
+                        var buffer = new byte[16 * 1024];
+                        try {
+                            int length;
+                            while ((length = in.read(buffer)) != -1) {
+                                var chunk = new String(
+                                        buffer, 0, Math.min(length, HEAD_LENGTH), StandardCharsets.ISO_8859_1);
+                                synchronized (this) {
+                                    received += length;
+                                    lastReceivedNanos = System.nanoTime();
+                                    head = chunk;
+                                    notifyAll();
+                                }
+                            }
+                        } catch (IOException e) {
+                            // The connection was closed
+                        } finally {
+                            synchronized (this) {
+                                closed = true;
+                                notifyAll();
+                            }
+                        }
+                    },
+                    Thread.currentThread().getName() + " input");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        /**
+         * Waits until the driver has sent the expected number of bytes, or has sent more than the given number of bytes
+         * and then paused.
+         *
+         * @return false if the driver closed the connection
+         */
+        synchronized boolean await(long expected, long receivedBefore) throws InterruptedException {
+            while (!closed && received < expected) {
+                long idleMillis = (System.nanoTime() - lastReceivedNanos) / 1_000_000;
+                if (received <= receivedBefore) {
+                    // Nothing to time out yet, the input thread notifies when bytes arrive or the connection closes
+                    wait();
+                } else if (idleMillis >= IDLE_MILLIS) {
+                    return true;
+                } else {
+                    wait(IDLE_MILLIS - idleMillis);
+                }
+            }
+            return !closed;
+        }
+
+        synchronized long getReceived() {
+            return received;
+        }
+
+        synchronized String getHead() {
+            return head;
+        }
+    }
+}
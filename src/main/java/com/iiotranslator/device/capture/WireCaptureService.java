@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.device.capture;
+
+import com.iiotranslator.device.Device;
+import jakarta.annotation.PreDestroy;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Records the traffic between the drivers and their devices, or replays it to the drivers instead of connecting to the
+ * devices, depending on the iiot.capture.mode property. In both cases, a device's hostname and port options are
+ * redirected to a {@link CaptureProxy} or {@link ReplayServer} on the loopback interface, so the drivers are unaware
+ * of it. Each device is recorded to the file "device name.wire" in the capture directory.
+ */
+@Service
+@Slf4j
+public class WireCaptureService {
+    public static final String FILE_EXTENSION = ".wire";
+
+    /**
+     * The default ports of the drivers that read the port from the "port" option. The other drivers use HTTP, where
+     * the port is part of the hostname option.
+     */
+    private static final Map<String, Integer> DEFAULT_PORTS =
+            Map.of("keyence_mku", 9004, "binder_kb", 9000, "weiss_labevent", 443, "modbus_tcp", 502);
+
+    private static final int HTTP_PORT = 80;
+
+    public enum Mode {
+        OFF,
+        RECORD,
+        REPLAY
+    }
+
+    @Value("${iiot.capture.mode:off}")
+    private Mode mode;
+
+    @Value("${iiot.capture.directory:captures}")
+    private Path directory;
+
+    /**
+     * The speed at which recordings are replayed, e.g. 1 for the original speed, 10 for 10 times faster, 0 for no
+     * delays.
+     */
+    @Value("${iiot.capture.replaySpeed:1}")
+    private double replaySpeed;
+
+    /**
+     * Whether to start over at the first request of a recorded connection when its end has been reached, see
+     * {@link ReplayServer}.
+     */
+    @Value("${iiot.capture.replayLoop:false}")
+    private boolean replayLoop;
+
+    private final Map<String, Closeable> servers = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the device with its hostname and port redirected to a capture proxy or replay server, or the device
+     * itself if capturing is disabled or the device has no hostname.
+     *
+     * @throws IOException if the recording cannot be created or read
+     */
+    public Device apply(Device device) throws IOException {
+        if (mode == Mode.OFF || !device.getOptions().containsKey("hostname")) {
+            return device;
+        }
+        release(device.getName());
+        var file = directory.resolve(device.getName() + FILE_EXTENSION);
+        int port;
+        if (mode == Mode.RECORD) {
+            var target = getTarget(device);
+            int timeout = Integer.parseInt(device.getOptionOrDefault("timeout", "5000"));
+            var proxy = new CaptureProxy(device.getName(), target, timeout, new WireRecording.Writer(file));
+            servers.put(device.getName(), proxy);
+            port = proxy.getPort();
+            log.info("[{}]: Recording traffic with {} to {}", device.getName(), target, file.toAbsolutePath());
+        } else {
+            if (!Files.exists(file)) {
+                throw new IOException("No recording found at " + file.toAbsolutePath());
+            }
+            var replayServer = new ReplayServer(device.getName(), WireRecording.read(file), replaySpeed, replayLoop);
+            servers.put(device.getName(), replayServer);
+            port = replayServer.getPort();
+            log.info("[{}]: Replaying {} at speed {}", device.getName(), file.toAbsolutePath(), replaySpeed);
+        }
+        return new Device(device.getName(), device.getDriver(), redirect(device, port));
+    }
+
+    /**
+     * Closes the capture proxy or replay server of a device, e.g. because it has been removed from the configuration.
+     */
+    public void release(String deviceName) {
+        var server = servers.remove(deviceName);
+        if (server != null) {
+            try {
+                server.close();
+            } catch (IOException e) {
+                log.warn("[{}]: Could not close capture server", deviceName, e);
+            }
+        }
+    }
+
+    static InetSocketAddress getTarget(Device device) {
+        var hostname = device.getOption("hostname");
+        if (device.getOptions().containsKey("port")) {
+            return new InetSocketAddress(hostname, Integer.parseInt(device.getOption("port")));
+        }
+        int separator = hostname.lastIndexOf(':');
+        if (separator != -1) {
+            return new InetSocketAddress(
+                    hostname.substring(0, separator), Integer.parseInt(hostname.substring(separator + 1)));
+        }
+        return new InetSocketAddress(hostname, DEFAULT_PORTS.getOrDefault(device.getDriver(), HTTP_PORT));
+    }
+
+    static Map<String, String> redirect(Device device, int port) {
+        var options = new HashMap<>(device.getOptions());
+        if (DEFAULT_PORTS.containsKey(device.getDriver())) {
+            options.put("hostname", "127.0.0.1");
+            options.put("port", Integer.toString(port));
+        } else {
+            options.put("hostname", "127.0.0.1:" + port);
+        }
+        return Map.copyOf(options);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        servers.keySet().forEach(this::release);
+    }
+}
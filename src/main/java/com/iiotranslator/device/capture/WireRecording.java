@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.device.capture;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import lombok.NonNull;
+
+/**
+ * The binary file format of wire recordings, which contain the raw bytes exchanged between a driver and its device.
+ * <p>
+ * The file contains a header followed by one entry per event: the connection number, the event type, the time since
+ * the start of the recording in nanoseconds and the transferred bytes, if any. As the recording is made at the TCP
+ * level, it contains TCP lines, HTTP requests and responses and WebSocket and socket.io frames alike. The events of
+ * different connections are interleaved in the order in which they occurred.
+ */
+public final class WireRecording {
+    private static final int MAGIC = 0x49495752, VERSION = 1;
+    public static final byte CONNECT = 0, TO_DEVICE = 1, FROM_DEVICE = 2, DEVICE_CLOSED = 3, DRIVER_CLOSED = 4;
+
+    private WireRecording() {
+        // This class is not meant to be instantiated.
+    }
+
+    /**
+     * An event of a recorded connection.
+     *
+     * @param nanos the time since the start of the recording
+     * @param data the transferred bytes, empty for events other than {@link #TO_DEVICE} and {@link #FROM_DEVICE}
+     */
+    public record Event(byte type, long nanos, byte[] data) {}
+
+    /**
+     * Reads a recording.
+     *
+     * @return the events of each connection, in the order in which the connections were opened
+     */
+    public static List<List<Event>> read(@NonNull Path file) throws IOException {
+        var connections = new LinkedHashMap<Integer, List<Event>>();
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a wire recording: " + file);
+            }
+            while (true) {
+                int connection;
+                try {
+                    connection = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                byte type = in.readByte();
+                long nanos = in.readLong();
+                var data = new byte[in.readInt()];
+                in.readFully(data);
+                if (type == CONNECT) {
+                    connections.put(connection, new ArrayList<>());
+                }
+                var events = connections.get(connection);
+                if (events == null) {
+                    throw new IOException("Event of unknown connection " + connection + " in " + file);
+                }
+                events.add(new Event(type, nanos, data));
+            }
+        } catch (EOFException e) {
+            // The recording was not closed properly, e.g. because the application was killed, the last event is lost
+        }
+        return new ArrayList<>(connections.values());
+    }
+
+    /**
+     * Appends events to a recording. Can be used by multiple threads.
+     */
+    public static class Writer implements Closeable {
+        private static final long FLUSH_INTERVAL_NANOS = 1_000_000_000L;
+
+        private final DataOutputStream out;
+        private final long startNanos = System.nanoTime();
+        private long lastFlushNanos = startNanos;
+        private int connections;
+
+        public Writer(@NonNull Path file) throws IOException {
+            var parent = file.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+        }
+
+        /**
+         * Records the start of a new connection.
+         *
+         * @return the number of the connection
+         */
+        public synchronized int connect() throws IOException {
+            int connection = connections++;
+            write(connection, CONNECT, null, 0);
+            return connection;
+        }
+
+        public synchronized void write(int connection, byte type, byte[] data, int length) throws IOException {
+            long now = System.nanoTime();
+            out.writeInt(connection);
+            out.writeByte(type);
+            out.writeLong(now - startNanos);
+            out.writeInt(length);
+            if (length > 0) {
+                out.write(data, 0, length);
+            }
+            // Flushes regularly, so that little is lost if the application is killed
+            if (now - lastFlushNanos > FLUSH_INTERVAL_NANOS) {
+                out.flush();
+                lastFlushNanos = now;
+            }
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.device.cluster;
+
+import com.iiotranslator.device.Device;
+import com.iiotranslator.device.drivers.opcua.OpcUaBridge;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
+import org.eclipse.milo.opcua.sdk.client.api.identity.UsernameProvider;
+import org.eclipse.milo.opcua.stack.core.UaException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Distributes the configured devices over several IIoTranslator instances, which all use the same device
+ * configuration. Each device is owned by one cluster member, chosen by {@link RendezvousHashing} of the member names, so
+ * that adding or removing a member only moves the devices that it gains or loses. An instance only runs the drivers of
+ * the devices it owns.
+ * <p>
+ * An aggregator instance additionally exposes the devices of the other members, using a {@link ShardProxyDriver} that
+ * forwards reads and writes to the owning member's OPC UA server. An aggregator does not need to be a member itself, in
+ * which case it owns no devices.
+ */
+@Service
+@Slf4j
+public class ClusterService {
+    /**
+     * The cluster members and their OPC UA endpoints, e.g. "a=opc.tcp://host1:4840,b=opc.tcp://host2:4840". If empty,
+     * clustering is disabled and this instance owns all devices.
+     */
+    @Value("${iiot.cluster.members:}")
+    private String membersProperty;
+
+    /**
+     * The name of this instance in the member list, empty for an aggregator that owns no devices.
+     */
+    @Value("${iiot.cluster.self:}")
+    private String self;
+
+    @Getter
+    @Value("${iiot.cluster.aggregator:false}")
+    private boolean aggregator;
+
+    @Value("${iiot.cluster.username:${iiot.opcua.username}}")
+    private String username;
+
+    @Value("${iiot.cluster.password:${iiot.opcua.password}}")
+    private String password;
+
+    /**
+     * Timeout of requests to the members' servers in milliseconds, which is also how long a {@link ShardProxyDriver}
+     * waits for its device on initialization, unless the device sets the "timeout" option.
+     */
+    @Getter
+    @Value("${iiot.cluster.requestTimeout:10000}")
+    private int requestTimeout;
+
+    private final Map<String, URI> members = new LinkedHashMap<>();
+
+    private final Map<String, OpcUaClient> clients = new HashMap<>();
+
+    @PostConstruct
+    void initialize() {
+        for (var member : membersProperty.split(",")) {
+            if (member.isBlank()) {
+                continue;
+            }
+            int separator = member.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException(
+                        "Invalid cluster member \"" + member + "\", expected name=opc.tcp://host:port");
+            }
+            members.put(
+                    member.substring(0, separator).trim(),
+                    URI.create(member.substring(separator + 1).trim()));
+        }
+        if (members.isEmpty()) {
+            if (aggregator) {
+                throw new IllegalArgumentException("iiot.cluster.aggregator requires iiot.cluster.members to be set");
+            }
+            return;
+        }
+        if (!self.isEmpty() && !members.containsKey(self)) {
+            throw new IllegalArgumentException(
+                    "iiot.cluster.self \"" + self + "\" is not one of the cluster members " + members.keySet());
+        }
+        if (self.isEmpty() && !aggregator) {
+            throw new IllegalArgumentException("iiot.cluster.self must be set to one of the cluster members "
+                    + members.keySet() + ", unless this instance is an aggregator");
+        }
+        log.info(
+                "Cluster members: {}, this instance: {}{}",
+                members.keySet(),
+                self.isEmpty() ? "(none)" : self,
+                aggregator ? " (aggregator)" : "");
+    }
+
+    public boolean isEnabled() {
+        return !members.isEmpty();
+    }
+
+    /**
+     * Returns the name of the cluster member that owns the device, or null if this instance owns it.
+     */
+    public String getOwner(Device device) {
+        if (members.isEmpty()) {
+            return null;
+        }
+        var owner = RendezvousHashing.owner(device.getName(), members.keySet());
+        return owner.equals(self) ? null : owner;
+    }
+
+    /**
+     * Returns the connected OPC UA client for a member's server, connecting it if necessary. The client is shared by
+     * all devices of the member and reconnects by itself if the connection is lost.
+     *
+     * @throws UaException if the member's server cannot be reached
+     */
+    public synchronized OpcUaClient getClient(String member) throws UaException, InterruptedException {
+        var client = clients.get(member);
+        if (client != null) {
+            return client;
+        }
+        var endpointUrl = members.get(member);
+        if (endpointUrl == null) {
+            throw new IllegalArgumentException("Unknown cluster member: " + member);
+        }
+        client = OpcUaBridge.createClient(
+                endpointUrl,
+                "IIoTranslator cluster member " + (self.isEmpty() ? "aggregator" : self),
+                new UsernameProvider(username, password),
+                requestTimeout);
+        try {
+            client.connect().get();
+        } catch (ExecutionException e) {
+            client.disconnect();
+            throw e.getCause() instanceof UaException uaException ? uaException : new UaException(e.getCause());
+        }
+        log.info("Connected to cluster member {} at {}", member, endpointUrl);
+        clients.put(member, client);
+        return client;
+    }
+
+    @PreDestroy
+    synchronized void shutdown() {
+        for (var client : clients.values()) {
+            client.disconnect();
+        }
+        clients.clear();
+    }
+}
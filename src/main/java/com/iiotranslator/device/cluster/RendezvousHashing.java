@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.device.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+
+/**
+ * Assigns devices to cluster members using rendezvous (highest random weight) hashing: a device is owned by the member
+ * with the highest hash of the member's and the device's name. Every instance computes the same owners from the same
+ * member list without coordinating with the others, and when a member is added or removed, only the devices that it
+ * gains or loses change their owner.
+ */
+public final class RendezvousHashing {
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private RendezvousHashing() {
+        // This class is not meant to be instantiated.
+    }
+
+    /**
+     * Returns the member that owns the key. Ties, which are practically impossible, are broken by the member's name.
+     *
+     * @throws IllegalArgumentException if there are no members
+     */
+    public static String owner(String key, Collection<String> members) {
+        String owner = null;
+        long ownerHash = 0;
+        for (var member : members) {
+            long hash = hash(member, key);
+            if (owner == null || hash > ownerHash || (hash == ownerHash && member.compareTo(owner) < 0)) {
+                owner = member;
+                ownerHash = hash;
+            }
+        }
+        if (owner == null) {
+            throw new IllegalArgumentException("No cluster members to assign " + key + " to");
+        }
+        return owner;
+    }
+
+    /**
+     * Returns a 64-bit FNV-1a hash of the member and key, separated by a zero byte, followed by the finalizer of
+     * SplitMix64 so that similar names, e.g. "Oven1" and "Oven2", result in unrelated hashes.
+     */
+    static long hash(String member, String key) {
+        long hash = FNV_OFFSET_BASIS;
+        for (byte b : member.getBytes(StandardCharsets.UTF_8)) {
+            hash = (hash ^ (b & 0xff)) * FNV_PRIME;
+        }
+        hash *= FNV_PRIME;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash = (hash ^ (b & 0xff)) * FNV_PRIME;
+        }
+        hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+        return hash ^ (hash >>> 31);
+    }
+}
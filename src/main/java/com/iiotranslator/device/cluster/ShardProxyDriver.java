@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.device.cluster;
+
+import com.iiotranslator.device.Device;
+import com.iiotranslator.device.DeviceRequest;
+import com.iiotranslator.device.DeviceRequestCompletionListener;
+import com.iiotranslator.device.drivers.DeviceDriver;
+import com.iiotranslator.device.drivers.opcua.OpcUaBridge;
+import com.iiotranslator.opc.DataValues;
+import com.iiotranslator.opc.FolderNode;
+import com.iiotranslator.opc.OpcNamespace;
+import com.iiotranslator.opc.VariableNode;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
+import org.eclipse.milo.opcua.stack.core.Identifiers;
+import org.eclipse.milo.opcua.stack.core.StatusCodes;
+import org.eclipse.milo.opcua.stack.core.UaException;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.TimestampsToReturn;
+
+/**
+ * Exposes a device of another cluster member by mirroring the device's folder from the member's OPC UA server and
+ * forwarding reads and writes to it. The reads of each call to {@link #process} are sent in a single read request.
+ * Subscriptions are served by the local server, which samples the variables by reading them, so they are forwarded as
+ * well.
+ * <p>
+ * The initialization waits until the member's server is reachable and its driver has created the device's nodes, but
+ * at most for the device's "timeout" option, or the cluster's request timeout if it is not set. If the device could not
+ * be mirrored by then, the folder only contains a "_Diagnostics/Connection State" variable, which is read as
+ * Bad_NoCommunication. Reading it retries the mirroring, which then replaces it with the owner's nodes.
+ */
+@Slf4j
+public class ShardProxyDriver implements DeviceDriver {
+    static final String PLACEHOLDER_FOLDER_NAME = "_Diagnostics";
+    static final String PLACEHOLDER_VARIABLE_NAME = "Connection State";
+
+    private final ClusterService cluster;
+    private final String member;
+
+    private Device device;
+    private FolderNode deviceFolder;
+    private OpcUaClient client;
+
+    private final Map<VariableNode, NodeId> remoteNodeIds = new HashMap<>();
+    private boolean mirrored;
+
+    // The state of the attempts to mirror the device, which continue in process() after the initialization gave up
+    private final OpcUaBridge.Backoff backoff = new OpcUaBridge.Backoff();
+    private int previousChildren = -1;
+    private long nextAttemptNanos;
+
+    public ShardProxyDriver(ClusterService cluster, String member) {
+        this.cluster = cluster;
+        this.member = member;
+    }
+
+    @Override
+    @SneakyThrows(InterruptedException.class)
+    public void initialize(Device device, FolderNode deviceFolderNode) {
+        this.device = device;
+        this.deviceFolder = deviceFolderNode;
+        long timeoutMillis =
+                Long.parseLong(device.getOptionOrDefault("timeout", Integer.toString(cluster.getRequestTimeout())));
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (true) {
+            long retryMillis = tryMirror();
+            if (mirrored) {
+                return;
+            }
+            long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remainingMillis <= 0) {
+                log.warn(
+                        "[{}]: Cluster member {} did not provide the device within {}ms, retrying when it is read",
+                        device.getName(),
+                        member,
+                        timeoutMillis);
+                deviceFolderNode
+                        .addFolder(PLACEHOLDER_FOLDER_NAME)
+                        .addVariableReadOnly(PLACEHOLDER_VARIABLE_NAME, Identifiers.String);
+                nextAttemptNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(retryMillis);
+                return;
+            }
+            Thread.sleep(Math.min(retryMillis, remainingMillis));
+        }
+    }
+
+    /**
+     * Makes one attempt to mirror the device's nodes, which sets {@link #mirrored} if it succeeds.
+     *
+     * @return how long to wait before the next attempt, if this one did not succeed
+     */
+    private long tryMirror() throws InterruptedException {
+        try {
+            client = cluster.getClient(member);
+            var remoteFolder = findDeviceFolder();
+            int children = remoteFolder == null
+                    ? 0
+                    : client.getAddressSpace().browse(remoteFolder).size();
+            // The member's driver creates the device's nodes after its folder, so they are only mirrored once their
+            // number did not change between two attempts
+            if (children > 0 && children == previousChildren) {
+                deviceFolder.removeChild(PLACEHOLDER_FOLDER_NAME);
+                OpcUaBridge.mirror(client, remoteFolder, deviceFolder, remoteNodeIds);
+                mirrored = true;
+                log.info(
+                        "[{}]: Proxying {} variables of cluster member {}",
+                        device.getName(),
+                        remoteNodeIds.size(),
+                        member);
+                return 0;
+            }
+            previousChildren = children;
+            if (children == 0) {
+                log.debug("[{}]: Waiting for cluster member {} to initialize the device", device.getName(), member);
+            }
+            return backoff.succeeded();
+        } catch (UaException e) {
+            long retryMillis = backoff.failed();
+            log.warn(
+                    "[{}]: Cluster member {} is not reachable, retrying in {}ms: {}",
+                    device.getName(),
+                    member,
+                    retryMillis,
+                    e.getMessage());
+            return retryMillis;
+        }
+    }
+
+    /**
+     * Returns the id of the device's folder on the member's server, or null if it does not exist (yet).
+     */
+    private NodeId findDeviceFolder() throws UaException {
+        var namespaceIndex = client.getNamespaceTable().getIndex(OpcNamespace.NAMESPACE_URI);
+        for (var reference : client.getAddressSpace().browse(Identifiers.ObjectsFolder)) {
+            var browseName = reference.getBrowseName();
+            if (browseName.getNamespaceIndex().equals(namespaceIndex)
+                    && device.getName().equals(browseName.getName())) {
+                return reference
+                        .getNodeId()
+                        .toNodeId(client.getNamespaceTable())
+                        .orElse(null);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    @SneakyThrows(InterruptedException.class)
+    public void process(List<DeviceRequest> requestQueue, DeviceRequestCompletionListener listener) {
+        if (!mirrored && System.nanoTime() - nextAttemptNanos >= 0) {
+            long retryMillis = tryMirror();
+            nextAttemptNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(retryMillis);
+        }
+        if (!mirrored) {
+            for (var request : requestQueue) {
+                if (request instanceof DeviceRequest.ReadRequest readRequest) {
+                    listener.completeReadRequest(readRequest, DataValues.BAD_NO_COMMUNICATION);
+                } else if (request instanceof DeviceRequest.WriteRequest writeRequest) {
+                    listener.completeWriteRequestExceptionally(
+                            writeRequest, new UaException(StatusCodes.Bad_NoCommunication));
+                }
+            }
+            return;
+        }
+        var reads = new ArrayList<DeviceRequest.ReadRequest>();
+        var readNodeIds = new ArrayList<NodeId>();
+        for (var request : requestQueue) {
+            if (request instanceof DeviceRequest.ReadRequest readRequest) {
+                var nodeId = remoteNodeIds.get(readRequest.getVariable());
+                if (nodeId == null) {
+                    // E.g. the placeholder, which was removed while the read was queued
+                    listener.completeReadRequest(readRequest, DataValues.BAD_NODE_ID_UNKNOWN);
+                    continue;
+                }
+                reads.add(readRequest);
+                readNodeIds.add(nodeId);
+            } else if (request instanceof DeviceRequest.WriteRequest writeRequest) {
+                write(writeRequest, listener);
+            }
+        }
+        if (reads.isEmpty()) {
+            return;
+        }
+        List<DataValue> values;
+        try {
+            values =
+                    client.readValues(0.0, TimestampsToReturn.Both, readNodeIds).get();
+        } catch (ExecutionException e) {
+            log.debug("[{}]: Could not read from cluster member {}", device.getName(), member, e);
+            reads.forEach(read -> listener.completeReadRequest(read, DataValues.BAD_COMMUNICATION_ERROR));
+            return;
+        }
+        for (int i = 0; i < reads.size(); i++) {
+            listener.completeReadRequest(reads.get(i), values.get(i));
+        }
+    }
+
+    private void write(DeviceRequest.WriteRequest request, DeviceRequestCompletionListener listener)
+            throws InterruptedException {
+        var nodeId = remoteNodeIds.get(request.getVariable());
+        if (nodeId == null) {
+            listener.completeWriteRequestExceptionally(request, new UaException(StatusCodes.Bad_NodeIdUnknown));
+            return;
+        }
+        try {
+            var status = client.writeValue(nodeId, OpcUaBridge.valueToWrite(request.getValue()))
+                    .get();
+            if (status.isGood()) {
+                listener.completeWriteRequestExceptionally(request);
+            } else {
+                listener.completeWriteRequestExceptionally(request, new UaException(status));
+            }
+        } catch (ExecutionException e) {
+            listener.completeWriteRequestExceptionally(request, e);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.device.drivers;
+
+/**
+ * A driver that keeps a connection to its device, which the driver thread opens and closes according to the device's
+ * {@link ConnectionStrategy}. Like all other methods of a driver, these are only called by the driver thread, after
+ * {@link #initialize}.
+ * <p>
+ * The driver still has to connect by itself when it processes requests while it is not connected, e.g. because the
+ * connection was lost or closed because the device was idle.
+ */
+public interface ConnectableDeviceDriver extends DeviceDriver {
+    /**
+     * Connects to the device, unless a connection is already open.
+     *
+     * @return whether the driver is connected
+     */
+    boolean connect();
+
+    /**
+     * Closes the connection to the device, if one is open.
+     */
+    void disconnect();
+
+    boolean isConnected();
+
+    /**
+     * Called periodically in {@link ConnectionStrategy.Mode#EAGER} mode while no requests are being processed. The
+     * driver should check that the connection is still alive, e.g. by sending a cheap request, and reconnect if it is
+     * not. By default, it only reconnects if the connection was closed.
+     *
+     * @return whether the driver is connected
+     */
+    default boolean keepAlive() {
+        return connect();
+    }
+
+    /**
+     * The connection mode used if the device does not set the "connection" option. Drivers whose devices push their
+     * values after connecting should return {@link ConnectionStrategy.Mode#EAGER}, as there are no values to answer the
+     * first read with otherwise.
+     */
+    default ConnectionStrategy.Mode getDefaultConnectionMode() {
+        return ConnectionStrategy.Mode.LAZY;
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.device.drivers;
+
+import com.iiotranslator.device.Device;
+import java.util.Locale;
+
+/**
+ * When the driver thread of a {@link ConnectableDeviceDriver} opens and closes the connection to its device, configured
+ * using the device options "connection", "keepAliveInterval" and "idleDisconnectMinutes".
+ *
+ * @param mode                 whether to connect when the driver is initialized or on the first request
+ * @param keepAliveMillis      in {@link Mode#EAGER} mode, the interval of the keep-alive probes while the device is
+ *                             not being read, which also retry failed connections
+ * @param idleDisconnectMillis in {@link Mode#LAZY} mode, the time without requests after which the connection is
+ *                             closed, or 0 to keep it open
+ */
+public record ConnectionStrategy(Mode mode, long keepAliveMillis, long idleDisconnectMillis) {
+    public enum Mode {
+        /**
+         * Connects when the driver is initialized and keeps the connection open, so that the first read does not have
+         * to wait for it.
+         */
+        EAGER,
+        /**
+         * Connects on the first request, e.g. the first sample of a monitored item.
+         */
+        LAZY
+    }
+
+    private static final long DEFAULT_KEEP_ALIVE_MILLIS = 30_000;
+
+    /**
+     * Reads the connection strategy from the device's options.
+     *
+     * @param defaultMode the mode used if the device does not set one, see
+     *                    {@link ConnectableDeviceDriver#getDefaultConnectionMode()}
+     * @throws IllegalArgumentException if an option is invalid
+     */
+    public static ConnectionStrategy of(Device device, Mode defaultMode) {
+        var modeOption = device.getOptionOrDefault("connection", defaultMode.name());
+        Mode mode;
+        try {
+            mode = Mode.valueOf(modeOption.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Device " + device.getName() + " has an invalid connection option \""
+                    + modeOption + "\", must be eager or lazy");
+        }
+        long keepAliveMillis = Long.parseLong(
+                device.getOptionOrDefault("keepAliveInterval", Long.toString(DEFAULT_KEEP_ALIVE_MILLIS)));
+        long idleDisconnectMillis = Long.parseLong(device.getOptionOrDefault("idleDisconnectMinutes", "0")) * 60_000;
+        if (keepAliveMillis <= 0 || idleDisconnectMillis < 0) {
+            throw new IllegalArgumentException("Device " + device.getName()
+                    + " must have a positive keepAliveInterval and a non-negative idleDisconnectMinutes");
+        }
+        if (mode == Mode.EAGER && idleDisconnectMillis > 0) {
+            throw new IllegalArgumentException("Device " + device.getName()
+                    + " cannot use idleDisconnectMinutes with connection=eager, which keeps the connection open");
+        }
+        return new ConnectionStrategy(mode, keepAliveMillis, idleDisconnectMillis);
+    }
+
+    /**
+     * Returns whether the device uses any of the connection options, which are ignored by drivers that do not implement
+     * {@link ConnectableDeviceDriver}.
+     */
+    public static boolean isConfigured(Device device) {
+        var options = device.getOptions();
+        return options.containsKey("connection")
+                || options.containsKey("keepAliveInterval")
+                || options.containsKey("idleDisconnectMinutes");
+    }
+}
@@ -23,9 +23,26 @@ public interface DeviceDriver {
     /**
      * This method is called by the driver thread if there are any open read and/or write requests. The driver should
      * process the requests and complete them by calling the provided listener's completeWriteRequest or
-     * completeReadRequest methods.
+     * completeReadRequest methods. Requests that are still open when this method returns are passed to it again,
+     * unless the driver {@link #completesRequestsAsynchronously() completes requests asynchronously}.
      *
      * @param requestQueue A list of open DeviceRequest objects for the driver to process.
      */
     void process(List<DeviceRequest> requestQueue, DeviceRequestCompletionListener listener);
+
+    /**
+     * Whether the driver may complete requests after {@link #process} has returned, e.g. from the callback of an
+     * asynchronous request. If so, each request is only passed to process() once, and the driver must complete every
+     * request eventually, also if it fails.
+     */
+    default boolean completesRequestsAsynchronously() {
+        return false;
+    }
+
+    /**
+     * This method is called by the driver thread when the device has been removed or its configuration has changed, so
+     * that the driver can close its connections and stop its own threads. It is not called if the initialization
+     * failed.
+     */
+    default void close() {}
 }
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.device.drivers;
+
+import com.iiotranslator.device.Device;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import java.util.concurrent.TimeUnit;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+
+/**
+ * Meters for the round trips of the drivers' protocols, registered with {@link Metrics#globalRegistry}.
+ */
+public final class DriverMetrics {
+    private DriverMetrics() {
+        // This class is not meant to be instantiated.
+    }
+
+    /**
+     * Returns the timer for a protocol command, e.g. a single request and response on a socket. Drivers should cache
+     * the returned timer instead of calling this method for every command.
+     */
+    public static Timer commandTimer(Device device, String command) {
+        return Timer.builder("iiot.driver.command")
+                .description("Round-trip time of protocol commands")
+                .tags("device", device.getName(), "driver", device.getDriver(), "command", command)
+                .register(Metrics.globalRegistry);
+    }
+
+    /**
+     * Returns a WebClient filter that records the round-trip time of every HTTP call, tagged with whether it
+     * succeeded.
+     */
+    public static ExchangeFilterFunction httpTimer(Device device) {
+        var success = httpTimer(device, "success");
+        var error = httpTimer(device, "error");
+        return (request, next) -> {
+            long start = System.nanoTime();
+            return next.exchange(request)
+                    .doOnSuccess(response -> (response.statusCode().isError() ? error : success)
+                            .record(System.nanoTime() - start, TimeUnit.NANOSECONDS))
+                    .doOnError(e -> error.record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+        };
+    }
+
+    private static Timer httpTimer(Device device, String outcome) {
+        return Timer.builder("iiot.driver.http")
+                .description("Round-trip time of HTTP calls to devices")
+                .tags("device", device.getName(), "driver", device.getDriver(), "outcome", outcome)
+                .register(Metrics.globalRegistry);
+    }
+}
@@ -4,6 +4,7 @@
  */
 package com.iiotranslator.device.drivers;
 
+import com.iiotranslator.opc.DataValues;
 import com.iiotranslator.opc.VariableNode;
 import io.netty.channel.ChannelOption;
 import io.netty.handler.timeout.ReadTimeoutHandler;
@@ -12,7 +13,6 @@ import java.time.Duration;
 import java.util.concurrent.TimeUnit;
 import lombok.extern.slf4j.Slf4j;
 import org.eclipse.milo.opcua.stack.core.Identifiers;
-import org.eclipse.milo.opcua.stack.core.StatusCodes;
 import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
 import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
 import reactor.netty.http.client.HttpClient;
@@ -43,9 +43,9 @@ public class DriverUtil {
             }
         } catch (NumberFormatException e) {
             log.trace("Could not convert value {} to number type {}", value, variableNode.getDataType());
-            return new DataValue(StatusCodes.Bad_DecodingError);
+            return DataValues.BAD_DECODING_ERROR;
         }
-        return new DataValue(variant);
+        return DataValues.of(variant);
     }
 
     public static HttpClient createHttpClient(int timeout) {
@@ -8,6 +8,8 @@ import com.iiotranslator.device.Device;
 import com.iiotranslator.device.drivers.binder.BinderKBDriver;
 import com.iiotranslator.device.drivers.binder.BinderKBFDriver;
 import com.iiotranslator.device.drivers.keyence.KeyenceDriver;
+import com.iiotranslator.device.drivers.modbus.ModbusTcpDriver;
+import com.iiotranslator.device.drivers.opcua.OpcUaClientDriver;
 import com.iiotranslator.device.drivers.other.IPSwitchDriver;
 import com.iiotranslator.device.drivers.other.InficonELTDriver;
 import com.iiotranslator.device.drivers.other.TasmotaDriver;
@@ -33,11 +35,27 @@ public class KnownDeviceDrivers {
             case "keyence_mku" -> KeyenceDriver::new;
             case "tasmota" -> TasmotaDriver::new;
             case "inficon_elt" -> InficonELTDriver::new;
+            case "modbus_tcp" -> ModbusTcpDriver::new;
+            case "opcua_client" -> OpcUaClientDriver::new;
                 // ------------------------------------------------------------------------------------------
             default -> throw new UnknownDriverException("Unknown device driver: " + device.getDriver());
         };
     }
 
+    /**
+     * Returns the name of the OPC UA ObjectType of the devices that use this driver, e.g. "TasmotaDeviceType" for
+     * "tasmota" or "WeissLabeventDeviceType" for "weiss_labevent".
+     */
+    public static String getDeviceTypeName(String driver) {
+        var typeName = new StringBuilder();
+        for (var word : driver.split("[^A-Za-z0-9]+")) {
+            if (!word.isEmpty()) {
+                typeName.append(Character.toUpperCase(word.charAt(0))).append(word.substring(1));
+            }
+        }
+        return typeName.append("DeviceType").toString();
+    }
+
     public static class UnknownDriverException extends RuntimeException {
         public UnknownDriverException(String message) {
             super(message);
@@ -5,8 +5,10 @@
 package com.iiotranslator.device.drivers.binder;
 
 import com.iiotranslator.device.Device;
+import com.iiotranslator.device.drivers.ConnectableDeviceDriver;
 import com.iiotranslator.device.drivers.DriverUtil;
 import com.iiotranslator.device.drivers.NonBatchingDeviceDriver;
+import com.iiotranslator.opc.DataValues;
 import com.iiotranslator.opc.FolderNode;
 import com.iiotranslator.opc.VariableNode;
 import java.io.BufferedReader;
@@ -22,11 +24,12 @@ import java.util.Map;
 import java.util.Set;
 import lombok.extern.slf4j.Slf4j;
 import org.eclipse.milo.opcua.stack.core.Identifiers;
-import org.eclipse.milo.opcua.stack.core.StatusCodes;
 import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
 
 @Slf4j
-public class BinderKBDriver implements NonBatchingDeviceDriver {
+public class BinderKBDriver implements NonBatchingDeviceDriver, ConnectableDeviceDriver {
+    private static final String COMMUNICATION_STATUS = "10010010";
+
     private int timeout;
     private Device device;
 
@@ -38,7 +41,7 @@ public class BinderKBDriver implements NonBatchingDeviceDriver {
         this.device = device;
         this.timeout = Integer.parseInt(device.getOptionOrDefault("timeout", "2000"));
 
-        variableMap.put(folder.addVariableReadOnly("Communication Status", Identifiers.String), "10010010");
+        variableMap.put(folder.addVariableReadOnly("Communication Status", Identifiers.String), COMMUNICATION_STATUS);
         variableMap.put(folder.addVariableReadOnly("Fan Speed", Identifiers.Double), "112000E1");
         var temperatureSetpoint = folder.addVariableReadOnly("Temperature Setpoint", Identifiers.Double);
         variableMap.put(temperatureSetpoint, "114000C0");
@@ -53,52 +56,102 @@ public class BinderKBDriver implements NonBatchingDeviceDriver {
 
     @Override
     public DataValue read(VariableNode variable) {
-        if (!ensureConnected()) {
-            return new DataValue(StatusCodes.Bad_NoCommunication);
+        if (!connect()) {
+            return DataValues.BAD_NO_COMMUNICATION;
         }
         try {
-            var command = "CANIDGetValue:" + variableMap.get(variable);
-            writer.write(command + "\r\n");
-            writer.flush();
-            // Discard the first line, it just contains the length of the following line
-            reader.readLine();
-            // Read the response to the command.
-            String response = reader.readLine().substring(command.length() + 1);
+            String response = getValue(variableMap.get(variable));
             if (convertKelvinToCelsius.contains(variable)) {
                 response = String.valueOf(Double.parseDouble(response) - 273.15);
             }
             return DriverUtil.convertValue(variable, response);
         } catch (IOException | NumberFormatException e) {
             log.trace("[{}]: Error reading from device", device.getName(), e);
-            disconnect();
-            return new DataValue(StatusCodes.Bad_CommunicationError);
+            disconnectAfterError();
+            return DataValues.BAD_COMMUNICATION_ERROR;
+        }
+    }
+
+    private String getValue(String address) throws IOException {
+        var command = "CANIDGetValue:" + address;
+        writer.write(command + "\r\n");
+        writer.flush();
+        // Discard the first line, it just contains the length of the following line
+        reader.readLine();
+        // Read the response to the command.
+        String response = reader.readLine();
+        if (response == null) {
+            throw new IOException("Unexpected end of stream");
+        }
+        return response.substring(command.length() + 1);
+    }
+
+    /**
+     * Reads the communication status, which is the cheapest request.
+     */
+    @Override
+    public boolean keepAlive() {
+        if (isConnected()) {
+            try {
+                getValue(COMMUNICATION_STATUS);
+                return true;
+            } catch (IOException e) {
+                log.trace("[{}]: Keep-alive failed", device.getName(), e);
+                disconnect();
+            }
         }
+        return connect();
     }
 
     private Socket socket = null;
     private PrintWriter writer = null;
     private BufferedReader reader = null;
 
-    private void disconnect() {
+    @Override
+    public void close() {
+        try {
+            if (socket != null) {
+                socket.close();
+            }
+        } catch (IOException e) {
+            log.trace("[{}]: Error closing socket", device.getName(), e);
+        }
+    }
+
+    @Override
+    public void disconnect() {
+        if (socket == null) {
+            return;
+        }
         try {
             socket.close();
         } catch (IOException e) {
             log.trace("[{}]: Error closing socket", device.getName(), e);
         }
         socket = null;
-        // As this method usually only gets called when an error occurs, wait a bit before trying to reconnect.
+    }
+
+    private void disconnectAfterError() {
+        disconnect();
+        // Wait a bit before trying to reconnect after an error
         try {
             Thread.sleep(timeout);
         } catch (InterruptedException ignored) {
         }
     }
 
-    private boolean ensureConnected() {
+    @Override
+    public boolean isConnected() {
+        return socket != null && socket.isConnected() && !socket.isClosed();
+    }
+
+    @Override
+    public boolean connect() {
         if (socket != null) {
-            if (socket.isConnected()) {
+            if (isConnected()) {
                 return true;
             } else {
-                disconnect();
+                disconnectAfterError();
             }
         }
         try {
@@ -114,7 +167,7 @@ public class BinderKBDriver implements NonBatchingDeviceDriver {
         } catch (IOException e) {
             log.trace("[{}]: Error connecting to device", device.getName(), e);
             // cooldown
-            disconnect();
+            disconnectAfterError();
             return false;
         }
     }
@@ -8,7 +8,9 @@ import com.iiotranslator.device.Device;
 import com.iiotranslator.device.DeviceRequest;
 import com.iiotranslator.device.DeviceRequestCompletionListener;
 import com.iiotranslator.device.drivers.DeviceDriver;
+import com.iiotranslator.device.drivers.DriverMetrics;
 import com.iiotranslator.device.drivers.DriverUtil;
+import com.iiotranslator.opc.DataValues;
 import com.iiotranslator.opc.FolderNode;
 import com.iiotranslator.opc.VariableNode;
 import io.netty.channel.ChannelOption;
@@ -22,11 +24,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
+import java.util.zip.DataFormatException;
 import java.util.zip.Inflater;
 import lombok.extern.slf4j.Slf4j;
 import org.eclipse.milo.opcua.stack.core.Identifiers;
 import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
-import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
 import org.springframework.core.io.ByteArrayResource;
 import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
@@ -55,6 +57,7 @@ public class BinderKBFDriver implements DeviceDriver {
                         .addHandlerLast(new WriteTimeoutHandler(timeout, TimeUnit.MILLISECONDS)));
         client = WebClient.builder()
                 .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .filter(DriverMetrics.httpTimer(device))
                 .build();
 
         var variableNodes = new HashMap<String, VariableNode>();
@@ -80,45 +83,54 @@ public class BinderKBFDriver implements DeviceDriver {
                     .bodyToMono(ByteArrayResource.class)
                     .block()
                     .getByteArray();
-            Inflater decompresser = new Inflater();
-            decompresser.setInput(input);
-            byte[] result = new byte[1024];
-            int resultLength = decompresser.inflate(result);
-            decompresser.end();
-            String output = new String(result, 0, resultLength, StandardCharsets.UTF_8);
-            log.trace("[{}]: Response: {}", device.getName(), output);
-            output = output.replace("<Wert>", "").replace("</Wert>", "");
-            for (String keyValue : output.split(Pattern.quote("//"))) {
-                try {
-                    String[] keyValuePair = keyValue.split(Pattern.quote("="));
-                    if (keyValuePair.length == 2) {
-                        String key = keyValuePair[0];
-                        String value = keyValuePair[1];
-                        VariableNode variableNode = variableNodes.get(key);
-                        log.trace("[{}]: {} = {}", device.getName(), key, value);
-                        if (variableNode != null) {
-                            if (value.equals("-----")) {
-                                variableValues.put(variableNode, new DataValue(StatusCode.GOOD));
-                            } else {
-                                variableValues.put(variableNode, DriverUtil.convertValue(variableNode, value));
-                            }
-                        } else {
-                            log.warn("[{}]: Unknown variable: {}", device.getName(), key);
-                        }
-                    }
-                } catch (Exception e) {
-                    log.trace("[{}]: Error parsing response: {}", device.getName(), keyValue, e);
-                }
-            }
+            parseResponse(input);
         } catch (Exception e) {
             log.trace("[{}]: Error reading from device", device.getName(), e);
         } finally {
             for (DeviceRequest request : requestQueue) {
                 var readRequest = (DeviceRequest.ReadRequest) request;
                 var variable = readRequest.getVariable();
-                listener.completeReadRequest(
-                        readRequest, variableValues.getOrDefault(variable, new DataValue(StatusCode.BAD)));
+                listener.completeReadRequest(readRequest, variableValues.getOrDefault(variable, DataValues.BAD));
+            }
+        }
+    }
+
+    /**
+     * Decompresses a response of the controller and stores the values of the known variables in it.
+     *
+     * @return the values of the variables that were contained in the response
+     */
+    public Map<VariableNode, DataValue> parseResponse(byte[] input) throws DataFormatException {
+        Inflater decompresser = new Inflater();
+        decompresser.setInput(input);
+        byte[] result = new byte[1024];
+        int resultLength = decompresser.inflate(result);
+        decompresser.end();
+        String output = new String(result, 0, resultLength, StandardCharsets.UTF_8);
+        log.trace("[{}]: Response: {}", device.getName(), output);
+        output = output.replace("<Wert>", "").replace("</Wert>", "");
+        for (String keyValue : output.split(Pattern.quote("//"))) {
+            try {
+                String[] keyValuePair = keyValue.split(Pattern.quote("="));
+                if (keyValuePair.length == 2) {
+                    String key = keyValuePair[0];
+                    String value = keyValuePair[1];
+                    VariableNode variableNode = variableNodes.get(key);
+                    log.trace("[{}]: {} = {}", device.getName(), key, value);
+                    if (variableNode != null) {
+                        if (value.equals("-----")) {
+                            variableValues.put(variableNode, DataValues.GOOD_NO_VALUE);
+                        } else {
+                            variableValues.put(variableNode, DriverUtil.convertValue(variableNode, value));
+                        }
+                    } else {
+                        log.warn("[{}]: Unknown variable: {}", device.getName(), key);
+                    }
+                }
+            } catch (Exception e) {
+                log.trace("[{}]: Error parsing response: {}", device.getName(), keyValue, e);
             }
         }
+        return variableValues;
     }
 }
@@ -7,10 +7,13 @@ package com.iiotranslator.device.drivers.keyence;
 import com.iiotranslator.device.Device;
 import com.iiotranslator.device.DeviceRequest;
 import com.iiotranslator.device.DeviceRequestCompletionListener;
-import com.iiotranslator.device.drivers.DeviceDriver;
+import com.iiotranslator.device.drivers.ConnectableDeviceDriver;
+import com.iiotranslator.device.drivers.DriverMetrics;
+import com.iiotranslator.opc.DataValues;
 import com.iiotranslator.opc.FolderNode;
 import com.iiotranslator.opc.VariableNode;
 import com.iiotranslator.opc.WritableVariableNode;
+import io.micrometer.core.instrument.Timer;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
@@ -19,20 +22,18 @@ import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
 import org.eclipse.milo.opcua.stack.core.Identifiers;
-import org.eclipse.milo.opcua.stack.core.StatusCodes;
 import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
-import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
-import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
 
 /*
  * This driver supports Keyence's MK-U6000/MK-U2000 industrial ink-jet printer.
  */
 @Slf4j
-public class KeyenceDriver implements DeviceDriver {
+public class KeyenceDriver implements ConnectableDeviceDriver {
     private Device device;
     private int timeout;
 
@@ -57,6 +58,8 @@ public class KeyenceDriver implements DeviceDriver {
 
     private final Map<VariableNode, DataValue> variableValues = new HashMap<>();
 
+    private final Map<String, Timer> commandTimers = new HashMap<>();
+
     @Override
     public void initialize(Device device, FolderNode folder) {
         this.device = device;
@@ -81,10 +84,10 @@ public class KeyenceDriver implements DeviceDriver {
 
     @Override
     public void process(List<DeviceRequest> requestQueue, DeviceRequestCompletionListener listener) {
-        if (!ensureConnected()) {
+        if (!connect()) {
             for (DeviceRequest request : requestQueue) {
                 if (request instanceof DeviceRequest.ReadRequest readRequest) {
-                    listener.completeReadRequest(readRequest, new DataValue(StatusCodes.Bad_NoCommunication));
+                    listener.completeReadRequest(readRequest, DataValues.BAD_NO_COMMUNICATION);
                 } else if (request instanceof DeviceRequest.WriteRequest writeRequest) {
                     listener.completeWriteRequestExceptionally(writeRequest, new IOException("Not connected"));
                 }
@@ -103,46 +106,22 @@ public class KeyenceDriver implements DeviceDriver {
         // read error variables if any of them are requested
         if (!Collections.disjoint(readVariables, errorVariables)) {
             try {
-                var errorCodesString = execCommand("EV");
-                var errorCodesSplit = errorCodesString.split(Pattern.quote(","), -1);
-                KeyenceDriverCodes.ErrorLevel highestErrorLevel = KeyenceDriverCodes.ErrorLevel.OK;
-                StringBuilder errorCodesBuilder = new StringBuilder(), errorNamesBuilder = new StringBuilder();
-                for (int i = 1; i < errorCodesSplit.length; i++) {
-                    if (i > 1) {
-                        errorCodesBuilder.append(",");
-                        errorNamesBuilder.append(",");
-                    }
-                    var errorCode = Integer.parseInt(errorCodesSplit[i]);
-                    var error = KeyenceDriverCodes.getSystemErrorCode(errorCode);
-                    if (error.getLevel().compareTo(highestErrorLevel) > 0) {
-                        highestErrorLevel = error.getLevel();
-                    }
-                    errorCodesBuilder.append(errorCode);
-                    errorNamesBuilder.append(error.getName());
-                }
-                variableValues.put(errorCodes, new DataValue(new Variant(errorCodesBuilder.toString())));
-                variableValues.put(errorNames, new DataValue(new Variant(errorNamesBuilder.toString())));
-                variableValues.put(errorLevel, new DataValue(new Variant(highestErrorLevel.name())));
+                parseErrorCodes(execCommand("EV"));
             } catch (IOException e) {
                 log.debug("[{}]: Error reading error codes", device.getName(), e);
-                variableValues.put(errorLevel, new DataValue(StatusCodes.Bad_InternalError));
-                variableValues.put(errorCodes, new DataValue(StatusCodes.Bad_InternalError));
-                variableValues.put(errorNames, new DataValue(StatusCodes.Bad_InternalError));
+                variableValues.put(errorLevel, DataValues.BAD_INTERNAL_ERROR);
+                variableValues.put(errorCodes, DataValues.BAD_INTERNAL_ERROR);
+                variableValues.put(errorNames, DataValues.BAD_INTERNAL_ERROR);
             }
         }
         // Read system status
         if (!Collections.disjoint(readVariables, systemStatusVariables)) {
             try {
-                var systemStatusCodeString = execCommand("SB");
-                var systemStatusCodeSplit = systemStatusCodeString.split(Pattern.quote(","), -1);
-                var systemStatusCodeValue = Integer.parseInt(systemStatusCodeSplit[1]);
-                var systemStatusName = KeyenceDriverCodes.getSystemStatusCode(systemStatusCodeValue);
-                variableValues.put(systemStatusCode, new DataValue(new Variant(systemStatusCodeValue)));
-                variableValues.put(systemStatusNames, new DataValue(new Variant(systemStatusName.getName())));
+                parseSystemStatus(execCommand("SB"));
             } catch (IOException e) {
                 log.debug("[{}]: Error reading system status", device.getName(), e);
-                variableValues.put(systemStatusCode, new DataValue(StatusCodes.Bad_InternalError));
-                variableValues.put(systemStatusNames, new DataValue(StatusCodes.Bad_InternalError));
+                variableValues.put(systemStatusCode, DataValues.BAD_INTERNAL_ERROR);
+                variableValues.put(systemStatusNames, DataValues.BAD_INTERNAL_ERROR);
             }
         }
         if (readVariables.contains(lineSpeed) || writeVariables.contains(lineSpeed)) {
@@ -150,7 +129,7 @@ public class KeyenceDriver implements DeviceDriver {
                 var globalSettings = execCommand("FL", "CMN", "0");
                 var globalSettingsSplit = globalSettings.split(Pattern.quote(","), -1);
                 var lineSpeedValue = (double) Integer.parseInt(globalSettingsSplit[10]) / 10.0;
-                variableValues.put(lineSpeed, new DataValue(new Variant(lineSpeedValue)));
+                variableValues.put(lineSpeed, DataValues.of(lineSpeedValue));
                 var writeRequests = requestQueue.stream()
                         .filter(request -> request instanceof DeviceRequest.WriteRequest)
                         .filter(request -> lineSpeed.equals(((DeviceRequest.WriteRequest) request).getVariable()))
@@ -169,7 +148,7 @@ public class KeyenceDriver implements DeviceDriver {
                         if (!result.equals("")) {
                             throw new IOException("Error writing line speed: unexpected response \"" + result + "\"");
                         }
-                        variableValues.put(lineSpeed, new DataValue(new Variant(lineSpeedValueToWrite)));
+                        variableValues.put(lineSpeed, DataValues.of(lineSpeedValueToWrite));
                         listener.completeWriteRequestExceptionally(writeRequest);
                     } catch (IOException e) {
                         log.debug("[{}]: Error writing line speed", device.getName(), e);
@@ -178,7 +157,7 @@ public class KeyenceDriver implements DeviceDriver {
                 }
             } catch (IOException e) {
                 log.debug("[{}]: Error reading line speed", device.getName(), e);
-                variableValues.put(lineSpeed, new DataValue(StatusCodes.Bad_InternalError));
+                variableValues.put(lineSpeed, DataValues.BAD_INTERNAL_ERROR);
             }
         }
         // read time with DB command
@@ -191,10 +170,10 @@ public class KeyenceDriver implements DeviceDriver {
                 }
                 var timeStringISO6801 = "20" + timeSplit[1] + "-" + timeSplit[2] + "-" + timeSplit[3] + "T"
                         + timeSplit[4] + ":" + timeSplit[5] + ":" + timeSplit[6];
-                variableValues.put(time, new DataValue(new Variant(timeStringISO6801)));
+                variableValues.put(time, DataValues.of(timeStringISO6801));
             } catch (IOException e) {
                 log.debug("[{}]: Error reading time", device.getName(), e);
-                variableValues.put(time, new DataValue(StatusCodes.Bad_InternalError));
+                variableValues.put(time, DataValues.BAD_INTERNAL_ERROR);
             }
         }
         // read current program with FR command
@@ -206,19 +185,19 @@ public class KeyenceDriver implements DeviceDriver {
                     throw new IOException("Unexpected response \"" + programString + "\"");
                 }
                 var programNumber = Integer.parseInt(programSplit[1]);
-                variableValues.put(currentProgram, new DataValue(new Variant(programNumber)));
+                variableValues.put(currentProgram, DataValues.of(programNumber));
                 if (readVariables.contains(lastPrinted)) {
                     var lastPrintedString = execCommand("UZ", Integer.toString(programNumber), "0");
                     var lastPrintedSplit = lastPrintedString.split(Pattern.quote(","), -1);
                     if (lastPrintedSplit.length != 4) {
                         throw new IOException("Unexpected response \"" + Arrays.toString(lastPrintedSplit) + "\"");
                     }
-                    variableValues.put(lastPrinted, new DataValue(new Variant(lastPrintedSplit[3])));
+                    variableValues.put(lastPrinted, DataValues.of(lastPrintedSplit[3]));
                 }
             } catch (IOException | NumberFormatException e) {
                 log.debug("[{}]: Error reading current program", device.getName(), e);
-                variableValues.put(currentProgram, new DataValue(StatusCodes.Bad_InternalError));
-                variableValues.put(lastPrinted, new DataValue(StatusCodes.Bad_InternalError));
+                variableValues.put(currentProgram, DataValues.BAD_INTERNAL_ERROR);
+                variableValues.put(lastPrinted, DataValues.BAD_INTERNAL_ERROR);
             }
         }
         // Answer read requests with variableValues
@@ -228,12 +207,46 @@ public class KeyenceDriver implements DeviceDriver {
                     var value = variableValues.get(((DeviceRequest.ReadRequest) request).getVariable());
                     listener.completeReadRequest(
                             (DeviceRequest.ReadRequest) request,
-                            Objects.requireNonNullElseGet(
-                                    value,
-                                    () -> new DataValue(Variant.NULL_VALUE, new StatusCode(StatusCodes.Bad_NoData))));
+                            Objects.requireNonNullElse(value, DataValues.BAD_NO_DATA));
                 });
     }
 
+    /**
+     * Stores the error codes, their names and the highest error level from the response to the "EV" command.
+     */
+    public void parseErrorCodes(String errorCodesString) {
+        var errorCodesSplit = errorCodesString.split(Pattern.quote(","), -1);
+        KeyenceDriverCodes.ErrorLevel highestErrorLevel = KeyenceDriverCodes.ErrorLevel.OK;
+        StringBuilder errorCodesBuilder = new StringBuilder(), errorNamesBuilder = new StringBuilder();
+        for (int i = 1; i < errorCodesSplit.length; i++) {
+            if (i > 1) {
+                errorCodesBuilder.append(",");
+                errorNamesBuilder.append(",");
+            }
+            var errorCode = Integer.parseInt(errorCodesSplit[i]);
+            var error = KeyenceDriverCodes.getSystemErrorCode(errorCode);
+            if (error.getLevel().compareTo(highestErrorLevel) > 0) {
+                highestErrorLevel = error.getLevel();
+            }
+            errorCodesBuilder.append(errorCode);
+            errorNamesBuilder.append(error.getName());
+        }
+        variableValues.put(errorCodes, DataValues.of(errorCodesBuilder.toString()));
+        variableValues.put(errorNames, DataValues.of(errorNamesBuilder.toString()));
+        variableValues.put(errorLevel, DataValues.of(highestErrorLevel.name()));
+    }
+
+    /**
+     * Stores the system status code and its name from the response to the "SB" command.
+     */
+    public void parseSystemStatus(String systemStatusCodeString) {
+        var systemStatusCodeSplit = systemStatusCodeString.split(Pattern.quote(","), -1);
+        var systemStatusCodeValue = Integer.parseInt(systemStatusCodeSplit[1]);
+        var systemStatusName = KeyenceDriverCodes.getSystemStatusCode(systemStatusCodeValue);
+        variableValues.put(systemStatusCode, DataValues.of(systemStatusCodeValue));
+        variableValues.put(systemStatusNames, DataValues.of(systemStatusName.getName()));
+    }
+
     private String execCommand(String command, String... parameters) throws IOException {
         StringBuilder stringBuilder = new StringBuilder();
         stringBuilder.append(command);
@@ -242,20 +255,32 @@ public class KeyenceDriver implements DeviceDriver {
             stringBuilder.append(parameter);
         }
         log.trace("[{}]: Executing command \"{}\"", device.getName(), stringBuilder);
+        long start = System.nanoTime();
         writer.write(stringBuilder + "\r");
         writer.flush();
         String result = null;
         try {
             result = reader.readLine();
         } catch (IOException e) {
-            disconnect();
+            disconnectAfterError();
             throw e;
         }
+        commandTimers
+                .computeIfAbsent(command, c -> DriverMetrics.commandTimer(device, c))
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
         log.trace("[{}]: Received response \"{}\"", device.getName(), result);
         if (result == null) {
-            disconnect();
+            disconnectAfterError();
             throw new IOException("Unexpected end of stream");
-        } else if (result.startsWith(command)) {
+        }
+        return parseResponse(command, result);
+    }
+
+    /**
+     * Strips the echoed command from a response line, or throws an exception if the device returned an error.
+     */
+    public static String parseResponse(String command, String result) throws IOException {
+        if (result.startsWith(command)) {
             return result.substring(command.length());
         } else if (result.startsWith("ER")) {
             var split = result.split(Pattern.quote(","), -1);
@@ -272,7 +297,37 @@ public class KeyenceDriver implements DeviceDriver {
     private PrintWriter writer = null;
     private BufferedReader reader = null;
 
-    private void disconnect() {
+    @Override
+    public void close() {
+        try {
+            if (socket != null) {
+                socket.close();
+            }
+        } catch (IOException e) {
+            log.trace("[{}]: Error closing socket", device.getName(), e);
+        }
+    }
+
+    /**
+     * Requests the system status, which is the cheapest command.
+     */
+    @Override
+    public boolean keepAlive() {
+        if (isConnected()) {
+            try {
+                execCommand("SB");
+                return true;
+            } catch (IOException e) {
+                log.trace("[{}]: Keep-alive failed", device.getName(), e);
+                // execCommand already disconnected if the connection was lost
+                return isConnected() || connect();
+            }
+        }
+        return connect();
+    }
+
+    @Override
+    public void disconnect() {
         try {
             if(socket != null) {
                 socket.close();
@@ -281,19 +336,29 @@ public class KeyenceDriver implements DeviceDriver {
             log.trace("[{}]: Error closing socket", device.getName(), e);
         }
         socket = null;
-        // As this method usually only gets called when an error occurs, wait a bit before trying to reconnect.
+    }
+
+    private void disconnectAfterError() {
+        disconnect();
+        // Wait a bit before trying to reconnect after an error
         try {
             Thread.sleep(timeout);
         } catch (InterruptedException ignored) {
         }
     }
 
-    private boolean ensureConnected() {
+    @Override
+    public boolean isConnected() {
+        return socket != null && socket.isConnected() && !socket.isClosed();
+    }
+
+    @Override
+    public boolean connect() {
         if (socket != null) {
-            if (socket.isConnected() && !socket.isClosed()) {
+            if (isConnected()) {
                 return true;
             } else {
-                disconnect();
+                disconnectAfterError();
             }
         }
         try {
@@ -309,7 +374,7 @@ public class KeyenceDriver implements DeviceDriver {
         } catch (IOException e) {
             log.trace("[{}]: Error connecting to device", device.getName(), e);
             // cooldown
-            disconnect();
+            disconnectAfterError();
             return false;
         }
     }
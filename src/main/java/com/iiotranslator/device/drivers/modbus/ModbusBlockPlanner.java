@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.device.drivers.modbus;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Merges the registers of the requested values into as few block reads as possible.
+ */
+final class ModbusBlockPlanner {
+    /**
+     * The maximum number of registers that can be read with a single request.
+     */
+    static final int MAX_REGISTERS = 125;
+
+    /**
+     * A contiguous range of registers that is read with one request, and the values within it.
+     */
+    record Block(ModbusRegister.Table table, int start, int count, List<ModbusRegister> values) {}
+
+    private ModbusBlockPlanner() {
+        // This class is not meant to be instantiated.
+    }
+
+    /**
+     * Sorts the values by table and address, and adds each value to the current block while the block stays within
+     * {@link #MAX_REGISTERS} and the value starts at most maxGap registers after the end of the block. As every block
+     * extends as far as possible, this results in the fewest blocks.
+     *
+     * @param maxGap the number of unrequested registers that may be read to merge two blocks
+     */
+    static List<Block> plan(Collection<ModbusRegister> values, int maxGap) {
+        var sorted = new ArrayList<>(values);
+        sorted.sort(Comparator.comparing(ModbusRegister::table).thenComparingInt(ModbusRegister::address));
+        var blocks = new ArrayList<Block>();
+        List<ModbusRegister> current = null;
+        ModbusRegister.Table table = null;
+        int start = 0, end = 0;
+        for (var value : sorted) {
+            if (current != null
+                    && value.table() == table
+                    && value.address() <= end + maxGap
+                    && Math.max(end, value.end()) - start <= MAX_REGISTERS) {
+                current.add(value);
+                end = Math.max(end, value.end());
+                continue;
+            }
+            if (current != null) {
+                blocks.add(new Block(table, start, end - start, current));
+            }
+            current = new ArrayList<>();
+            current.add(value);
+            table = value.table();
+            start = value.address();
+            end = value.end();
+        }
+        if (current != null) {
+            blocks.add(new Block(table, start, end - start, current));
+        }
+        return blocks;
+    }
+}
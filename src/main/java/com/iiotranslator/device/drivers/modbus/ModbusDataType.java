@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.device.drivers.modbus;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.eclipse.milo.opcua.stack.core.Identifiers;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.Unsigned;
+
+/**
+ * The data types that a value can be stored as in one or more consecutive registers. The bytes of each register are
+ * big-endian, as defined by Modbus, while the order of the registers of a multi-register value differs between devices
+ * and is given by the "wordOrder" device option.
+ * <p>
+ * Values are decoded from and encoded into the buffer of a whole request or response using absolute offsets, so that
+ * reading many values from one block does not copy the block.
+ */
+@Getter
+@RequiredArgsConstructor
+enum ModbusDataType {
+    BOOL(1, Identifiers.Boolean),
+    INT16(1, Identifiers.Int16),
+    UINT16(1, Identifiers.UInt16),
+    INT32(2, Identifiers.Int32),
+    UINT32(2, Identifiers.UInt32),
+    INT64(4, Identifiers.Int64),
+    FLOAT32(2, Identifiers.Float),
+    FLOAT64(4, Identifiers.Double),
+    /**
+     * ASCII text with two characters per register and a length given by the definition, padded with NUL characters.
+     */
+    STRING(0, Identifiers.String);
+
+    /**
+     * The number of registers of a value, or 0 if it is given by the register definition.
+     */
+    private final int registers;
+
+    private final NodeId opcType;
+
+    /**
+     * Decodes the value that starts at the given offset of the buffer.
+     *
+     * @param registers  the number of registers of the value
+     * @param swapWords  whether the low register of a multi-register value comes first
+     */
+    Object decode(ByteBuffer buffer, int offset, int registers, boolean swapWords) {
+        return switch (this) {
+            case BOOL -> buffer.getShort(offset) != 0;
+            case INT16 -> buffer.getShort(offset);
+            case UINT16 -> Unsigned.ushort(buffer.getShort(offset) & 0xFFFF);
+            case INT32 -> getInt(buffer, offset, swapWords);
+            case UINT32 -> Unsigned.uint(getInt(buffer, offset, swapWords));
+            case INT64 -> getLong(buffer, offset, swapWords);
+            case FLOAT32 -> Float.intBitsToFloat(getInt(buffer, offset, swapWords));
+            case FLOAT64 -> Double.longBitsToDouble(getLong(buffer, offset, swapWords));
+            case STRING -> {
+                int length = 0;
+                while (length < registers * 2 && buffer.get(offset + length) != 0) {
+                    length++;
+                }
+                yield new String(buffer.array(), buffer.arrayOffset() + offset, length, StandardCharsets.US_ASCII);
+            }
+        };
+    }
+
+    /**
+     * Encodes a value at the given offset of the buffer, converting numbers to this type.
+     *
+     * @throws IllegalArgumentException if the value cannot be converted to this type
+     */
+    void encode(ByteBuffer buffer, int offset, int registers, boolean swapWords, Object value) {
+        switch (this) {
+            case BOOL -> buffer.putShort(offset, (short) (toBoolean(value) ? 1 : 0));
+            case INT16, UINT16 -> buffer.putShort(
+                    offset, (short) toNumber(value).intValue());
+            case INT32, UINT32 -> putInt(
+                    buffer, offset, swapWords, (int) toNumber(value).longValue());
+            case INT64 -> putLong(buffer, offset, swapWords, toNumber(value).longValue());
+            case FLOAT32 -> putInt(
+                    buffer,
+                    offset,
+                    swapWords,
+                    Float.floatToIntBits(toNumber(value).floatValue()));
+            case FLOAT64 -> putLong(
+                    buffer,
+                    offset,
+                    swapWords,
+                    Double.doubleToLongBits(toNumber(value).doubleValue()));
+            case STRING -> {
+                if (!(value instanceof String text)) {
+                    throw new IllegalArgumentException("Not a text: " + value);
+                }
+                var bytes = text.getBytes(StandardCharsets.US_ASCII);
+                if (bytes.length > registers * 2) {
+                    throw new IllegalArgumentException(
+                            "Text is longer than " + registers * 2 + " characters: " + value);
+                }
+                for (int i = 0; i < registers * 2; i++) {
+                    buffer.put(offset + i, i < bytes.length ? bytes[i] : 0);
+                }
+            }
+        }
+    }
+
+    private static int getInt(ByteBuffer buffer, int offset, boolean swapWords) {
+        if (!swapWords) {
+            return buffer.getInt(offset);
+        }
+        return (buffer.getShort(offset + 2) << 16) | (buffer.getShort(offset) & 0xFFFF);
+    }
+
+    private static long getLong(ByteBuffer buffer, int offset, boolean swapWords) {
+        if (!swapWords) {
+            return buffer.getLong(offset);
+        }
+        long value = 0;
+        for (int i = 3; i >= 0; i--) {
+            value = (value << 16) | (buffer.getShort(offset + i * 2) & 0xFFFF);
+        }
+        return value;
+    }
+
+    private static void putInt(ByteBuffer buffer, int offset, boolean swapWords, int value) {
+        if (!swapWords) {
+            buffer.putInt(offset, value);
+        } else {
+            buffer.putShort(offset, (short) value);
+            buffer.putShort(offset + 2, (short) (value >>> 16));
+        }
+    }
+
+    private static void putLong(ByteBuffer buffer, int offset, boolean swapWords, long value) {
+        if (!swapWords) {
+            buffer.putLong(offset, value);
+        } else {
+            for (int i = 0; i < 4; i++) {
+                buffer.putShort(offset + i * 2, (short) (value >>> (16 * i)));
+            }
+        }
+    }
+
+    private static Number toNumber(Object value) {
+        if (value instanceof Number number) {
+            return number;
+        } else if (value instanceof Boolean bool) {
+            return bool ? 1 : 0;
+        }
+        throw new IllegalArgumentException("Not a number: " + value);
+    }
+
+    private static boolean toBoolean(Object value) {
+        if (value instanceof Boolean bool) {
+            return bool;
+        } else if (value instanceof Number number) {
+            return number.longValue() != 0;
+        }
+        throw new IllegalArgumentException("Not a boolean: " + value);
+    }
+}
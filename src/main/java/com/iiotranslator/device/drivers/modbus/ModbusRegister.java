@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.device.drivers.modbus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A value in the register map of a device, which is exposed as a variable.
+ *
+ * @param name      the name of the variable, where slashes separate the names of the folders that contain it
+ * @param table     the table that the registers are read from
+ * @param address   the protocol address of the first register, starting at 0, i.e. holding register 40001 has the
+ *                  address 0
+ * @param registers the number of registers of the value
+ * @param writable  whether the value can be written, which is only possible for holding registers
+ */
+record ModbusRegister(String name, Table table, int address, ModbusDataType type, int registers, boolean writable) {
+    /**
+     * The maximum number of registers that can be written with a single request.
+     */
+    static final int MAX_WRITE_REGISTERS = 123;
+
+    /**
+     * The register tables, with the function codes that read them.
+     */
+    enum Table {
+        HOLDING(3),
+        INPUT(4);
+
+        final int readFunction;
+
+        Table(int readFunction) {
+            this.readFunction = readFunction;
+        }
+    }
+
+    /**
+     * Parses a definition of the form {@code <name>=<table> <address> <type> [rw]}, e.g.
+     * {@code Zone 1/Temperature=input 0 float32} or {@code Setpoint=holding 10 int16 rw}. The type of text values
+     * includes their length in registers, e.g. {@code string8} for up to 16 characters.
+     *
+     * @throws IllegalArgumentException if the definition is invalid
+     */
+    static ModbusRegister parse(String definition) {
+        int separator = definition.indexOf('=');
+        var name = definition.substring(0, Math.max(separator, 0)).trim();
+        var fields = definition.substring(separator + 1).trim().split("\\s+");
+        if (name.isEmpty() || fields.length < 3 || fields.length > 4) {
+            throw new IllegalArgumentException("Invalid Modbus register definition \"" + definition
+                    + "\", must be <name>=<holding|input> <address> <type> [rw]");
+        }
+        try {
+            var table = Table.valueOf(fields[0].toUpperCase(Locale.ROOT));
+            int address = Integer.parseInt(fields[1]);
+            var typeName = fields[2].toUpperCase(Locale.ROOT);
+            ModbusDataType type;
+            int registers;
+            if (typeName.startsWith("STRING")) {
+                type = ModbusDataType.STRING;
+                registers = Integer.parseInt(typeName.substring("STRING".length()));
+            } else {
+                type = ModbusDataType.valueOf(typeName);
+                registers = type.getRegisters();
+            }
+            boolean writable = fields.length == 4;
+            if (writable && !fields[3].equalsIgnoreCase("rw")) {
+                throw new IllegalArgumentException("Unknown flag " + fields[3]);
+            }
+            if (writable && table != Table.HOLDING) {
+                throw new IllegalArgumentException("Only holding registers can be written");
+            }
+            if (address < 0
+                    || registers < 1
+                    || registers > ModbusBlockPlanner.MAX_REGISTERS
+                    || address + registers > 0x10000) {
+                throw new IllegalArgumentException("Address or length out of range");
+            }
+            if (writable && registers > MAX_WRITE_REGISTERS) {
+                throw new IllegalArgumentException(
+                        "Writable values can be at most " + MAX_WRITE_REGISTERS + " registers long");
+            }
+            return new ModbusRegister(name, table, address, type, registers, writable);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(
+                    "Invalid Modbus register definition \"" + definition + "\": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Parses definitions separated by line breaks or semicolons, ignoring empty lines and comments starting with #.
+     */
+    static List<ModbusRegister> parseAll(String definitions) {
+        var registers = new ArrayList<ModbusRegister>();
+        for (var line : definitions.split("[;\r\n]")) {
+            line = line.trim();
+            if (!line.isEmpty() && !line.startsWith("#")) {
+                registers.add(parse(line));
+            }
+        }
+        return registers;
+    }
+
+    /**
+     * The address after the last register of the value.
+     */
+    int end() {
+        return address + registers;
+    }
+}
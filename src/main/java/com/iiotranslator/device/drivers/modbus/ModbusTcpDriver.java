@@ -0,0 +1,385 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.device.drivers.modbus;
+
+import com.iiotranslator.device.Device;
+import com.iiotranslator.device.DeviceRequest;
+import com.iiotranslator.device.DeviceRequestCompletionListener;
+import com.iiotranslator.device.drivers.ConnectableDeviceDriver;
+import com.iiotranslator.opc.DataValues;
+import com.iiotranslator.opc.FolderNode;
+import com.iiotranslator.opc.VariableNode;
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+
+/*
+ * This driver supports devices with a Modbus TCP interface, whose register map is given by the device options, see
+ * docs/drivers/Modbus.md.
+ */
+@Slf4j
+public class ModbusTcpDriver implements ConnectableDeviceDriver {
+    private static final int HEADER_LENGTH = 7;
+    /**
+     * The maximum length of a Modbus TCP frame, i.e. the header and a PDU of at most 253 bytes.
+     */
+    private static final int MAX_FRAME_LENGTH = HEADER_LENGTH + 253;
+
+    private static final int WRITE_MULTIPLE_REGISTERS = 16;
+    private static final int EXCEPTION = 0x80;
+    private static final int ILLEGAL_FUNCTION = 1, ILLEGAL_DATA_ADDRESS = 2;
+
+    private Device device;
+    private int timeout, unitId, maxGap, maxInFlight;
+    private boolean swapWords;
+
+    private final Map<VariableNode, ModbusRegister> registers = new HashMap<>();
+
+    // Reused for all frames, the values are decoded directly from the response buffer
+    private final ByteBuffer requestBuffer = ByteBuffer.allocate(MAX_FRAME_LENGTH);
+    private final ByteBuffer responseBuffer = ByteBuffer.allocate(MAX_FRAME_LENGTH);
+    private int transactionId;
+
+    @Override
+    public void initialize(Device device, FolderNode folder) {
+        this.device = device;
+        this.timeout = Integer.parseInt(device.getOptionOrDefault("timeout", "2000"));
+        this.unitId = Integer.parseInt(device.getOptionOrDefault("unitId", "1"));
+        this.maxGap = Integer.parseInt(device.getOptionOrDefault("maxGap", "16"));
+        this.maxInFlight = Integer.parseInt(device.getOptionOrDefault("maxInFlight", "4"));
+        var wordOrder = device.getOptionOrDefault("wordOrder", "big");
+        if (unitId < 0 || unitId > 255 || maxGap < 0 || maxInFlight < 1) {
+            throw new IllegalArgumentException("Device " + device.getName()
+                    + " must have a unitId between 0 and 255, a non-negative maxGap and a positive maxInFlight");
+        }
+        if (!wordOrder.equalsIgnoreCase("big") && !wordOrder.equalsIgnoreCase("little")) {
+            throw new IllegalArgumentException("Device " + device.getName() + " has an invalid wordOrder option \""
+                    + wordOrder + "\", must be big or little");
+        }
+        swapWords = wordOrder.equalsIgnoreCase("little");
+
+        var definitions = new ArrayList<ModbusRegister>();
+        var registerFile = device.getOptionOrDefault("registerFile", null);
+        if (registerFile != null) {
+            try {
+                definitions.addAll(
+                        ModbusRegister.parseAll(Files.readString(Path.of(registerFile), StandardCharsets.UTF_8)));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read the register file of device " + device.getName(), e);
+            }
+        }
+        definitions.addAll(ModbusRegister.parseAll(device.getOptionOrDefault("registers", "")));
+        if (definitions.isEmpty()) {
+            throw new IllegalArgumentException("Device " + device.getName()
+                    + " has no Modbus registers, set the registers or registerFile option");
+        }
+
+        // Each folder's variables are added at once
+        var folderDefinitions = new LinkedHashMap<FolderNode, List<ModbusRegister>>();
+        for (var definition : definitions) {
+            var parent = folder;
+            var path = definition.name().split("/");
+            for (int i = 0; i < path.length - 1; i++) {
+                parent = parent.getChild(path[i]) instanceof FolderNode child ? child : parent.addFolder(path[i]);
+            }
+            folderDefinitions.computeIfAbsent(parent, f -> new ArrayList<>()).add(definition);
+        }
+        folderDefinitions.forEach((parent, folderRegisters) -> {
+            var variables = parent.addVariables(folderRegisters.stream()
+                    .map(register -> {
+                        var name = register.name().substring(register.name().lastIndexOf('/') + 1);
+                        return register.writable()
+                                ? FolderNode.VariableDefinition.readWrite(
+                                        name, register.type().getOpcType())
+                                : FolderNode.VariableDefinition.readOnly(
+                                        name, register.type().getOpcType());
+                    })
+                    .toList());
+            for (int i = 0; i < variables.size(); i++) {
+                registers.put(variables.get(i), folderRegisters.get(i));
+            }
+        });
+    }
+
+    @Override
+    public void process(List<DeviceRequest> requestQueue, DeviceRequestCompletionListener listener) {
+        boolean connected = connect();
+        var readRegisters = new LinkedHashSet<ModbusRegister>();
+        // Writes are sent first, so that the reads in the same batch see the written values
+        for (var request : requestQueue) {
+            if (request instanceof DeviceRequest.WriteRequest writeRequest) {
+                if (connected && isConnected()) {
+                    write(writeRequest, listener);
+                } else {
+                    listener.completeWriteRequestExceptionally(writeRequest, new IOException("Not connected"));
+                }
+            } else if (request instanceof DeviceRequest.ReadRequest readRequest) {
+                var register = registers.get(readRequest.getVariable());
+                if (register != null) {
+                    readRegisters.add(register);
+                }
+            }
+        }
+        Map<ModbusRegister, DataValue> values =
+                connected && isConnected() && !readRegisters.isEmpty() ? read(readRegisters) : Map.of();
+        for (var request : requestQueue) {
+            if (request instanceof DeviceRequest.ReadRequest readRequest) {
+                var register = registers.get(readRequest.getVariable());
+                listener.completeReadRequest(
+                        readRequest,
+                        register == null
+                                ? DataValues.BAD_NOT_SUPPORTED
+                                : values.getOrDefault(register, DataValues.BAD_NO_COMMUNICATION));
+            }
+        }
+    }
+
+    /**
+     * Reads the values in as few blocks as possible. Up to maxInFlight requests are sent before waiting for the first
+     * response, and the responses are matched to their requests by their transaction id.
+     */
+    private Map<ModbusRegister, DataValue> read(Collection<ModbusRegister> requested) {
+        var values = new HashMap<ModbusRegister, DataValue>();
+        var pending = new ArrayDeque<>(ModbusBlockPlanner.plan(requested, maxGap));
+        var inFlight = new HashMap<Integer, ModbusBlockPlanner.Block>();
+        try {
+            while (!pending.isEmpty() || !inFlight.isEmpty()) {
+                while (!pending.isEmpty() && inFlight.size() < maxInFlight) {
+                    var block = pending.poll();
+                    inFlight.put(sendRead(block), block);
+                }
+                out.flush();
+                int id = receive();
+                var block = inFlight.remove(id);
+                if (block == null) {
+                    throw new IOException("Response with unexpected transaction id " + id);
+                }
+                int function = responseBuffer.get(HEADER_LENGTH) & 0xFF;
+                if (function == (block.table().readFunction | EXCEPTION)) {
+                    int code = responseBuffer.get(HEADER_LENGTH + 1);
+                    if (code == ILLEGAL_DATA_ADDRESS && block.values().size() > 1) {
+                        // The block spans registers that the device does not have, read the values separately
+                        if (maxGap > 0) {
+                            log.info(
+                                    "[{}]: Device rejected a read spanning unmapped registers, no longer merging"
+                                            + " reads across gaps",
+                                    device.getName());
+                            maxGap = 0;
+                        }
+                        block.values()
+                                .forEach(value -> pending.add(new ModbusBlockPlanner.Block(
+                                        value.table(), value.address(), value.registers(), List.of(value))));
+                    } else {
+                        log.debug("[{}]: Device returned exception code {} for {}", device.getName(), code, block);
+                        var status = code == ILLEGAL_FUNCTION || code == ILLEGAL_DATA_ADDRESS
+                                ? DataValues.BAD_NOT_SUPPORTED
+                                : DataValues.BAD_COMMUNICATION_ERROR;
+                        block.values().forEach(value -> values.put(value, status));
+                    }
+                    continue;
+                }
+                if (function != block.table().readFunction
+                        || responseBuffer.limit() != HEADER_LENGTH + 2 + block.count() * 2) {
+                    throw new IOException("Unexpected response to " + block);
+                }
+                for (var value : block.values()) {
+                    int offset = HEADER_LENGTH + 2 + (value.address() - block.start()) * 2;
+                    values.put(
+                            value,
+                            DataValues.of(value.type().decode(responseBuffer, offset, value.registers(), swapWords)));
+                }
+            }
+        } catch (IOException e) {
+            log.debug("[{}]: Error reading from device", device.getName(), e);
+            var status =
+                    e instanceof SocketTimeoutException ? DataValues.BAD_TIMEOUT : DataValues.BAD_COMMUNICATION_ERROR;
+            inFlight.values().forEach(block -> block.values().forEach(value -> values.put(value, status)));
+            pending.forEach(block -> block.values().forEach(value -> values.put(value, status)));
+            disconnectAfterError();
+        }
+        return values;
+    }
+
+    private void write(DeviceRequest.WriteRequest request, DeviceRequestCompletionListener listener) {
+        var register = registers.get(request.getVariable());
+        if (register == null || !register.writable()) {
+            listener.completeWriteRequestExceptionally(request, new IOException("Register is not writable"));
+            return;
+        }
+        try {
+            int id = nextTransactionId();
+            requestBuffer.clear();
+            requestBuffer
+                    .putShort((short) id)
+                    .putShort((short) 0)
+                    .putShort((short) (7 + register.registers() * 2))
+                    .put((byte) unitId)
+                    .put((byte) WRITE_MULTIPLE_REGISTERS)
+                    .putShort((short) register.address())
+                    .putShort((short) register.registers())
+                    .put((byte) (register.registers() * 2));
+            register.type()
+                    .encode(
+                            requestBuffer,
+                            requestBuffer.position(),
+                            register.registers(),
+                            swapWords,
+                            request.getValue().getValue().getValue());
+            log.trace("[{}]: Writing {}", device.getName(), register);
+            out.write(requestBuffer.array(), 0, requestBuffer.position() + register.registers() * 2);
+            out.flush();
+            if (receive() != id) {
+                throw new IOException("Response with unexpected transaction id");
+            }
+            int function = responseBuffer.get(HEADER_LENGTH) & 0xFF;
+            if (function == (WRITE_MULTIPLE_REGISTERS | EXCEPTION)) {
+                listener.completeWriteRequestExceptionally(
+                        request,
+                        new IOException("Device returned exception code " + responseBuffer.get(HEADER_LENGTH + 1)));
+                return;
+            } else if (function != WRITE_MULTIPLE_REGISTERS) {
+                throw new IOException("Unexpected response to write of " + register);
+            }
+            listener.completeWriteRequestExceptionally(request);
+        } catch (RuntimeException e) {
+            // E.g. the value does not fit the register
+            listener.completeWriteRequestExceptionally(request, e);
+        } catch (IOException e) {
+            log.debug("[{}]: Error writing to device", device.getName(), e);
+            listener.completeWriteRequestExceptionally(request, e);
+            disconnectAfterError();
+        }
+    }
+
+    /**
+     * Appends a request for the block to the output stream, without flushing it.
+     *
+     * @return the transaction id of the request
+     */
+    private int sendRead(ModbusBlockPlanner.Block block) throws IOException {
+        int id = nextTransactionId();
+        requestBuffer.clear();
+        requestBuffer
+                .putShort((short) id)
+                .putShort((short) 0)
+                .putShort((short) 6)
+                .put((byte) unitId)
+                .put((byte) block.table().readFunction)
+                .putShort((short) block.start())
+                .putShort((short) block.count());
+        out.write(requestBuffer.array(), 0, requestBuffer.position());
+        return id;
+    }
+
+    /**
+     * Reads the next frame into the response buffer, whose limit is set to the end of the frame.
+     *
+     * @return the transaction id of the frame
+     */
+    private int receive() throws IOException {
+        var frame = responseBuffer.array();
+        in.readFully(frame, 0, HEADER_LENGTH);
+        int length = responseBuffer.getShort(4) & 0xFFFF;
+        if (responseBuffer.getShort(2) != 0 || length < 3 || HEADER_LENGTH - 1 + length > MAX_FRAME_LENGTH) {
+            throw new IOException("Invalid Modbus TCP frame header");
+        }
+        in.readFully(frame, HEADER_LENGTH, length - 1);
+        responseBuffer.clear().limit(HEADER_LENGTH - 1 + length);
+        return responseBuffer.getShort(0) & 0xFFFF;
+    }
+
+    private int nextTransactionId() {
+        transactionId = (transactionId + 1) & 0xFFFF;
+        return transactionId;
+    }
+
+    /**
+     * Reads one of the registers, which is the cheapest request.
+     */
+    @Override
+    public boolean keepAlive() {
+        if (isConnected()) {
+            read(List.of(registers.values().iterator().next()));
+            // read() already disconnected if the connection was lost
+            return isConnected() || connect();
+        }
+        return connect();
+    }
+
+    private Socket socket = null;
+    private DataInputStream in = null;
+    private OutputStream out = null;
+
+    @Override
+    public void close() {
+        disconnect();
+    }
+
+    @Override
+    public void disconnect() {
+        if (socket == null) {
+            return;
+        }
+        try {
+            socket.close();
+        } catch (IOException e) {
+            log.trace("[{}]: Error closing socket", device.getName(), e);
+        }
+        socket = null;
+    }
+
+    private void disconnectAfterError() {
+        disconnect();
+        // Wait a bit before trying to reconnect after an error
+        try {
+            Thread.sleep(timeout);
+        } catch (InterruptedException e) {
+            // The driver thread is being stopped
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isConnected() {
+        return socket != null && socket.isConnected() && !socket.isClosed();
+    }
+
+    @Override
+    public boolean connect() {
+        if (socket != null) {
+            if (isConnected()) {
+                return true;
+            } else {
+                disconnectAfterError();
+            }
+        }
+        try {
+            socket = new Socket();
+            socket.setSoTimeout(timeout);
+            socket.setTcpNoDelay(true);
+            socket.connect(
+                    new InetSocketAddress(
+                            device.getOption("hostname"), Integer.parseInt(device.getOptionOrDefault("port", "502"))),
+                    timeout);
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            out = new BufferedOutputStream(socket.getOutputStream());
+            log.trace("[{}]: Connected to device", device.getName());
+            return true;
+        } catch (IOException e) {
+            log.trace("[{}]: Error connecting to device", device.getName(), e);
+            // cooldown
+            disconnectAfterError();
+            return false;
+        }
+    }
+}
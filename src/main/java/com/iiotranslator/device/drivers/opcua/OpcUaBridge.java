@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.device.drivers.opcua;
+
+import static org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.Unsigned.uint;
+
+import com.iiotranslator.opc.FolderNode;
+import com.iiotranslator.opc.VariableNode;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
+import org.eclipse.milo.opcua.sdk.client.api.identity.IdentityProvider;
+import org.eclipse.milo.opcua.sdk.client.nodes.UaNode;
+import org.eclipse.milo.opcua.sdk.client.nodes.UaVariableNode;
+import org.eclipse.milo.opcua.stack.core.Identifiers;
+import org.eclipse.milo.opcua.stack.core.UaException;
+import org.eclipse.milo.opcua.stack.core.security.SecurityPolicy;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.LocalizedText;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.NodeClass;
+import org.eclipse.milo.opcua.stack.core.util.EndpointUtil;
+
+/**
+ * Connects to another OPC UA server and mirrors a part of its address space, shared by the drivers that bridge another
+ * server into this one, i.e. the {@link OpcUaClientDriver} and the cluster's ShardProxyDriver.
+ */
+public final class OpcUaBridge {
+    private OpcUaBridge() {
+        // This class is not meant to be instantiated.
+    }
+
+    /**
+     * Creates a client that connects to the server without message security.
+     */
+    public static OpcUaClient createClient(
+            URI endpointUrl, String applicationName, IdentityProvider identityProvider, int requestTimeoutMillis)
+            throws UaException {
+        // The endpoints are advertised with the server's configured hostnames, which may not be reachable from here
+        return OpcUaClient.create(
+                endpointUrl.toString(),
+                endpoints -> endpoints.stream()
+                        .filter(endpoint -> SecurityPolicy.None.getUri().equals(endpoint.getSecurityPolicyUri()))
+                        .map(endpoint -> EndpointUtil.updateUrl(endpoint, endpointUrl.getHost(), endpointUrl.getPort()))
+                        .findFirst(),
+                builder -> builder.setApplicationName(LocalizedText.english(applicationName))
+                        .setIdentityProvider(identityProvider)
+                        .setRequestTimeout(uint(requestTimeoutMillis))
+                        .build());
+    }
+
+    /**
+     * Adds the variables and objects below the remote node to the folder, and the ids of the remote variables to
+     * remoteNodeIds. Nodes of the standard namespace, like the Server object, are skipped, as are nodes whose name is
+     * already taken. Slashes in names are replaced, and data types of other namespaces are mirrored as BaseDataType.
+     */
+    public static void mirror(
+            OpcUaClient client, NodeId remoteNode, FolderNode folder, Map<VariableNode, NodeId> remoteNodeIds)
+            throws UaException {
+        mirror(client, remoteNode, folder, remoteNodeIds, new HashSet<>());
+    }
+
+    private static void mirror(
+            OpcUaClient client,
+            NodeId remoteNode,
+            FolderNode folder,
+            Map<VariableNode, NodeId> remoteNodeIds,
+            Set<NodeId> visited)
+            throws UaException {
+        var definitions = new ArrayList<FolderNode.VariableDefinition>();
+        var nodeIds = new ArrayList<NodeId>();
+        var names = new HashSet<String>();
+        for (UaNode node : client.getAddressSpace().browseNodes(remoteNode)) {
+            // Names are separated by slashes in the paths of the nodes
+            var name = node.getBrowseName().getName().replace('/', '_');
+            if (node.getNodeId().getNamespaceIndex().intValue() == 0
+                    || !visited.add(node.getNodeId())
+                    || folder.getChild(name) != null
+                    || !names.add(name)) {
+                continue;
+            }
+            if (node instanceof UaVariableNode variable) {
+                // The access level is a bit mask, in which bit 1 is CurrentWrite
+                boolean writable = (variable.getUserAccessLevel().intValue() & 0b10) != 0;
+                // Types of other namespaces do not exist on this server
+                var dataType = variable.getDataType().getNamespaceIndex().intValue() == 0
+                        ? variable.getDataType()
+                        : Identifiers.BaseDataType;
+                definitions.add(
+                        writable
+                                ? FolderNode.VariableDefinition.readWrite(name, dataType)
+                                : FolderNode.VariableDefinition.readOnly(name, dataType));
+                nodeIds.add(variable.getNodeId());
+            } else if (node.getNodeClass() == NodeClass.Object) {
+                mirror(client, node.getNodeId(), folder.addFolder(name), remoteNodeIds, visited);
+            }
+        }
+        var variables = folder.addVariables(definitions);
+        for (int i = 0; i < variables.size(); i++) {
+            remoteNodeIds.put(variables.get(i), nodeIds.get(i));
+        }
+    }
+
+    /**
+     * Returns the value to forward to the server for a write request. Only the value is forwarded, as servers may
+     * reject writing the status code and timestamps.
+     */
+    public static DataValue valueToWrite(DataValue value) {
+        return new DataValue(value.getValue());
+    }
+
+    /**
+     * The time to wait between attempts to reach a server, which doubles with each failed attempt.
+     */
+    public static final class Backoff {
+        private static final long MIN_RETRY_MILLIS = 1000;
+        private static final long MAX_RETRY_MILLIS = 30_000;
+
+        private long retryMillis = MIN_RETRY_MILLIS;
+
+        /**
+         * Returns how long to wait after a failed attempt, and doubles the time for the next one.
+         */
+        public long failed() {
+            long millis = retryMillis;
+            retryMillis = Math.min(retryMillis * 2, MAX_RETRY_MILLIS);
+            return millis;
+        }
+
+        /**
+         * Returns how long to wait after an attempt that reached the server but was not done yet, and resets the time
+         * to wait after a failed attempt.
+         */
+        public long succeeded() {
+            retryMillis = MIN_RETRY_MILLIS;
+            return MIN_RETRY_MILLIS;
+        }
+    }
+}
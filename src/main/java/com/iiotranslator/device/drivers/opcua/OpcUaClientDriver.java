@@ -0,0 +1,316 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.device.drivers.opcua;
+
+import static org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.Unsigned.uint;
+
+import com.iiotranslator.device.Device;
+import com.iiotranslator.device.DeviceRequest;
+import com.iiotranslator.device.DeviceRequestCompletionListener;
+import com.iiotranslator.device.drivers.ConnectableDeviceDriver;
+import com.iiotranslator.device.drivers.ConnectionStrategy;
+import com.iiotranslator.opc.DataValues;
+import com.iiotranslator.opc.FolderNode;
+import com.iiotranslator.opc.VariableNode;
+import java.net.URI;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
+import org.eclipse.milo.opcua.sdk.client.SessionActivityListener;
+import org.eclipse.milo.opcua.sdk.client.api.UaSession;
+import org.eclipse.milo.opcua.sdk.client.api.identity.AnonymousProvider;
+import org.eclipse.milo.opcua.sdk.client.api.identity.IdentityProvider;
+import org.eclipse.milo.opcua.sdk.client.api.identity.UsernameProvider;
+import org.eclipse.milo.opcua.sdk.client.api.subscriptions.UaSubscription;
+import org.eclipse.milo.opcua.sdk.client.api.subscriptions.UaSubscriptionManager;
+import org.eclipse.milo.opcua.stack.core.AttributeId;
+import org.eclipse.milo.opcua.stack.core.StatusCodes;
+import org.eclipse.milo.opcua.stack.core.UaException;
+import org.eclipse.milo.opcua.stack.core.types.builtin.*;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.MonitoringMode;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.TimestampsToReturn;
+import org.eclipse.milo.opcua.stack.core.types.structured.MonitoredItemCreateRequest;
+import org.eclipse.milo.opcua.stack.core.types.structured.MonitoringParameters;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReadValueId;
+
+/**
+ * Mirrors a subtree of another OPC UA server, e.g. one that is built into a machine, see docs/drivers/OpcUaClient.md.
+ * <p>
+ * The values of all mirrored variables are kept up to date by a single subscription on the remote server, whose
+ * monitored items are created in batches, so that reads are answered from the last notification without a round trip.
+ * The writes of each call to {@link #process} are forwarded in a single write request, which is sent before the reads
+ * are answered, and are completed when the server has answered, without blocking the driver thread.
+ */
+@Slf4j
+public class OpcUaClientDriver implements ConnectableDeviceDriver {
+    private static final int MONITORED_ITEMS_PER_REQUEST = 1000;
+
+    private Device device;
+    private OpcUaClient client;
+    private int timeout;
+    private double publishingInterval;
+
+    private final Map<VariableNode, NodeId> remoteNodeIds = new LinkedHashMap<>();
+
+    // Written by the client's subscription thread
+    private final Map<VariableNode, DataValue> lastValues = new ConcurrentHashMap<>();
+
+    // Reset by the client's threads if the subscription or session was lost
+    private volatile UaSubscription subscription;
+    private volatile boolean sessionActive;
+
+    @Override
+    @SneakyThrows(InterruptedException.class)
+    public void initialize(Device device, FolderNode deviceFolderNode) {
+        this.device = device;
+        this.timeout = Integer.parseInt(device.getOptionOrDefault("timeout", "5000"));
+        this.publishingInterval = Double.parseDouble(device.getOptionOrDefault("publishingInterval", "500"));
+        var endpointUrl = URI.create(device.getOption("endpointUrl"));
+        try {
+            connectAndMirror(endpointUrl, deviceFolderNode);
+        } catch (InterruptedException | RuntimeException e) {
+            // The driver is not closed if its initialization fails, e.g. because the device was stopped while the
+            // server was unreachable
+            if (client != null) {
+                client.disconnect();
+            }
+            throw e;
+        }
+    }
+
+    private void connectAndMirror(URI endpointUrl, FolderNode deviceFolderNode) throws InterruptedException {
+        var backoff = new OpcUaBridge.Backoff();
+        while (true) {
+            try {
+                if (client == null) {
+                    client = createClient(endpointUrl);
+                }
+                client.connect().get();
+                var root = ExpandedNodeId.parse(device.getOptionOrDefault("rootNodeId", "i=85"))
+                        .toNodeId(client.getNamespaceTable())
+                        .orElseThrow(() -> new UaException(
+                                StatusCodes.Bad_NodeIdUnknown, "The namespace of the rootNodeId does not exist"));
+                OpcUaBridge.mirror(client, root, deviceFolderNode, remoteNodeIds);
+                log.info("[{}]: Mirroring {} variables of {}", device.getName(), remoteNodeIds.size(), endpointUrl);
+                return;
+            } catch (UaException | ExecutionException e) {
+                long retryMillis = backoff.failed();
+                log.warn(
+                        "[{}]: OPC UA server {} is not reachable, retrying in {}ms: {}",
+                        device.getName(),
+                        endpointUrl,
+                        retryMillis,
+                        e.getMessage());
+                Thread.sleep(retryMillis);
+            }
+        }
+    }
+
+    private OpcUaClient createClient(URI endpointUrl) throws UaException {
+        var username = device.getOptionOrDefault("username", null);
+        IdentityProvider identityProvider = username == null
+                ? new AnonymousProvider()
+                : new UsernameProvider(username, device.getOption("password"));
+        var client = OpcUaBridge.createClient(endpointUrl, "IIoTranslator", identityProvider, timeout);
+        client.addSessionActivityListener(new SessionActivityListener() {
+            @Override
+            public void onSessionActive(UaSession session) {
+                sessionActive = true;
+            }
+
+            @Override
+            public void onSessionInactive(UaSession session) {
+                sessionActive = false;
+                lastValues.clear();
+            }
+        });
+        client.getSubscriptionManager().addSubscriptionListener(new UaSubscriptionManager.SubscriptionListener() {
+            @Override
+            public void onSubscriptionTransferFailed(UaSubscription lost, StatusCode statusCode) {
+                // The server no longer has the subscription after a reconnect, it is recreated by the driver thread
+                log.debug("[{}]: Subscription was lost: {}", device.getName(), statusCode);
+                if (subscription == lost) {
+                    subscription = null;
+                    lastValues.clear();
+                }
+            }
+        });
+        return client;
+    }
+
+    @Override
+    public void process(List<DeviceRequest> requestQueue, DeviceRequestCompletionListener listener) {
+        boolean connected = connect();
+        var writes = new ArrayList<DeviceRequest.WriteRequest>();
+        for (var request : requestQueue) {
+            if (request instanceof DeviceRequest.WriteRequest writeRequest) {
+                writes.add(writeRequest);
+            }
+        }
+        CompletableFuture<List<StatusCode>> writeResult = null;
+        if (!writes.isEmpty() && connected) {
+            writeResult = client.writeValues(
+                    writes.stream()
+                            .map(write -> remoteNodeIds.get(write.getVariable()))
+                            .toList(),
+                    writes.stream()
+                            .map(write -> OpcUaBridge.valueToWrite(write.getValue()))
+                            .toList());
+        }
+
+        var missingValue =
+                connected && sessionActive ? DataValues.BAD_WAITING_FOR_INITIAL_DATA : DataValues.BAD_NO_COMMUNICATION;
+        for (var request : requestQueue) {
+            if (request instanceof DeviceRequest.ReadRequest readRequest) {
+                listener.completeReadRequest(
+                        readRequest, lastValues.getOrDefault(readRequest.getVariable(), missingValue));
+            }
+        }
+
+        if (writes.isEmpty()) {
+            return;
+        } else if (writeResult == null) {
+            writes.forEach(write -> listener.completeWriteRequestExceptionally(
+                    write, new UaException(StatusCodes.Bad_NoCommunication)));
+            return;
+        }
+        // The driver thread does not dispatch the writes again in the meantime
+        writeResult.whenComplete((statusCodes, e) -> {
+            if (e != null) {
+                log.debug("[{}]: Could not write to the OPC UA server", device.getName(), e);
+                var cause = e instanceof CompletionException ? e.getCause() : e;
+                var exception = cause instanceof Exception ? (Exception) cause : new UaException(cause);
+                writes.forEach(write -> listener.completeWriteRequestExceptionally(write, exception));
+                return;
+            }
+            for (int i = 0; i < writes.size(); i++) {
+                if (statusCodes.get(i).isGood()) {
+                    listener.completeWriteRequestExceptionally(writes.get(i));
+                } else {
+                    listener.completeWriteRequestExceptionally(writes.get(i), new UaException(statusCodes.get(i)));
+                }
+            }
+        });
+    }
+
+    /**
+     * The writes are completed by the client's thread once the server has answered them.
+     */
+    @Override
+    public boolean completesRequestsAsynchronously() {
+        return true;
+    }
+
+    /**
+     * Connects the client, if it is not connected, and creates the subscription, if it does not exist or was lost.
+     */
+    @Override
+    @SneakyThrows(InterruptedException.class)
+    public boolean connect() {
+        if (subscription != null) {
+            return true;
+        }
+        try {
+            client.connect().get();
+            subscribe();
+            return true;
+        } catch (ExecutionException | UaException e) {
+            log.debug("[{}]: Could not subscribe to the OPC UA server", device.getName(), e);
+            return false;
+        }
+    }
+
+    private void subscribe() throws ExecutionException, InterruptedException, UaException {
+        var newSubscription = client.getSubscriptionManager()
+                .createSubscription(publishingInterval)
+                .get();
+        var entries = new ArrayList<>(remoteNodeIds.entrySet());
+        boolean subscribed = false;
+        try {
+            for (int start = 0; start < entries.size(); start += MONITORED_ITEMS_PER_REQUEST) {
+                var batch = entries.subList(start, Math.min(start + MONITORED_ITEMS_PER_REQUEST, entries.size()));
+                var requests = new ArrayList<MonitoredItemCreateRequest>(batch.size());
+                for (var entry : batch) {
+                    var parameters = new MonitoringParameters(
+                            newSubscription.nextClientHandle(), publishingInterval, null, uint(1), true);
+                    requests.add(new MonitoredItemCreateRequest(
+                            new ReadValueId(entry.getValue(), AttributeId.Value.uid(), null, QualifiedName.NULL_VALUE),
+                            MonitoringMode.Reporting,
+                            parameters));
+                }
+                var items = newSubscription
+                        .createMonitoredItems(TimestampsToReturn.Both, requests, (item, index) -> {
+                            var variable = batch.get(index).getKey();
+                            item.setValueConsumer(value -> lastValues.put(variable, value));
+                        })
+                        .get();
+                for (int i = 0; i < items.size(); i++) {
+                    if (items.get(i).getStatusCode().isBad()) {
+                        lastValues.put(
+                                batch.get(i).getKey(),
+                                new DataValue(items.get(i).getStatusCode()));
+                    }
+                }
+            }
+            subscribed = true;
+        } finally {
+            if (!subscribed) {
+                // Otherwise, every failed attempt would leave a subscription on the server until its limit is reached
+                client.getSubscriptionManager().deleteSubscription(newSubscription.getSubscriptionId());
+            }
+        }
+        log.debug(
+                "[{}]: Subscribed to {} variables with a publishing interval of {}ms",
+                device.getName(),
+                entries.size(),
+                newSubscription.getRevisedPublishingInterval());
+        subscription = newSubscription;
+    }
+
+    @Override
+    @SneakyThrows(InterruptedException.class)
+    public void disconnect() {
+        if (client == null) {
+            return;
+        }
+        var oldSubscription = subscription;
+        subscription = null;
+        lastValues.clear();
+        try {
+            if (oldSubscription != null) {
+                client.getSubscriptionManager()
+                        .deleteSubscription(oldSubscription.getSubscriptionId())
+                        .get();
+            }
+            client.disconnect().get();
+        } catch (ExecutionException e) {
+            log.trace("[{}]: Error disconnecting from the OPC UA server", device.getName(), e);
+        }
+    }
+
+    @Override
+    public boolean isConnected() {
+        return subscription != null;
+    }
+
+    /**
+     * The values are pushed by the subscription, so there are no values to answer the first read with unless the
+     * driver connects eagerly.
+     */
+    @Override
+    public ConnectionStrategy.Mode getDefaultConnectionMode() {
+        return ConnectionStrategy.Mode.EAGER;
+    }
+
+    @Override
+    public void close() {
+        disconnect();
+    }
+}
@@ -8,7 +8,9 @@ import com.iiotranslator.device.Device;
 import com.iiotranslator.device.DeviceRequest;
 import com.iiotranslator.device.DeviceRequestCompletionListener;
 import com.iiotranslator.device.drivers.DeviceDriver;
+import com.iiotranslator.device.drivers.DriverMetrics;
 import com.iiotranslator.device.drivers.DriverUtil;
+import com.iiotranslator.opc.DataValues;
 import com.iiotranslator.opc.FolderNode;
 import com.iiotranslator.opc.VariableNode;
 import java.time.Duration;
@@ -20,8 +22,6 @@ import java.util.regex.Pattern;
 import lombok.extern.slf4j.Slf4j;
 import org.eclipse.milo.opcua.stack.core.Identifiers;
 import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
-import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
-import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
 import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
 
@@ -63,6 +63,7 @@ public class IPSwitchDriver implements DeviceDriver {
         client = WebClient.builder()
                 .clientConnector(new ReactorClientHttpConnector(DriverUtil.createHttpClient(timeout)))
                 .baseUrl("http://" + hostname)
+                .filter(DriverMetrics.httpTimer(device))
                 .build();
 
         var sysFolder = deviceFolderNode.addFolder("Device Status");
@@ -98,7 +99,7 @@ public class IPSwitchDriver implements DeviceDriver {
                 var impulseCount = Long.parseLong(matcher.group(1));
                 checkAndUpdateImpulseCount(impulseCount);
                 var impulsesPerKWh = Long.parseLong(matcher.group(2));
-                variableValues.put(impulses_per_kWh, new DataValue(new Variant(impulsesPerKWh)));
+                variableValues.put(impulses_per_kWh, DataValues.of(impulsesPerKWh));
             } else {
                 log.warn("[{}]: Could not parse impulse count from response: {}", device.getName(), impulseRaw);
             }
@@ -111,18 +112,16 @@ public class IPSwitchDriver implements DeviceDriver {
                     .block();
             log.trace("[{}]: Response: {}", device.getName(), valuesRaw);
             String[] values = valuesRaw.split(",");
-            variableValues.put(device_model, new DataValue(new Variant(values[0])));
+            variableValues.put(device_model, DataValues.of(values[0]));
             for (int i = 2; i < values.length - 1; i += 2) {
                 var key = values[i].substring(0, values[i].length() - 1);
                 var value = values[i + 1];
                 switch (key) {
-                    case "name" -> variableValues.put(name, new DataValue(new Variant(value)));
-                    case "mac" -> variableValues.put(mac_address, new DataValue(new Variant(value)));
-                    case "S01" -> variableValues.put(energy_Wh, new DataValue(new Variant(Long.parseLong(value))));
-                    case "Verbrauch_Ver" -> variableValues.put(
-                            power_W, new DataValue(new Variant(Long.parseLong(value))));
-                    case "rssi" -> variableValues.put(
-                            signal_strength, new DataValue(new Variant(Integer.parseInt(value))));
+                    case "name" -> variableValues.put(name, DataValues.of(value));
+                    case "mac" -> variableValues.put(mac_address, DataValues.of(value));
+                    case "S01" -> variableValues.put(energy_Wh, DataValues.of(Long.parseLong(value)));
+                    case "Verbrauch_Ver" -> variableValues.put(power_W, DataValues.of(Long.parseLong(value)));
+                    case "rssi" -> variableValues.put(signal_strength, DataValues.of(Integer.parseInt(value)));
                 }
             }
         } catch (Exception e) {
@@ -131,8 +130,7 @@ public class IPSwitchDriver implements DeviceDriver {
             for (DeviceRequest request : requestQueue) {
                 var readRequest = (DeviceRequest.ReadRequest) request;
                 var variable = readRequest.getVariable();
-                listener.completeReadRequest(
-                        readRequest, variableValues.getOrDefault(variable, new DataValue(StatusCode.BAD)));
+                listener.completeReadRequest(readRequest, variableValues.getOrDefault(variable, DataValues.BAD));
             }
         }
     }
@@ -154,7 +152,7 @@ public class IPSwitchDriver implements DeviceDriver {
                     impulseCount);
             writeImpulseCount(lastImpulseCount);
         }
-        variableValues.put(impulse_counter, new DataValue(new Variant(lastImpulseCount)));
+        variableValues.put(impulse_counter, DataValues.of(lastImpulseCount));
         backupIfNecessary();
     }
 
@@ -7,7 +7,9 @@ package com.iiotranslator.device.drivers.other;
 import com.iiotranslator.device.Device;
 import com.iiotranslator.device.DeviceRequest;
 import com.iiotranslator.device.DeviceRequestCompletionListener;
-import com.iiotranslator.device.drivers.DeviceDriver;
+import com.iiotranslator.device.drivers.ConnectableDeviceDriver;
+import com.iiotranslator.device.drivers.ConnectionStrategy;
+import com.iiotranslator.opc.DataValues;
 import com.iiotranslator.opc.FolderNode;
 import com.iiotranslator.opc.VariableNode;
 import io.socket.client.IO;
@@ -17,8 +19,6 @@ import lombok.extern.slf4j.Slf4j;
 import org.eclipse.milo.opcua.stack.core.Identifiers;
 import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
 import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
-import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
-import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
 import org.json.JSONException;
 import org.json.JSONObject;
 
@@ -26,17 +26,27 @@ import java.net.URI;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Supports the Inficon ELT leak detectors, which push their measurements over socket.io. While connected, the client
+ * reconnects by itself, so the driver connects eagerly by default.
+ */
 @Slf4j
-public class InficonELTDriver implements DeviceDriver {
+public class InficonELTDriver implements ConnectableDeviceDriver {
 
-    private final Map<VariableNode, DataValue> lastValues = new HashMap<>();
+    // Written by the socket.io event thread
+    private final Map<VariableNode, DataValue> lastValues = new ConcurrentHashMap<>();
 
     private final Map<String, VariableNode> variables = new HashMap<>();
 
+    private Socket socket;
+    private boolean opened;
+    private int timeout;
+
     @Override
     public void initialize(Device device, FolderNode deviceFolderNode) {
-        var timeout = Integer.parseInt(device.getOptionOrDefault("timeout", "3000"));
+        timeout = Integer.parseInt(device.getOptionOrDefault("timeout", "3000"));
 
         IO.Options options = new IO.Options();
         options.transports = new String[] {WebSocket.NAME};
@@ -59,7 +69,7 @@ public class InficonELTDriver implements DeviceDriver {
         addVariable(deviceFolderNode, "operationModus", Identifiers.Int64);
         addVariable(deviceFolderNode, "timestamp", Identifiers.Int64);
 
-        Socket socket = IO.socket(URI.create("http://" + device.getOption("hostname")), options);
+        socket = IO.socket(URI.create("http://" + device.getOption("hostname")), options);
         socket.on("MeasurementData", data -> {
             var json = (JSONObject) data[0];
             log.trace("Received measurement data, type {}: {}", json, data);
@@ -75,9 +85,12 @@ public class InficonELTDriver implements DeviceDriver {
                 }
             }
         });
-        log.trace("Connecting to Inficon ELT device");
-        socket.connect();
-        socket.on(Socket.EVENT_CONNECT, o -> log.trace("Connected to Inficon ELT device"));
+        socket.on(Socket.EVENT_CONNECT, o -> {
+            log.trace("Connected to Inficon ELT device");
+            synchronized (this) {
+                notifyAll();
+            }
+        });
         socket.on(Socket.EVENT_DISCONNECT, o -> {
             clearVariableValues();
             log.trace("Disconnected from Inficon ELT device: {}", o);
@@ -90,13 +103,67 @@ public class InficonELTDriver implements DeviceDriver {
 
     @Override
     public void process(List<DeviceRequest> requestQueue, DeviceRequestCompletionListener listener) {
+        connect();
         requestQueue.forEach(request -> {
             var readRequest = (DeviceRequest.ReadRequest) request;
             listener.completeReadRequest(
-                    readRequest, lastValues.getOrDefault((readRequest).getVariable(), new DataValue(StatusCode.BAD)));
+                    readRequest, lastValues.getOrDefault((readRequest).getVariable(), DataValues.BAD));
         });
     }
 
+    @Override
+    public ConnectionStrategy.Mode getDefaultConnectionMode() {
+        return ConnectionStrategy.Mode.EAGER;
+    }
+
+    /**
+     * Opens the socket, which then connects and reconnects in the background until {@link #disconnect()} is called.
+     * When the socket is opened, waits up to the timeout for it to connect.
+     *
+     * @return whether the socket is connected
+     */
+    @Override
+    public boolean connect() {
+        if (!opened) {
+            log.trace("Connecting to Inficon ELT device");
+            socket.connect();
+            opened = true;
+            long deadline = System.currentTimeMillis() + timeout;
+            synchronized (this) {
+                long remaining;
+                while (!socket.connected() && (remaining = deadline - System.currentTimeMillis()) > 0) {
+                    try {
+                        wait(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+            }
+        }
+        return socket.connected();
+    }
+
+    @Override
+    public void disconnect() {
+        socket.disconnect();
+        opened = false;
+        clearVariableValues();
+    }
+
+    /**
+     * Returns whether the socket is open, even if it is currently reconnecting.
+     */
+    @Override
+    public boolean isConnected() {
+        return opened;
+    }
+
+    @Override
+    public void close() {
+        socket.close();
+    }
+
     private void addVariable(FolderNode deviceFolderNode, String name, NodeId dataType) {
         variables.put(name, deviceFolderNode.addVariableReadOnly(name, dataType));
     }
@@ -123,7 +190,7 @@ public class InficonELTDriver implements DeviceDriver {
             log.trace("Unknown value type for {}: class {}, value {}", name, value.getClass(), value);
             value = null;
         }
-        var dataValue = new DataValue(new Variant(value));
+        var dataValue = DataValues.of(value);
         lastValues.put(variable, dataValue);
     }
 
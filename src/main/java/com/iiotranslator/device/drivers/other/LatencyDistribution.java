@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.device.drivers.other;
+
+import java.util.Random;
+
+/**
+ * A distribution of simulated device latencies in milliseconds, parsed from one of the following specifications:
+ * <ul>
+ *   <li>{@code fixed:<millis>}, or just {@code <millis>}</li>
+ *   <li>{@code uniform:<min>-<max>}</li>
+ *   <li>{@code lognormal:<median>:<sigma>}, where sigma is the standard deviation of the logarithm, e.g. 0.5</li>
+ * </ul>
+ */
+interface LatencyDistribution {
+    long sample(Random random);
+
+    static LatencyDistribution parse(String specification) {
+        var parts = specification.trim().split(":");
+        try {
+            switch (parts[0]) {
+                case "fixed" -> {
+                    return fixed(Long.parseLong(parts[1]));
+                }
+                case "uniform" -> {
+                    var range = parts[1].split("-");
+                    long min = Long.parseLong(range[0]), max = Long.parseLong(range[1]);
+                    if (min < 0 || max < min) {
+                        throw new IllegalArgumentException("Invalid latency range: " + specification);
+                    }
+                    return random -> min + (max > min ? random.nextLong(max - min + 1) : 0);
+                }
+                case "lognormal" -> {
+                    double mu = Math.log(Double.parseDouble(parts[1]));
+                    double sigma = Double.parseDouble(parts[2]);
+                    return random -> Math.round(Math.exp(mu + sigma * random.nextGaussian()));
+                }
+                default -> {
+                    if (parts.length == 1) {
+                        return fixed(Long.parseLong(parts[0]));
+                    }
+                    throw new IllegalArgumentException("Unknown latency distribution: " + specification);
+                }
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Invalid latency distribution: " + specification, e);
+        }
+    }
+
+    static LatencyDistribution fixed(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("Latency must not be negative: " + millis);
+        }
+        return random -> millis;
+    }
+}
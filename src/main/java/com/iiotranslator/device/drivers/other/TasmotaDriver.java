@@ -10,7 +10,9 @@ import com.iiotranslator.device.Device;
 import com.iiotranslator.device.DeviceRequest;
 import com.iiotranslator.device.DeviceRequestCompletionListener;
 import com.iiotranslator.device.drivers.DeviceDriver;
+import com.iiotranslator.device.drivers.DriverMetrics;
 import com.iiotranslator.device.drivers.DriverUtil;
+import com.iiotranslator.opc.DataValues;
 import com.iiotranslator.opc.FolderNode;
 import com.iiotranslator.opc.VariableNode;
 import java.util.HashMap;
@@ -20,8 +22,6 @@ import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import org.eclipse.milo.opcua.stack.core.Identifiers;
 import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
-import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
-import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
 import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
 
@@ -57,6 +57,7 @@ public class TasmotaDriver implements DeviceDriver {
         client = WebClient.builder()
                 .clientConnector(new ReactorClientHttpConnector(DriverUtil.createHttpClient(timeout)))
                 .baseUrl("http://" + hostname)
+                .filter(DriverMetrics.httpTimer(device))
                 .build();
 
         time = deviceFolderNode.addVariableReadOnly("Time", Identifiers.String);
@@ -80,34 +81,41 @@ public class TasmotaDriver implements DeviceDriver {
                     .bodyToMono(String.class)
                     .block();
             log.trace("[{}]: Response: {}", device.getName(), powerStatusJSON);
-            // Example contents of powerStatusJSON:
-            // {"StatusSNS":{"Time":"2023-06-29T17:42:21","ENERGY":{"TotalStartTime":"2020-02-16T07:24:07","Total":1353.041,"Yesterday":0.676,"Today":1.093,"Power":105,"ApparentPower":122,"ReactivePower":63,"Factor":0.86,"Voltage":287,"Current":0.427}}}
-            // Decode JSON using gson:
-            var response = gson.fromJson(powerStatusJSON, TasmotaStatus8Response.class);
-            // Update variables:
-            var energy = response.getStatusSNS().getEnergy();
-            variableValues.put(
-                    time, new DataValue(new Variant(response.getStatusSNS().getTime())));
-            variableValues.put(totalStartTime, new DataValue(new Variant(energy.getTotalStartTime())));
-            variableValues.put(energy_Wh, new DataValue(new Variant(energy.getTotal() * 1000.0)));
-            variableValues.put(power_W, new DataValue(new Variant(energy.getPower())));
-            variableValues.put(apparentPower_VA, new DataValue(new Variant(energy.getApparentPower())));
-            variableValues.put(reactivePower_VAr, new DataValue(new Variant(energy.getReactivePower())));
-            variableValues.put(powerFactor, new DataValue(new Variant(energy.getFactor())));
-            variableValues.put(voltage_V, new DataValue(new Variant(energy.getVoltage())));
-            variableValues.put(current_A, new DataValue(new Variant(energy.getCurrent())));
+            variableValues.putAll(parseStatus8(powerStatusJSON));
         } catch (Exception e) {
             log.trace("[{}]: Error reading from device", device.getName(), e);
         } finally {
             for (DeviceRequest request : requestQueue) {
                 var readRequest = (DeviceRequest.ReadRequest) request;
                 var variable = readRequest.getVariable();
-                listener.completeReadRequest(
-                        readRequest, variableValues.getOrDefault(variable, new DataValue(StatusCode.BAD)));
+                listener.completeReadRequest(readRequest, variableValues.getOrDefault(variable, DataValues.BAD));
             }
         }
     }
 
+    /**
+     * Decodes the response to the "status 8" command, which contains the energy measurements.
+     */
+    public Map<VariableNode, DataValue> parseStatus8(String powerStatusJSON) {
+        Map<VariableNode, DataValue> variableValues = new HashMap<>();
+        // Example contents of powerStatusJSON:
+        // {"StatusSNS":{"Time":"2023-06-29T17:42:21","ENERGY":{"TotalStartTime":"2020-02-16T07:24:07","Total":1353.041,"Yesterday":0.676,"Today":1.093,"Power":105,"ApparentPower":122,"ReactivePower":63,"Factor":0.86,"Voltage":287,"Current":0.427}}}
+        // Decode JSON using gson:
+        var response = gson.fromJson(powerStatusJSON, TasmotaStatus8Response.class);
+        // Update variables:
+        var energy = response.getStatusSNS().getEnergy();
+        variableValues.put(time, DataValues.of(response.getStatusSNS().getTime()));
+        variableValues.put(totalStartTime, DataValues.of(energy.getTotalStartTime()));
+        variableValues.put(energy_Wh, DataValues.of(energy.getTotal() * 1000.0));
+        variableValues.put(power_W, DataValues.of(energy.getPower()));
+        variableValues.put(apparentPower_VA, DataValues.of(energy.getApparentPower()));
+        variableValues.put(reactivePower_VAr, DataValues.of(energy.getReactivePower()));
+        variableValues.put(powerFactor, DataValues.of(energy.getFactor()));
+        variableValues.put(voltage_V, DataValues.of(energy.getVoltage()));
+        variableValues.put(current_A, DataValues.of(energy.getCurrent()));
+        return variableValues;
+    }
+
     // The classes below are used to decode the JSON response from the Tasmota device.
 
     @Data
@@ -5,35 +5,214 @@
 package com.iiotranslator.device.drivers.other;
 
 import com.iiotranslator.device.Device;
-import com.iiotranslator.device.drivers.NonBatchingDeviceDriver;
+import com.iiotranslator.device.DeviceRequest;
+import com.iiotranslator.device.DeviceRequestCompletionListener;
+import com.iiotranslator.device.drivers.DeviceDriver;
+import com.iiotranslator.opc.DataValues;
 import com.iiotranslator.opc.FolderNode;
 import com.iiotranslator.opc.VariableNode;
-import java.util.Random;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.eclipse.milo.opcua.stack.core.Identifiers;
 import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
-import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
 
+/**
+ * A driver without a device, which returns random values after a simulated latency. It is used for testing and, with
+ * its options, to model real drivers for performance tests. See docs/drivers/Test.md for the options.
+ */
 @Slf4j
-public class TestDriver implements NonBatchingDeviceDriver {
-    private int delay;
+public class TestDriver implements DeviceDriver {
+    private static final Map<String, NodeId> DATA_TYPES = Map.of(
+            "Double", Identifiers.Double,
+            "Float", Identifiers.Float,
+            "Int32", Identifiers.Int32,
+            "Int64", Identifiers.Int64,
+            "Boolean", Identifiers.Boolean,
+            "String", Identifiers.String);
+
+    private final Random random = new Random();
+
+    private Device device;
+    private LatencyDistribution latency;
+    private boolean batching;
+    private double errorRate, timeoutRate;
+    private long timeout;
+
+    /**
+     * The values pushed by the simulated device, or null if values are read on request.
+     */
+    private Map<VariableNode, DataValue> pushedValues;
+
+    private ScheduledExecutorService pushExecutor;
 
     @Override
     public void initialize(Device device, FolderNode deviceFolderNode) {
-        delay = Integer.parseInt(device.getOptionOrDefault("delay", "1000"));
+        this.device = device;
+        latency = LatencyDistribution.parse(
+                device.getOptionOrDefault("latency", device.getOptionOrDefault("delay", "1000")));
+        batching = Boolean.parseBoolean(device.getOptionOrDefault("batching", "false"));
+        errorRate = Double.parseDouble(device.getOptionOrDefault("errorRate", "0"));
+        timeoutRate = Double.parseDouble(device.getOptionOrDefault("timeoutRate", "0"));
+        timeout = Long.parseLong(device.getOptionOrDefault("timeout", "5000"));
+
+        List<VariableNode> variables;
+        if (device.getOptions().containsKey("variables")) {
+            variables = createVariables(device, deviceFolderNode);
+        } else {
+            variables = new ArrayList<>();
+            variables.add(deviceFolderNode.addVariableReadOnly("test", Identifiers.Double));
+            var folder = deviceFolderNode.addFolder("ExampleFolder");
+            variables.add(folder.addVariableReadOnly("Variable1", Identifiers.Double));
+            variables.add(folder.addVariableReadOnly("Variable2", Identifiers.Double));
+        }
+
+        long pushInterval = Long.parseLong(device.getOptionOrDefault("pushInterval", "0"));
+        if (pushInterval > 0) {
+            pushedValues = new ConcurrentHashMap<>();
+            pushExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                var thread = new Thread(runnable, "TestDriver push for device \"" + device.getName() + "\"");
+                thread.setDaemon(true);
+                return thread;
+            });
+            pushExecutor.scheduleAtFixedRate(
+                    () -> variables.forEach(variable -> pushedValues.put(variable, randomValue(variable))),
+                    0,
+                    pushInterval,
+                    TimeUnit.MILLISECONDS);
+        }
+        log.info("[{}]: Test Device initialized with {} variables", device.getName(), variables.size());
+    }
+
+    @Override
+    public void close() {
+        if (pushExecutor != null) {
+            pushExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Creates the configured number of variables. With a depth greater than zero, they are spread over a tree of
+     * folders, which has the given number of folders per level.
+     */
+    private static List<VariableNode> createVariables(Device device, FolderNode deviceFolderNode) {
+        int count = Integer.parseInt(device.getOption("variables"));
+        int depth = Integer.parseInt(device.getOptionOrDefault("depth", "0"));
+        int foldersPerLevel = Integer.parseInt(device.getOptionOrDefault("foldersPerLevel", "10"));
+        var dataTypes = Arrays.stream(
+                        device.getOptionOrDefault("dataTypes", "Double").split(","))
+                .map(String::trim)
+                .map(name -> {
+                    var dataType = DATA_TYPES.get(name);
+                    if (dataType == null) {
+                        throw new IllegalArgumentException(
+                                "Unknown data type " + name + ", supported are " + DATA_TYPES.keySet());
+                    }
+                    return dataType;
+                })
+                .toList();
 
-        deviceFolderNode.addVariableReadOnly("test", Identifiers.Double);
-        var folder = deviceFolderNode.addFolder("ExampleFolder");
-        folder.addVariableReadOnly("Variable1", Identifiers.Double);
-        folder.addVariableReadOnly("Variable2", Identifiers.Double);
-        log.info("[{}]: Test Device initialized", device.getName());
+        var folders = new HashMap<String, FolderNode>();
+        // The variables of each folder are added at once
+        var definitions = new LinkedHashMap<FolderNode, List<FolderNode.VariableDefinition>>();
+        for (int i = 0; i < count; i++) {
+            var folder = deviceFolderNode;
+            var path = new StringBuilder();
+            int index = i;
+            for (int level = 0; level < depth; level++) {
+                var name = "Folder" + (index % foldersPerLevel);
+                index /= foldersPerLevel;
+                path.append('/').append(name);
+                var parent = folder;
+                folder = folders.computeIfAbsent(path.toString(), key -> parent.addFolder(name));
+            }
+            definitions
+                    .computeIfAbsent(folder, key -> new ArrayList<>())
+                    .add(FolderNode.VariableDefinition.readOnly("Variable" + i, dataTypes.get(i % dataTypes.size())));
+        }
+        var variables = new ArrayList<VariableNode>(count);
+        definitions.forEach((folder, folderDefinitions) -> variables.addAll(folder.addVariables(folderDefinitions)));
+        return variables;
     }
 
     @Override
-    @SneakyThrows
-    public DataValue read(VariableNode variable) {
-        Thread.sleep(delay);
-        return new DataValue(new Variant(new Random().nextDouble()));
+    public void process(List<DeviceRequest> requestQueue, DeviceRequestCompletionListener listener) {
+        if (pushedValues != null) {
+            // Like the drivers of devices that push their values, reads are answered from the last received values
+            for (var request : requestQueue) {
+                if (request instanceof DeviceRequest.ReadRequest readRequest) {
+                    listener.completeReadRequest(
+                            readRequest,
+                            pushedValues.getOrDefault(
+                                    readRequest.getVariable(), DataValues.BAD_WAITING_FOR_INITIAL_DATA));
+                } else if (request instanceof DeviceRequest.WriteRequest writeRequest) {
+                    listener.completeWriteRequestExceptionally(
+                            writeRequest, new UnsupportedOperationException("Driver does not support writes"));
+                }
+            }
+        } else if (batching) {
+            var status = simulateRequest();
+            for (var request : requestQueue) {
+                complete(request, status, listener);
+            }
+        } else {
+            for (var request : requestQueue) {
+                complete(request, simulateRequest(), listener);
+            }
+        }
+    }
+
+    /**
+     * Waits for the simulated latency, or the timeout if a timeout is injected.
+     *
+     * @return null if the request succeeded, otherwise the value to complete the request with
+     */
+    @SneakyThrows(InterruptedException.class)
+    private DataValue simulateRequest() {
+        if (timeoutRate > 0 && random.nextDouble() < timeoutRate) {
+            Thread.sleep(timeout);
+            return DataValues.BAD_TIMEOUT;
+        }
+        long millis = latency.sample(random);
+        if (millis > 0) {
+            Thread.sleep(millis);
+        }
+        if (errorRate > 0 && random.nextDouble() < errorRate) {
+            return DataValues.BAD_COMMUNICATION_ERROR;
+        }
+        return null;
+    }
+
+    private void complete(DeviceRequest request, DataValue error, DeviceRequestCompletionListener listener) {
+        if (request instanceof DeviceRequest.ReadRequest readRequest) {
+            listener.completeReadRequest(readRequest, error != null ? error : randomValue(readRequest.getVariable()));
+        } else if (request instanceof DeviceRequest.WriteRequest writeRequest) {
+            listener.completeWriteRequestExceptionally(
+                    writeRequest, new UnsupportedOperationException("Driver does not support writes"));
+        }
+    }
+
+    private DataValue randomValue(VariableNode variable) {
+        var dataType = variable.getDataType();
+        Object value;
+        if (dataType.equals(Identifiers.Float)) {
+            value = random.nextFloat();
+        } else if (dataType.equals(Identifiers.Int32)) {
+            value = random.nextInt(1000);
+        } else if (dataType.equals(Identifiers.Int64)) {
+            value = (long) random.nextInt(1_000_000);
+        } else if (dataType.equals(Identifiers.Boolean)) {
+            value = random.nextBoolean();
+        } else if (dataType.equals(Identifiers.String)) {
+            value = Long.toString(random.nextInt(1_000_000), 36);
+        } else {
+            value = random.nextDouble();
+        }
+        return DataValues.of(value);
     }
 }
@@ -7,8 +7,11 @@ package com.iiotranslator.device.drivers.weiss;
 import com.google.gson.Gson;
 import com.google.gson.JsonSyntaxException;
 import com.iiotranslator.device.Device;
+import com.iiotranslator.device.drivers.ConnectableDeviceDriver;
+import com.iiotranslator.device.drivers.ConnectionStrategy;
 import com.iiotranslator.device.drivers.DriverUtil;
 import com.iiotranslator.device.drivers.NonBatchingDeviceDriver;
+import com.iiotranslator.opc.DataValues;
 import com.iiotranslator.opc.FolderNode;
 import com.iiotranslator.opc.VariableNode;
 import java.io.IOException;
@@ -17,6 +20,8 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import lombok.Data;
@@ -25,17 +30,16 @@ import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.eclipse.milo.opcua.stack.core.Identifiers;
 import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
-import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
 import org.java_websocket.drafts.Draft_6455;
-import org.java_websocket.enums.ReadyState;
 import org.java_websocket.handshake.ServerHandshake;
 import org.java_websocket.protocols.Protocol;
 
 /**
- * Supports the Weiss LabEvent ovens.
+ * Supports the Weiss LabEvent ovens. The oven pushes the values of all variables after connecting, so by default, the
+ * driver connects eagerly. If it connects lazily, the read that opens the connection waits for the first values.
  */
 @Slf4j
-public class WeissLabEventDriver implements NonBatchingDeviceDriver {
+public class WeissLabEventDriver implements NonBatchingDeviceDriver, ConnectableDeviceDriver {
     private Device device;
 
     private String hostname, user, password;
@@ -107,28 +111,71 @@ public class WeissLabEventDriver implements NonBatchingDeviceDriver {
 
     @Override
     public DataValue read(VariableNode variable) {
-        if (client != null
-                && (client.getReadyState() == ReadyState.OPEN
-                        || client.getReadyState() == ReadyState.NOT_YET_CONNECTED)) {
-            if (client.isOpen()) {
-                return values.getOrDefault(variable, new DataValue(StatusCode.BAD));
-            } else {
-                return new DataValue(StatusCode.BAD);
-            }
-        } else {
-            if (client != null) {
-                client.close();
-            }
-            client = new WeissLabEventWebsocketClient();
-            client.connect();
-            return new DataValue(StatusCode.BAD);
+        if (!connect()) {
+            return DataValues.BAD_NO_COMMUNICATION;
+        }
+        var value = values.get(variable);
+        if (value == null && client.awaitInitialValues()) {
+            value = values.get(variable);
         }
+        return value != null ? value : DataValues.BAD_WAITING_FOR_INITIAL_DATA;
     }
 
     private WeissLabEventWebsocketClient client = null;
+    private long lastConnectAttemptNanos;
+
+    @Override
+    public ConnectionStrategy.Mode getDefaultConnectionMode() {
+        return ConnectionStrategy.Mode.EAGER;
+    }
+
+    /**
+     * Opens a new WebSocket connection and waits until it is open. After a failed attempt, no new attempt is made until
+     * the timeout has passed, so that the reads of all variables do not each wait for a connection.
+     */
+    @Override
+    public boolean connect() {
+        if (isConnected()) {
+            return true;
+        }
+        long now = System.nanoTime();
+        if (lastConnectAttemptNanos != 0 && now - lastConnectAttemptNanos < TimeUnit.MILLISECONDS.toNanos(timeout)) {
+            return false;
+        }
+        lastConnectAttemptNanos = now;
+        disconnect();
+        client = new WeissLabEventWebsocketClient();
+        try {
+            return client.connectBlocking(timeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    @Override
+    public void disconnect() {
+        if (client != null) {
+            client.close();
+            client = null;
+        }
+        values.clear();
+    }
+
+    @Override
+    public boolean isConnected() {
+        return client != null && client.isOpen();
+    }
+
+    @Override
+    public void close() {
+        disconnect();
+    }
 
     private static final Pattern MESSAGE_VALUE_PATTERN = Pattern.compile("^@val:([^:]+):(.*)$");
 
+    private final Gson gson = new Gson();
+
     @Data
     public static class Command {
         private final String cmd;
@@ -143,8 +190,50 @@ public class WeissLabEventDriver implements NonBatchingDeviceDriver {
         }
     }
 
+    /**
+     * Handles a message received from the oven, which is either a single value update or a JSON message containing
+     * multiple messages.
+     */
+    public void handleMessage(String message) {
+        log.trace("[{}]: Receive: {}", device.getName(), message);
+        if (message.startsWith("@item:") || message.startsWith("@user:") || message.startsWith("@app:")) {
+            return; // ignore
+        }
+        Matcher valMatcher = MESSAGE_VALUE_PATTERN.matcher(message);
+        if (valMatcher.matches()) {
+            var variable = variables.get(valMatcher.group(1));
+            String value = valMatcher.group(2);
+            if (variable != null) {
+                values.put(variable, DriverUtil.convertValue(variable, value));
+            } else {
+                log.debug("[{}] Ignoring unknown variable: {}", device.getName(), valMatcher.group(1));
+            }
+        } else {
+            // parse message JSON
+            try {
+                @NonNull var jsonMessage = gson.fromJson(message, Command.class);
+                if (jsonMessage.getCmd().equals("multi")) {
+                    for (String command : jsonMessage.getData()) {
+                        handleMessage(command);
+                    }
+                } else {
+                    log.debug("[{}] Ignoring unknown JSON message: {}", device.getName(), message);
+                }
+            } catch (JsonSyntaxException | NullPointerException ignored) {
+                log.debug("[{}]: Could not parse message, ignoring: \"{}\"", device.getName(), message);
+            }
+        }
+    }
+
     private class WeissLabEventWebsocketClient extends org.java_websocket.client.WebSocketClient {
-        private final Gson gson = new Gson();
+        /**
+         * Counted down when the first values have been received, which the oven only sends after the login in
+         * {@link #onOpen(ServerHandshake)}.
+         */
+        private final CountDownLatch initialValues = new CountDownLatch(1);
+
+        // Only accessed by the driver thread
+        private boolean initialValuesAwaited;
 
         private WeissLabEventWebsocketClient() {
             super(
@@ -179,44 +268,39 @@ public class WeissLabEventDriver implements NonBatchingDeviceDriver {
             send(gson.toJson(command));
         }
 
-        @SneakyThrows(InterruptedException.class)
         @Override
         public void onClose(int code, String reason, boolean remote) {
             if (remote) {
                 log.debug("[{}] closed with exit code {}, reason: {}", this, code, reason);
-                closeBlocking();
+                // Not closeBlocking(), which is called on the thread that would have to finish closing
+                close();
             }
         }
 
         @Override
         public void onMessage(String message) {
-            log.trace("[{}]: Receive: {}", device.getName(), message);
-            if (message.startsWith("@item:") || message.startsWith("@user:") || message.startsWith("@app:")) {
-                return; // ignore
+            handleMessage(message);
+            if (!values.isEmpty()) {
+                initialValues.countDown();
             }
-            Matcher valMatcher = MESSAGE_VALUE_PATTERN.matcher(message);
-            if (valMatcher.matches()) {
-                var variable = variables.get(valMatcher.group(1));
-                String value = valMatcher.group(2);
-                if (variable != null) {
-                    values.put(variable, DriverUtil.convertValue(variable, value));
-                } else {
-                    log.debug("[{}] Ignoring unknown variable: {}", device.getName(), valMatcher.group(1));
-                }
-            } else {
-                // parse message JSON
-                try {
-                    @NonNull var jsonMessage = gson.fromJson(message, Command.class);
-                    if (jsonMessage.getCmd().equals("multi")) {
-                        for (String command : jsonMessage.getData()) {
-                            onMessage(command);
-                        }
-                    } else {
-                        log.debug("[{}] Ignoring unknown JSON message: {}", device.getName(), message);
-                    }
-                } catch (JsonSyntaxException | NullPointerException ignored) {
-                    log.debug("[{}]: Could not parse message, ignoring: \"{}\"", device.getName(), message);
-                }
+        }
+
+        /**
+         * Waits until the first values have been received, so that the read that opens a lazy connection can be
+         * answered. Only the first call per connection waits, for at most the timeout.
+         *
+         * @return whether values have been received
+         */
+        private boolean awaitInitialValues() {
+            if (initialValuesAwaited) {
+                return initialValues.getCount() == 0;
+            }
+            initialValuesAwaited = true;
+            try {
+                return initialValues.await(timeout, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
             }
         }
 
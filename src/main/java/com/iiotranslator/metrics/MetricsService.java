@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.metrics;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.binder.jvm.JvmGcMetrics;
+import io.micrometer.core.instrument.binder.jvm.JvmMemoryMetrics;
+import io.micrometer.core.instrument.binder.jvm.JvmThreadMetrics;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import io.prometheus.client.exporter.common.TextFormat;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Collects the metrics of the application, which are recorded using Micrometer's {@link Metrics#globalRegistry}, and
+ * optionally serves them on a local Prometheus scrape endpoint at http://bindAddress:port/metrics.
+ */
+@Service
+@Slf4j
+public class MetricsService {
+    @Value("${iiot.metrics.prometheus.port:0}")
+    private int port;
+
+    @Value("${iiot.metrics.prometheus.bindAddress:127.0.0.1}")
+    private String bindAddress;
+
+    @Getter
+    private final PrometheusMeterRegistry registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+
+    private HttpServer httpServer;
+
+    @PostConstruct
+    void initialize() throws IOException {
+        Metrics.addRegistry(registry);
+        new JvmMemoryMetrics().bindTo(registry);
+        new JvmGcMetrics().bindTo(registry);
+        new JvmThreadMetrics().bindTo(registry);
+        if (port > 0) {
+            httpServer = HttpServer.create(new InetSocketAddress(bindAddress, port), 0);
+            httpServer.createContext("/metrics", exchange -> {
+                try (exchange) {
+                    var response = registry.scrape().getBytes(StandardCharsets.UTF_8);
+                    exchange.getResponseHeaders().set("Content-Type", TextFormat.CONTENT_TYPE_004);
+                    exchange.sendResponseHeaders(200, response.length);
+                    exchange.getResponseBody().write(response);
+                }
+            });
+            httpServer.start();
+            log.info("Prometheus metrics available at http://{}:{}/metrics", bindAddress, port);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (httpServer != null) {
+            httpServer.stop(0);
+        }
+        Metrics.removeRegistry(registry);
+        registry.close();
+    }
+}
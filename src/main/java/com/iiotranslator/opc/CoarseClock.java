@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.opc;
+
+import org.eclipse.milo.opcua.stack.core.types.builtin.DateTime;
+
+/**
+ * A clock with a resolution of {@link #RESOLUTION_MILLIS} that hands out the same {@link DateTime} instance to every
+ * caller within one tick. This avoids allocating a new DateTime (and, with {@link DateTime#USE_NANOS}, an Instant) for
+ * every value that is read from a device.
+ */
+public final class CoarseClock {
+    public static final long RESOLUTION_MILLIS = 10;
+
+    /**
+     * Offset between the Java epoch (1970) and the OPC UA epoch (1601) in milliseconds.
+     */
+    private static final long EPOCH_DELTA_MILLIS = 11_644_473_600_000L;
+
+    private static volatile Tick current = new Tick(System.currentTimeMillis());
+
+    private CoarseClock() {
+        // This class is not meant to be instantiated.
+    }
+
+    public static DateTime now() {
+        var tick = current;
+        long millis = System.currentTimeMillis();
+        if (millis - tick.millis >= RESOLUTION_MILLIS || millis < tick.millis) {
+            // Races between threads are harmless here, the last writer simply wins
+            tick = new Tick(millis);
+            current = tick;
+        }
+        return tick.dateTime;
+    }
+
+    /**
+     * Converts milliseconds since the Java epoch to a {@link DateTime}, without going through an Instant.
+     */
+    public static DateTime toDateTime(long javaMillis) {
+        return new DateTime((javaMillis + EPOCH_DELTA_MILLIS) * 10_000L);
+    }
+
+    private static final class Tick {
+        private final long millis;
+        private final DateTime dateTime;
+
+        private Tick(long millis) {
+            this.millis = millis;
+            this.dateTime = toDateTime(millis);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.opc;
+
+import org.eclipse.milo.opcua.stack.core.StatusCodes;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
+import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
+
+/**
+ * Shared, immutable {@link DataValue} instances for the status-only results that drivers return for every request
+ * while a device is unreachable, and factory methods for good values that take their timestamps from the
+ * {@link CoarseClock}.
+ * <p>
+ * The shared instances carry no timestamps. The server timestamp is added by the {@link OpcNamespace} when the value
+ * is handed to an OPC UA client, see {@link #withServerTime(DataValue)}.
+ */
+public final class DataValues {
+    public static final DataValue GOOD_NO_VALUE = ofStatus(StatusCode.GOOD);
+    public static final DataValue BAD = ofStatus(StatusCode.BAD);
+    public static final DataValue BAD_NO_COMMUNICATION = ofStatus(StatusCodes.Bad_NoCommunication);
+    public static final DataValue BAD_COMMUNICATION_ERROR = ofStatus(StatusCodes.Bad_CommunicationError);
+    public static final DataValue BAD_TIMEOUT = ofStatus(StatusCodes.Bad_Timeout);
+    public static final DataValue BAD_INTERNAL_ERROR = ofStatus(StatusCodes.Bad_InternalError);
+    public static final DataValue BAD_DECODING_ERROR = ofStatus(StatusCodes.Bad_DecodingError);
+    public static final DataValue BAD_NO_DATA = ofStatus(StatusCodes.Bad_NoData);
+    public static final DataValue BAD_NOT_SUPPORTED = ofStatus(StatusCodes.Bad_NotSupported);
+    public static final DataValue BAD_NODE_ID_UNKNOWN = ofStatus(StatusCodes.Bad_NodeIdUnknown);
+    public static final DataValue BAD_WAITING_FOR_INITIAL_DATA = ofStatus(StatusCodes.Bad_WaitingForInitialData);
+
+    private DataValues() {
+        // This class is not meant to be instantiated.
+    }
+
+    /**
+     * Creates a good value with source and server timestamps from the {@link CoarseClock}.
+     */
+    public static DataValue of(Object value) {
+        return of(new Variant(value));
+    }
+
+    /**
+     * Creates a good value with source and server timestamps from the {@link CoarseClock}.
+     */
+    public static DataValue of(Variant value) {
+        return new DataValue(value, StatusCode.GOOD, CoarseClock.now());
+    }
+
+    /**
+     * Returns the given value if it already has a server timestamp, otherwise a copy with the current
+     * {@link CoarseClock} time as server timestamp.
+     */
+    public static DataValue withServerTime(DataValue value) {
+        return value.getServerTime() != null ? value : value.withServerTime(CoarseClock.now());
+    }
+
+    private static DataValue ofStatus(long statusCode) {
+        return ofStatus(new StatusCode(statusCode));
+    }
+
+    private static DataValue ofStatus(StatusCode statusCode) {
+        return new DataValue(Variant.NULL_VALUE, statusCode, null, null);
+    }
+}
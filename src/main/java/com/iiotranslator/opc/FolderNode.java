@@ -5,22 +5,68 @@
 package com.iiotranslator.opc;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
-import lombok.Synchronized;
-import org.eclipse.milo.opcua.sdk.server.nodes.UaFolderNode;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.AccessLevel;
+import lombok.Getter;
 import org.eclipse.milo.opcua.sdk.server.nodes.UaNode;
 import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
 
+/**
+ * A folder in the OPC UA address space.
+ * <p>
+ * Children are indexed by name, so {@link #getChild(String)} is a single hash lookup and adding a child does not scan
+ * the existing children. The child lists are copy-on-write: each modification builds new immutable lists while holding
+ * the folder's lock, and publishes them through a volatile field, so reads never take the lock.
+ * <p>
+ * Drivers that create many variables in the same folder should add them with {@link #addVariables(List)}, which
+ * checks and inserts them while taking the folder's lock once, instead of once per variable.
+ * <p>
+ * A folder can also be an object of an ObjectType, see {@link #addFolder(String, String)}, which is used for the
+ * devices.
+ */
 public class FolderNode extends Node {
-    private final List<Node> children = Collections.synchronizedList(new ArrayList<>());
+    /**
+     * A variable to be added by {@link #addVariables(List)}.
+     */
+    public record VariableDefinition(String name, NodeId dataType, boolean writable) {
+        public static VariableDefinition readOnly(String name, NodeId dataType) {
+            return new VariableDefinition(name, dataType, false);
+        }
+
+        public static VariableDefinition readWrite(String name, NodeId dataType) {
+            return new VariableDefinition(name, dataType, true);
+        }
+    }
+
+    private final Object childrenLock = new Object();
+
+    private final Map<String, Node> childrenByName = new ConcurrentHashMap<>();
+
+    /**
+     * The children in the order in which they were added. Only replaced while holding the childrenLock.
+     */
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    /**
+     * The name of the ObjectType of this folder's UaNode, or null for a plain folder.
+     */
+    @Getter(AccessLevel.PACKAGE)
+    private final String typeName;
 
-    private FolderNode(OpcNamespace opcNamespace, String name, FolderNode parent) {
-        super(opcNamespace, name, parent);
+    private FolderNode(String name, FolderNode parent, String typeName) {
+        super(name, parent);
+        this.typeName = typeName;
     }
 
-    FolderNode(OpcNamespace opcNamespace) {
-        super(opcNamespace);
+    /**
+     * Creates the root node.
+     */
+    FolderNode() {
+        super();
+        this.typeName = null;
     }
 
     @Override
@@ -30,62 +76,184 @@ public class FolderNode extends Node {
 
     @Override
     protected void registerChild(UaNode child) {
-        getOpcNamespace().registerChildNode(child, (UaFolderNode) getUaNode());
+        getOpcNamespace().registerChildNode(child, getUaNode());
+    }
+
+    @Override
+    protected void unregisterChild(UaNode child) {
+        getOpcNamespace().unregisterChildNode(child, getUaNode());
     }
 
     public List<Node> getChildren() {
-        return Collections.unmodifiableList(children);
+        return snapshot.children();
     }
 
     public List<VariableNode> getChildVariables() {
-        return children.stream()
-                .filter(VariableNode.class::isInstance)
-                .map(VariableNode.class::cast)
-                .toList();
+        return snapshot.variables();
     }
 
-    @Synchronized("children")
     public List<FolderNode> getChildFolders() {
-        return children.stream()
-                .filter(FolderNode.class::isInstance)
-                .map(FolderNode.class::cast)
-                .toList();
+        return snapshot.folders();
     }
 
-    @Synchronized("children")
     public VariableNode addVariableReadOnly(String name, NodeId type) {
-        var child = new VariableNode(getOpcNamespace(), name, this, type);
-        addChild(child);
+        VariableNode child;
+        synchronized (childrenLock) {
+            checkNameAvailable(name);
+            child = new VariableNode(name, this, type);
+            addChild(child);
+        }
+        getRoot().materializeIfAttached(child);
         return child;
     }
 
-    @Synchronized("children")
     public WritableVariableNode addVariableReadWrite(String name, NodeId type) {
-        var child = new WritableVariableNode(getOpcNamespace(), name, this, type);
-        addChild(child);
+        WritableVariableNode child;
+        synchronized (childrenLock) {
+            checkNameAvailable(name);
+            child = new WritableVariableNode(name, this, type);
+            addChild(child);
+        }
+        getRoot().materializeIfAttached(child);
         return child;
     }
 
-    @Synchronized("children")
+    /**
+     * Adds several variables at once. Either all of them are added, or none if one of the names is already taken.
+     *
+     * @return the added variables, in the order of their definitions. Writable variables are
+     *     {@link WritableVariableNode}s.
+     */
+    public List<VariableNode> addVariables(List<VariableDefinition> definitions) {
+        var added = new ArrayList<VariableNode>(definitions.size());
+        synchronized (childrenLock) {
+            var names = new HashSet<String>(definitions.size() * 2);
+            for (var definition : definitions) {
+                checkNameAvailable(definition.name());
+                if (!names.add(definition.name())) {
+                    throw new IllegalArgumentException(
+                            "Variable " + getPathString() + "/" + definition.name() + " is defined twice!");
+                }
+            }
+            for (var definition : definitions) {
+                added.add(
+                        definition.writable()
+                                ? new WritableVariableNode(definition.name(), this, definition.dataType())
+                                : new VariableNode(definition.name(), this, definition.dataType()));
+            }
+            for (var child : added) {
+                childrenByName.put(child.getName(), child);
+            }
+            snapshot = snapshot.with(added);
+        }
+        getRoot().materializeIfAttached(this, added);
+        return added;
+    }
+
     public FolderNode addFolder(String name) {
-        var childFolder = new FolderNode(getOpcNamespace(), name, this);
-        addChild(childFolder);
+        return addFolder(name, null);
+    }
+
+    /**
+     * Adds a folder whose UaNode is an object of the ObjectType with this name, e.g. "TasmotaDeviceType", instead of a
+     * plain folder. The ObjectType is created along with its first object, and shared by all objects of that type.
+     */
+    public FolderNode addFolder(String name, String typeName) {
+        FolderNode childFolder;
+        synchronized (childrenLock) {
+            checkNameAvailable(name);
+            childFolder = new FolderNode(name, this, typeName);
+            addChild(childFolder);
+        }
+        getRoot().materializeIfAttached(childFolder);
         return childFolder;
     }
 
-    @Synchronized("children")
     public Node getChild(String name) {
-        return children.stream()
-                .filter(child -> child.getName().equals(name))
-                .findFirst()
-                .orElse(null);
+        return childrenByName.get(name);
+    }
+
+    /**
+     * Removes a child and, if it is a folder, all of its descendants from the address space. Clients that still
+     * reference the removed nodes, e.g. in subscriptions, receive Bad_NodeIdUnknown.
+     *
+     * @return the removed child, or null if there is no child with this name
+     */
+    public Node removeChild(String name) {
+        Node child;
+        synchronized (childrenLock) {
+            child = childrenByName.remove(name);
+            if (child == null) {
+                return null;
+            }
+            snapshot = snapshot.without(child);
+        }
+        child.delete();
+        return child;
+    }
+
+    @Override
+    void delete() {
+        for (var child : getChildren()) {
+            removeChild(child.getName());
+        }
+        super.delete();
     }
 
-    @Synchronized("children")
+    private void checkNameAvailable(String name) {
+        if (childrenByName.containsKey(name)) {
+            throw new IllegalArgumentException("Node with path " + getPathString() + "/" + name + " already exists!");
+        }
+    }
+
+    /**
+     * Must be called while holding the childrenLock, after checking that the name is available.
+     */
     private void addChild(Node child) {
-        if (getChild(child.getName()) != null) {
-            throw new IllegalArgumentException("Node with path " + child.getPath() + " already exists!");
+        childrenByName.put(child.getName(), child);
+        snapshot = snapshot.with(List.of(child));
+    }
+
+    private record Snapshot(List<Node> children, List<VariableNode> variables, List<FolderNode> folders) {
+        private static final Snapshot EMPTY = new Snapshot(List.of(), List.of(), List.of());
+
+        /**
+         * Returns a copy of this snapshot with the nodes appended.
+         */
+        private Snapshot with(List<? extends Node> added) {
+            var newChildren = new ArrayList<Node>(children.size() + added.size());
+            newChildren.addAll(children);
+            newChildren.addAll(added);
+            var newVariables = new ArrayList<VariableNode>(variables);
+            var newFolders = new ArrayList<FolderNode>(folders);
+            for (var child : added) {
+                if (child instanceof VariableNode variable) {
+                    newVariables.add(variable);
+                } else if (child instanceof FolderNode folder) {
+                    newFolders.add(folder);
+                }
+            }
+            return new Snapshot(List.copyOf(newChildren), List.copyOf(newVariables), List.copyOf(newFolders));
+        }
+
+        /**
+         * Returns a copy of this snapshot without the node.
+         */
+        private Snapshot without(Node removed) {
+            var newChildren = new ArrayList<>(children);
+            newChildren.remove(removed);
+            List<VariableNode> newVariables = variables;
+            List<FolderNode> newFolders = folders;
+            if (removed instanceof VariableNode) {
+                var list = new ArrayList<>(variables);
+                list.remove(removed);
+                newVariables = List.copyOf(list);
+            } else if (removed instanceof FolderNode) {
+                var list = new ArrayList<>(folders);
+                list.remove(removed);
+                newFolders = List.copyOf(list);
+            }
+            return new Snapshot(List.copyOf(newChildren), newVariables, newFolders);
         }
-        children.add(child);
     }
 }
@@ -7,51 +7,131 @@ package com.iiotranslator.opc;
 import java.util.List;
 import java.util.stream.Stream;
 import lombok.AccessLevel;
-import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.NonNull;
 import org.eclipse.milo.opcua.sdk.server.nodes.UaNode;
 
+/**
+ * A node in the OPC UA address space. Since {@link FolderNode} ensures that there is at most one node per path, nodes
+ * use identity-based equals and hashCode, which is much cheaper than comparing and hashing their paths.
+ * <p>
+ * Nodes can be created before the OPC UA server has been started. Their UaNode is only created and registered with
+ * the server when the {@link OpcNamespace} is ready, see {@link RootNode#attach(OpcNamespace)}, or when a client
+ * accesses them if the UaNodes are created lazily.
+ */
 @Getter
-@EqualsAndHashCode(of = "path")
 public abstract class Node {
-    Node(OpcNamespace opcNamespace, @NonNull String name, @NonNull Node parent) {
+    Node(@NonNull String name, @NonNull Node parent) {
         if (name.contains("/")) {
             throw new IllegalArgumentException("Node name cannot contain '/'");
         }
         this.name = name;
         this.parent = parent;
-        this.path = Stream.concat(parent.getPath().stream(), Stream.of(name)).toList();
+        this.path = Stream.concat(parent.path.stream(), Stream.of(name)).toList();
         this.pathString = (parent.pathString.isEmpty() ? "" : (parent.getPathString() + "/")) + name;
-        this.opcNamespace = opcNamespace;
-        this.uaNode = createUaNode();
-        this.parent.registerChild(this.uaNode);
+        this.root = parent.root;
+        this.ordinal = allocateOrdinal();
     }
 
-    Node(OpcNamespace opcNamespace) {
+    /**
+     * Creates the root node.
+     */
+    Node() {
         this.name = "";
         this.parent = null;
         this.path = List.of();
         this.pathString = "";
-        this.opcNamespace = opcNamespace;
-        this.uaNode = createUaNode();
+        this.root = (RootNode) this;
+        this.ordinal = allocateOrdinal();
     }
 
     private final Node parent;
     private final String name;
+
+    /**
+     * The names of this node and its ancestors, starting below the root.
+     */
     private final List<String> path;
+
     private final String pathString;
 
+    /**
+     * Dense index of this node in the {@link VariableValueStore}, or -1 if this node does not hold a value.
+     */
+    private final int ordinal;
+
     @Getter(AccessLevel.PACKAGE)
-    private final OpcNamespace opcNamespace;
+    private final RootNode root;
 
+    /**
+     * The node in the OPC UA server, or null while the namespace is not ready. Only set while holding the node's
+     * {@link #materializationLock}, like {@link #deleted}.
+     */
     @Getter(AccessLevel.PACKAGE)
-    private final UaNode uaNode;
+    private volatile UaNode uaNode;
+
+    @Getter(AccessLevel.NONE)
+    private boolean deleted;
+
+    @Getter(AccessLevel.NONE)
+    private final Object materializationLock = new Object();
 
     protected abstract UaNode createUaNode();
 
+    /**
+     * Called from the constructor, so that the ordinal is already known when the UaNode is created.
+     */
+    protected int allocateOrdinal() {
+        return -1;
+    }
+
     protected abstract void registerChild(UaNode child);
 
+    protected abstract void unregisterChild(UaNode child);
+
+    OpcNamespace getOpcNamespace() {
+        return root.getOpcNamespace();
+    }
+
+    /**
+     * Creates the UaNode and registers it with its parent's, unless this has already been done or the node has been
+     * deleted. The parent is materialized first, if necessary. Only the node itself is locked, so nodes can be
+     * materialized in parallel, and a node that is materialized concurrently by several threads is only created once.
+     */
+    void materialize() {
+        if (uaNode != null) {
+            return;
+        }
+        if (parent != root) {
+            parent.materialize();
+            if (parent.uaNode == null) {
+                // The parent has been deleted
+                return;
+            }
+        }
+        synchronized (materializationLock) {
+            if (uaNode == null && !deleted) {
+                var created = createUaNode();
+                parent.registerChild(created);
+                uaNode = created;
+            }
+        }
+    }
+
+    /**
+     * Removes this node from the address space. Called by {@link FolderNode#removeChild(String)}, after the node has
+     * been removed from its parent's children.
+     */
+    void delete() {
+        synchronized (materializationLock) {
+            deleted = true;
+            if (uaNode != null) {
+                parent.unregisterChild(uaNode);
+                getOpcNamespace().deleteNode(uaNode);
+            }
+        }
+    }
+
     public Node getParent() {
         return parent;
     }
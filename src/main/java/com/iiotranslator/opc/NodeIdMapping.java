@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.opc;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Assigns stable numeric identifiers to the paths of the nodes, which are used as their NodeIds instead of the paths,
+ * see {@link OpcServer#enableNumericNodeIds(Path)}.
+ * <p>
+ * The assignments are appended to a text file with one line per node, consisting of the id, a space and the path, and
+ * loaded from it on startup, so that each node keeps its NodeId across restarts. Each line is flushed when it is
+ * written. Ids are never reused, not even after a device has been removed, so that a client that still has the NodeId
+ * of a removed node cannot read a different node using it.
+ */
+@Slf4j
+final class NodeIdMapping implements Closeable {
+    private final Path file;
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private final Map<Integer, String> paths = new ConcurrentHashMap<>();
+
+    // Guarded by this
+    private final BufferedWriter writer;
+    private int nextId = 1;
+
+    private NodeIdMapping(Path file, BufferedWriter writer) {
+        this.file = file;
+        this.writer = writer;
+    }
+
+    /**
+     * Loads the mapping from the file, or creates the file if it does not exist yet.
+     */
+    static NodeIdMapping open(@NonNull Path file) throws IOException {
+        var content = Files.exists(file) ? Files.readString(file, StandardCharsets.UTF_8) : "";
+        int end = content.lastIndexOf('\n') + 1;
+        if (end < content.length()) {
+            // The last line was only partially written, e.g. because the process was killed. It is removed, and its
+            // node gets a new id.
+            log.warn("Removing incomplete last line of NodeId mapping {}", file);
+            try (var channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(content.substring(0, end).getBytes(StandardCharsets.UTF_8).length);
+            }
+        }
+        var parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        var writer = Files.newBufferedWriter(
+                file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        var mapping = new NodeIdMapping(file, writer);
+        for (var line : content.substring(0, end).split("\n")) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            int separator = line.indexOf(' ');
+            int id;
+            try {
+                id = Integer.parseInt(line.substring(0, Math.max(separator, 0)));
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid line in NodeId mapping " + file + ": " + line, e);
+            }
+            var path = line.substring(separator + 1);
+            mapping.ids.put(path, id);
+            mapping.paths.put(id, path);
+            mapping.nextId = Math.max(mapping.nextId, id + 1);
+        }
+        return mapping;
+    }
+
+    /**
+     * Returns the id of the node with this path, assigning a new one if the node has none yet.
+     */
+    int getId(String path) {
+        var id = ids.get(path);
+        if (id != null) {
+            return id;
+        }
+        synchronized (this) {
+            id = ids.get(path);
+            if (id == null) {
+                id = nextId++;
+                try {
+                    writer.write(id + " " + path + "\n");
+                    writer.flush();
+                } catch (IOException e) {
+                    log.warn(
+                            "Could not persist NodeId {} of {} to {}, it will change after a restart",
+                            id,
+                            path,
+                            file,
+                            e);
+                }
+                paths.put(id, path);
+                ids.put(path, id);
+            }
+            return id;
+        }
+    }
+
+    /**
+     * Returns the id of the node with this path, or null if no id has been assigned to it.
+     */
+    Integer findId(String path) {
+        return ids.get(path);
+    }
+
+    /**
+     * Returns the path of the node with this id, or null if the id has not been assigned.
+     */
+    String getPath(int id) {
+        return paths.get(id);
+    }
+
+    int size() {
+        return ids.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+}
@@ -4,133 +4,569 @@
  */
 package com.iiotranslator.opc;
 
+import com.iiotranslator.opc.history.HistoryStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CompletableFuture;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicBoolean;
-import lombok.Getter;
 import lombok.NonNull;
-import lombok.Synchronized;
 import lombok.extern.slf4j.Slf4j;
 import org.eclipse.milo.opcua.sdk.core.AccessLevel;
 import org.eclipse.milo.opcua.sdk.core.Reference;
+import org.eclipse.milo.opcua.sdk.core.ValueRanks;
 import org.eclipse.milo.opcua.sdk.server.api.DataItem;
 import org.eclipse.milo.opcua.sdk.server.api.ManagedNamespaceWithLifecycle;
 import org.eclipse.milo.opcua.sdk.server.api.MonitoredItem;
-import org.eclipse.milo.opcua.sdk.server.nodes.UaFolderNode;
+import org.eclipse.milo.opcua.sdk.server.api.services.AttributeServices.ReadContext;
+import org.eclipse.milo.opcua.sdk.server.api.services.AttributeServices.WriteContext;
+import org.eclipse.milo.opcua.sdk.server.api.services.ViewServices.BrowseContext;
+import org.eclipse.milo.opcua.sdk.server.api.services.ViewServices.RegisterNodesContext;
 import org.eclipse.milo.opcua.sdk.server.nodes.UaNode;
+import org.eclipse.milo.opcua.sdk.server.nodes.UaNodeContext;
+import org.eclipse.milo.opcua.sdk.server.nodes.UaObjectNode;
+import org.eclipse.milo.opcua.sdk.server.nodes.UaObjectTypeNode;
 import org.eclipse.milo.opcua.sdk.server.nodes.UaVariableNode;
 import org.eclipse.milo.opcua.sdk.server.nodes.filters.AttributeFilter;
 import org.eclipse.milo.opcua.sdk.server.nodes.filters.AttributeFilterContext;
-import org.eclipse.milo.opcua.sdk.server.nodes.filters.AttributeFilters;
 import org.eclipse.milo.opcua.sdk.server.util.SubscriptionModel;
 import org.eclipse.milo.opcua.stack.core.AttributeId;
 import org.eclipse.milo.opcua.stack.core.Identifiers;
 import org.eclipse.milo.opcua.stack.core.StatusCodes;
 import org.eclipse.milo.opcua.stack.core.types.builtin.*;
+import org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.UByte;
+import org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.UInteger;
+import org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.Unsigned;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.TimestampsToReturn;
+import org.eclipse.milo.opcua.stack.core.types.structured.HistoryData;
+import org.eclipse.milo.opcua.stack.core.types.structured.HistoryReadDetails;
+import org.eclipse.milo.opcua.stack.core.types.structured.HistoryReadResult;
+import org.eclipse.milo.opcua.stack.core.types.structured.HistoryReadValueId;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReadRawModifiedDetails;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReadValueId;
+import org.eclipse.milo.opcua.stack.core.types.structured.ViewDescription;
+import org.eclipse.milo.opcua.stack.core.types.structured.WriteValue;
 
+/**
+ * The namespace that contains the devices' nodes, whose UaNodes are created from the {@link Node} tree, see
+ * {@link RootNode}.
+ * <p>
+ * UaNodes are created and registered by the driver threads in parallel, without a namespace-wide lock: Milo's node
+ * manager is thread-safe and synchronizes changes of the references itself, and each node locks itself while its
+ * UaNode is created or deleted.
+ * <p>
+ * Since a fleet of identical devices creates the same nodes over and over, the UaNodes share everything that does not
+ * depend on the device: the browse and display names are created once per name, the devices are objects of a shared
+ * ObjectType per driver (e.g. "TasmotaDeviceType"), and only the forward HasTypeDefinition references are stored,
+ * instead of an inverse reference from the type to each of its thousands of instances. The references to a parent
+ * and to the types share their targets' ExpandedNodeIds. Each UaNode thus only holds its own NodeId and state.
+ * <p>
+ * The NodeIds of the nodes are their paths, or numeric ids if enabled using
+ * {@link OpcServer#enableNumericNodeIds(java.nio.file.Path)}. In that case, the paths are still accepted in requests
+ * and translated to the numeric NodeIds, see {@link #registerNodes(RegisterNodesContext, List)}.
+ */
 @Slf4j
 public class OpcNamespace extends ManagedNamespaceWithLifecycle {
     public static final String NAMESPACE_URI = "urn:com:iiotranslator:opcuans";
 
+    /**
+     * The prefix of the NodeIds of the ObjectTypes. The NodeIds of the other nodes are their paths, which never start
+     * with a slash, so they cannot collide.
+     */
+    private static final String TYPE_PREFIX = "/Types/";
+
+    private static final ExpandedNodeId OBJECTS_FOLDER = Identifiers.ObjectsFolder.expanded();
+    private static final ExpandedNodeId FOLDER_TYPE = Identifiers.FolderType.expanded();
+    private static final ExpandedNodeId BASE_DATA_VARIABLE_TYPE = Identifiers.BaseDataVariableType.expanded();
+
     private final OpcServer server;
     private final SubscriptionModel subscriptionModel;
 
-    @Getter
-    private final CompletableFuture<RootNode> rootNodeCompletableFuture;
+    private final RootNode rootNode;
+    private final VariableValueStore valueStore;
+
+    /**
+     * The names of the nodes by {@link Node#getName()}, shared by all nodes with the same name. Entries are never
+     * removed, which is fine since the names are given by the drivers and the device configuration.
+     */
+    private final Map<String, Names> names = new ConcurrentHashMap<>();
+
+    /**
+     * The NodeIds of the ObjectTypes by their name, each is created when the first object of that type is created.
+     */
+    private final Map<String, ExpandedNodeId> objectTypes = new ConcurrentHashMap<>();
 
-    private final Map<VariableNode, DataValue> variableValues = new ConcurrentHashMap<>();
+    private final Counter valueReads = Counter.builder("iiot.opcua.value.reads")
+            .description("Reads of variable values by OPC UA clients")
+            .register(Metrics.globalRegistry);
+    private final Counter valueUpdates = Counter.builder("iiot.opcua.value.updates")
+            .description("Values received from devices")
+            .register(Metrics.globalRegistry);
+    private final Timer historyReads = Timer.builder("iiot.opcua.history.reads")
+            .description("Duration of history reads, per node")
+            .register(Metrics.globalRegistry);
+
+    /**
+     * Serves the values of all variables from the value store and forwards writes to the devices.
+     */
+    private final AttributeFilter variableFilter = new AttributeFilter() {
+        @Override
+        public Object getAttribute(AttributeFilterContext.GetAttributeContext ctx, AttributeId attributeId) {
+            if (attributeId == AttributeId.Value) {
+                var variableNode = ((TreeVariableNode) ctx.getNode()).variableNode;
+                valueReads.increment();
+                // The value is only kept in the value store, and not mirrored into the UaVariableNode, so that
+                // the DataValue can be garbage collected after it has been sent to the client
+                server.getVariableNodeAccessor()
+                        .read(variableNode)
+                        .thenAccept(value -> updateValue(variableNode, value));
+                return DataValues.withServerTime(
+                        valueStore.get(variableNode.getOrdinal(), DataValues.BAD_WAITING_FOR_INITIAL_DATA));
+            }
+            return ctx.getAttribute(attributeId);
+        }
+
+        @Override
+        public void setAttribute(
+                AttributeFilterContext.SetAttributeContext ctx, AttributeId attributeId, Object value) {
+            if (attributeId != AttributeId.Value) {
+                ctx.setAttribute(attributeId, value);
+                return;
+            }
+            var variableNode = ((TreeVariableNode) ctx.getNode()).variableNode;
+            if (variableNode instanceof WritableVariableNode writableVariableNode && variableNode.isWritable()) {
+                server.getVariableNodeAccessor().writeSync(writableVariableNode, (DataValue) value);
+            } else {
+                log.warn("Attempt to write to read-only node: {}", variableNode.getPathString());
+            }
+        }
+    };
 
-    OpcNamespace(@NonNull OpcServer server, @NonNull CompletableFuture<RootNode> rootNodeCompletableFuture) {
+    OpcNamespace(@NonNull OpcServer server) {
         super(server.getUaServer(), NAMESPACE_URI);
         this.server = server;
-        this.rootNodeCompletableFuture = rootNodeCompletableFuture;
+        this.rootNode = server.getRootNode();
+        this.valueStore = rootNode.getValueStore();
         subscriptionModel = new SubscriptionModel(server.getUaServer(), this);
         getLifecycleManager().addLifecycle(subscriptionModel);
-        // Signals that nodes can be created
-        getLifecycleManager().addStartupTask(() -> rootNodeCompletableFuture.complete(new RootNode(this)));
+        // Creates the UaNodes of the nodes that have been added while the server was being created
+        getLifecycleManager().addStartupTask(() -> rootNode.attach(this));
     }
 
-    @Synchronized
+    /**
+     * Adds the references between the Objects folder and one of its children. Milo would create the inverse reference
+     * itself, but with new copies of both NodeIds.
+     */
     void registerRootChildNode(@NonNull UaNode uaNode) {
-        uaNode.addReference(
-                new Reference(uaNode.getNodeId(), Identifiers.Organizes, Identifiers.ObjectsFolder.expanded(), false));
+        var nodeManager = getNodeManager();
+        nodeManager.addReference(new Reference(uaNode.getNodeId(), Identifiers.Organizes, OBJECTS_FOLDER, false));
+        nodeManager.addReference(
+                new Reference(Identifiers.ObjectsFolder, Identifiers.Organizes, expandedNodeId(uaNode), true));
     }
 
-    @Synchronized
-    void registerChildNode(@NonNull UaNode uaNode, @NonNull UaFolderNode parent) {
-        parent.addOrganizes(uaNode);
+    void registerChildNode(@NonNull UaNode uaNode, @NonNull UaNode parent) {
+        var nodeManager = getNodeManager();
+        nodeManager.addReference(
+                new Reference(uaNode.getNodeId(), Identifiers.Organizes, expandedNodeId(parent), false));
+        nodeManager.addReference(
+                new Reference(parent.getNodeId(), Identifiers.Organizes, expandedNodeId(uaNode), true));
+    }
+
+    void unregisterRootChildNode(@NonNull UaNode uaNode) {
+        var nodeManager = getNodeManager();
+        nodeManager.removeReference(new Reference(uaNode.getNodeId(), Identifiers.Organizes, OBJECTS_FOLDER, false));
+        nodeManager.removeReference(
+                new Reference(Identifiers.ObjectsFolder, Identifiers.Organizes, expandedNodeId(uaNode), true));
+    }
+
+    void unregisterChildNode(@NonNull UaNode uaNode, @NonNull UaNode parent) {
+        var nodeManager = getNodeManager();
+        nodeManager.removeReference(
+                new Reference(uaNode.getNodeId(), Identifiers.Organizes, expandedNodeId(parent), false));
+        nodeManager.removeReference(
+                new Reference(parent.getNodeId(), Identifiers.Organizes, expandedNodeId(uaNode), true));
+    }
+
+    void deleteNode(@NonNull UaNode uaNode) {
+        uaNode.delete();
+    }
+
+    private static ExpandedNodeId expandedNodeId(UaNode uaNode) {
+        return uaNode instanceof TreeObjectNode objectNode
+                ? objectNode.expandedNodeId
+                : uaNode.getNodeId().expanded();
     }
 
-    @Synchronized
     UaVariableNode createVariableNode(@NonNull VariableNode variableNode) {
-        var uaVariableNode = new UaVariableNode.UaVariableNodeBuilder(getNodeContext())
-                .setNodeId(newNodeId(variableNode.getPathString()))
-                .setAccessLevel(variableNode.isWritable() ? AccessLevel.READ_WRITE : AccessLevel.READ_ONLY)
-                .setUserAccessLevel(variableNode.isWritable() ? AccessLevel.READ_WRITE : AccessLevel.READ_ONLY)
-                .setBrowseName(newQualifiedName(variableNode.getName()))
-                .setDisplayName(LocalizedText.english(variableNode.getName()))
-                .setDataType(variableNode.getDataType())
-                .setTypeDefinition(Identifiers.BaseDataVariableType)
-                .build();
-        // uaVariableNode.setAllowNulls(true);
-        var writeLock = new Object();
-        AtomicBoolean isWritingReadValue = new AtomicBoolean(false);
-
-        var defaultValue = new DataValue(
-                Variant.NULL_VALUE, new StatusCode(StatusCodes.Bad_WaitingForInitialData), DateTime.now());
-        uaVariableNode.setValue(defaultValue);
-
-        uaVariableNode.getFilterChain().addFirst(new AttributeFilter() {
-            @Override
-            public Object getAttribute(AttributeFilterContext.GetAttributeContext ctx, AttributeId attributeId) {
-                if (attributeId == AttributeId.Value) {
-                    server.getVariableNodeAccessor().read(variableNode).thenAccept(value -> {
-                        variableValues.put(variableNode, value);
-                        synchronized (writeLock) {
-                            isWritingReadValue.set(true);
-                            uaVariableNode.setValue(value);
-                            isWritingReadValue.set(false);
-                        }
-                    });
-                    return variableValues.getOrDefault(variableNode, defaultValue);
-                } else if (attributeId == AttributeId.DataType) {
-                    // As this method is called from the super(..) call in VariableNode's constructor, the variableNode
-                    // .getDataType() method returns null, as the dataType is not yet set.
-                    // Therefore, the dataType is retrieved at runtime when it is requested by an OPC client.
-                    return variableNode.getDataType();
-                }
-                return ctx.getAttribute(attributeId);
+        var accessLevel = AccessLevel.toValue(accessLevel(variableNode));
+        var names = names(variableNode.getName());
+        var uaVariableNode = new TreeVariableNode(
+                getNodeContext(),
+                nodeId(variableNode),
+                names.browseName(),
+                names.displayName(),
+                accessLevel,
+                variableNode.getDataType(),
+                server.getHistoryStore() != null,
+                variableNode);
+        uaVariableNode.getFilterChain().addFirst(variableFilter);
+        getNodeManager().addNode(uaVariableNode);
+        getNodeManager()
+                .addReference(new Reference(
+                        uaVariableNode.getNodeId(), Identifiers.HasTypeDefinition, BASE_DATA_VARIABLE_TYPE, true));
+        return uaVariableNode;
+    }
+
+    /**
+     * The UaNode of a {@link VariableNode}, which references it so that all UaVariableNodes can share the
+     * {@link #variableFilter}.
+     */
+    private static final class TreeVariableNode extends UaVariableNode {
+        private final VariableNode variableNode;
+
+        private TreeVariableNode(
+                UaNodeContext context,
+                NodeId nodeId,
+                QualifiedName browseName,
+                LocalizedText displayName,
+                UByte accessLevel,
+                NodeId dataType,
+                boolean historizing,
+                VariableNode variableNode) {
+            super(
+                    context,
+                    nodeId,
+                    browseName,
+                    displayName,
+                    LocalizedText.NULL_VALUE,
+                    UInteger.MIN,
+                    UInteger.MIN,
+                    DataValues.BAD_WAITING_FOR_INITIAL_DATA,
+                    dataType,
+                    ValueRanks.Scalar,
+                    null,
+                    accessLevel,
+                    accessLevel,
+                    -1.0,
+                    historizing);
+            this.variableNode = variableNode;
+        }
+    }
+
+    private Set<AccessLevel> accessLevel(VariableNode variableNode) {
+        var accessLevel = EnumSet.copyOf(variableNode.isWritable() ? AccessLevel.READ_WRITE : AccessLevel.READ_ONLY);
+        if (server.getHistoryStore() != null) {
+            accessLevel.add(AccessLevel.HistoryRead);
+        }
+        return accessLevel;
+    }
+
+    private void updateValue(VariableNode variableNode, DataValue value) {
+        valueUpdates.increment();
+        if (rootNode.storeValue(variableNode, value)) {
+            server.valueUpdated(variableNode, value);
+        }
+    }
+
+    UaObjectNode createFolderNode(@NonNull FolderNode node) {
+        var names = names(node.getName());
+        var object = new TreeObjectNode(getNodeContext(), nodeId(node), names.browseName(), names.displayName());
+        var typeDefinition = node.getTypeName() == null ? FOLDER_TYPE : objectType(node.getTypeName());
+        getNodeManager().addNode(object);
+        getNodeManager()
+                .addReference(new Reference(object.getNodeId(), Identifiers.HasTypeDefinition, typeDefinition, true));
+        return object;
+    }
+
+    private NodeId nodeId(Node node) {
+        var nodeIdMapping = server.getNodeIdMapping();
+        return nodeIdMapping == null
+                ? newNodeId(node.getPathString())
+                : newNodeId(Unsigned.uint(nodeIdMapping.getId(node.getPathString())));
+    }
+
+    /**
+     * Returns the numeric NodeId of a node that is identified by its path, if numeric NodeIds are used. Other NodeIds
+     * are returned unchanged.
+     */
+    private NodeId translatePath(NodeId nodeId) {
+        var nodeIdMapping = server.getNodeIdMapping();
+        if (nodeIdMapping == null
+                || nodeId.getNamespaceIndex().intValue() != getNamespaceIndex().intValue()
+                || !(nodeId.getIdentifier() instanceof String path)) {
+            return nodeId;
+        }
+        var id = nodeIdMapping.findId(path);
+        if (id == null) {
+            if (findNode(nodeId) == null) {
+                return nodeId;
             }
+            // The node exists, but has no id yet since its UaNode is created lazily
+            id = nodeIdMapping.getId(path);
+        }
+        return newNodeId(Unsigned.uint(id));
+    }
+
+    /**
+     * The UaNode of a {@link FolderNode}, i.e. a folder or an object of an ObjectType, which keeps its ExpandedNodeId
+     * so that the references of all of its children can share it.
+     */
+    private static final class TreeObjectNode extends UaObjectNode {
+        private final ExpandedNodeId expandedNodeId;
+
+        private TreeObjectNode(
+                UaNodeContext context, NodeId nodeId, QualifiedName browseName, LocalizedText displayName) {
+            super(context, nodeId, browseName, displayName);
+            this.expandedNodeId = nodeId.expanded();
+        }
+    }
+
+    /**
+     * Returns the NodeId of the ObjectType with this name, creating it as a subtype of BaseObjectType if necessary.
+     */
+    private ExpandedNodeId objectType(String typeName) {
+        return objectTypes.computeIfAbsent(typeName, name -> {
+            var names = names(name);
+            var type = new UaObjectTypeNode(
+                    getNodeContext(),
+                    newNodeId(TYPE_PREFIX + name),
+                    names.browseName(),
+                    names.displayName(),
+                    LocalizedText.NULL_VALUE,
+                    UInteger.MIN,
+                    UInteger.MIN,
+                    false);
+            getNodeManager().addNode(type);
+            // Also adds the inverse reference, so that the type can be browsed from BaseObjectType
+            type.addReference(new Reference(
+                    type.getNodeId(), Identifiers.HasSubtype, Identifiers.BaseObjectType.expanded(), false));
+            return type.getNodeId().expanded();
         });
-        uaVariableNode.getFilterChain().addFirst(AttributeFilters.setValue((ctx, value) -> {
-            synchronized (writeLock) {
-                if (isWritingReadValue.get()) {
-                    return;
-                }
-                if (variableNode instanceof WritableVariableNode writableVariableNode) {
-                    if (variableNode.isWritable()) {
-                        server.getVariableNodeAccessor().writeSync(writableVariableNode, value);
-                    } else {
-                        log.warn("Attempt to write to read-only node: {}", variableNode.getPathString());
-                    }
-                }
+    }
+
+    /**
+     * The browse and display name of the nodes with the same name.
+     */
+    private record Names(QualifiedName browseName, LocalizedText displayName) {}
+
+    private Names names(String name) {
+        return names.computeIfAbsent(name, n -> new Names(newQualifiedName(n), LocalizedText.english(n)));
+    }
+
+    /**
+     * Serves raw history reads from the {@link HistoryStore}. Reading modified values, processed (aggregated) reads and
+     * bounding values are not supported. If numValuesPerNode is set, the remaining values can be read using the
+     * returned continuation point.
+     */
+    @Override
+    public void historyRead(
+            HistoryReadContext context,
+            HistoryReadDetails readDetails,
+            TimestampsToReturn timestamps,
+            List<HistoryReadValueId> readValueIds) {
+        var results = new ArrayList<HistoryReadResult>(readValueIds.size());
+        for (var readValueId : readValueIds) {
+            results.add(historyReads.record(() -> historyRead(readDetails, timestamps, readValueId)));
+        }
+        context.success(results);
+    }
+
+    private HistoryReadResult historyRead(
+            HistoryReadDetails readDetails, TimestampsToReturn timestamps, HistoryReadValueId readValueId) {
+        var historyStore = server.getHistoryStore();
+        if (historyStore == null
+                || !(readDetails instanceof ReadRawModifiedDetails details)
+                || Boolean.TRUE.equals(details.getIsReadModified())) {
+            return historyReadResult(StatusCodes.Bad_HistoryOperationUnsupported);
+        }
+        var variableNode = findVariableNode(readValueId.getNodeId());
+        if (variableNode == null) {
+            return historyReadResult(StatusCodes.Bad_NodeIdUnknown);
+        }
+        long startTime = toJavaTime(details.getStartTime(), Long.MIN_VALUE);
+        long endTime = toJavaTime(details.getEndTime(), Long.MAX_VALUE);
+        if (startTime > endTime) {
+            // Reading in reverse order is not supported, return the values in ascending order instead
+            long swap = startTime;
+            startTime = endTime;
+            endTime = swap;
+        }
+        int skip = 0;
+        var continuationPoint = readValueId.getContinuationPoint();
+        if (continuationPoint != null && continuationPoint.isNotNull()) {
+            if (continuationPoint.length() != Long.BYTES + Integer.BYTES) {
+                return historyReadResult(StatusCodes.Bad_ContinuationPointInvalid);
             }
-        }));
-        getNodeManager().addNode(uaVariableNode);
-        return uaVariableNode;
+            var buffer = ByteBuffer.wrap(continuationPoint.bytes());
+            startTime = buffer.getLong();
+            skip = buffer.getInt();
+        }
+        var numValuesPerNode = details.getNumValuesPerNode();
+        int maxValues = numValuesPerNode == null ? 0 : (int) Math.min(numValuesPerNode.longValue(), Integer.MAX_VALUE);
+        var page = historyStore.read(variableNode, startTime, endTime, maxValues, skip);
+
+        var values = page.values().stream()
+                .map(value -> switch (timestamps) {
+                    case Source -> value.withServerTime(null);
+                    case Server -> value.withSourceTime(null);
+                    case Neither -> value.withSourceTime(null).withServerTime(null);
+                    default -> value;
+                })
+                .toArray(DataValue[]::new);
+        var nextContinuationPoint = ByteString.NULL_VALUE;
+        if (page.hasMore()) {
+            nextContinuationPoint = ByteString.of(ByteBuffer.allocate(Long.BYTES + Integer.BYTES)
+                    .putLong(page.continuationTime())
+                    .putInt(page.continuationSkip())
+                    .array());
+        }
+        return new HistoryReadResult(
+                values.length == 0 ? new StatusCode(StatusCodes.Good_NoData) : StatusCode.GOOD,
+                nextContinuationPoint,
+                ExtensionObject.encode(getServer().getSerializationContext(), new HistoryData(values)));
     }
 
-    @Synchronized
-    UaFolderNode createFolderNode(@NonNull FolderNode node) {
-        var folder = new UaFolderNode(
-                getNodeContext(),
-                newNodeId(node.getPathString()),
-                newQualifiedName(node.getName()),
-                LocalizedText.english(node.getName()));
-        getNodeManager().addNode(folder);
-        return folder;
+    private static HistoryReadResult historyReadResult(long statusCode) {
+        return new HistoryReadResult(new StatusCode(statusCode), ByteString.NULL_VALUE, null);
+    }
+
+    private static long toJavaTime(DateTime dateTime, long defaultValue) {
+        return dateTime == null || dateTime.isNull() ? defaultValue : dateTime.getJavaTime();
+    }
+
+    @Override
+    public void browse(BrowseContext context, ViewDescription view, NodeId nodeId) {
+        nodeId = translatePath(nodeId);
+        materializeOnDemand(nodeId, true);
+        super.browse(context, view, nodeId);
+    }
+
+    /**
+     * Also called for the nodes of other namespaces, e.g. for the Objects folder, which organizes the device folders.
+     */
+    @Override
+    public void getReferences(BrowseContext context, ViewDescription view, NodeId nodeId) {
+        nodeId = translatePath(nodeId);
+        if (rootNode.isLazy() && Identifiers.ObjectsFolder.equals(nodeId)) {
+            rootNode.materializeOnDemand(rootNode, true);
+        } else {
+            materializeOnDemand(nodeId, true);
+        }
+        super.getReferences(context, view, nodeId);
+    }
+
+    @Override
+    public void read(
+            ReadContext context, Double maxAge, TimestampsToReturn timestamps, List<ReadValueId> readValueIds) {
+        if (server.getNodeIdMapping() != null) {
+            readValueIds = readValueIds.stream()
+                    .map(readValueId -> {
+                        var nodeId = translatePath(readValueId.getNodeId());
+                        return nodeId == readValueId.getNodeId()
+                                ? readValueId
+                                : new ReadValueId(
+                                        nodeId,
+                                        readValueId.getAttributeId(),
+                                        readValueId.getIndexRange(),
+                                        readValueId.getDataEncoding());
+                    })
+                    .toList();
+        }
+        for (var readValueId : readValueIds) {
+            materializeOnDemand(readValueId.getNodeId(), false);
+        }
+        super.read(context, maxAge, timestamps, readValueIds);
+    }
+
+    @Override
+    public void write(WriteContext context, List<WriteValue> writeValues) {
+        if (server.getNodeIdMapping() != null) {
+            writeValues = writeValues.stream()
+                    .map(writeValue -> {
+                        var nodeId = translatePath(writeValue.getNodeId());
+                        return nodeId == writeValue.getNodeId()
+                                ? writeValue
+                                : new WriteValue(
+                                        nodeId,
+                                        writeValue.getAttributeId(),
+                                        writeValue.getIndexRange(),
+                                        writeValue.getValue());
+                    })
+                    .toList();
+        }
+        for (var writeValue : writeValues) {
+            materializeOnDemand(writeValue.getNodeId(), false);
+        }
+        super.write(context, writeValues);
+    }
+
+    /**
+     * Returns the numeric NodeIds of the nodes that are registered using their paths, so that clients which read or
+     * monitor them at a high rate send the shorter NodeIds, which are also cheaper to look up. Without numeric NodeIds,
+     * the paths are the nodes' NodeIds and are returned unchanged. If the UaNodes are created lazily, those of the
+     * registered nodes are created right away, instead of on the first read.
+     */
+    @Override
+    public void registerNodes(RegisterNodesContext context, List<NodeId> nodeIds) {
+        var registered = nodeIds.stream().map(this::translatePath).toList();
+        for (var nodeId : registered) {
+            materializeOnDemand(nodeId, false);
+        }
+        context.success(registered);
+    }
+
+    /**
+     * If the UaNodes are created lazily, creates the UaNode of the node with this NodeId and those of its ancestors,
+     * so that it can be accessed by a client.
+     *
+     * @param withChildren whether to also create the UaNodes of a folder's children, which is needed to browse it
+     */
+    private void materializeOnDemand(NodeId nodeId, boolean withChildren) {
+        if (!rootNode.isLazy() || (!withChildren && getNodeManager().containsNode(nodeId))) {
+            return;
+        }
+        var node = findNode(nodeId);
+        if (node != null) {
+            rootNode.materializeOnDemand(node, withChildren);
+        }
+    }
+
+    private VariableNode findVariableNode(NodeId nodeId) {
+        return findNode(nodeId) instanceof VariableNode variableNode ? variableNode : null;
+    }
+
+    /**
+     * Finds a node by walking its path from the root node. The path is the identifier of the NodeId, or is looked up if
+     * the NodeId is numeric.
+     */
+    private Node findNode(NodeId nodeId) {
+        if (nodeId.getNamespaceIndex().intValue() != getNamespaceIndex().intValue()) {
+            return null;
+        }
+        String path;
+        var nodeIdMapping = server.getNodeIdMapping();
+        if (nodeId.getIdentifier() instanceof String string) {
+            path = string;
+        } else if (nodeIdMapping != null && nodeId.getIdentifier() instanceof UInteger id) {
+            path = nodeIdMapping.getPath(id.intValue());
+        } else {
+            return null;
+        }
+        if (path == null) {
+            return null;
+        }
+        Node node = rootNode;
+        for (var name : path.split("/")) {
+            if (!(node instanceof FolderNode folder) || (node = folder.getChild(name)) == null) {
+                return null;
+            }
+        }
+        return node;
     }
 
     @Override
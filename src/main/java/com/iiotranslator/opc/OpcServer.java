@@ -6,14 +6,19 @@ package com.iiotranslator.opc;
 
 import static com.google.common.collect.Lists.newArrayList;
 
+import com.iiotranslator.opc.history.HistoryStore;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
 import org.eclipse.milo.opcua.sdk.server.OpcUaServer;
 import org.eclipse.milo.opcua.sdk.server.api.config.OpcUaServerConfig;
 import org.eclipse.milo.opcua.sdk.server.identity.UsernameIdentityValidator;
@@ -23,12 +28,14 @@ import org.eclipse.milo.opcua.stack.core.transport.TransportProfile;
 import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
 import org.eclipse.milo.opcua.stack.core.types.builtin.DateTime;
 import org.eclipse.milo.opcua.stack.core.types.builtin.LocalizedText;
+import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
 import org.eclipse.milo.opcua.stack.core.types.enumerated.MessageSecurityMode;
 import org.eclipse.milo.opcua.stack.core.types.enumerated.UserTokenType;
 import org.eclipse.milo.opcua.stack.core.types.structured.BuildInfo;
 import org.eclipse.milo.opcua.stack.core.types.structured.UserTokenPolicy;
 import org.eclipse.milo.opcua.stack.server.EndpointConfiguration;
 
+@Slf4j
 public class OpcServer {
     private static final String PRODUCT_URI = "urn:com:iiotranslator",
             APPLICATION_URI = "urn:com:iiotranslator:opcua:server",
@@ -40,9 +47,30 @@ public class OpcServer {
             new UserTokenPolicy("username", UserTokenType.UserName, null, null, null);
 
     @Getter(AccessLevel.PACKAGE)
-    private final OpcUaServer uaServer;
+    private volatile OpcUaServer uaServer;
 
-    private final OpcNamespace opcNamespace;
+    private volatile OpcNamespace opcNamespace;
+
+    /**
+     * The address space, to which nodes can be added before the namespace is ready, see {@link #getNamespaceReady()}.
+     */
+    @Getter
+    private final RootNode rootNode = new RootNode(this);
+
+    /**
+     * Completed when the OPC UA server and its namespace have been created, and the UaNodes of all nodes that have been
+     * added until then have been created.
+     */
+    @Getter
+    private final CompletableFuture<Void> namespaceReady = new CompletableFuture<>();
+
+    private final List<VariableValueListener> valueListeners = new CopyOnWriteArrayList<>();
+
+    @Getter(AccessLevel.PACKAGE)
+    private volatile HistoryStore historyStore;
+
+    @Getter(AccessLevel.PACKAGE)
+    private volatile NodeIdMapping nodeIdMapping;
 
     private final Set<String> hostnames;
     private final String bindAddress;
@@ -57,7 +85,7 @@ public class OpcServer {
          */
         @Override
         public CompletableFuture<DataValue> read(VariableNode variable) {
-            return CompletableFuture.completedFuture(new DataValue(StatusCodes.Bad_NotSupported));
+            return CompletableFuture.completedFuture(DataValues.BAD_NOT_SUPPORTED);
         }
 
         @Override
@@ -68,8 +96,10 @@ public class OpcServer {
         }
     };
 
-    private final CompletableFuture<RootNode> rootNodeCompletableFuture = new CompletableFuture<>();
-
+    /**
+     * Creates the server. Since creating the OPC UA server and loading its standard nodes takes several seconds, this
+     * is done on a separate thread, while nodes can already be added to the {@link #getRootNode() root node}.
+     */
     public OpcServer(
             @NonNull Set<String> hostnames,
             @NonNull String bindAddress,
@@ -102,10 +132,19 @@ public class OpcServer {
                 .setProductUri(PRODUCT_URI)
                 .build();
 
-        uaServer = new OpcUaServer(serverConfig);
-
-        opcNamespace = new OpcNamespace(this, rootNodeCompletableFuture);
-        opcNamespace.startup();
+        var thread = new Thread(
+                () -> {
+                    try {
+                        uaServer = new OpcUaServer(serverConfig);
+                        opcNamespace = new OpcNamespace(this);
+                        opcNamespace.startup();
+                        namespaceReady.complete(null);
+                    } catch (Throwable e) {
+                        namespaceReady.completeExceptionally(e);
+                    }
+                },
+                "OPC UA server creation");
+        thread.start();
     }
 
     private Set<EndpointConfiguration> createEndpointConfigurations() {
@@ -156,17 +195,132 @@ public class OpcServer {
                 .build();
     }
 
+    /**
+     * Binds the endpoints once the namespace is ready.
+     */
     public CompletableFuture<OpcUaServer> startup() {
-        return uaServer.startup();
+        return namespaceReady.thenCompose(ignored -> uaServer.startup());
     }
 
     public CompletableFuture<OpcUaServer> shutdown() {
-        opcNamespace.shutdown();
+        return namespaceReady
+                .thenCompose(ignored -> {
+                    opcNamespace.shutdown();
+
+                    return uaServer.shutdown();
+                })
+                .whenComplete((uaServer, e) -> closeNodeIdMapping());
+    }
 
-        return uaServer.shutdown();
+    private void closeNodeIdMapping() {
+        if (nodeIdMapping != null) {
+            try {
+                nodeIdMapping.close();
+            } catch (IOException e) {
+                log.warn("Could not close NodeId mapping", e);
+            }
+        }
     }
 
-    public CompletableFuture<RootNode> getRootNode() {
-        return rootNodeCompletableFuture;
+    /**
+     * Registers a listener that is notified about every value that is read from a device.
+     */
+    public void addValueListener(@NonNull VariableValueListener listener) {
+        valueListeners.add(listener);
+    }
+
+    void valueUpdated(VariableNode variableNode, DataValue value) {
+        for (var listener : valueListeners) {
+            try {
+                listener.valueUpdated(variableNode, value);
+            } catch (RuntimeException e) {
+                log.error("Error in value listener for {}", variableNode.getPathString(), e);
+            }
+        }
+    }
+
+    void variableRemoved(VariableNode variableNode) {
+        for (var listener : valueListeners) {
+            try {
+                listener.variableRemoved(variableNode);
+            } catch (RuntimeException e) {
+                log.error("Error in value listener for {}", variableNode.getPathString(), e);
+            }
+        }
+    }
+
+    /**
+     * Loads the values from a snapshot written by {@link #writeValueSnapshot(Path)}. Variables that are created
+     * afterwards are initialized with their value from the snapshot, with the status Uncertain_LastUsableValue, until
+     * the first value has been read from the device. Must be called before any nodes are created.
+     *
+     * @return the number of loaded values
+     */
+    public int loadValueSnapshot(@NonNull Path file) throws IOException {
+        var values = ValueSnapshot.read(file, new StatusCode(StatusCodes.Uncertain_LastUsableValue));
+        rootNode.addInitialValues(values);
+        return values.size();
+    }
+
+    /**
+     * Discards the values loaded by {@link #loadValueSnapshot(Path)} that no variable has been created for, e.g.
+     * because its device has been removed from the configuration. Should be called once all devices have created their
+     * variables.
+     *
+     * @return the number of discarded values
+     */
+    public int discardUnusedSnapshotValues() {
+        return rootNode.discardInitialValues();
+    }
+
+    /**
+     * Writes the last known values of all variables to a snapshot file.
+     *
+     * @return the number of written values
+     */
+    public int writeValueSnapshot(@NonNull Path file) throws IOException {
+        return ValueSnapshot.write(file, rootNode, rootNode.getValueStore());
+    }
+
+    /**
+     * Only creates the UaNode of a node when an OPC UA client browses or accesses it, instead of when it is added, so
+     * that large address spaces need less memory and time to start. Must be called before any nodes are created.
+     */
+    public void enableLazyNodes() {
+        rootNode.setLazy(true);
+    }
+
+    /**
+     * Uses compact numeric NodeIds, e.g. {@code ns=2;i=17}, instead of the nodes' paths, e.g.
+     * {@code ns=2;s=Oven17/CV.1.ActualValue}. The ids are stored in the given file, so that they stay the same after a
+     * restart. The paths are still accepted as NodeIds, and RegisterNodes translates them to the numeric NodeIds. Must
+     * be called before any nodes are created.
+     *
+     * @return the number of NodeIds loaded from the file
+     */
+    public int enableNumericNodeIds(@NonNull Path file) throws IOException {
+        if (this.nodeIdMapping != null) {
+            throw new IllegalStateException("Numeric NodeIds are already enabled");
+        }
+        var nodeIdMapping = NodeIdMapping.open(file);
+        this.nodeIdMapping = nodeIdMapping;
+        return nodeIdMapping.size();
+    }
+
+    /**
+     * Enables the in-memory history, which allows OPC UA clients to read past values of all numeric and boolean
+     * variables. Must be called before any nodes are created.
+     *
+     * @param memoryBudgetBytes the maximum number of bytes used by the history, after which the oldest values are
+     *     evicted
+     */
+    public HistoryStore enableHistory(long memoryBudgetBytes) {
+        if (this.historyStore != null) {
+            throw new IllegalStateException("History is already enabled");
+        }
+        var historyStore = new HistoryStore(memoryBudgetBytes);
+        this.historyStore = historyStore;
+        addValueListener(historyStore);
+        return historyStore;
     }
 }
@@ -5,15 +5,30 @@
 package com.iiotranslator.opc;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import lombok.Getter;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
+import org.eclipse.milo.opcua.sdk.server.OpcUaServer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 /**
  * This class is responsible for starting the OPC UA server, using the configuration provided by Spring Boot.
+ * <p>
+ * The OPC UA server is created and its endpoints are bound in the background, while nodes can already be added to the
+ * root node, so that the devices are started and connect in the meantime. See {@link #awaitStartup()}.
  */
 @Service
 @Slf4j
@@ -33,16 +48,122 @@ public class OpcServerService {
     @Value("${iiot.opcua.password}")
     private String password;
 
+    @Value("${iiot.opcua.lazyNodes:false}")
+    private boolean lazyNodes;
+
+    /**
+     * If set, numeric NodeIds are used instead of the nodes' paths, and stored in this file.
+     */
+    @Value("${iiot.opcua.nodeIds.file:}")
+    private String nodeIdsFile;
+
+    @Value("${iiot.opcua.history.enabled:false}")
+    private boolean historyEnabled;
+
+    @Value("${iiot.opcua.history.memoryBudgetMb:64}")
+    private long historyMemoryBudgetMb;
+
+    /**
+     * If set, the last known values are written to this file periodically and on shutdown, and loaded on startup.
+     */
+    @Value("${iiot.opcua.snapshot.file:}")
+    private String snapshotFile;
+
+    @Value("${iiot.opcua.snapshot.interval:60s}")
+    private Duration snapshotInterval;
+
     @Getter
     private OpcServer server;
 
+    private ScheduledExecutorService snapshotExecutor;
+
+    private CompletableFuture<OpcUaServer> startup;
+
     @PostConstruct
     @SneakyThrows
-    private void initialize() {
+    void initialize() {
         log.info("Starting OPC UA server");
         this.server = new OpcServer(hostnames, bindAddress, bindPortTcp, username, password);
-        server.startup().get();
-        server.getRootNode().get();
-        log.info("OPC UA server started");
+        if (lazyNodes) {
+            server.enableLazyNodes();
+            log.info("OPC UA nodes are created when they are accessed");
+        }
+        if (!nodeIdsFile.isEmpty()) {
+            int count = server.enableNumericNodeIds(Path.of(nodeIdsFile));
+            log.info("Using numeric NodeIds, loaded {} from {}", count, nodeIdsFile);
+        }
+        if (historyEnabled) {
+            server.enableHistory(historyMemoryBudgetMb * 1024 * 1024);
+            log.info("OPC UA history enabled with a memory budget of {} MB", historyMemoryBudgetMb);
+        }
+        if (!snapshotFile.isEmpty()) {
+            loadValueSnapshot(Path.of(snapshotFile));
+            scheduleValueSnapshots(Path.of(snapshotFile));
+        }
+        server.getNamespaceReady().thenRun(() -> log.info("OPC UA namespace ready after {} ms", uptimeMillis()));
+        startup = server.startup().whenComplete((uaServer, e) -> {
+            if (e == null) {
+                log.info("OPC UA server started, endpoints bound after {} ms", uptimeMillis());
+            }
+        });
+    }
+
+    /**
+     * Waits until the server's endpoints are bound.
+     *
+     * @throws ExecutionException if the server could not be started, e.g. because the port is already in use
+     */
+    public void awaitStartup() throws InterruptedException, ExecutionException {
+        startup.get();
+    }
+
+    /**
+     * Returns the milliseconds since the JVM was started, which are logged for each step of the startup.
+     */
+    public static long uptimeMillis() {
+        return ManagementFactory.getRuntimeMXBean().getUptime();
+    }
+
+    private void loadValueSnapshot(Path file) {
+        if (Files.exists(file)) {
+            try {
+                int count = server.loadValueSnapshot(file);
+                log.info("Loaded {} last known values from {}", count, file);
+            } catch (IOException e) {
+                log.warn("Could not load last known values from {}", file, e);
+            }
+        }
+    }
+
+    /**
+     * Writes the last known values to the file periodically, and on shutdown.
+     */
+    private void scheduleValueSnapshots(Path file) {
+        snapshotExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "Value snapshot writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = snapshotInterval.toMillis();
+        snapshotExecutor.scheduleWithFixedDelay(
+                () -> writeValueSnapshot(file), intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void writeValueSnapshot(Path file) {
+        try {
+            int count = server.writeValueSnapshot(file);
+            log.debug("Wrote {} last known values to {}", count, file);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not write last known values to {}", file, e);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        if (snapshotExecutor != null) {
+            snapshotExecutor.shutdown();
+            snapshotExecutor.awaitTermination(10, TimeUnit.SECONDS);
+            writeValueSnapshot(Path.of(snapshotFile));
+        }
     }
 }
@@ -4,11 +4,196 @@
  */
 package com.iiotranslator.opc;
 
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Setter;
 import org.eclipse.milo.opcua.sdk.server.nodes.UaNode;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
 
+/**
+ * The root of the address space, which exists as soon as the {@link OpcServer} has been created. Nodes that are added
+ * before the namespace is ready are kept in the tree, and their UaNodes are created in one pass by
+ * {@link #attach(OpcNamespace)}. Afterwards, each node's UaNode is created when the node is added.
+ * <p>
+ * If the UaNodes are created {@link #isLazy() lazily}, the tree is the only complete representation of the address
+ * space, and the {@link OpcNamespace} only creates the UaNodes that clients browse or read, see
+ * {@link #materializeOnDemand(Node, boolean)}.
+ */
 public class RootNode extends FolderNode {
-    public RootNode(OpcNamespace opcNamespace) {
-        super(opcNamespace);
+    @Getter(AccessLevel.PACKAGE)
+    private final OpcServer server;
+
+    @Getter(AccessLevel.PACKAGE)
+    private final VariableValueStore valueStore = new VariableValueStore();
+
+    /**
+     * Values by path that variables are initialized with when they are created, e.g. from a {@link ValueSnapshot}.
+     */
+    private final Map<String, DataValue> initialValues = new ConcurrentHashMap<>();
+
+    @Getter(AccessLevel.PACKAGE)
+    private volatile OpcNamespace opcNamespace;
+
+    /**
+     * Whether UaNodes are only created when they are accessed, see {@link OpcServer#enableLazyNodes()}.
+     */
+    @Getter(AccessLevel.PACKAGE)
+    @Setter(AccessLevel.PACKAGE)
+    private volatile boolean lazy;
+
+    RootNode(@NonNull OpcServer server) {
+        super();
+        this.server = server;
+    }
+
+    /**
+     * Creates a node tree that is not served by an {@link OpcServer}, e.g. to test a driver without starting Milo.
+     */
+    public RootNode() {
+        super();
+        this.server = null;
+    }
+
+    /**
+     * Called once the namespace is ready, creates the UaNodes of all nodes that have been added so far, unless they are
+     * created lazily.
+     * <p>
+     * Nodes that are added concurrently are not missed without a lock: they are added to the tree before their thread
+     * checks whether the namespace is set in {@link #materializeIfAttached}, and the namespace is set here before the
+     * tree is walked, so at least one of them sees the other's write. Nodes that are seen by both are only
+     * materialized once, see {@link Node#materialize()}.
+     */
+    void attach(@NonNull OpcNamespace opcNamespace) {
+        if (this.opcNamespace != null) {
+            throw new IllegalStateException("The root node is already attached to a namespace");
+        }
+        this.opcNamespace = opcNamespace;
+        if (!lazy) {
+            // The device folders are materialized in parallel, as nodes only lock themselves while being materialized
+            getChildren().parallelStream().forEach(child -> {
+                child.materialize();
+                if (child instanceof FolderNode childFolder) {
+                    materializeDescendants(childFolder);
+                }
+            });
+        }
+    }
+
+    private static void materializeDescendants(FolderNode folder) {
+        for (var child : folder.getChildren()) {
+            child.materialize();
+            if (child instanceof FolderNode childFolder) {
+                materializeDescendants(childFolder);
+            }
+        }
+    }
+
+    /**
+     * Creates the UaNode of a node that has just been added, unless the namespace is not ready yet, in which case
+     * {@link #attach(OpcNamespace)} will create it, or the UaNodes are created lazily.
+     */
+    void materializeIfAttached(Node node) {
+        if (!lazy && opcNamespace != null) {
+            node.materialize();
+        }
+    }
+
+    /**
+     * Like {@link #materializeIfAttached(Node)}, for the nodes added to a folder by
+     * {@link FolderNode#addVariables(List)}.
+     */
+    void materializeIfAttached(FolderNode folder, List<? extends Node> children) {
+        if (!lazy && opcNamespace != null) {
+            if (folder != this) {
+                folder.materialize();
+            }
+            for (var child : children) {
+                child.materialize();
+            }
+        }
+    }
+
+    /**
+     * Creates the UaNode of a node that is being accessed by a client, and those of its ancestors.
+     *
+     * @param withChildren whether to also create the UaNodes of a folder's children, so that they are found when the
+     *                     folder is browsed
+     */
+    void materializeOnDemand(Node node, boolean withChildren) {
+        if (opcNamespace == null) {
+            return;
+        }
+        if (node != this) {
+            node.materialize();
+        }
+        if (withChildren && node instanceof FolderNode folder) {
+            for (var child : folder.getChildren()) {
+                child.materialize();
+            }
+        }
+    }
+
+    void addInitialValues(@NonNull Map<String, DataValue> values) {
+        initialValues.putAll(values);
+    }
+
+    /**
+     * Discards the initial values that no variable has been created for.
+     *
+     * @return the number of discarded values
+     */
+    int discardInitialValues() {
+        int count = 0;
+        for (var path : List.copyOf(initialValues.keySet())) {
+            if (initialValues.remove(path) != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Initializes a newly created variable with its value from {@link #addInitialValues(Map)}, if there is one.
+     */
+    void initializeValue(VariableNode variableNode) {
+        var initialValue = initialValues.remove(variableNode.getPathString());
+        if (initialValue != null) {
+            valueStore.put(variableNode.getOrdinal(), initialValue);
+        }
+    }
+
+    /**
+     * Stores a value received for a variable, unless the variable has been deleted, as its ordinal may already have
+     * been handed out to a new variable.
+     *
+     * @return whether the value was stored
+     */
+    boolean storeValue(VariableNode variableNode, DataValue value) {
+        synchronized (variableNode) {
+            if (variableNode.isReleased()) {
+                return false;
+            }
+            valueStore.put(variableNode.getOrdinal(), value);
+            return true;
+        }
+    }
+
+    /**
+     * Releases the ordinal of a deleted variable, so that it is reused for the next variable, and notifies the value
+     * listeners, so that they can release its state.
+     */
+    void variableDeleted(VariableNode variableNode) {
+        if (!variableNode.release()) {
+            return;
+        }
+        valueStore.release(variableNode.getOrdinal());
+        if (server != null) {
+            server.variableRemoved(variableNode);
+        }
     }
 
     @Override
@@ -20,4 +205,14 @@ public class RootNode extends FolderNode {
     protected void registerChild(UaNode child) {
         getOpcNamespace().registerRootChildNode(child);
     }
+
+    @Override
+    protected void unregisterChild(UaNode child) {
+        getOpcNamespace().unregisterRootChildNode(child);
+    }
+
+    @Override
+    void delete() {
+        throw new UnsupportedOperationException("The root node cannot be removed");
+    }
 }
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.opc;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import lombok.NonNull;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DateTime;
+import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
+import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
+
+/**
+ * Reads and writes the last known values of all variables to a compact binary file, so that they can be served right
+ * after a restart instead of {@code Bad_WaitingForInitialData}.
+ * <p>
+ * The file contains a header followed by one entry per variable: its path, status code, source and server timestamps,
+ * and its value, if it is a boolean, number or string. Variables with a bad status or other values are not written.
+ */
+final class ValueSnapshot {
+    private static final int MAGIC = 0x49495653, VERSION = 1;
+    private static final byte KIND_NULL = 0,
+            KIND_BOOLEAN = 1,
+            KIND_INTEGER = 2,
+            KIND_LONG = 3,
+            KIND_FLOAT = 4,
+            KIND_DOUBLE = 5,
+            KIND_STRING = 6;
+    // Strings are written using writeUTF, which is limited to 65535 bytes, i.e. at least 21845 characters
+    private static final int MAX_STRING_LENGTH = 21845;
+
+    private ValueSnapshot() {
+        // This class is not meant to be instantiated.
+    }
+
+    /**
+     * Writes the values of all variables below the given folder. The file is replaced atomically, so that a crash
+     * while writing does not destroy the previous snapshot.
+     *
+     * @return the number of values written
+     */
+    static int write(@NonNull Path file, @NonNull FolderNode root, @NonNull VariableValueStore valueStore)
+            throws IOException {
+        var parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        var temporaryFile = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        int count;
+        try {
+            try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryFile)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                count = writeFolder(out, root, valueStore);
+                // Marks the end of the file, so that truncated files are detected
+                out.writeBoolean(false);
+            }
+            Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporaryFile);
+        }
+        return count;
+    }
+
+    private static int writeFolder(DataOutputStream out, FolderNode folder, VariableValueStore valueStore)
+            throws IOException {
+        int count = 0;
+        for (var variable : folder.getChildVariables()) {
+            var value = valueStore.get(variable.getOrdinal(), null);
+            if (value != null && !value.getStatusCode().isBad() && writeValue(out, variable, value)) {
+                count++;
+            }
+        }
+        for (var child : folder.getChildFolders()) {
+            count += writeFolder(out, child, valueStore);
+        }
+        return count;
+    }
+
+    private static boolean writeValue(DataOutputStream out, VariableNode variable, DataValue value) throws IOException {
+        Object object = value.getValue().getValue();
+        byte kind;
+        if (object == null) {
+            kind = KIND_NULL;
+        } else if (object instanceof Boolean) {
+            kind = KIND_BOOLEAN;
+        } else if (object instanceof Integer) {
+            kind = KIND_INTEGER;
+        } else if (object instanceof Long) {
+            kind = KIND_LONG;
+        } else if (object instanceof Float) {
+            kind = KIND_FLOAT;
+        } else if (object instanceof Double) {
+            kind = KIND_DOUBLE;
+        } else if (object instanceof String string && string.length() <= MAX_STRING_LENGTH) {
+            kind = KIND_STRING;
+        } else {
+            return false;
+        }
+        out.writeBoolean(true);
+        out.writeUTF(variable.getPathString());
+        out.writeInt((int) value.getStatusCode().getValue());
+        out.writeLong(value.getSourceTime() != null ? value.getSourceTime().getUtcTime() : 0L);
+        out.writeLong(value.getServerTime() != null ? value.getServerTime().getUtcTime() : 0L);
+        out.writeByte(kind);
+        switch (kind) {
+            case KIND_BOOLEAN -> out.writeBoolean((Boolean) object);
+            case KIND_INTEGER -> out.writeInt((Integer) object);
+            case KIND_LONG -> out.writeLong((Long) object);
+            case KIND_FLOAT -> out.writeFloat((Float) object);
+            case KIND_DOUBLE -> out.writeDouble((Double) object);
+            case KIND_STRING -> out.writeUTF((String) object);
+            default -> {
+                // No value
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads a snapshot file.
+     *
+     * @param status the status code that is assigned to all values, e.g. Uncertain_LastUsableValue
+     * @return the values by variable path
+     */
+    static Map<String, DataValue> read(@NonNull Path file, @NonNull StatusCode status) throws IOException {
+        var values = new HashMap<String, DataValue>();
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a value snapshot: " + file);
+            }
+            while (in.readBoolean()) {
+                var path = in.readUTF();
+                in.readInt(); // The original status code is replaced
+                long sourceTime = in.readLong();
+                long serverTime = in.readLong();
+                var variant =
+                        switch (in.readByte()) {
+                            case KIND_NULL -> Variant.NULL_VALUE;
+                            case KIND_BOOLEAN -> new Variant(in.readBoolean());
+                            case KIND_INTEGER -> new Variant(in.readInt());
+                            case KIND_LONG -> new Variant(in.readLong());
+                            case KIND_FLOAT -> new Variant(in.readFloat());
+                            case KIND_DOUBLE -> new Variant(in.readDouble());
+                            case KIND_STRING -> new Variant(in.readUTF());
+                            default -> throw new IOException("Invalid value kind in " + file);
+                        };
+                values.put(
+                        path,
+                        new DataValue(
+                                variant,
+                                status,
+                                sourceTime == 0L ? null : new DateTime(sourceTime),
+                                serverTime == 0L ? null : new DateTime(serverTime)));
+            }
+        }
+        return values;
+    }
+}
@@ -6,21 +6,34 @@ package com.iiotranslator.opc;
 
 import lombok.Getter;
 import org.eclipse.milo.opcua.sdk.server.nodes.UaNode;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
 import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
 
 public class VariableNode extends Node {
     @Getter
     private final NodeId dataType;
 
-    VariableNode(OpcNamespace opcNamespace, String name, Node parent, NodeId dataType) {
-        super(opcNamespace, name, parent);
+    /**
+     * Set when the variable has been deleted and its ordinal released, guarded by this node's monitor, see
+     * {@link RootNode#storeValue(VariableNode, DataValue)}.
+     */
+    private boolean released;
+
+    VariableNode(String name, Node parent, NodeId dataType) {
+        super(name, parent);
         this.dataType = dataType;
+        getRoot().initializeValue(this);
     }
 
     public boolean isWritable() {
         return false;
     }
 
+    @Override
+    protected int allocateOrdinal() {
+        return getRoot().getValueStore().allocateOrdinal();
+    }
+
     @Override
     protected UaNode createUaNode() {
         return getOpcNamespace().createVariableNode(this);
@@ -30,4 +43,32 @@ public class VariableNode extends Node {
     protected void registerChild(UaNode child) {
         throw new UnsupportedOperationException("VariableNode cannot have children");
     }
+
+    @Override
+    protected void unregisterChild(UaNode child) {
+        throw new UnsupportedOperationException("VariableNode cannot have children");
+    }
+
+    @Override
+    void delete() {
+        super.delete();
+        getRoot().variableDeleted(this);
+    }
+
+    /**
+     * Marks this variable as released, after which no more values are stored for it.
+     *
+     * @return false if it has already been released
+     */
+    synchronized boolean release() {
+        if (released) {
+            return false;
+        }
+        released = true;
+        return true;
+    }
+
+    synchronized boolean isReleased() {
+        return released;
+    }
 }
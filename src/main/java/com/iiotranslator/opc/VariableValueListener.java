@@ -0,0 +1,23 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.opc;
+
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+
+/**
+ * Is notified whenever a new value for a {@link VariableNode} has been read from its device.
+ * <p>
+ * Listeners are called from the thread that completed the read, which is usually a device driver thread. They should
+ * therefore return quickly and must not block.
+ */
+public interface VariableValueListener {
+    void valueUpdated(VariableNode variable, DataValue value);
+
+    /**
+     * Called when a variable has been removed from the address space, e.g. because its device was removed from the
+     * configuration. No more values of it are reported afterwards.
+     */
+    default void variableRemoved(VariableNode variable) {}
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.opc;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.StampedLock;
+import lombok.NonNull;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DateTime;
+import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
+import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
+
+/**
+ * Stores the last known value of every {@link VariableNode} in primitive columns, indexed by the node's dense ordinal.
+ * <p>
+ * Numeric and boolean values are kept in {@code double[]} and {@code long[]} columns, and only other values (such as
+ * strings) are kept as objects. Status codes and timestamps are stored in separate columns as well, so that a
+ * {@link DataValue} is only created when the OPC UA layer actually asks for one. The created {@link DataValue} is cached
+ * in its slot and returned by further reads until the slot is written again.
+ * <p>
+ * The columns are allocated in chunks of {@link #CHUNK_SIZE} slots. Each chunk is guarded by its own
+ * {@link StampedLock}, so that readers never block and never observe a partially written slot.
+ * <p>
+ * The ordinals of deleted variables are {@link #release(int) released} and handed out again before new slots are
+ * allocated, so that the store does not grow when devices are restarted after a configuration reload.
+ */
+public class VariableValueStore {
+    static final int CHUNK_BITS = 10, CHUNK_SIZE = 1 << CHUNK_BITS, CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final byte KIND_EMPTY = 0,
+            KIND_NULL = 1,
+            KIND_BOOLEAN = 2,
+            KIND_INTEGER = 3,
+            KIND_LONG = 4,
+            KIND_FLOAT = 5,
+            KIND_DOUBLE = 6,
+            KIND_OBJECT = 7;
+
+    private final AtomicInteger nextOrdinal = new AtomicInteger();
+
+    private volatile Chunk[] chunks = new Chunk[0];
+
+    // The released ordinals, used as a stack and guarded by freeOrdinalsLock
+    private final Object freeOrdinalsLock = new Object();
+    private int[] freeOrdinals = new int[0];
+    private volatile int freeCount;
+
+    /**
+     * Allocates a slot in this store, reusing a released one if there is one.
+     *
+     * @return the ordinal of the slot
+     */
+    int allocateOrdinal() {
+        if (freeCount > 0) {
+            synchronized (freeOrdinalsLock) {
+                if (freeCount > 0) {
+                    return freeOrdinals[--freeCount];
+                }
+            }
+        }
+        int ordinal = nextOrdinal.getAndIncrement();
+        int chunkIndex = ordinal >>> CHUNK_BITS;
+        if (chunkIndex >= chunks.length) {
+            synchronized (this) {
+                if (chunkIndex >= chunks.length) {
+                    var grown = Arrays.copyOf(chunks, Math.max(chunkIndex + 1, chunks.length * 2));
+                    for (int i = chunks.length; i < grown.length; i++) {
+                        grown[i] = new Chunk();
+                    }
+                    chunks = grown;
+                }
+            }
+        }
+        return ordinal;
+    }
+
+    /**
+     * @return the number of ordinals that are currently allocated
+     */
+    public int size() {
+        return nextOrdinal.get() - freeCount;
+    }
+
+    /**
+     * @return the number of slots of this store, i.e. the number of ordinals that are allocated or released
+     */
+    public int capacity() {
+        return nextOrdinal.get();
+    }
+
+    /**
+     * Stores a value. If the value has no server timestamp, the current {@link CoarseClock} time is stored instead.
+     */
+    public void put(int ordinal, @NonNull DataValue value) {
+        var chunk = chunk(ordinal);
+        int slot = ordinal & CHUNK_MASK;
+        var serverTime = value.getServerTime() != null ? value.getServerTime() : CoarseClock.now();
+        var sourceTime = value.getSourceTime();
+        Object object = value.getValue().getValue();
+        long stamp = chunk.lock.writeLock();
+        try {
+            chunk.statuses[slot] = (int) value.getStatusCode().getValue();
+            chunk.sourceTimes[slot] = sourceTime != null ? sourceTime.getUtcTime() : 0L;
+            chunk.serverTimes[slot] = serverTime.getUtcTime();
+            chunk.objects[slot] = null;
+            chunk.cached[slot] = null;
+            chunk.versions[slot]++;
+            if (object == null) {
+                chunk.kinds[slot] = KIND_NULL;
+            } else if (object instanceof Double d) {
+                chunk.kinds[slot] = KIND_DOUBLE;
+                chunk.doubles[slot] = d;
+            } else if (object instanceof Float f) {
+                chunk.kinds[slot] = KIND_FLOAT;
+                chunk.doubles[slot] = f;
+            } else if (object instanceof Long l) {
+                chunk.kinds[slot] = KIND_LONG;
+                chunk.longs[slot] = l;
+            } else if (object instanceof Integer i) {
+                chunk.kinds[slot] = KIND_INTEGER;
+                chunk.longs[slot] = i;
+            } else if (object instanceof Boolean b) {
+                chunk.kinds[slot] = KIND_BOOLEAN;
+                chunk.longs[slot] = b ? 1L : 0L;
+            } else {
+                chunk.kinds[slot] = KIND_OBJECT;
+                chunk.objects[slot] = object;
+            }
+        } finally {
+            chunk.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes the value of an ordinal, so that {@link #get} returns the default value again. The ordinal is not reused.
+     */
+    public void clear(int ordinal) {
+        var chunk = chunk(ordinal);
+        int slot = ordinal & CHUNK_MASK;
+        long stamp = chunk.lock.writeLock();
+        try {
+            chunk.kinds[slot] = KIND_EMPTY;
+            chunk.objects[slot] = null;
+            chunk.cached[slot] = null;
+            chunk.versions[slot]++;
+        } finally {
+            chunk.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Clears the value of an ordinal that is no longer used, and hands the ordinal out again on a later call of
+     * {@link #allocateOrdinal()}.
+     */
+    void release(int ordinal) {
+        clear(ordinal);
+        synchronized (freeOrdinalsLock) {
+            if (freeCount == freeOrdinals.length) {
+                freeOrdinals = Arrays.copyOf(freeOrdinals, Math.max(16, freeCount * 2));
+            }
+            freeOrdinals[freeCount++] = ordinal;
+        }
+    }
+
+    /**
+     * Materializes the stored value as a {@link DataValue}, or returns the one that was materialized by an earlier call
+     * if the value was not written since.
+     *
+     * @return the stored value, or defaultValue if no value has been stored for this ordinal yet
+     */
+    public DataValue get(int ordinal, DataValue defaultValue) {
+        var chunk = chunk(ordinal);
+        int slot = ordinal & CHUNK_MASK;
+        byte kind;
+        int status, version;
+        long sourceTime, serverTime, longValue;
+        double doubleValue;
+        Object object;
+        DataValue cached;
+        long stamp = chunk.lock.tryOptimisticRead();
+        cached = chunk.cached[slot];
+        version = chunk.versions[slot];
+        kind = chunk.kinds[slot];
+        status = chunk.statuses[slot];
+        sourceTime = chunk.sourceTimes[slot];
+        serverTime = chunk.serverTimes[slot];
+        longValue = chunk.longs[slot];
+        doubleValue = chunk.doubles[slot];
+        object = chunk.objects[slot];
+        if (!chunk.lock.validate(stamp)) {
+            // A write happened concurrently, read again while holding the read lock
+            stamp = chunk.lock.readLock();
+            try {
+                cached = chunk.cached[slot];
+                version = chunk.versions[slot];
+                kind = chunk.kinds[slot];
+                status = chunk.statuses[slot];
+                sourceTime = chunk.sourceTimes[slot];
+                serverTime = chunk.serverTimes[slot];
+                longValue = chunk.longs[slot];
+                doubleValue = chunk.doubles[slot];
+                object = chunk.objects[slot];
+            } finally {
+                chunk.lock.unlockRead(stamp);
+            }
+        }
+        if (kind == KIND_EMPTY) {
+            return defaultValue;
+        }
+        if (cached != null) {
+            return cached;
+        }
+        var variant =
+                switch (kind) {
+                    case KIND_BOOLEAN -> new Variant(longValue != 0L);
+                    case KIND_INTEGER -> new Variant((int) longValue);
+                    case KIND_LONG -> new Variant(longValue);
+                    case KIND_FLOAT -> new Variant((float) doubleValue);
+                    case KIND_DOUBLE -> new Variant(doubleValue);
+                    case KIND_OBJECT -> new Variant(object);
+                    default -> Variant.NULL_VALUE;
+                };
+        var value = new DataValue(
+                variant,
+                status == 0 ? StatusCode.GOOD : new StatusCode(status & 0xFFFFFFFFL),
+                sourceTime == 0L ? null : new DateTime(sourceTime),
+                serverTime == 0L ? null : new DateTime(serverTime));
+        // Only cached if the slot was not written in the meantime, and skipped instead of waiting for a writer
+        stamp = chunk.lock.tryWriteLock();
+        if (stamp != 0L) {
+            if (chunk.versions[slot] == version) {
+                chunk.cached[slot] = value;
+            }
+            chunk.lock.unlockWrite(stamp);
+        }
+        return value;
+    }
+
+    private Chunk chunk(int ordinal) {
+        var chunks = this.chunks;
+        int chunkIndex = ordinal >>> CHUNK_BITS;
+        if (ordinal < 0 || chunkIndex >= chunks.length) {
+            throw new IndexOutOfBoundsException("Unknown ordinal " + ordinal);
+        }
+        return chunks[chunkIndex];
+    }
+
+    private static final class Chunk {
+        private final StampedLock lock = new StampedLock();
+        private final byte[] kinds = new byte[CHUNK_SIZE];
+        private final int[] statuses = new int[CHUNK_SIZE];
+        private final long[] sourceTimes = new long[CHUNK_SIZE];
+        private final long[] serverTimes = new long[CHUNK_SIZE];
+        private final long[] longs = new long[CHUNK_SIZE];
+        private final double[] doubles = new double[CHUNK_SIZE];
+        private final Object[] objects = new Object[CHUNK_SIZE];
+        private final DataValue[] cached = new DataValue[CHUNK_SIZE];
+        // Incremented on every write, so that a materialized value is not cached after the slot changed
+        private final int[] versions = new int[CHUNK_SIZE];
+    }
+}
@@ -7,8 +7,8 @@ package com.iiotranslator.opc;
 import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
 
 public class WritableVariableNode extends VariableNode {
-    WritableVariableNode(OpcNamespace opcNamespace, String name, Node parent, NodeId type) {
-        super(opcNamespace, name, parent, type);
+    WritableVariableNode(String name, Node parent, NodeId type) {
+        super(name, parent, type);
     }
 
     @Override
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.opc.history;
+
+import java.util.Arrays;
+
+/**
+ * A growable buffer of bits, written and read most significant bit first.
+ */
+class BitBuffer {
+    private long[] words;
+    private int writePosition;
+
+    BitBuffer(int initialWords) {
+        words = new long[Math.max(1, initialWords)];
+    }
+
+    int bitLength() {
+        return writePosition;
+    }
+
+    /**
+     * @return the number of bytes allocated by this buffer
+     */
+    long allocatedBytes() {
+        return words.length * 8L;
+    }
+
+    /**
+     * Writes the lowest {@code bits} bits of the given value.
+     */
+    void write(long value, int bits) {
+        if (bits == 0) {
+            return;
+        }
+        ensureCapacity(writePosition + bits);
+        int wordIndex = writePosition >>> 6;
+        int free = 64 - (writePosition & 63);
+        long masked = bits == 64 ? value : value & ((1L << bits) - 1);
+        if (bits <= free) {
+            words[wordIndex] |= masked << (free - bits);
+        } else {
+            int overflow = bits - free;
+            words[wordIndex] |= masked >>> overflow;
+            words[wordIndex + 1] |= masked << (64 - overflow);
+        }
+        writePosition += bits;
+    }
+
+    void writeBit(boolean bit) {
+        write(bit ? 1 : 0, 1);
+    }
+
+    /**
+     * Shrinks the backing array to the number of words that are actually used.
+     */
+    void trim() {
+        int usedWords = (writePosition + 63) >>> 6;
+        if (usedWords < words.length) {
+            words = Arrays.copyOf(words, Math.max(1, usedWords));
+        }
+    }
+
+    Reader reader() {
+        return new Reader();
+    }
+
+    private void ensureCapacity(int bits) {
+        int requiredWords = (bits + 63) >>> 6;
+        if (requiredWords > words.length) {
+            words = Arrays.copyOf(words, Math.max(requiredWords, words.length * 2));
+        }
+    }
+
+    /**
+     * Reads the bits that were written up to the moment the reader was created.
+     */
+    class Reader {
+        private final int limit = writePosition;
+        private int position;
+
+        boolean hasRemaining() {
+            return position < limit;
+        }
+
+        long read(int bits) {
+            if (bits == 0) {
+                return 0;
+            }
+            if (position + bits > limit) {
+                throw new IllegalStateException("Read past the end of the buffer");
+            }
+            int wordIndex = position >>> 6;
+            int free = 64 - (position & 63);
+            long result;
+            if (bits <= free) {
+                result = words[wordIndex] >>> (free - bits);
+                if (bits < 64) {
+                    result &= (1L << bits) - 1;
+                }
+            } else {
+                int overflow = bits - free;
+                long high = words[wordIndex] & ((1L << free) - 1);
+                result = (high << overflow) | (words[wordIndex + 1] >>> (64 - overflow));
+            }
+            position += bits;
+            return result;
+        }
+
+        boolean readBit() {
+            return read(1) != 0;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.opc.history;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * A block of (timestamp, status, value) samples, compressed as described in Facebook's Gorilla paper: timestamps are
+ * stored as delta-of-deltas and values as the XOR with the previous value. For sensor data that is sampled at a fixed
+ * rate and changes slowly, this needs a few bits per sample instead of 20 bytes.
+ * <p>
+ * Values are 64-bit patterns, i.e. either a long or the raw bits of a double. The status code is only stored when it
+ * changes, and samples with a bad status carry no value.
+ * <p>
+ * Timestamps are in milliseconds and must not decrease. A block is appended to until it holds {@link #MAX_SAMPLES}
+ * samples, after which it is sealed and its buffer is trimmed. This class is not thread-safe.
+ */
+class GorillaBlock {
+    static final int MAX_SAMPLES = 1024;
+
+    private final BitBuffer buffer = new BitBuffer(8);
+
+    @Getter
+    private int sampleCount;
+
+    @Getter
+    private long firstTimestamp, lastTimestamp;
+
+    private long lastDelta;
+    private int lastStatus;
+    private long lastValueBits;
+    private boolean hasValue;
+    private int lastLeadingZeros = -1, lastTrailingZeros;
+
+    @Getter
+    private boolean sealed;
+
+    /**
+     * The Java type of the values, which the block does not interpret, or 0 if only bad samples have been appended.
+     */
+    @Getter
+    @Setter
+    private byte kind;
+
+    boolean isFull() {
+        return sampleCount >= MAX_SAMPLES;
+    }
+
+    /**
+     * @return the approximate number of bytes used by this block
+     */
+    long sizeBytes() {
+        return buffer.allocatedBytes() + 64;
+    }
+
+    /**
+     * @param status the OPC UA status code of the sample
+     * @param valueBits the value of the sample, ignored if the status is bad
+     */
+    void append(long timestamp, int status, long valueBits) {
+        if (sealed || isFull()) {
+            throw new IllegalStateException("Block is full");
+        }
+        if (sampleCount == 0) {
+            buffer.write(timestamp, 64);
+            buffer.write(status, 32);
+            firstTimestamp = timestamp;
+        } else {
+            if (timestamp < lastTimestamp) {
+                throw new IllegalArgumentException("Timestamps must not decrease");
+            }
+            long delta = timestamp - lastTimestamp;
+            writeDeltaOfDelta(delta - lastDelta);
+            if (status == lastStatus) {
+                buffer.writeBit(false);
+            } else {
+                buffer.writeBit(true);
+                buffer.write(status, 32);
+            }
+            lastDelta = delta;
+        }
+        if (!isBad(status)) {
+            if (hasValue) {
+                writeXor(valueBits ^ lastValueBits);
+            } else {
+                buffer.write(valueBits, 64);
+                hasValue = true;
+            }
+            lastValueBits = valueBits;
+        }
+        lastTimestamp = timestamp;
+        lastStatus = status;
+        sampleCount++;
+    }
+
+    static boolean isBad(int status) {
+        // The two most significant bits of a status code are its severity, 0b10 means bad
+        return (status >>> 30) == 0b10;
+    }
+
+    void seal() {
+        sealed = true;
+        buffer.trim();
+    }
+
+    private void writeDeltaOfDelta(long deltaOfDelta) {
+        if (deltaOfDelta == 0) {
+            buffer.writeBit(false);
+        } else if (deltaOfDelta >= -63 && deltaOfDelta <= 64) {
+            buffer.write(0b10, 2);
+            buffer.write(deltaOfDelta + 63, 7);
+        } else if (deltaOfDelta >= -255 && deltaOfDelta <= 256) {
+            buffer.write(0b110, 3);
+            buffer.write(deltaOfDelta + 255, 9);
+        } else if (deltaOfDelta >= -2047 && deltaOfDelta <= 2048) {
+            buffer.write(0b1110, 4);
+            buffer.write(deltaOfDelta + 2047, 12);
+        } else {
+            buffer.write(0b1111, 4);
+            buffer.write(deltaOfDelta, 64);
+        }
+    }
+
+    private void writeXor(long xor) {
+        if (xor == 0) {
+            buffer.writeBit(false);
+            return;
+        }
+        buffer.writeBit(true);
+        // The leading zero count is stored in 5 bits
+        int leadingZeros = Math.min(Long.numberOfLeadingZeros(xor), 31);
+        int trailingZeros = Long.numberOfTrailingZeros(xor);
+        if (lastLeadingZeros >= 0 && leadingZeros >= lastLeadingZeros && trailingZeros >= lastTrailingZeros) {
+            // The meaningful bits fit into the previous window
+            buffer.writeBit(false);
+            buffer.write(xor >>> lastTrailingZeros, 64 - lastLeadingZeros - lastTrailingZeros);
+        } else {
+            int meaningfulBits = 64 - leadingZeros - trailingZeros;
+            buffer.writeBit(true);
+            buffer.write(leadingZeros, 5);
+            buffer.write(meaningfulBits - 1, 6);
+            buffer.write(xor >>> trailingZeros, meaningfulBits);
+            lastLeadingZeros = leadingZeros;
+            lastTrailingZeros = trailingZeros;
+        }
+    }
+
+    /**
+     * @return a decoder for the samples that are in this block at the time of calling
+     */
+    Decoder decoder() {
+        return new Decoder();
+    }
+
+    class Decoder {
+        private final BitBuffer.Reader reader = buffer.reader();
+        private final int count = sampleCount;
+        private int decoded;
+        private long timestamp, delta, valueBits;
+        private int status;
+        private boolean hasValue;
+        private int leadingZeros = -1, trailingZeros;
+
+        boolean next() {
+            if (decoded >= count) {
+                return false;
+            }
+            if (decoded == 0) {
+                timestamp = reader.read(64);
+                status = (int) reader.read(32);
+            } else {
+                delta += readDeltaOfDelta();
+                timestamp += delta;
+                if (reader.readBit()) {
+                    status = (int) reader.read(32);
+                }
+            }
+            if (!isBad(status)) {
+                valueBits = hasValue ? valueBits ^ readXor() : reader.read(64);
+                hasValue = true;
+            }
+            decoded++;
+            return true;
+        }
+
+        long timestamp() {
+            return timestamp;
+        }
+
+        int status() {
+            return status;
+        }
+
+        /**
+         * @return the value of the current sample, only meaningful if its status is not bad
+         */
+        long valueBits() {
+            return valueBits;
+        }
+
+        private long readDeltaOfDelta() {
+            if (!reader.readBit()) {
+                return 0;
+            } else if (!reader.readBit()) {
+                return reader.read(7) - 63;
+            } else if (!reader.readBit()) {
+                return reader.read(9) - 255;
+            } else if (!reader.readBit()) {
+                return reader.read(12) - 2047;
+            } else {
+                return reader.read(64);
+            }
+        }
+
+        private long readXor() {
+            if (!reader.readBit()) {
+                return 0;
+            }
+            if (reader.readBit()) {
+                leadingZeros = (int) reader.read(5);
+                int meaningfulBits = (int) reader.read(6) + 1;
+                trailingZeros = 64 - leadingZeros - meaningfulBits;
+            }
+            int meaningfulBits = 64 - leadingZeros - trailingZeros;
+            return reader.read(meaningfulBits) << trailingZeros;
+        }
+    }
+}
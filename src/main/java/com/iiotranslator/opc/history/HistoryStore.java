@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.opc.history;
+
+import com.iiotranslator.opc.CoarseClock;
+import com.iiotranslator.opc.VariableNode;
+import com.iiotranslator.opc.VariableValueListener;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+
+/**
+ * Keeps a compressed in-memory history of the numeric and boolean values of all variables, so that OPC UA clients can
+ * read trends without querying the devices again. Values of other types, such as strings, are not recorded.
+ * <p>
+ * The history is stored in {@link GorillaBlock}s of up to {@link GorillaBlock#MAX_SAMPLES} samples per variable. All
+ * blocks count against the memory budget, including the blocks that are currently being written to. Once the budget is
+ * exceeded, the blocks that were sealed first are evicted. If that is not enough, e.g. because there are so many
+ * variables that their active blocks alone exceed the budget, the largest active blocks are sealed early and evicted as
+ * well.
+ */
+@Slf4j
+public class HistoryStore implements VariableValueListener {
+    @Getter
+    private final long memoryBudgetBytes;
+
+    private final Map<VariableNode, VariableHistory> histories = new ConcurrentHashMap<>();
+
+    private final Queue<SealedBlock> sealedBlocks = new ConcurrentLinkedQueue<>();
+    private final AtomicLong usedBytes = new AtomicLong();
+
+    public HistoryStore(long memoryBudgetBytes) {
+        if (memoryBudgetBytes <= 0) {
+            throw new IllegalArgumentException("Memory budget must be positive");
+        }
+        this.memoryBudgetBytes = memoryBudgetBytes;
+    }
+
+    /**
+     * @return the number of bytes used by all blocks
+     */
+    public long getUsedBytes() {
+        return usedBytes.get();
+    }
+
+    @Override
+    public void valueUpdated(@NonNull VariableNode variable, @NonNull DataValue value) {
+        int status = (int) value.getStatusCode().getValue();
+        Object object = value.getValue().getValue();
+        byte kind;
+        long valueBits;
+        if (GorillaBlock.isBad(status)) {
+            kind = 0;
+            valueBits = 0L;
+        } else if (object instanceof Double d) {
+            kind = VariableHistory.KIND_DOUBLE;
+            valueBits = Double.doubleToRawLongBits(d);
+        } else if (object instanceof Float f) {
+            kind = VariableHistory.KIND_FLOAT;
+            valueBits = Float.floatToRawIntBits(f);
+        } else if (object instanceof Long l) {
+            kind = VariableHistory.KIND_LONG;
+            valueBits = l;
+        } else if (object instanceof Integer i) {
+            kind = VariableHistory.KIND_INTEGER;
+            valueBits = i;
+        } else if (object instanceof Boolean b) {
+            kind = VariableHistory.KIND_BOOLEAN;
+            valueBits = b ? 1L : 0L;
+        } else {
+            return;
+        }
+        var time = value.getSourceTime() != null ? value.getSourceTime() : value.getServerTime();
+        long timestamp = time != null ? time.getJavaTime() : CoarseClock.now().getJavaTime();
+        var history = histories.computeIfAbsent(variable, v -> new VariableHistory(usedBytes));
+        var sealed = history.append(timestamp, status, kind, valueBits);
+        if (sealed != null) {
+            sealedBlocks.add(new SealedBlock(history, sealed));
+        }
+        if (usedBytes.get() > memoryBudgetBytes) {
+            evictOverBudget();
+        }
+    }
+
+    /**
+     * Forgets the history of a removed variable. Its sealed blocks are still counted against the memory budget until
+     * they are evicted in turn.
+     */
+    @Override
+    public void variableRemoved(@NonNull VariableNode variable) {
+        var history = histories.remove(variable);
+        if (history != null) {
+            history.close();
+        }
+    }
+
+    /**
+     * Reads the recorded values of a variable with startTime &lt;= timestamp &lt;= endTime, in ascending order.
+     *
+     * @param startTime milliseconds since the Java epoch
+     * @param endTime milliseconds since the Java epoch
+     * @param maxValues the maximum number of values to return, or 0 for no limit
+     * @param skip the number of values with timestamp == startTime to skip, see {@link Page#continuationSkip()}
+     */
+    public Page read(@NonNull VariableNode variable, long startTime, long endTime, int maxValues, int skip) {
+        var history = histories.get(variable);
+        if (history == null) {
+            return new Page(List.of(), false, 0L, 0);
+        }
+        return history.read(startTime, endTime, maxValues, skip);
+    }
+
+    /**
+     * Evicts the oldest sealed blocks until the used bytes are within the budget. If there are no sealed blocks left,
+     * the largest active blocks are sealed and evicted until a quarter of the budget is free, so that the active blocks
+     * are not sorted again on every update.
+     */
+    private void evictOverBudget() {
+        evictSealedBlocks(memoryBudgetBytes);
+        if (usedBytes.get() <= memoryBudgetBytes) {
+            return;
+        }
+        long target = memoryBudgetBytes / 4 * 3;
+        // The sizes are taken once, as they change while sorting
+        var largestFirst = new ArrayList<ActiveBlock>(histories.size());
+        histories.values().forEach(history -> largestFirst.add(new ActiveBlock(history, history.getActiveBytes())));
+        largestFirst.sort(Comparator.comparingLong(ActiveBlock::bytes).reversed());
+        for (var active : largestFirst) {
+            if (usedBytes.get() <= target) {
+                return;
+            }
+            var sealed = active.history().sealEarly();
+            if (sealed != null) {
+                sealedBlocks.add(new SealedBlock(active.history(), sealed));
+                evictSealedBlocks(target);
+            }
+        }
+    }
+
+    private void evictSealedBlocks(long targetBytes) {
+        while (usedBytes.get() > targetBytes) {
+            var oldest = sealedBlocks.poll();
+            if (oldest == null) {
+                return;
+            }
+            oldest.history().evict(oldest.block());
+            usedBytes.addAndGet(-oldest.block().sizeBytes());
+            log.trace("Evicted history block, {} bytes in use", usedBytes.get());
+        }
+    }
+
+    /**
+     * The result of a {@link #read}. If there are more values than were requested, the read can be continued by
+     * reading again with startTime = {@link #continuationTime()} and skip = {@link #continuationSkip()}.
+     */
+    public record Page(List<DataValue> values, boolean hasMore, long continuationTime, int continuationSkip) {}
+
+    private record SealedBlock(VariableHistory history, GorillaBlock block) {}
+
+    private record ActiveBlock(VariableHistory history, long bytes) {}
+}
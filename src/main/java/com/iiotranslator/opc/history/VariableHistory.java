@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.opc.history;
+
+import com.iiotranslator.opc.CoarseClock;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
+import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
+
+/**
+ * The history of a single variable, as a list of sealed {@link GorillaBlock}s followed by the block that is currently
+ * being appended to.
+ * <p>
+ * Values are stored as 64-bit patterns. The Java type of the values is remembered per block, so that the original
+ * {@link Variant} can be restored when reading. If the type changes, e.g. after a configuration reload, the active block
+ * is sealed early, so that each block holds values of one type only.
+ * <p>
+ * The size of all blocks, including the active one, is added to the {@link HistoryStore}'s used bytes as they grow. The
+ * active block is only created with the first sample after the previous one was sealed, so that variables without new
+ * samples use no memory for it.
+ */
+class VariableHistory {
+    static final byte KIND_BOOLEAN = 1, KIND_INTEGER = 2, KIND_LONG = 3, KIND_FLOAT = 4, KIND_DOUBLE = 5;
+
+    private final AtomicLong usedBytes;
+    private final Deque<GorillaBlock> sealedBlocks = new ArrayDeque<>();
+    /**
+     * The block that is appended to, or null if there have been no samples since the last block was sealed.
+     */
+    private GorillaBlock activeBlock;
+
+    /**
+     * The size of the active block that has been added to usedBytes.
+     */
+    private long activeBytes;
+
+    private boolean closed;
+
+    private long lastTimestamp = Long.MIN_VALUE;
+    private int lastStatus;
+    private long lastValueBits;
+
+    /**
+     * @param usedBytes the number of bytes used by all histories, which this history adds the size of its blocks to
+     */
+    VariableHistory(AtomicLong usedBytes) {
+        this.usedBytes = usedBytes;
+    }
+
+    /**
+     * Appends a sample. Samples that are older than the last sample are dropped, as are exact repetitions of the last
+     * sample, which occur when the same cached value is read more than once.
+     *
+     * @param kind the Java type of the value, or 0 if the status is bad and there is no value
+     * @return the block that was sealed by this call, or null
+     */
+    synchronized GorillaBlock append(long timestamp, int status, byte kind, long valueBits) {
+        if (closed
+                || timestamp < lastTimestamp
+                || (timestamp == lastTimestamp && status == lastStatus && valueBits == lastValueBits)) {
+            return null;
+        }
+        GorillaBlock sealed = null;
+        if (activeBlock != null && kind != 0 && activeBlock.getKind() != 0 && kind != activeBlock.getKind()) {
+            sealed = sealActiveBlock();
+        }
+        if (activeBlock == null) {
+            activeBlock = new GorillaBlock();
+        }
+        if (kind != 0) {
+            activeBlock.setKind(kind);
+        }
+        activeBlock.append(timestamp, status, valueBits);
+        lastTimestamp = timestamp;
+        lastStatus = status;
+        lastValueBits = valueBits;
+        long size = activeBlock.sizeBytes();
+        usedBytes.addAndGet(size - activeBytes);
+        activeBytes = size;
+        // A block that was sealed because the kind changed cannot be followed by a full block
+        return activeBlock.isFull() ? sealActiveBlock() : sealed;
+    }
+
+    private GorillaBlock sealActiveBlock() {
+        var sealed = activeBlock;
+        sealed.seal();
+        sealedBlocks.addLast(sealed);
+        activeBlock = null;
+        // Sealing trims the block
+        usedBytes.addAndGet(sealed.sizeBytes() - activeBytes);
+        activeBytes = 0;
+        return sealed;
+    }
+
+    /**
+     * Seals the active block before it is full, so that it can be evicted.
+     *
+     * @return the sealed block, or null if there is no active block
+     */
+    synchronized GorillaBlock sealEarly() {
+        if (activeBlock == null) {
+            return null;
+        }
+        return sealActiveBlock();
+    }
+
+    /**
+     * @return the number of bytes used by the active block
+     */
+    synchronized long getActiveBytes() {
+        return activeBytes;
+    }
+
+    /**
+     * Releases the active block of a removed variable. Its sealed blocks are released when they are evicted.
+     */
+    synchronized void close() {
+        closed = true;
+        usedBytes.addAndGet(-activeBytes);
+        activeBytes = 0;
+        activeBlock = null;
+    }
+
+    /**
+     * Removes the given block, if it is still the oldest block of this history.
+     */
+    synchronized void evict(GorillaBlock block) {
+        if (sealedBlocks.peekFirst() == block) {
+            sealedBlocks.removeFirst();
+        }
+    }
+
+    /**
+     * Reads the samples with start &lt;= timestamp &lt;= end, in ascending order.
+     *
+     * @param maxValues the maximum number of values to return, or 0 for no limit
+     * @param skip the number of samples with timestamp == start to skip, used for continuing a previous read
+     */
+    HistoryStore.Page read(long start, long end, int maxValues, int skip) {
+        List<GorillaBlock> blocks;
+        var collector = new Collector(start, end, maxValues, skip);
+        synchronized (this) {
+            blocks = new ArrayList<>(sealedBlocks);
+        }
+        // Sealed blocks are immutable, so they can be decoded without holding the lock
+        for (var block : blocks) {
+            if (block.getLastTimestamp() >= start && block.getFirstTimestamp() <= end) {
+                if (!collector.collect(block.decoder(), block.getKind())) {
+                    return collector.page();
+                }
+            }
+        }
+        synchronized (this) {
+            var block = activeBlock;
+            if (block != null && block.getLastTimestamp() >= start && block.getFirstTimestamp() <= end) {
+                collector.collect(block.decoder(), block.getKind());
+            }
+        }
+        return collector.page();
+    }
+
+    private static final class Collector {
+        private final long start, end;
+        private final int maxValues;
+        private int skip;
+        private final List<DataValue> values = new ArrayList<>();
+        private long lastTimestamp = Long.MIN_VALUE, nextTimestamp;
+        private int lastTimestampCount, nextSkip = -1;
+
+        private Collector(long start, long end, int maxValues, int skip) {
+            this.start = start;
+            this.end = end;
+            this.maxValues = maxValues;
+            this.skip = skip;
+        }
+
+        /**
+         * @param kind the Java type of the block's values
+         * @return false if no more samples are needed
+         */
+        private boolean collect(GorillaBlock.Decoder decoder, byte kind) {
+            while (decoder.next()) {
+                long timestamp = decoder.timestamp();
+                if (timestamp < start) {
+                    continue;
+                }
+                if (timestamp > end) {
+                    return false;
+                }
+                if (timestamp == start && skip > 0) {
+                    skip--;
+                    lastTimestamp = timestamp;
+                    lastTimestampCount++;
+                    continue;
+                }
+                if (maxValues > 0 && values.size() >= maxValues) {
+                    // There are more values, remember where to continue
+                    nextTimestamp = timestamp;
+                    nextSkip = timestamp == lastTimestamp ? lastTimestampCount : 0;
+                    return false;
+                }
+                values.add(toDataValue(timestamp, decoder.status(), kind, decoder.valueBits()));
+                lastTimestampCount = timestamp == lastTimestamp ? lastTimestampCount + 1 : 1;
+                lastTimestamp = timestamp;
+            }
+            return true;
+        }
+
+        private static DataValue toDataValue(long timestamp, int status, byte kind, long valueBits) {
+            var dateTime = CoarseClock.toDateTime(timestamp);
+            var statusCode = status == 0 ? StatusCode.GOOD : new StatusCode(status & 0xFFFFFFFFL);
+            if (GorillaBlock.isBad(status)) {
+                return new DataValue(Variant.NULL_VALUE, statusCode, dateTime, dateTime);
+            }
+            var variant =
+                    switch (kind) {
+                        case KIND_BOOLEAN -> new Variant(valueBits != 0L);
+                        case KIND_INTEGER -> new Variant((int) valueBits);
+                        case KIND_LONG -> new Variant(valueBits);
+                        case KIND_FLOAT -> new Variant(Float.intBitsToFloat((int) valueBits));
+                        default -> new Variant(Double.longBitsToDouble(valueBits));
+                    };
+            return new DataValue(variant, statusCode, dateTime, dateTime);
+        }
+
+        private HistoryStore.Page page() {
+            return new HistoryStore.Page(values, nextSkip >= 0, nextTimestamp, Math.max(nextSkip, 0));
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.persistence;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import lombok.NonNull;
+
+/**
+ * Exports the samples of one device from a {@link SampleLog} directory as CSV. The segments are memory-mapped and
+ * streamed record by record, so the export does not need to fit onto the heap, and it can run while the application
+ * is writing to the log.
+ * <p>
+ * Can also be run from the command line, e.g. with the application's jar:
+ *
+ * <pre>
+ * java -cp iiotranslator.jar -Dloader.main=com.iiotranslator.persistence.SampleExporter \
+ *     org.springframework.boot.loader.PropertiesLauncher &lt;directory&gt; &lt;device&gt; &lt;from&gt; &lt;to&gt; [output.csv]
+ * </pre>
+ *
+ * where from and to are ISO-8601 instants such as 2023-01-31T12:00:00Z.
+ */
+public final class SampleExporter {
+    static final String CSV_HEADER = "timestamp,variable,value,status";
+
+    private SampleExporter() {
+        // This class is not meant to be instantiated.
+    }
+
+    /**
+     * Writes the samples of the given device with from &lt;= timestamp &lt;= to, in the order in which they were
+     * logged.
+     *
+     * @param device the name of the device, i.e. the first element of the variable paths
+     * @param from milliseconds since the Java epoch
+     * @param to milliseconds since the Java epoch
+     * @return the number of exported samples
+     */
+    public static long exportCsv(@NonNull Path directory, @NonNull String device, long from, long to, Writer out)
+            throws IOException {
+        boolean[] included;
+        Series[] series;
+        try (var dictionary = new SeriesDictionary(directory, true)) {
+            series = dictionary.getAll().toArray(Series[]::new);
+        }
+        included = new boolean[series.length];
+        var prefix = device + "/";
+        for (int i = 0; i < series.length; i++) {
+            included[i] = series[i].path().startsWith(prefix);
+        }
+
+        out.write(CSV_HEADER);
+        out.write('\n');
+        long count = 0;
+        for (var file : SampleLog.listSegmentFiles(directory)) {
+            Segment segment;
+            try {
+                segment = Segment.open(file, false);
+            } catch (IOException e) {
+                // The segment may have been deleted by the retention in the meantime
+                continue;
+            }
+            if (segment.getRecordCount() == 0 || segment.getMaxTimestamp() < from || segment.getMinTimestamp() > to) {
+                continue;
+            }
+            for (int record = 0, records = segment.getRecordCount(); record < records; record++) {
+                int seriesId = segment.seriesIdAt(record);
+                // Series that were created after the dictionary was read are skipped
+                if (seriesId >= included.length || !included[seriesId]) {
+                    continue;
+                }
+                long timestamp = segment.timestampAt(record);
+                if (timestamp < from || timestamp > to) {
+                    continue;
+                }
+                int status = segment.statusAt(record);
+                out.write(Instant.ofEpochMilli(timestamp).toString());
+                out.write(',');
+                writeCsvField(out, series[seriesId].path());
+                out.write(',');
+                if (!isBad(status)) {
+                    out.write(series[seriesId].format(segment.valueBitsAt(record)));
+                }
+                out.write(",0x");
+                out.write(String.format("%08X", status));
+                out.write('\n');
+                count++;
+            }
+        }
+        out.flush();
+        return count;
+    }
+
+    private static boolean isBad(int status) {
+        return (status >>> 30) == 0b10;
+    }
+
+    private static void writeCsvField(Writer out, String value) throws IOException {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0) {
+            out.write(value);
+        } else {
+            out.write('"');
+            out.write(value.replace("\"", "\"\""));
+            out.write('"');
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 4 || args.length > 5) {
+            System.err.println("Usage: SampleExporter <directory> <device> <from> <to> [output.csv]");
+            System.exit(1);
+        }
+        var directory = Path.of(args[0]);
+        long from = Instant.parse(args[2]).toEpochMilli();
+        long to = Instant.parse(args[3]).toEpochMilli();
+        try (var out = args.length == 5
+                ? Files.newBufferedWriter(Path.of(args[4]), StandardCharsets.UTF_8)
+                : new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))) {
+            long count = exportCsv(directory, args[1], from, to, out);
+            System.err.println("Exported " + count + " samples");
+        }
+    }
+}
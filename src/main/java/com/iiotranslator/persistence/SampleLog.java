@@ -0,0 +1,256 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A durable, append-only log of samples, stored in a directory of memory-mapped {@link Segment} files.
+ * <p>
+ * A new segment is started when the current one is full or older than the segment duration. Segments whose newest
+ * sample is older than the retention period are deleted whenever a segment is rolled. Appending only writes to the
+ * mapped memory, so a crash of the application does not lose any samples; the operating system writes the pages to
+ * disk in the background, and they are forced to disk when a segment is rolled or the log is closed.
+ * <p>
+ * As samples are appended by the device driver threads, appends do not lock: they reserve their record in the active
+ * segment atomically, see {@link Segment#append}. Only rolling to a new segment takes a lock, and forcing a rolled
+ * segment to disk and deleting old segments is done by a background thread. The newest timestamp of each segment is
+ * kept in memory for the retention.
+ */
+@Slf4j
+public class SampleLog implements Closeable {
+    @Getter
+    private final Path directory;
+
+    private final int segmentSizeBytes;
+    private final long segmentDurationMillis, retentionMillis;
+    private final SeriesDictionary dictionary;
+
+    /**
+     * The segment that is appended to. Only replaced while holding the rollLock.
+     */
+    private volatile Segment activeSegment;
+
+    private volatile boolean closed;
+    private final Object rollLock = new Object();
+
+    /**
+     * The timestamp of the newest sample of each segment except for the active one, by sequence number.
+     */
+    private final NavigableMap<Long, Long> newestMillisBySequence = new ConcurrentSkipListMap<>();
+
+    private final ExecutorService maintenance = Executors.newSingleThreadExecutor(runnable -> {
+        var thread = new Thread(runnable, "Sample log maintenance");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Opens the log in the given directory, creating it if necessary. If the directory already contains segments, the
+     * newest one is appended to.
+     *
+     * @param segmentSizeBytes the size of each segment file
+     * @param segmentDuration the maximum time span of each segment file
+     * @param retention how long samples are kept
+     */
+    public SampleLog(
+            @NonNull Path directory,
+            int segmentSizeBytes,
+            @NonNull Duration segmentDuration,
+            @NonNull Duration retention)
+            throws IOException {
+        if (segmentSizeBytes < Segment.HEADER_SIZE + Segment.RECORD_SIZE) {
+            throw new IllegalArgumentException("Segment size is too small: " + segmentSizeBytes);
+        }
+        this.directory = directory;
+        this.segmentSizeBytes = segmentSizeBytes;
+        this.segmentDurationMillis = segmentDuration.toMillis();
+        this.retentionMillis = retention.toMillis();
+        Files.createDirectories(directory);
+        this.dictionary = new SeriesDictionary(directory, false);
+
+        var segmentFiles = listSegmentFiles(directory);
+        if (!segmentFiles.isEmpty()) {
+            var newest = segmentFiles.get(segmentFiles.size() - 1);
+            try {
+                activeSegment = Segment.open(newest, true);
+                log.info(
+                        "Recovered sample log segment {} with {} records",
+                        newest.getFileName(),
+                        activeSegment.getRecordCount());
+            } catch (IOException e) {
+                log.error("Could not open sample log segment {}, starting a new one", newest, e);
+                activeSegment = Segment.create(
+                        directory, Segment.parseSequence(newest) + 1, segmentSizeBytes, System.currentTimeMillis());
+            }
+        } else {
+            activeSegment = Segment.create(directory, 0, segmentSizeBytes, System.currentTimeMillis());
+        }
+        for (var file : segmentFiles) {
+            long sequence = Segment.parseSequence(file);
+            if (sequence < activeSegment.getSequence()) {
+                try {
+                    newestMillisBySequence.put(sequence, Segment.readNewestMillis(file));
+                } catch (IOException e) {
+                    log.warn("Could not check retention of sample log segment {}", file, e);
+                }
+            }
+        }
+        enforceRetention();
+    }
+
+    /**
+     * Returns the series for the given variable path, creating it if necessary, or if the path's series does not accept
+     * values of this kind.
+     *
+     * @param kind the kind of values, see {@link Series#kindOf(Object)}, or 0 for a bad sample without a value, for
+     *     which a new series is a double series
+     */
+    Series series(String path, char kind) throws IOException {
+        var series = dictionary.get(path);
+        return series != null && series.accepts(kind)
+                ? series
+                : dictionary.getOrCreate(path, kind != 0 ? kind : Series.DOUBLE);
+    }
+
+    /**
+     * Appends a sample.
+     *
+     * @param timestamp milliseconds since the Java epoch
+     * @param status the OPC UA status code
+     * @param value a boolean or number, or null if the status is bad
+     */
+    public void append(@NonNull String path, long timestamp, int status, Object value) throws IOException {
+        char kind = value == null ? 0 : Series.kindOf(value);
+        if (value != null && kind == 0) {
+            throw new IllegalArgumentException("Cannot store values of type " + value.getClass());
+        }
+        var series = series(path, kind);
+        append(series, timestamp, status, value == null ? 0L : series.toBits(value));
+    }
+
+    void append(Series series, long timestamp, int status, long valueBits) throws IOException {
+        while (true) {
+            if (closed) {
+                throw new IOException("Sample log is closed");
+            }
+            var segment = activeSegment;
+            long now = System.currentTimeMillis();
+            if (now - segment.getCreatedMillis() < segmentDurationMillis
+                    && segment.append(series.id(), status, timestamp, valueBits)) {
+                return;
+            }
+            rollIfActive(segment, now);
+        }
+    }
+
+    /**
+     * Starts a new segment, unless another thread already replaced the given one.
+     */
+    private void rollIfActive(Segment segment, long now) throws IOException {
+        synchronized (rollLock) {
+            if (activeSegment == segment && !closed) {
+                roll(now);
+            }
+        }
+    }
+
+    private void roll(long now) throws IOException {
+        var previous = activeSegment;
+        activeSegment = Segment.create(directory, previous.getSequence() + 1, segmentSizeBytes, now);
+        newestMillisBySequence.put(previous.getSequence(), previous.getNewestMillis());
+        log.debug("Started sample log segment {}", activeSegment.getFile().getFileName());
+        maintenance.execute(() -> {
+            try {
+                // Appends that reserved their record just before the roll may still be writing it, in which case the
+                // operating system writes it to disk later
+                previous.force();
+            } catch (RuntimeException e) {
+                log.warn("Could not write sample log segment {} to disk", previous.getFile(), e);
+            }
+            enforceRetention();
+        });
+    }
+
+    /**
+     * Deletes all segments except for the active one whose newest sample is older than the retention period.
+     */
+    public void enforceRetention() {
+        long cutoff = System.currentTimeMillis() - retentionMillis;
+        for (var entry : newestMillisBySequence.entrySet()) {
+            if (entry.getValue() >= cutoff) {
+                continue;
+            }
+            var file = directory.resolve(Segment.fileName(entry.getKey()));
+            try {
+                Files.deleteIfExists(file);
+                newestMillisBySequence.remove(entry.getKey());
+                log.debug("Deleted sample log segment {}", file.getFileName());
+            } catch (IOException e) {
+                log.warn("Could not delete sample log segment {}", file, e);
+            }
+        }
+    }
+
+    /**
+     * Waits until the segments that have been rolled so far have been forced to disk and the retention was enforced.
+     */
+    void awaitMaintenance() throws InterruptedException {
+        try {
+            maintenance.submit(() -> {}).get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Writes all samples to disk and closes the log.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (rollLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            maintenance.shutdown();
+            try {
+                maintenance.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            activeSegment.force();
+            dictionary.close();
+        }
+    }
+
+    /**
+     * @return the segment files in the given directory, oldest first
+     */
+    static List<Path> listSegmentFiles(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return new ArrayList<>(files.filter(Segment::isSegmentFile)
+                    .sorted(Comparator.comparingLong(Segment::parseSequence))
+                    .toList());
+        }
+    }
+}
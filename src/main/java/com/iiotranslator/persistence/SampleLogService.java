@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.persistence;
+
+import com.iiotranslator.opc.CoarseClock;
+import com.iiotranslator.opc.OpcServerService;
+import com.iiotranslator.opc.VariableNode;
+import com.iiotranslator.opc.VariableValueListener;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Writes every numeric and boolean value that is read from a device to a {@link SampleLog}, if enabled using the
+ * iiot.persistence.enabled property. The property is checked at runtime rather than with a condition on the bean, as
+ * conditions are already evaluated when the application is built with Spring AOT.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class SampleLogService implements VariableValueListener {
+    private final OpcServerService opcServer;
+
+    @Value("${iiot.persistence.enabled:false}")
+    private boolean enabled;
+
+    @Value("${iiot.persistence.directory:data/samples}")
+    private Path directory;
+
+    @Value("${iiot.persistence.segmentSizeMb:64}")
+    private int segmentSizeMb;
+
+    @Value("${iiot.persistence.segmentDuration:1h}")
+    private Duration segmentDuration;
+
+    @Value("${iiot.persistence.retention:7d}")
+    private Duration retention;
+
+    @Getter
+    private SampleLog sampleLog;
+
+    private final Map<VariableNode, Series> seriesCache = new ConcurrentHashMap<>();
+
+    private volatile boolean failing;
+
+    @PostConstruct
+    void initialize() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        // Segments are memory-mapped, which limits their size to 2 GB
+        if (segmentSizeMb < 1 || segmentSizeMb >= 2048) {
+            throw new IllegalArgumentException(
+                    "iiot.persistence.segmentSizeMb must be between 1 and 2047, but is " + segmentSizeMb);
+        }
+        sampleLog = new SampleLog(directory, segmentSizeMb * 1024 * 1024, segmentDuration, retention);
+        opcServer.getServer().addValueListener(this);
+        log.info("Persisting samples to {}, retention {}", directory.toAbsolutePath(), retention);
+    }
+
+    @Override
+    public void valueUpdated(VariableNode variable, DataValue value) {
+        Object object = value.getValue().getValue();
+        int status = (int) value.getStatusCode().getValue();
+        boolean bad = value.getStatusCode().isBad();
+        char kind = Series.kindOf(object);
+        if (kind == 0 && !bad) {
+            // Strings and other values are not persisted
+            return;
+        }
+        var time = value.getSourceTime() != null ? value.getSourceTime() : value.getServerTime();
+        long timestamp = time != null ? time.getJavaTime() : CoarseClock.now().getJavaTime();
+        try {
+            var series = seriesCache.get(variable);
+            if (series == null || !series.accepts(kind)) {
+                series = sampleLog.series(variable.getPathString(), kind);
+                seriesCache.put(variable, series);
+            }
+            sampleLog.append(series, timestamp, status, bad ? 0L : series.toBits(object));
+            failing = false;
+        } catch (IOException | RuntimeException e) {
+            // Only log the first of a series of failures, e.g. when the disk is full
+            if (!failing) {
+                failing = true;
+                log.error("Could not persist sample of {}", variable.getPathString(), e);
+            }
+        }
+    }
+
+    @Override
+    public void variableRemoved(VariableNode variable) {
+        seriesCache.remove(variable);
+    }
+
+    @PreDestroy
+    void close() throws IOException {
+        if (sampleLog != null) {
+            sampleLog.close();
+        }
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.persistence;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import lombok.Getter;
+
+/**
+ * A memory-mapped segment file of the {@link SampleLog}. The file has a fixed size and starts with a header, followed
+ * by fixed-size records:
+ *
+ * <pre>
+ * header:  int magic, int version, long createdMillis, long minTimestamp, long maxTimestamp, 16 bytes reserved
+ * record:  int seriesId + 1, int status, long timestamp (millis), long value bits
+ * </pre>
+ *
+ * The series id is written last and is never 0, so the first record that starts with 0 marks the end of the segment.
+ * This allows recovering the write position after a crash by scanning the file.
+ * <p>
+ * Records can be appended by several threads at once without locking: each append reserves its record by advancing the
+ * write position atomically, and then writes the record. If the application crashes while records are being written,
+ * a record that was reserved but not completed ends the recovered segment, so the records after it are lost as well.
+ */
+class Segment {
+    static final int HEADER_SIZE = 48, RECORD_SIZE = 24;
+    private static final int MAGIC = 0x49494f54, VERSION = 1;
+    private static final int CREATED_OFFSET = 8, MIN_TIMESTAMP_OFFSET = 16, MAX_TIMESTAMP_OFFSET = 24;
+    private static final Pattern FILE_NAME = Pattern.compile("samples-(\\d{12})\\.seg");
+
+    /**
+     * Accesses the longs of the header atomically, in the buffer's default big-endian order.
+     */
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    @Getter
+    private final Path file;
+
+    @Getter
+    private final long sequence;
+
+    private final MappedByteBuffer buffer;
+
+    private final AtomicInteger writePosition = new AtomicInteger();
+
+    private Segment(Path file, long sequence, MappedByteBuffer buffer) {
+        this.file = file;
+        this.sequence = sequence;
+        this.buffer = buffer;
+    }
+
+    static String fileName(long sequence) {
+        return String.format("samples-%012d.seg", sequence);
+    }
+
+    /**
+     * @return the sequence number of a segment file, or -1 if the file name is not one of a segment
+     */
+    static long parseSequence(Path file) {
+        var matcher = FILE_NAME.matcher(file.getFileName().toString());
+        return matcher.matches() ? Long.parseLong(matcher.group(1)) : -1;
+    }
+
+    static Segment create(Path directory, long sequence, int sizeBytes, long createdMillis) throws IOException {
+        var file = directory.resolve(fileName(sequence));
+        MappedByteBuffer buffer;
+        try (var channel = FileChannel.open(
+                file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, sizeBytes);
+        }
+        var segment = new Segment(file, sequence, buffer);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putLong(CREATED_OFFSET, createdMillis);
+        buffer.putLong(MIN_TIMESTAMP_OFFSET, Long.MAX_VALUE);
+        buffer.putLong(MAX_TIMESTAMP_OFFSET, Long.MIN_VALUE);
+        segment.writePosition.set(HEADER_SIZE);
+        return segment;
+    }
+
+    /**
+     * Opens an existing segment, and recovers its write position by scanning for the first empty record.
+     *
+     * @param writable if false, the segment is mapped read-only and cannot be appended to
+     */
+    static Segment open(Path file, boolean writable) throws IOException {
+        MappedByteBuffer buffer;
+        try (var channel = writable
+                ? FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(
+                    writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a sample log segment: " + file);
+        }
+        var segment = new Segment(file, parseSequence(file), buffer);
+        int position = HEADER_SIZE;
+        while (position + RECORD_SIZE <= buffer.capacity() && buffer.getInt(position) != 0) {
+            position += RECORD_SIZE;
+        }
+        segment.writePosition.set(position);
+        return segment;
+    }
+
+    static boolean isSegmentFile(Path file) {
+        return parseSequence(file) >= 0 && Files.isRegularFile(file);
+    }
+
+    long getCreatedMillis() {
+        return buffer.getLong(CREATED_OFFSET);
+    }
+
+    long getMinTimestamp() {
+        return buffer.getLong(MIN_TIMESTAMP_OFFSET);
+    }
+
+    long getMaxTimestamp() {
+        return buffer.getLong(MAX_TIMESTAMP_OFFSET);
+    }
+
+    /**
+     * The timestamp of the newest sample, or the creation time if the segment is empty, which decides when the segment
+     * is deleted.
+     */
+    long getNewestMillis() {
+        return getRecordCount() == 0 ? getCreatedMillis() : getMaxTimestamp();
+    }
+
+    /**
+     * Like {@link #getNewestMillis()}, but only reads the header of a segment file instead of mapping and scanning it.
+     */
+    static long readNewestMillis(Path file) throws IOException {
+        var header = ByteBuffer.allocate(HEADER_SIZE);
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // Read until the header is complete or the file ends
+            }
+        }
+        if (header.hasRemaining() || header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+            throw new IOException("Not a sample log segment: " + file);
+        }
+        long maxTimestamp = header.getLong(MAX_TIMESTAMP_OFFSET);
+        return maxTimestamp == Long.MIN_VALUE ? header.getLong(CREATED_OFFSET) : maxTimestamp;
+    }
+
+    int getRecordCount() {
+        return (Math.min(writePosition.get(), buffer.capacity()) - HEADER_SIZE) / RECORD_SIZE;
+    }
+
+    /**
+     * Appends a record. Thread-safe, as the record's position is reserved with a compare-and-set of the write position,
+     * and the records of concurrent appends do not overlap.
+     *
+     * @return false if the segment is full
+     */
+    boolean append(int seriesId, int status, long timestamp, long valueBits) {
+        int position;
+        do {
+            position = writePosition.get();
+            if (position + RECORD_SIZE > buffer.capacity()) {
+                return false;
+            }
+        } while (!writePosition.compareAndSet(position, position + RECORD_SIZE));
+        buffer.putInt(position + 4, status);
+        buffer.putLong(position + 8, timestamp);
+        buffer.putLong(position + 16, valueBits);
+        // Written last, so that a record only becomes visible to recovery once it is complete
+        buffer.putInt(position, seriesId + 1);
+        long min;
+        while (timestamp < (min = (long) LONGS.getVolatile(buffer, MIN_TIMESTAMP_OFFSET))
+                && !LONGS.compareAndSet(buffer, MIN_TIMESTAMP_OFFSET, min, timestamp)) {
+            // Another append changed the minimum, check again
+        }
+        long max;
+        while (timestamp > (max = (long) LONGS.getVolatile(buffer, MAX_TIMESTAMP_OFFSET))
+                && !LONGS.compareAndSet(buffer, MAX_TIMESTAMP_OFFSET, max, timestamp)) {
+            // Another append changed the maximum, check again
+        }
+        return true;
+    }
+
+    /**
+     * Writes the dirty pages of this segment to disk.
+     */
+    void force() {
+        buffer.force();
+    }
+
+    int seriesIdAt(int record) {
+        return buffer.getInt(HEADER_SIZE + record * RECORD_SIZE) - 1;
+    }
+
+    int statusAt(int record) {
+        return buffer.getInt(HEADER_SIZE + record * RECORD_SIZE + 4);
+    }
+
+    long timestampAt(int record) {
+        return buffer.getLong(HEADER_SIZE + record * RECORD_SIZE + 8);
+    }
+
+    long valueBitsAt(int record) {
+        return buffer.getLong(HEADER_SIZE + record * RECORD_SIZE + 16);
+    }
+}
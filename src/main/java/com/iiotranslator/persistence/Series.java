@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.persistence;
+
+/**
+ * A variable whose values are written to the {@link SampleLog}.
+ *
+ * @param id the id that is stored in each record
+ * @param kind how the 64 value bits of a record are interpreted, one of {@link #BOOLEAN}, {@link #LONG} and
+ *     {@link #DOUBLE}
+ * @param path the path of the variable in the OPC UA address space
+ */
+record Series(int id, char kind, String path) {
+    static final char BOOLEAN = 'B', LONG = 'L', DOUBLE = 'D';
+
+    /**
+     * @return the kind of series that the given value is stored in, or 0 if the value cannot be stored
+     */
+    static char kindOf(Object value) {
+        if (value instanceof Double || value instanceof Float) {
+            return DOUBLE;
+        } else if (value instanceof Number) {
+            return LONG;
+        } else if (value instanceof Boolean) {
+            return BOOLEAN;
+        }
+        return 0;
+    }
+
+    /**
+     * Returns whether values of the given kind can be stored in this series without losing information. Integers are
+     * stored in a double series, and booleans in a long series, but fractions would be cut off in a long series.
+     *
+     * @param valueKind the kind of the value, see {@link #kindOf(Object)}, or 0 if there is no value
+     */
+    boolean accepts(char valueKind) {
+        return valueKind == 0
+                || valueKind == kind
+                || (kind == DOUBLE && valueKind == LONG)
+                || (kind == LONG && valueKind == BOOLEAN);
+    }
+
+    long toBits(Object value) {
+        if (value instanceof Boolean b) {
+            return b ? 1L : 0L;
+        }
+        var number = (Number) value;
+        return kind == DOUBLE ? Double.doubleToRawLongBits(number.doubleValue()) : number.longValue();
+    }
+
+    String format(long bits) {
+        return switch (kind) {
+            case BOOLEAN -> Boolean.toString(bits != 0L);
+            case DOUBLE -> Double.toString(Double.longBitsToDouble(bits));
+            default -> Long.toString(bits);
+        };
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.persistence;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.NonNull;
+
+/**
+ * Assigns a stable id to every variable path that is written to the {@link SampleLog}, so that records only need to
+ * store an int instead of the path. The dictionary is persisted as a tab-separated file with one line per series, which
+ * is only appended to.
+ * <p>
+ * If a variable receives values that its series does not {@link Series#accepts(char) accept}, e.g. a fraction for a
+ * series of integers, a new series with the same path is created, and used for the path from then on.
+ */
+class SeriesDictionary implements Closeable {
+    static final String FILE_NAME = "series.tsv";
+
+    private final Map<String, Series> seriesByPath = new ConcurrentHashMap<>();
+    private final List<Series> seriesById = new ArrayList<>();
+    private final BufferedWriter writer;
+
+    /**
+     * @param readOnly if true, the dictionary file is only read, and new series cannot be created
+     */
+    SeriesDictionary(@NonNull Path directory, boolean readOnly) throws IOException {
+        var file = directory.resolve(FILE_NAME);
+        if (Files.exists(file)) {
+            for (var line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                var fields = line.split("\t", 3);
+                if (fields.length != 3 || fields[1].length() != 1) {
+                    throw new IOException("Invalid line in " + file + ": " + line);
+                }
+                add(new Series(Integer.parseInt(fields[0]), fields[1].charAt(0), fields[2]));
+            }
+        }
+        writer = readOnly
+                ? null
+                : Files.newBufferedWriter(
+                        file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    Series get(String path) {
+        return seriesByPath.get(path);
+    }
+
+    synchronized List<Series> getAll() {
+        return List.copyOf(seriesById);
+    }
+
+    /**
+     * Returns the series for the given path, creating and persisting it if it does not exist yet or does not accept
+     * values of the given kind.
+     *
+     * @param kind the kind of values in the series, used if it is created
+     */
+    synchronized Series getOrCreate(@NonNull String path, char kind) throws IOException {
+        var series = seriesByPath.get(path);
+        if (series != null && series.accepts(kind)) {
+            return series;
+        }
+        if (writer == null) {
+            throw new IllegalStateException("Dictionary is read-only");
+        }
+        if (path.indexOf('\n') >= 0) {
+            throw new IllegalArgumentException("Path must not contain line breaks: " + path);
+        }
+        series = new Series(seriesById.size(), kind, path);
+        writer.write(series.id() + "\t" + series.kind() + "\t" + series.path());
+        writer.newLine();
+        writer.flush();
+        add(series);
+        return series;
+    }
+
+    private synchronized void add(Series series) {
+        if (series.id() != seriesById.size()) {
+            throw new IllegalStateException("Series ids are not contiguous at " + series);
+        }
+        seriesById.add(series);
+        seriesByPath.put(series.path(), series);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.device;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.iiotranslator.device.drivers.DeviceDriver;
+import com.iiotranslator.opc.DataValues;
+import com.iiotranslator.opc.FolderNode;
+import com.iiotranslator.opc.RootNode;
+import com.iiotranslator.opc.WritableVariableNode;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.milo.opcua.stack.core.Identifiers;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class DeviceDriverThreadTest {
+    private final FolderNode folder = new RootNode().addFolder("Device");
+    private final WritableVariableNode setpoint = folder.addVariableReadWrite("Setpoint", Identifiers.Double);
+    private final List<DeviceRequest> dispatched = new CopyOnWriteArrayList<>();
+    private DeviceDriverThread driverThread;
+
+    @AfterEach
+    void tearDown() {
+        driverThread.stop();
+    }
+
+    private void start(DeviceDriver driver) throws Exception {
+        driverThread = new DeviceDriverThread(new Device("Device", "test", Map.of()), folder, () -> driver, false);
+        driverThread.getInitialized().get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void requestsLeftOpenAreDispatchedAgain() throws Exception {
+        start(new DeviceDriver() {
+            @Override
+            public void initialize(Device device, FolderNode deviceFolderNode) {}
+
+            @Override
+            public void process(List<DeviceRequest> requestQueue, DeviceRequestCompletionListener listener) {
+                dispatched.addAll(requestQueue);
+                // The first attempt fails to reach the device, and leaves the write open to retry it
+                if (dispatched.size() > 1) {
+                    requestQueue.forEach(request ->
+                            listener.completeWriteRequestExceptionally((DeviceRequest.WriteRequest) request));
+                }
+            }
+        });
+
+        driverThread.write(setpoint, DataValues.of(1.0)).get(5, TimeUnit.SECONDS);
+
+        assertEquals(2, dispatched.size());
+        assertEquals(dispatched.get(0), dispatched.get(1));
+    }
+
+    @Test
+    void requestsOfAsynchronousDriversAreDispatchedOnce() throws Exception {
+        var completionListener = new CompletableFuture<DeviceRequestCompletionListener>();
+        start(new DeviceDriver() {
+            @Override
+            public void initialize(Device device, FolderNode deviceFolderNode) {}
+
+            @Override
+            public void process(List<DeviceRequest> requestQueue, DeviceRequestCompletionListener listener) {
+                dispatched.addAll(requestQueue);
+                completionListener.complete(listener);
+            }
+
+            @Override
+            public boolean completesRequestsAsynchronously() {
+                return true;
+            }
+        });
+
+        var write = driverThread.write(setpoint, DataValues.of(1.0));
+        var listener = completionListener.get(5, TimeUnit.SECONDS);
+        // An identical write joins the open request instead of being dispatched again
+        var secondWrite = driverThread.write(setpoint, DataValues.of(1.0));
+        Thread.sleep(100);
+        assertFalse(write.isDone());
+        assertEquals(1, dispatched.size());
+
+        listener.completeWriteRequestExceptionally((DeviceRequest.WriteRequest) dispatched.get(0));
+
+        write.get(5, TimeUnit.SECONDS);
+        secondWrite.get(5, TimeUnit.SECONDS);
+    }
+}
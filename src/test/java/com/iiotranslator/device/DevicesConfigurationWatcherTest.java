@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.device;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Properties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.env.PropertiesPropertySource;
+import org.springframework.mock.env.MockEnvironment;
+
+class DevicesConfigurationWatcherTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void loadsDevicesFromPropertiesFile() throws Exception {
+        var file = directory.resolve("application.properties");
+        Files.writeString(
+                file,
+                """
+                iiot.opcua.bindPortTcp=4840
+                iiot.devices.Oven1.driver=binder_kbf
+                iiot.devices.Oven1.hostname=192.168.1.10
+                iiot.devices.Plug.driver=tasmota
+                """);
+        var devices =
+                DevicesConfigurationWatcher.load(file, new MockEnvironment()).getDevices();
+        assertEquals(2, devices.size());
+        var oven = devices.stream()
+                .filter(device -> device.getName().equals("Oven1"))
+                .findFirst()
+                .orElseThrow();
+        assertEquals("binder_kbf", oven.getDriver());
+        assertEquals(Map.of("driver", "binder_kbf", "hostname", "192.168.1.10"), oven.getOptions());
+    }
+
+    @Test
+    void loadsDevicesFromYamlFile() throws Exception {
+        var file = directory.resolve("application.yml");
+        Files.writeString(
+                file,
+                """
+                iiot:
+                  devices:
+                    Plug:
+                      driver: tasmota
+                      hostname: 192.168.1.11
+                """);
+        var devices =
+                DevicesConfigurationWatcher.load(file, new MockEnvironment()).getDevices();
+        assertEquals(1, devices.size());
+        assertEquals("192.168.1.11", devices.get(0).getOption("hostname"));
+    }
+
+    @Test
+    void rejectsFileWithoutDevices() throws Exception {
+        var file = directory.resolve("application.properties");
+        Files.writeString(file, "iiot.opcua.bindPortTcp=4840\n");
+        assertThrows(RuntimeException.class, () -> DevicesConfigurationWatcher.load(file, new MockEnvironment()));
+    }
+
+    @Test
+    void keepsDevicesConfiguredOutsideFileAndResolvesPlaceholders() throws Exception {
+        var file = directory.resolve("application.properties");
+        Files.writeString(
+                file,
+                """
+                iiot.devices.Plug.driver=tasmota
+                iiot.devices.Plug.hostname=${PLUG_HOST}
+                """);
+        var environment = new MockEnvironment()
+                .withProperty("PLUG_HOST", "192.168.1.11")
+                .withProperty("iiot.devices.Oven1.driver", "binder_kbf");
+        var devices = DevicesConfigurationWatcher.load(file, environment).getDevices();
+        assertEquals(2, devices.size());
+        var plug = devices.stream()
+                .filter(device -> device.getName().equals("Plug"))
+                .findFirst()
+                .orElseThrow();
+        assertEquals("192.168.1.11", plug.getOption("hostname"));
+    }
+
+    @Test
+    void replacesPropertiesLoadedFromFileOnStartup() throws Exception {
+        var file = directory.resolve("application.properties");
+        Files.writeString(file, "iiot.devices.Plug.driver=tasmota\n");
+        var environment = new MockEnvironment();
+        var startupProperties = new Properties();
+        startupProperties.setProperty("iiot.devices.Removed.driver", "tasmota");
+        startupProperties.setProperty("iiot.devices.Plug.driver", "shelly");
+        environment
+                .getPropertySources()
+                .addLast(new PropertiesPropertySource(
+                        "Config resource 'file [" + file + "]' via location 'optional:file:./'", startupProperties));
+        var devices = DevicesConfigurationWatcher.load(file, environment).getDevices();
+        assertEquals(1, devices.size());
+        assertEquals("tasmota", devices.get(0).getDriver());
+    }
+}
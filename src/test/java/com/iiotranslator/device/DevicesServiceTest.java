@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.device;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.iiotranslator.device.capture.WireCaptureService;
+import com.iiotranslator.device.cluster.ClusterService;
+import com.iiotranslator.opc.DataValues;
+import com.iiotranslator.opc.FolderNode;
+import com.iiotranslator.opc.Node;
+import com.iiotranslator.opc.RootNode;
+import com.iiotranslator.opc.VariableNode;
+import com.iiotranslator.opc.VariableValueStore;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class DevicesServiceTest {
+    private final RootNode rootNode = new RootNode();
+    private DevicesService service;
+
+    @BeforeEach
+    void setUp() {
+        var wireCapture = new WireCaptureService();
+        ReflectionTestUtils.setField(wireCapture, "mode", WireCaptureService.Mode.OFF);
+        service = new DevicesService(null, null, wireCapture, new ClusterService());
+        ReflectionTestUtils.setField(service, "rootNode", rootNode);
+        service.reconfigure(configuration(Map.of(
+                "Unchanged", Map.of("driver", "test", "latency", "0"),
+                "Changed", Map.of("driver", "test", "latency", "0"),
+                "Removed", Map.of("driver", "test", "latency", "60000"))));
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.stopDevices();
+    }
+
+    private static DevicesConfiguration configuration(Map<String, Map<String, String>> devices) {
+        return new DevicesConfiguration(devices);
+    }
+
+    @Test
+    void onlyChangedDevicesAreRestarted() {
+        var unchangedFolder = rootNode.getChild("Unchanged");
+        var unchangedThread = service.getDriver(unchangedFolder);
+        var changedFolder = rootNode.getChild("Changed");
+        var changedThread = service.getDriver(changedFolder);
+
+        service.reconfigure(configuration(Map.of(
+                "Unchanged", Map.of("driver", "test", "latency", "0"),
+                "Changed", Map.of("driver", "test", "latency", "1"))));
+
+        assertSame(unchangedFolder, rootNode.getChild("Unchanged"));
+        assertSame(unchangedThread, service.getDriver(unchangedFolder));
+        assertNotSame(changedFolder, rootNode.getChild("Changed"));
+        assertNotSame(changedThread, service.getDriver(rootNode.getChild("Changed")));
+        assertNull(rootNode.getChild("Removed"));
+        assertEquals(
+                Set.of("Unchanged", "Changed"),
+                rootNode.getChildren().stream().map(Node::getName).collect(Collectors.toSet()));
+    }
+
+    @Test
+    void pendingRequestsOfRemovedDeviceAreCompleted() throws Exception {
+        var removedFolder = (FolderNode) rootNode.getChild("Removed");
+        var driverThread = service.getDriver(removedFolder);
+        driverThread.getInitialized().get(5, TimeUnit.SECONDS);
+        var variable = (VariableNode) removedFolder.getChild("test");
+        // The driver takes a minute to answer, so the read is still pending when the device is removed
+        var read = driverThread.read(variable);
+
+        service.reconfigure(configuration(Map.of("Unchanged", Map.of("driver", "test", "latency", "0"))));
+
+        assertEquals(DataValues.BAD_NO_COMMUNICATION, read.get(1, TimeUnit.SECONDS));
+        assertEquals(
+                DataValues.BAD_NO_COMMUNICATION, driverThread.read(variable).get(1, TimeUnit.SECONDS));
+        // The device was only removed after its driver thread had ended
+        assertTrue(driverThread.awaitTermination(1));
+    }
+
+    @Test
+    void reloadingDeviceReusesOrdinals() throws Exception {
+        var valueStore = (VariableValueStore) ReflectionTestUtils.getField(rootNode, "valueStore");
+        for (String name : new String[] {"Unchanged", "Changed", "Removed"}) {
+            service.getDriver(rootNode.getChild(name)).getInitialized().get(5, TimeUnit.SECONDS);
+        }
+        int capacity = valueStore.capacity();
+
+        for (int i = 1; i <= 20; i++) {
+            service.reconfigure(configuration(Map.of(
+                    "Unchanged", Map.of("driver", "test", "latency", "0"),
+                    "Changed", Map.of("driver", "test", "latency", Integer.toString(i)),
+                    "Removed", Map.of("driver", "test", "latency", "60000"))));
+            service.getDriver(rootNode.getChild("Changed")).getInitialized().get(5, TimeUnit.SECONDS);
+        }
+
+        // The variables of each restarted device take the ordinals of the variables they replace
+        assertEquals(capacity, valueStore.capacity());
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.device.capture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class WireCaptureTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void replaysRecordedLineProtocol() throws Exception {
+        var file = directory.resolve("device" + WireCaptureService.FILE_EXTENSION);
+        List<String> recorded;
+        // A device that answers each line with its length after a short delay
+        try (var device = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            var deviceThread = new Thread(() -> {
+                try (var socket = device.accept();
+                        var reader = new BufferedReader(
+                                new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+                        var writer = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.US_ASCII)) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        Thread.sleep(20);
+                        writer.println(line + "=" + line.length());
+                    }
+                } catch (IOException | InterruptedException e) {
+                    // The test has finished
+                }
+            });
+            deviceThread.start();
+            var target = new InetSocketAddress(InetAddress.getLoopbackAddress(), device.getLocalPort());
+            try (var proxy = new CaptureProxy("device", target, 1000, new WireRecording.Writer(file))) {
+                recorded = exchange(proxy.getPort(), "first", "second request", "third");
+            }
+            deviceThread.join(5000);
+        }
+        assertEquals(List.of("first=5", "second request=14", "third=5"), recorded);
+
+        var connections = WireRecording.read(file);
+        assertEquals(1, connections.size());
+        var events = connections.get(0);
+        assertEquals(WireRecording.CONNECT, events.get(0).type());
+        assertEquals(
+                "first\n",
+                new String(events.get(1).data(), StandardCharsets.US_ASCII),
+                "The first request should be recorded as sent");
+
+        // The device is no longer running, so the answers can only come from the recording
+        try (var replay = new ReplayServer("device", connections, 0, false)) {
+            long start = System.nanoTime();
+            assertEquals(recorded, exchange(replay.getPort(), "first", "second request", "third"));
+            assertTrue(System.nanoTime() - start < 1_000_000_000L, "Replay without delays should be fast");
+        }
+        try (var replay = new ReplayServer("device", connections, 1, false)) {
+            long start = System.nanoTime();
+            assertEquals(recorded, exchange(replay.getPort(), "first", "second request", "third"));
+            assertTrue(System.nanoTime() - start >= 60_000_000L, "Replay at original speed should keep the delays");
+        }
+        try (var replay = new ReplayServer("device", connections, 0, true)) {
+            var looped = exchange(replay.getPort(), "first", "second request", "third", "first", "second request");
+            assertEquals(List.of("first=5", "second request=14", "third=5", "first=5", "second request=14"), looped);
+        }
+    }
+
+    private static List<String> exchange(int port, String... requests) throws IOException {
+        var responses = new ArrayList<String>();
+        try (var socket = new Socket(InetAddress.getLoopbackAddress(), port);
+                var reader =
+                        new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+                var writer = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.US_ASCII)) {
+            for (var request : requests) {
+                writer.println(request);
+                responses.add(reader.readLine());
+            }
+        }
+        return responses;
+    }
+
+    @Test
+    void recalculatesWebSocketAccept() {
+        var response = "HTTP/1.1 101 Switching Protocols\r\nUpgrade: websocket\r\n"
+                + "Sec-WebSocket-Accept: AAAAAAAAAAAAAAAAAAAAAAAAAAA=\r\n\r\n";
+        // The example from RFC 6455, section 1.3
+        var request = "GET /chat HTTP/1.1\r\nSec-WebSocket-Key: dGhlIHNhbXBsZSBub25jZQ==\r\n\r\n";
+        var patched = new String(
+                ReplayServer.patchWebSocketAccept(response.getBytes(StandardCharsets.ISO_8859_1), request),
+                StandardCharsets.ISO_8859_1);
+        assertEquals(response.replace("AAAAAAAAAAAAAAAAAAAAAAAAAAA=", "s3pPLMBiTxaQ9kYGzzhZRbK+xOo="), patched);
+    }
+}
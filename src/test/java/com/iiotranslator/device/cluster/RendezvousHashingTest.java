@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.device.cluster;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class RendezvousHashingTest {
+    private static final int DEVICES = 800;
+
+    @Test
+    void ownerDoesNotDependOnMemberOrder() {
+        for (int i = 0; i < DEVICES; i++) {
+            var device = "Device" + i;
+            assertEquals(
+                    RendezvousHashing.owner(device, List.of("a", "b", "c")),
+                    RendezvousHashing.owner(device, List.of("c", "a", "b")));
+        }
+    }
+
+    @Test
+    void devicesAreSpreadEvenly() {
+        var counts = new HashMap<String, Integer>();
+        for (int i = 0; i < DEVICES; i++) {
+            counts.merge(RendezvousHashing.owner("Device" + i, List.of("a", "b", "c", "d")), 1, Integer::sum);
+        }
+        assertEquals(4, counts.size());
+        counts.values().forEach(count -> assertEquals(DEVICES / 4, count, DEVICES / 4 * 0.2, counts.toString()));
+    }
+
+    @Test
+    void onlyDevicesOfRemovedMemberMove() {
+        var before = owners(List.of("a", "b", "c", "d"));
+        var after = owners(List.of("a", "b", "d"));
+        for (var entry : before.entrySet()) {
+            if (!entry.getValue().equals("c")) {
+                assertEquals(entry.getValue(), after.get(entry.getKey()), entry.getKey());
+            }
+        }
+    }
+
+    @Test
+    void addedMemberOnlyTakesOverDevices() {
+        var before = owners(List.of("a", "b", "c"));
+        var after = owners(List.of("a", "b", "c", "d"));
+        int moved = 0;
+        for (var entry : after.entrySet()) {
+            if (!entry.getValue().equals(before.get(entry.getKey()))) {
+                assertEquals("d", entry.getValue(), entry.getKey());
+                moved++;
+            }
+        }
+        assertEquals(DEVICES / 4, moved, DEVICES / 4 * 0.2);
+    }
+
+    @Test
+    void requiresMembers() {
+        assertThrows(IllegalArgumentException.class, () -> RendezvousHashing.owner("Device", List.of()));
+    }
+
+    private static Map<String, String> owners(List<String> members) {
+        var owners = new HashMap<String, String>();
+        for (int i = 0; i < DEVICES; i++) {
+            owners.put("Device" + i, RendezvousHashing.owner("Device" + i, members));
+        }
+        return owners;
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.device.cluster;
+
+import static com.iiotranslator.device.drivers.DriverTestSupport.createDeviceFolder;
+import static com.iiotranslator.device.drivers.DriverTestSupport.listener;
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.iiotranslator.device.Device;
+import com.iiotranslator.device.DeviceRequest;
+import com.iiotranslator.opc.DataValues;
+import com.iiotranslator.opc.FolderNode;
+import com.iiotranslator.opc.OpcServer;
+import com.iiotranslator.opc.OpcVariableNodeAccessor;
+import com.iiotranslator.opc.VariableNode;
+import com.iiotranslator.opc.WritableVariableNode;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.milo.opcua.stack.core.Identifiers;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class ShardProxyDriverTest {
+    private ClusterService cluster;
+    private OpcServer member;
+    private ShardProxyDriver driver;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (driver != null) {
+            driver.close();
+        }
+        if (cluster != null) {
+            cluster.shutdown();
+        }
+        if (member != null) {
+            member.shutdown().get();
+        }
+    }
+
+    @Test
+    void mirrorsDeviceOnReadAfterInitializationGaveUp() throws Exception {
+        int port;
+        try (var socket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            port = socket.getLocalPort();
+        }
+        cluster = new ClusterService();
+        ReflectionTestUtils.setField(cluster, "membersProperty", "a=opc.tcp://127.0.0.1:" + port + "/");
+        ReflectionTestUtils.setField(cluster, "self", "");
+        ReflectionTestUtils.setField(cluster, "aggregator", true);
+        ReflectionTestUtils.setField(cluster, "username", "user");
+        ReflectionTestUtils.setField(cluster, "password", "password");
+        ReflectionTestUtils.setField(cluster, "requestTimeout", 2000);
+        cluster.initialize();
+
+        // The member is not running yet, so the initialization gives up after the device's timeout
+        var folder = createDeviceFolder("Oven");
+        driver = new ShardProxyDriver(cluster, "a");
+        long start = System.nanoTime();
+        driver.initialize(new Device("Oven", "binder_kbf", Map.of("timeout", "300")), folder);
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        var state = placeholder(folder);
+        assertEquals(DataValues.BAD_NO_COMMUNICATION, read(state));
+
+        member = new OpcServer(Set.of("localhost"), "127.0.0.1", port, "user", "password");
+        member.getRootNode().addFolder("Oven").addVariableReadOnly("Temperature", Identifiers.Double);
+        member.setVariableNodeAccessor(new OpcVariableNodeAccessor() {
+            @Override
+            public CompletableFuture<DataValue> read(VariableNode variable) {
+                return CompletableFuture.completedFuture(DataValues.of(21.5));
+            }
+
+            @Override
+            public CompletableFuture<Void> write(WritableVariableNode variable, DataValue value) {
+                return CompletableFuture.completedFuture(null);
+            }
+        });
+        member.startup().get();
+
+        // Reading the placeholder retries the mirroring, which replaces it with the member's nodes
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+        while (folder.getChild("Temperature") == null) {
+            assertTrue(System.nanoTime() < deadline, "Device was not mirrored");
+            read(state);
+            Thread.sleep(100);
+        }
+        assertNull(folder.getChild(ShardProxyDriver.PLACEHOLDER_FOLDER_NAME));
+        assertEquals(
+                21.5,
+                read((VariableNode) folder.getChild("Temperature")).getValue().getValue());
+    }
+
+    @Test
+    void requestsForVariablesThatAreNotMirroredFailWithNodeIdUnknown() throws Exception {
+        var folder = createDeviceFolder("Oven");
+        driver = new ShardProxyDriver(new ClusterService(), "a");
+        ReflectionTestUtils.setField(driver, "mirrored", true);
+        var unknown = folder.addVariableReadWrite("Unknown", Identifiers.Double);
+        assertEquals(DataValues.BAD_NODE_ID_UNKNOWN, read(unknown));
+
+        var failures = new ArrayList<Exception>();
+        driver.process(
+                List.of(new DeviceRequest.WriteRequest(unknown, DataValues.of(1.0))),
+                listener(new HashMap<>(), failures));
+        assertEquals(1, failures.size());
+    }
+
+    private static VariableNode placeholder(FolderNode folder) {
+        var diagnostics = (FolderNode) folder.getChild(ShardProxyDriver.PLACEHOLDER_FOLDER_NAME);
+        return (VariableNode) diagnostics.getChild(ShardProxyDriver.PLACEHOLDER_VARIABLE_NAME);
+    }
+
+    private DataValue read(VariableNode variable) {
+        var values = new HashMap<VariableNode, DataValue>();
+        driver.process(List.of(new DeviceRequest.ReadRequest(variable)), listener(values, new ArrayList<>()));
+        return values.get(variable);
+    }
+}
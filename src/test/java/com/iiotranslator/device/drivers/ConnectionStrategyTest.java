@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.device.drivers;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.iiotranslator.device.Device;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class ConnectionStrategyTest {
+    @Test
+    void driverDefaultIsUsedWithoutOptions() {
+        var device = new Device("Oven", "weiss_labevent", Map.of());
+        var strategy = ConnectionStrategy.of(device, ConnectionStrategy.Mode.EAGER);
+        assertEquals(new ConnectionStrategy(ConnectionStrategy.Mode.EAGER, 30_000, 0), strategy);
+        assertFalse(ConnectionStrategy.isConfigured(device));
+    }
+
+    @Test
+    void optionsOverrideDefaults() {
+        var device = new Device("Printer", "keyence_mku", Map.of("connection", "Lazy", "idleDisconnectMinutes", "15"));
+        var strategy = ConnectionStrategy.of(device, ConnectionStrategy.Mode.EAGER);
+        assertEquals(ConnectionStrategy.Mode.LAZY, strategy.mode());
+        assertEquals(15 * 60_000, strategy.idleDisconnectMillis());
+        assertTrue(ConnectionStrategy.isConfigured(device));
+    }
+
+    @Test
+    void invalidOptionsAreRejected() {
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> ConnectionStrategy.of(
+                        new Device("Printer", "keyence_mku", Map.of("connection", "sometimes")),
+                        ConnectionStrategy.Mode.LAZY));
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> ConnectionStrategy.of(
+                        new Device("Printer", "keyence_mku", Map.of("keepAliveInterval", "0")),
+                        ConnectionStrategy.Mode.EAGER));
+        // An eager connection is never idle
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> ConnectionStrategy.of(
+                        new Device("Printer", "keyence_mku", Map.of("idleDisconnectMinutes", "5")),
+                        ConnectionStrategy.Mode.EAGER));
+    }
+}
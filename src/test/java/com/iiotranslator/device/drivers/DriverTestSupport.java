@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.device.drivers;
+
+import com.iiotranslator.device.DeviceRequest;
+import com.iiotranslator.device.DeviceRequestCompletionListener;
+import com.iiotranslator.opc.FolderNode;
+import com.iiotranslator.opc.RootNode;
+import com.iiotranslator.opc.VariableNode;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+
+/**
+ * Calls a driver directly, without a device driver thread or OPC UA server.
+ */
+public final class DriverTestSupport {
+    private DriverTestSupport() {
+        // This class is not meant to be instantiated.
+    }
+
+    /**
+     * Creates the folder of a device in a node tree that is not served by an OPC UA server.
+     */
+    public static FolderNode createDeviceFolder(String name) {
+        return new RootNode().addFolder(name);
+    }
+
+    /**
+     * Returns a listener that records the values of completed reads and the exceptions of failed writes.
+     */
+    public static DeviceRequestCompletionListener listener(
+            Map<VariableNode, DataValue> values, List<Exception> failures) {
+        return listener(values, failures, new CountDownLatch(0));
+    }
+
+    /**
+     * Returns a listener that records the values of completed reads and the exceptions of failed writes, and counts
+     * down the latch for every completed write, whether it succeeded or failed.
+     */
+    public static DeviceRequestCompletionListener listener(
+            Map<VariableNode, DataValue> values, List<Exception> failures, CountDownLatch completedWrites) {
+        return new DeviceRequestCompletionListener() {
+            @Override
+            public void completeReadRequest(DeviceRequest.ReadRequest request, DataValue value) {
+                values.put(request.getVariable(), value);
+            }
+
+            @Override
+            public void completeWriteRequestExceptionally(DeviceRequest.WriteRequest request) {
+                completedWrites.countDown();
+            }
+
+            @Override
+            public void completeWriteRequestExceptionally(DeviceRequest.WriteRequest request, Exception e) {
+                failures.add(e);
+                completedWrites.countDown();
+            }
+        };
+    }
+}
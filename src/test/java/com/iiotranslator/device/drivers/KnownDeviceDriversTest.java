@@ -0,0 +1,18 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.device.drivers;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class KnownDeviceDriversTest {
+    @Test
+    void deviceTypeNamesAreCamelCase() {
+        assertEquals("TasmotaDeviceType", KnownDeviceDrivers.getDeviceTypeName("tasmota"));
+        assertEquals("WeissLabeventDeviceType", KnownDeviceDrivers.getDeviceTypeName("weiss_labevent"));
+        assertEquals("BinderKbfDeviceType", KnownDeviceDrivers.getDeviceTypeName("binder_kbf"));
+    }
+}
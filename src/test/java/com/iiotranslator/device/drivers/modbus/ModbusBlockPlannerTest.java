@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.device.drivers.modbus;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.Unsigned;
+import org.junit.jupiter.api.Test;
+
+class ModbusBlockPlannerTest {
+    @Test
+    void definitionsAreParsed() {
+        var registers = ModbusRegister.parseAll(
+                "# Comment\nZone 1/Temperature = input 0 float32\nSetpoint=holding 10 int16 rw; Label=holding 20 string8");
+        assertEquals(
+                List.of(
+                        new ModbusRegister(
+                                "Zone 1/Temperature", ModbusRegister.Table.INPUT, 0, ModbusDataType.FLOAT32, 2, false),
+                        new ModbusRegister("Setpoint", ModbusRegister.Table.HOLDING, 10, ModbusDataType.INT16, 1, true),
+                        new ModbusRegister("Label", ModbusRegister.Table.HOLDING, 20, ModbusDataType.STRING, 8, false)),
+                registers);
+        assertThrows(IllegalArgumentException.class, () -> ModbusRegister.parse("Temperature=input 0 float32 rw"));
+        assertThrows(IllegalArgumentException.class, () -> ModbusRegister.parse("Temperature=coil 0 bool"));
+        assertThrows(IllegalArgumentException.class, () -> ModbusRegister.parse("Label=holding 0 string126"));
+        // A write request has less room for registers than a read response
+        assertEquals(125, ModbusRegister.parse("Label=holding 0 string125").registers());
+        assertEquals(123, ModbusRegister.parse("Label=holding 0 string123 rw").registers());
+        assertThrows(IllegalArgumentException.class, () -> ModbusRegister.parse("Label=holding 0 string124 rw"));
+        assertThrows(IllegalArgumentException.class, () -> ModbusRegister.parse("input 0 int16"));
+    }
+
+    @Test
+    void registersAreMergedIntoFewestBlocks() {
+        var registers = ModbusRegister.parseAll(
+                """
+                A=holding 0 int16
+                B=holding 1 float32
+                C=holding 8 int16
+                D=input 0 int16
+                E=holding 100 string20
+                F=holding 130 int16
+                """);
+        var blocks = ModbusBlockPlanner.plan(registers, 5);
+        assertEquals(4, blocks.size());
+        // A and B are adjacent and C is within the gap, E and F are too far apart
+        assertEquals(
+                new ModbusBlockPlanner.Block(ModbusRegister.Table.HOLDING, 0, 9, registers.subList(0, 3)),
+                blocks.get(0));
+        assertEquals(List.of(registers.get(4)), blocks.get(1).values());
+        assertEquals(ModbusRegister.Table.INPUT, blocks.get(3).table());
+
+        blocks = ModbusBlockPlanner.plan(registers, 10);
+        assertEquals(3, blocks.size());
+        assertEquals(100, blocks.get(1).start());
+        assertEquals(31, blocks.get(1).count());
+
+        // Without a gap, only adjacent values are merged
+        assertEquals(5, ModbusBlockPlanner.plan(registers, 0).size());
+    }
+
+    @Test
+    void blocksDoNotExceedMaximumLength() {
+        var registers = ModbusRegister.parseAll("A=input 0 int16; B=input 124 int16; C=input 125 int16");
+        var blocks = ModbusBlockPlanner.plan(registers, 200);
+        assertEquals(2, blocks.size());
+        assertEquals(ModbusBlockPlanner.MAX_REGISTERS, blocks.get(0).count());
+        assertEquals(125, blocks.get(1).start());
+    }
+
+    @Test
+    void valuesAreDecodedInBothWordOrders() {
+        var buffer = ByteBuffer.allocate(16);
+        ModbusDataType.FLOAT32.encode(buffer, 2, 2, false, 21.5);
+        assertEquals(21.5f, ModbusDataType.FLOAT32.decode(buffer, 2, 2, false));
+        assertEquals(0x41AC, buffer.getShort(2));
+
+        ModbusDataType.INT64.encode(buffer, 4, 4, true, 0x0001000200030004L);
+        assertEquals(0x0004, buffer.getShort(4));
+        assertEquals(0x0001000200030004L, ModbusDataType.INT64.decode(buffer, 4, 4, true));
+
+        ModbusDataType.UINT32.encode(buffer, 0, 2, true, Unsigned.uint(0xFFFF0001L));
+        assertEquals(Unsigned.uint(0xFFFF0001L), ModbusDataType.UINT32.decode(buffer, 0, 2, true));
+
+        ModbusDataType.STRING.encode(buffer, 8, 4, false, "abc");
+        assertEquals("abc", ModbusDataType.STRING.decode(buffer, 8, 4, false));
+        assertThrows(IllegalArgumentException.class, () -> ModbusDataType.STRING.encode(buffer, 8, 1, false, "abc"));
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.device.drivers.modbus;
+
+import static com.iiotranslator.device.drivers.DriverTestSupport.createDeviceFolder;
+import static com.iiotranslator.device.drivers.DriverTestSupport.listener;
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.iiotranslator.device.Device;
+import com.iiotranslator.device.DeviceRequest;
+import com.iiotranslator.opc.DataValues;
+import com.iiotranslator.opc.FolderNode;
+import com.iiotranslator.opc.VariableNode;
+import com.iiotranslator.opc.WritableVariableNode;
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.Unsigned;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ModbusTcpDriverTest {
+    private static final String REGISTERS =
+            """
+            Temperature=input 0 float32
+            Counter=input 2 uint32
+            Zone 2/Temperature=input 40 float32
+            Setpoint=holding 0 int16 rw
+            Label=holding 10 string4 rw
+            """;
+
+    private ModbusServer server;
+    private FolderNode folder;
+    private ModbusTcpDriver driver;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new ModbusServer();
+        server.input.putFloat(0, 21.5f).putInt(4, 0xFFFFFFFE).putFloat(80, -3.25f);
+        server.holding.putShort(0, (short) -40);
+        folder = createDeviceFolder("Plc");
+        driver = new ModbusTcpDriver();
+        driver.initialize(device(server.getPort()), folder);
+    }
+
+    private static Device device(int port) {
+        return new Device(
+                "Plc",
+                "modbus_tcp",
+                Map.of(
+                        "hostname",
+                        "127.0.0.1",
+                        "port",
+                        Integer.toString(port),
+                        "timeout",
+                        "500",
+                        "registers",
+                        REGISTERS));
+    }
+
+    @AfterEach
+    void tearDown() {
+        driver.close();
+        server.close();
+    }
+
+    @Test
+    void readsAreMergedAndPipelined() {
+        // The server only answers once all three requests have arrived, which they only do if they are pipelined
+        server.requestsPerAnswer = 3;
+        var values = readAll();
+        assertEquals(21.5f, values.get("Temperature").getValue().getValue());
+        assertEquals(
+                Unsigned.uint(0xFFFFFFFEL), values.get("Counter").getValue().getValue());
+        assertEquals(-3.25f, values.get("Zone 2/Temperature").getValue().getValue());
+        assertEquals((short) -40, values.get("Setpoint").getValue().getValue());
+        assertEquals("", values.get("Label").getValue().getValue());
+        // Each table is read with one request, plus one for the input register that is beyond the gap
+        assertEquals(3, server.requests.get());
+        // The requests were sent before the first response was received
+        assertEquals(3, server.maxPipelined.get());
+    }
+
+    @Test
+    void writesAreSentBeforeReads() {
+        var setpoint = (WritableVariableNode) folder.getChild("Setpoint");
+        var label = (WritableVariableNode) folder.getChild("Label");
+        var failures = new ArrayList<Exception>();
+        var readValues = new HashMap<VariableNode, DataValue>();
+        driver.process(
+                List.of(
+                        new DeviceRequest.WriteRequest(setpoint, DataValues.of((short) 85)),
+                        new DeviceRequest.WriteRequest(label, DataValues.of("Oven")),
+                        new DeviceRequest.WriteRequest(label, DataValues.of("Much too long")),
+                        new DeviceRequest.ReadRequest(setpoint)),
+                listener(readValues, failures));
+        assertEquals(1, failures.size());
+        assertEquals((short) 85, server.holding.getShort(0));
+        assertEquals((short) 85, readValues.get(setpoint).getValue().getValue());
+        assertEquals("Oven", readAll().get("Label").getValue().getValue());
+    }
+
+    @Test
+    void unreachableDeviceReturnsBadStatus() throws IOException {
+        int port;
+        try (var socket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            port = socket.getLocalPort();
+        }
+        var unreachableFolder = createDeviceFolder("Plc");
+        var unreachable = new ModbusTcpDriver();
+        unreachable.initialize(device(port), unreachableFolder);
+        var values = new HashMap<VariableNode, DataValue>();
+        var variable = (VariableNode) unreachableFolder.getChild("Temperature");
+        unreachable.process(List.of(new DeviceRequest.ReadRequest(variable)), listener(values, new ArrayList<>()));
+        assertEquals(DataValues.BAD_NO_COMMUNICATION, values.get(variable));
+    }
+
+    private Map<String, DataValue> readAll() {
+        var variables = new ArrayList<VariableNode>(folder.getChildVariables());
+        folder.getChildFolders().forEach(child -> variables.addAll(child.getChildVariables()));
+        var values = new HashMap<VariableNode, DataValue>();
+        driver.process(
+                variables.stream()
+                        .map(variable -> (DeviceRequest) new DeviceRequest.ReadRequest(variable))
+                        .toList(),
+                listener(values, new ArrayList<>()));
+        var byName = new HashMap<String, DataValue>();
+        values.forEach((variable, value) -> byName.put(
+                String.join(
+                        "/", variable.getPath().subList(1, variable.getPath().size())),
+                value));
+        return byName;
+    }
+
+    /**
+     * A Modbus TCP server with 100 holding and input registers each. It waits for requestsPerAnswer requests and
+     * answers them in reverse order, so that the driver has to match the responses by their transaction ids.
+     */
+    private static class ModbusServer implements Closeable {
+        final ByteBuffer holding = ByteBuffer.allocate(200), input = ByteBuffer.allocate(200);
+        final AtomicInteger requests = new AtomicInteger(), maxPipelined = new AtomicInteger();
+        volatile int requestsPerAnswer = 1;
+        private final ServerSocket serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+
+        ModbusServer() throws IOException {
+            var thread = new Thread(this::serve, "ModbusServer");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        int getPort() {
+            return serverSocket.getLocalPort();
+        }
+
+        private void serve() {
+            while (!serverSocket.isClosed()) {
+                try (var socket = serverSocket.accept()) {
+                    var in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                    var out = socket.getOutputStream();
+                    while (true) {
+                        var responses = new ArrayDeque<byte[]>();
+                        do {
+                            responses.push(respond(in));
+                        } while (responses.size() < requestsPerAnswer);
+                        maxPipelined.accumulateAndGet(responses.size(), Math::max);
+                        for (var response : responses) {
+                            out.write(response);
+                        }
+                        out.flush();
+                    }
+                } catch (IOException e) {
+                    // The connection or the server was closed
+                }
+            }
+        }
+
+        private byte[] respond(DataInputStream in) throws IOException {
+            var header = new byte[7];
+            in.readFully(header);
+            var pdu = ByteBuffer.allocate(ByteBuffer.wrap(header).getShort(4) - 1);
+            in.readFully(pdu.array());
+            requests.incrementAndGet();
+            int function = pdu.get(0), address = pdu.getShort(1), count = pdu.getShort(3);
+            var registers = function == 4 ? input : holding;
+            ByteBuffer response;
+            if (function == 3 || function == 4) {
+                response =
+                        ByteBuffer.allocate(2 + count * 2).put((byte) function).put((byte) (count * 2));
+                response.put(registers.array(), address * 2, count * 2);
+            } else if (function == 16) {
+                registers.put(address * 2, pdu.array(), 6, count * 2);
+                response = ByteBuffer.allocate(5).put(pdu.array(), 0, 5);
+            } else {
+                response = ByteBuffer.allocate(2).put((byte) (function | 0x80)).put((byte) 1);
+            }
+            return ByteBuffer.allocate(7 + response.capacity())
+                    .put(header, 0, 4)
+                    .putShort((short) (1 + response.capacity()))
+                    .put(header[6])
+                    .put(response.array())
+                    .array();
+        }
+
+        @Override
+        public void close() {
+            try {
+                serverSocket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
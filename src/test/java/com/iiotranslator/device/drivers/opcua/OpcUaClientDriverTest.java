@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.device.drivers.opcua;
+
+import static com.iiotranslator.device.drivers.DriverTestSupport.createDeviceFolder;
+import static com.iiotranslator.device.drivers.DriverTestSupport.listener;
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.iiotranslator.device.Device;
+import com.iiotranslator.device.DeviceRequest;
+import com.iiotranslator.opc.DataValues;
+import com.iiotranslator.opc.FolderNode;
+import com.iiotranslator.opc.OpcServer;
+import com.iiotranslator.opc.OpcVariableNodeAccessor;
+import com.iiotranslator.opc.VariableNode;
+import com.iiotranslator.opc.WritableVariableNode;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.milo.opcua.stack.core.Identifiers;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class OpcUaClientDriverTest {
+    private static final long TIMEOUT_MILLIS = 10_000;
+
+    private OpcServer remoteServer;
+    private final Map<String, Object> remoteValues = new ConcurrentHashMap<>();
+    private FolderNode folder;
+    private OpcUaClientDriver driver;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        int port;
+        try (var socket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            port = socket.getLocalPort();
+        }
+        remoteServer = new OpcServer(Set.of("localhost"), "127.0.0.1", port, "user", "password");
+        var machine = remoteServer.getRootNode().addFolder("Machine");
+        machine.addVariableReadOnly("Temperature", Identifiers.Double);
+        machine.addVariableReadWrite("Setpoint", Identifiers.Double);
+        machine.addFolder("Axis").addVariableReadOnly("Position", Identifiers.Int32);
+        remoteValues.putAll(Map.of("Machine/Temperature", 21.5, "Machine/Setpoint", 80.0, "Machine/Axis/Position", 7));
+        remoteServer.setVariableNodeAccessor(new OpcVariableNodeAccessor() {
+            @Override
+            public CompletableFuture<DataValue> read(VariableNode variable) {
+                return CompletableFuture.completedFuture(DataValues.of(remoteValues.get(variable.getPathString())));
+            }
+
+            @Override
+            public CompletableFuture<Void> write(WritableVariableNode variable, DataValue value) {
+                remoteValues.put(variable.getPathString(), value.getValue().getValue());
+                return CompletableFuture.completedFuture(null);
+            }
+        });
+        remoteServer.startup().get();
+
+        folder = createDeviceFolder("Bridge");
+        driver = new OpcUaClientDriver();
+        driver.initialize(
+                new Device(
+                        "Bridge",
+                        "opcua_client",
+                        Map.of(
+                                "endpointUrl",
+                                "opc.tcp://127.0.0.1:" + port + "/",
+                                "username",
+                                "user",
+                                "password",
+                                "password",
+                                "rootNodeId",
+                                "nsu=urn:com:iiotranslator:opcuans;s=Machine",
+                                "publishingInterval",
+                                "50")),
+                folder);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        driver.close();
+        remoteServer.shutdown().get();
+    }
+
+    @Test
+    void subtreeIsMirrored() {
+        var temperature = (VariableNode) folder.getChild("Temperature");
+        var setpoint = (VariableNode) folder.getChild("Setpoint");
+        assertFalse(temperature.isWritable());
+        assertTrue(setpoint.isWritable());
+        assertEquals(Identifiers.Double, temperature.getDataType());
+        assertNotNull(((FolderNode) folder.getChild("Axis")).getChild("Position"));
+    }
+
+    @Test
+    void valuesAreUpdatedBySubscription() throws InterruptedException {
+        var temperature = (VariableNode) folder.getChild("Temperature");
+        assertEquals(21.5, awaitValue(temperature, 21.5).getValue().getValue());
+        remoteValues.put("Machine/Temperature", 23.0);
+        assertEquals(23.0, awaitValue(temperature, 23.0).getValue().getValue());
+        var position = (VariableNode) ((FolderNode) folder.getChild("Axis")).getChild("Position");
+        assertEquals(7, awaitValue(position, 7).getValue().getValue());
+    }
+
+    @Test
+    void writesAreForwardedAsynchronously() throws InterruptedException {
+        var setpoint = (WritableVariableNode) folder.getChild("Setpoint");
+        var failures = new CopyOnWriteArrayList<Exception>();
+        var values = new HashMap<VariableNode, DataValue>();
+        var completedWrites = new CountDownLatch(1);
+        driver.process(
+                List.of(
+                        new DeviceRequest.WriteRequest(setpoint, DataValues.of(95.0)),
+                        new DeviceRequest.ReadRequest(setpoint)),
+                listener(values, failures, completedWrites));
+        // The read is answered from the subscription, without waiting for the write
+        assertTrue(values.containsKey(setpoint));
+        // The driver thread does not dispatch the write again, so the driver must complete it once it is answered
+        assertTrue(completedWrites.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        assertEquals(List.of(), failures);
+        assertEquals(95.0, remoteValues.get("Machine/Setpoint"));
+    }
+
+    private DataValue awaitValue(VariableNode variable, Object expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        var values = new HashMap<VariableNode, DataValue>();
+        do {
+            driver.process(List.of(new DeviceRequest.ReadRequest(variable)), listener(values, new ArrayList<>()));
+            if (Objects.equals(expected, values.get(variable).getValue().getValue())) {
+                break;
+            }
+            Thread.sleep(20);
+        } while (System.currentTimeMillis() < deadline);
+        return values.get(variable);
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.device.drivers.other;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class LatencyDistributionTest {
+    private final Random random = new Random(42);
+
+    @Test
+    void parsesFixedLatency() {
+        assertEquals(250, LatencyDistribution.parse("fixed:250").sample(random));
+        assertEquals(1000, LatencyDistribution.parse("1000").sample(random));
+    }
+
+    @Test
+    void uniformLatencyStaysInRange() {
+        var distribution = LatencyDistribution.parse("uniform:10-20");
+        for (int i = 0; i < 1000; i++) {
+            long sample = distribution.sample(random);
+            assertTrue(sample >= 10 && sample <= 20, Long.toString(sample));
+        }
+    }
+
+    @Test
+    void logNormalLatencyHasGivenMedian() {
+        var distribution = LatencyDistribution.parse("lognormal:100:0.5");
+        var samples = new long[10001];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = distribution.sample(random);
+        }
+        Arrays.sort(samples);
+        assertEquals(100, samples[samples.length / 2], 5);
+        assertTrue(samples[samples.length - 1] > 200, "Expected a long tail");
+    }
+
+    @Test
+    void rejectsInvalidSpecifications() {
+        assertThrows(IllegalArgumentException.class, () -> LatencyDistribution.parse("uniform:20-10"));
+        assertThrows(IllegalArgumentException.class, () -> LatencyDistribution.parse("lognormal:100"));
+        assertThrows(IllegalArgumentException.class, () -> LatencyDistribution.parse("gaussian:1:2"));
+        assertThrows(IllegalArgumentException.class, () -> LatencyDistribution.parse("-5"));
+    }
+}
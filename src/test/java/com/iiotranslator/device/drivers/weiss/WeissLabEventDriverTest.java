@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.device.drivers.weiss;
+
+import static com.iiotranslator.device.drivers.DriverTestSupport.createDeviceFolder;
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.iiotranslator.device.Device;
+import com.iiotranslator.opc.DataValues;
+import com.iiotranslator.opc.FolderNode;
+import com.iiotranslator.opc.VariableNode;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.java_websocket.WebSocket;
+import org.java_websocket.drafts.Draft_6455;
+import org.java_websocket.exceptions.WebsocketNotConnectedException;
+import org.java_websocket.handshake.ClientHandshake;
+import org.java_websocket.protocols.Protocol;
+import org.java_websocket.server.WebSocketServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class WeissLabEventDriverTest {
+    private Oven oven;
+    private WeissLabEventDriver driver;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (driver != null) {
+            driver.close();
+        }
+        if (oven != null) {
+            oven.stop();
+        }
+    }
+
+    @Test
+    void lazyFirstReadWaitsForPushedValues() throws InterruptedException {
+        oven = Oven.start(true);
+        var folder = createDeviceFolder("Oven");
+        driver = createDriver(folder, 2000);
+        var temperature = (VariableNode) folder.getChild("CV.1.ActualValue");
+        // The oven only pushes the values some time after the subscription, which the read that connects waits for
+        assertEquals(23.5, driver.read(temperature).getValue().getValue());
+        assertEquals(23.5, driver.read(temperature).getValue().getValue());
+    }
+
+    @Test
+    void firstReadWithoutPushedValuesIsWaitingForInitialData() throws InterruptedException {
+        oven = Oven.start(false);
+        var folder = createDeviceFolder("Oven");
+        driver = createDriver(folder, 200);
+        var temperature = (VariableNode) folder.getChild("CV.1.ActualValue");
+        assertEquals(DataValues.BAD_WAITING_FOR_INITIAL_DATA, driver.read(temperature));
+        // Only the first read of a connection waits
+        long start = System.nanoTime();
+        assertEquals(
+                DataValues.BAD_WAITING_FOR_INITIAL_DATA, driver.read((VariableNode) folder.getChild("CV.1.SetPoint")));
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(200));
+    }
+
+    private WeissLabEventDriver createDriver(FolderNode folder, int timeout) {
+        var driver = new WeissLabEventDriver();
+        driver.initialize(
+                new Device(
+                        "Oven",
+                        "weiss_labevent",
+                        Map.of(
+                                "hostname",
+                                "127.0.0.1",
+                                "port",
+                                Integer.toString(oven.getPort()),
+                                "timeout",
+                                Integer.toString(timeout))),
+                folder);
+        return driver;
+    }
+
+    /**
+     * Answers subscriptions with the values of the temperature variables after a delay, if pushValues is set, and then
+     * keeps sending messages that the driver ignores.
+     */
+    private static class Oven extends WebSocketServer {
+        private final boolean pushValues;
+        private final CountDownLatch started = new CountDownLatch(1);
+
+        private Oven(boolean pushValues) {
+            super(
+                    new InetSocketAddress("127.0.0.1", 0),
+                    List.of(new Draft_6455(Collections.emptyList(), List.of(new Protocol("smarthmi-connect")))));
+            this.pushValues = pushValues;
+        }
+
+        static Oven start(boolean pushValues) throws InterruptedException {
+            var oven = new Oven(pushValues);
+            oven.start();
+            assertTrue(oven.started.await(5, TimeUnit.SECONDS));
+            return oven;
+        }
+
+        @Override
+        public void onMessage(WebSocket connection, String message) {
+            if (!message.startsWith("{\"cmd\":\"sub\"")) {
+                return;
+            }
+            new Thread(() -> {
+                        try {
+                            if (pushValues) {
+                                Thread.sleep(300);
+                                connection.send(
+                                        "{\"cmd\":\"multi\",\"data\":[\"@val:CV.1.ActualValue:23.5\",\"@val:CV.1.SetPoint:25.0\"]}");
+                            }
+                            // Other messages, so that the driver's read timeout does not close the connection
+                            while (connection.isOpen()) {
+                                connection.send("@app:1");
+                                Thread.sleep(50);
+                            }
+                        } catch (InterruptedException | WebsocketNotConnectedException ignored) {
+                            // The test is over
+                        }
+                    })
+                    .start();
+        }
+
+        @Override
+        public void onOpen(WebSocket connection, ClientHandshake handshake) {}
+
+        @Override
+        public void onClose(WebSocket connection, int code, String reason, boolean remote) {}
+
+        @Override
+        public void onError(WebSocket connection, Exception ex) {}
+
+        @Override
+        public void onStart() {
+            started.countDown();
+        }
+    }
+}
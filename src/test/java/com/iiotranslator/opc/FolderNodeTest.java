@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.opc;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.iiotranslator.opc.FolderNode.VariableDefinition;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.milo.opcua.stack.core.Identifiers;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class FolderNodeTest {
+    private final FolderNode folder = new RootNode().addFolder("Device");
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void variablesAreAddedInOrder() {
+        folder.addFolder("Axis");
+        var added = folder.addVariables(List.of(
+                VariableDefinition.readOnly("Temperature", Identifiers.Double),
+                VariableDefinition.readWrite("Setpoint", Identifiers.Double)));
+
+        assertEquals(List.of("Temperature", "Setpoint"), names(added));
+        assertInstanceOf(WritableVariableNode.class, added.get(1));
+        assertSame(added.get(0), folder.getChild("Temperature"));
+        assertEquals(List.of("Axis", "Temperature", "Setpoint"), names(folder.getChildren()));
+        assertEquals(added, folder.getChildVariables());
+        assertEquals(List.of("Axis"), names(folder.getChildFolders()));
+    }
+
+    @Test
+    void noVariableIsAddedIfANameIsTaken() {
+        folder.addVariableReadOnly("Setpoint", Identifiers.Double);
+        var children = folder.getChildren();
+
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> folder.addVariables(List.of(
+                        VariableDefinition.readOnly("Temperature", Identifiers.Double),
+                        VariableDefinition.readWrite("Setpoint", Identifiers.Double))));
+
+        assertNull(folder.getChild("Temperature"));
+        assertEquals(children, folder.getChildren());
+    }
+
+    @Test
+    void noVariableIsAddedIfANameIsDefinedTwice() {
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> folder.addVariables(List.of(
+                        VariableDefinition.readOnly("Temperature", Identifiers.Double),
+                        VariableDefinition.readOnly("Pressure", Identifiers.Double),
+                        VariableDefinition.readOnly("Temperature", Identifiers.Int32))));
+
+        assertNull(folder.getChild("Temperature"));
+        assertNull(folder.getChild("Pressure"));
+        assertEquals(List.of(), folder.getChildren());
+    }
+
+    @Test
+    void concurrentlyAddedChildrenAreAllListed() throws Exception {
+        int threads = 4, batches = 50, batchSize = 10;
+        var start = new CountDownLatch(1);
+        var futures = new ArrayList<Future<?>>();
+        for (int thread = 0; thread < threads; thread++) {
+            int threadIndex = thread;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int batch = 0; batch < batches; batch++) {
+                    var definitions = new ArrayList<VariableDefinition>();
+                    for (int i = 0; i < batchSize; i++) {
+                        definitions.add(
+                                VariableDefinition.readOnly(threadIndex + "." + batch + "." + i, Identifiers.Int32));
+                    }
+                    folder.addVariables(definitions);
+                    folder.addFolder(threadIndex + "." + batch);
+                    // Reading in between sees a complete snapshot while the other threads keep adding
+                    folder.getChildren();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (var future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+
+        int expectedVariables = threads * batches * batchSize, expectedFolders = threads * batches;
+        assertEquals(expectedVariables + expectedFolders, folder.getChildren().size());
+        assertEquals(expectedVariables, folder.getChildVariables().size());
+        assertEquals(expectedFolders, folder.getChildFolders().size());
+        assertEquals(folder.getChildren().size(), new HashSet<>(names(folder.getChildren())).size());
+        for (var child : folder.getChildren()) {
+            assertSame(child, folder.getChild(child.getName()));
+        }
+    }
+
+    @Test
+    void childrenCanBeReadWhileTheFolderIsLocked() throws Exception {
+        folder.addVariableReadOnly("Temperature", Identifiers.Double);
+        var lock = ReflectionTestUtils.getField(folder, "childrenLock");
+        synchronized (lock) {
+            var children = executor.submit(folder::getChildren);
+            assertEquals(List.of("Temperature"), names(children.get(10, TimeUnit.SECONDS)));
+        }
+    }
+
+    @Test
+    void removedChildrenAreNoLongerListed() {
+        folder.addFolder("Axis");
+        folder.addVariableReadOnly("Temperature", Identifiers.Double);
+        folder.addVariableReadOnly("Pressure", Identifiers.Double);
+        var before = folder.getChildren();
+
+        folder.removeChild("Temperature");
+        folder.removeChild("Axis");
+
+        assertEquals(List.of("Pressure"), names(folder.getChildren()));
+        assertEquals(List.of("Pressure"), names(folder.getChildVariables()));
+        assertEquals(List.of(), folder.getChildFolders());
+        // Snapshots that were handed out before are not modified
+        assertEquals(List.of("Axis", "Temperature", "Pressure"), names(before));
+    }
+
+    private static List<String> names(List<? extends Node> nodes) {
+        return nodes.stream().map(Node::getName).toList();
+    }
+}
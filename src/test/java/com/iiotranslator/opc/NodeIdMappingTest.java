@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.opc;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class NodeIdMappingTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void idsSurviveReopen() throws Exception {
+        var file = directory.resolve("node-ids.txt");
+        try (var mapping = NodeIdMapping.open(file)) {
+            assertEquals(1, mapping.getId("Oven"));
+            assertEquals(2, mapping.getId("Oven/CV.1.ActualValue"));
+            assertEquals(1, mapping.getId("Oven"));
+            assertNull(mapping.findId("Plug"));
+        }
+        try (var mapping = NodeIdMapping.open(file)) {
+            assertEquals(2, mapping.size());
+            assertEquals(2, mapping.findId("Oven/CV.1.ActualValue"));
+            assertEquals("Oven/CV.1.ActualValue", mapping.getPath(2));
+            // New ids continue after the loaded ones
+            assertEquals(3, mapping.getId("Plug"));
+        }
+    }
+
+    @Test
+    void incompleteLastLineIsIgnored() throws Exception {
+        var file = directory.resolve("node-ids.txt");
+        Files.writeString(file, "1 Oven\n7 Oven/Temp");
+        try (var mapping = NodeIdMapping.open(file)) {
+            assertEquals(1, mapping.size());
+            assertEquals(2, mapping.getId("Oven/Temperature"));
+        }
+        assertEquals("1 Oven\n2 Oven/Temperature\n", Files.readString(file));
+        try (var mapping = NodeIdMapping.open(file)) {
+            assertEquals(2, mapping.findId("Oven/Temperature"));
+            assertNull(mapping.findId("Oven/Temp"));
+        }
+        Files.writeString(file, "Oven\n", StandardOpenOption.APPEND);
+        assertThrows(java.io.IOException.class, () -> NodeIdMapping.open(file));
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.opc;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
+import org.eclipse.milo.opcua.sdk.client.api.identity.UsernameProvider;
+import org.eclipse.milo.opcua.stack.core.Identifiers;
+import org.eclipse.milo.opcua.stack.core.security.SecurityPolicy;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
+import org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.UInteger;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.TimestampsToReturn;
+import org.eclipse.milo.opcua.stack.core.util.EndpointUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests the OPC UA server with a Milo client, in particular that lazily created UaNodes are created before clients
+ * access them.
+ */
+class OpcServerTest {
+    private static final String NAMESPACE_URI = "urn:com:iiotranslator:opcuans";
+
+    @TempDir
+    Path directory;
+
+    private final Map<String, Object> values = new ConcurrentHashMap<>();
+    private OpcServer server;
+    private OpcUaClient client;
+    private VariableNode temperature;
+    private WritableVariableNode setpoint;
+
+    private void start(boolean numericNodeIds) throws Exception {
+        int port;
+        try (var socket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            port = socket.getLocalPort();
+        }
+        server = new OpcServer(Set.of("localhost"), "127.0.0.1", port, "user", "password");
+        server.enableLazyNodes();
+        if (numericNodeIds) {
+            server.enableNumericNodeIds(directory.resolve("node-ids.txt"));
+        }
+        var machine = server.getRootNode().addFolder("Machine");
+        temperature = machine.addVariableReadOnly("Temperature", Identifiers.Double);
+        setpoint = machine.addVariableReadWrite("Setpoint", Identifiers.Double);
+        values.putAll(Map.of("Machine/Temperature", 21.5, "Machine/Setpoint", 80.0));
+        server.setVariableNodeAccessor(new OpcVariableNodeAccessor() {
+            @Override
+            public CompletableFuture<DataValue> read(VariableNode variable) {
+                return CompletableFuture.completedFuture(DataValues.of(values.get(variable.getPathString())));
+            }
+
+            @Override
+            public CompletableFuture<Void> write(WritableVariableNode variable, DataValue value) {
+                values.put(variable.getPathString(), value.getValue().getValue());
+                return CompletableFuture.completedFuture(null);
+            }
+        });
+        server.startup().get();
+
+        client = OpcUaClient.create(
+                "opc.tcp://127.0.0.1:" + port + "/",
+                endpoints -> endpoints.stream()
+                        .filter(endpoint -> SecurityPolicy.None.getUri().equals(endpoint.getSecurityPolicyUri()))
+                        .map(endpoint -> EndpointUtil.updateUrl(endpoint, "127.0.0.1", port))
+                        .findFirst(),
+                builder -> builder.setIdentityProvider(new UsernameProvider("user", "password"))
+                        .build());
+        client.connect().get();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (client != null) {
+            client.disconnect().get();
+        }
+        if (server != null) {
+            server.shutdown().get();
+        }
+    }
+
+    private NodeId nodeId(String path) {
+        return new NodeId(client.getNamespaceTable().getIndex(NAMESPACE_URI), path);
+    }
+
+    @Test
+    void browsingObjectsFolderCreatesDeviceFolders() throws Exception {
+        start(false);
+        assertNull(temperature.getUaNode());
+        // The Objects folder belongs to namespace 0, but organizes the device folders
+        var machine = client.getAddressSpace().browseNodes(Identifiers.ObjectsFolder).stream()
+                .filter(node -> node.getBrowseName().getName().equals("Machine"))
+                .findFirst()
+                .orElseThrow();
+        var variables = client.getAddressSpace().browseNodes(machine).stream()
+                .map(node -> node.getBrowseName().getName())
+                .toList();
+        assertEquals(Set.of("Temperature", "Setpoint"), Set.copyOf(variables));
+    }
+
+    @Test
+    void variablesCanBeReadAndWrittenBeforeBrowsing() throws Exception {
+        start(false);
+        var value = client.readValue(0, TimestampsToReturn.Both, nodeId("Machine/Temperature"))
+                .get();
+        assertTrue(value.getStatusCode().isGood(), value.toString());
+        assertNotNull(temperature.getUaNode());
+
+        var status = client.writeValue(nodeId("Machine/Setpoint"), new DataValue(new Variant(95.0)))
+                .get();
+        assertTrue(status.isGood(), status.toString());
+        assertEquals(95.0, values.get("Machine/Setpoint"));
+    }
+
+    @Test
+    void registeringNodesCreatesTheirUaNodes() throws Exception {
+        start(false);
+        assertNull(setpoint.getUaNode());
+        var registered =
+                client.registerNodes(List.of(nodeId("Machine/Setpoint"))).get().getRegisteredNodeIds();
+        assertEquals(nodeId("Machine/Setpoint"), registered[0]);
+        assertNotNull(setpoint.getUaNode());
+        assertNotNull(setpoint.getParent().getUaNode());
+        assertNull(temperature.getUaNode());
+    }
+
+    @Test
+    void lazyNodesWorkWithNumericNodeIds() throws Exception {
+        start(true);
+        // Paths are still accepted, and translated to the numeric NodeIds
+        var value = client.readValue(0, TimestampsToReturn.Both, nodeId("Machine/Temperature"))
+                .get();
+        assertTrue(value.getStatusCode().isGood(), value.toString());
+
+        var registered =
+                client.registerNodes(List.of(nodeId("Machine/Setpoint"))).get().getRegisteredNodeIds()[0];
+        assertInstanceOf(UInteger.class, registered.getIdentifier());
+        var status =
+                client.writeValue(registered, new DataValue(new Variant(95.0))).get();
+        assertTrue(status.isGood(), status.toString());
+        assertEquals(95.0, values.get("Machine/Setpoint"));
+
+        var machine = client.getAddressSpace().browseNodes(Identifiers.ObjectsFolder).stream()
+                .filter(node -> node.getBrowseName().getName().equals("Machine"))
+                .findFirst()
+                .orElseThrow();
+        assertInstanceOf(UInteger.class, machine.getNodeId().getIdentifier());
+        assertEquals(2, client.getAddressSpace().browseNodes(machine).size());
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.opc;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import org.eclipse.milo.opcua.stack.core.Identifiers;
+import org.eclipse.milo.opcua.stack.core.StatusCodes;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DateTime;
+import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
+import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
+import org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.Unsigned;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ValueSnapshotTest {
+    private static final DateTime SOURCE_TIME = new DateTime(133_000_000_000_000_000L),
+            SERVER_TIME = new DateTime(133_000_000_010_000_000L);
+    private static final StatusCode LAST_USABLE_VALUE = new StatusCode(StatusCodes.Uncertain_LastUsableValue);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void valuesAreRoundTripped() throws IOException {
+        var values = Map.<String, Object>of(
+                "Machine/Running",
+                true,
+                "Machine/Count",
+                -7,
+                "Machine/Total",
+                1L << 40,
+                "Machine/Speed",
+                1.5f,
+                "Machine/Temperature",
+                21.5,
+                "Machine/Axis/State",
+                "Homed");
+        var rootNode = new RootNode();
+        var machine = rootNode.addFolder("Machine");
+        var axis = machine.addFolder("Axis");
+        for (var entry : values.entrySet()) {
+            var path = entry.getKey().split("/");
+            var folder = path.length == 3 ? axis : machine;
+            var variable = folder.addVariableReadOnly(path[path.length - 1], Identifiers.BaseDataType);
+            rootNode.getValueStore()
+                    .put(
+                            variable.getOrdinal(),
+                            new DataValue(new Variant(entry.getValue()), StatusCode.GOOD, SOURCE_TIME, SERVER_TIME));
+        }
+        var file = directory.resolve("values.bin");
+
+        assertEquals(values.size(), ValueSnapshot.write(file, rootNode, rootNode.getValueStore()));
+        var read = ValueSnapshot.read(file, LAST_USABLE_VALUE);
+
+        assertEquals(values.keySet(), read.keySet());
+        for (var entry : values.entrySet()) {
+            var value = read.get(entry.getKey());
+            // The value keeps its type, e.g. a Float is not widened to a Double
+            assertEquals(entry.getValue(), value.getValue().getValue());
+            assertEquals(LAST_USABLE_VALUE, value.getStatusCode());
+            assertEquals(SOURCE_TIME, value.getSourceTime());
+            assertEquals(SERVER_TIME, value.getServerTime());
+        }
+    }
+
+    @Test
+    void badAndUnsupportedValuesAreSkipped() throws IOException {
+        var rootNode = new RootNode();
+        var machine = rootNode.addFolder("Machine");
+        var store = rootNode.getValueStore();
+        store.put(
+                machine.addVariableReadOnly("Offline", Identifiers.Double).getOrdinal(),
+                DataValues.BAD_NO_COMMUNICATION);
+        store.put(
+                machine.addVariableReadOnly("Mode", Identifiers.UInt32).getOrdinal(), DataValues.of(Unsigned.uint(3)));
+        store.put(machine.addVariableReadOnly("Idle", Identifiers.String).getOrdinal(), DataValues.of((Object) null));
+        machine.addVariableReadOnly("Unread", Identifiers.Double);
+        var file = directory.resolve("values.bin");
+
+        assertEquals(1, ValueSnapshot.write(file, rootNode, store));
+        var read = ValueSnapshot.read(file, LAST_USABLE_VALUE);
+
+        // Only the null value is written, the others are bad, unsupported or were never read
+        assertEquals(Set.of("Machine/Idle"), read.keySet());
+        assertNull(read.get("Machine/Idle").getValue().getValue());
+    }
+
+    @Test
+    void truncatedFileIsRejected() throws IOException {
+        var rootNode = new RootNode();
+        var store = rootNode.getValueStore();
+        store.put(
+                rootNode.addFolder("Machine")
+                        .addVariableReadOnly("Count", Identifiers.Int32)
+                        .getOrdinal(),
+                DataValues.of(1));
+        var file = directory.resolve("values.bin");
+        ValueSnapshot.write(file, rootNode, store);
+        var bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 1));
+
+        assertThrows(IOException.class, () -> ValueSnapshot.read(file, LAST_USABLE_VALUE));
+    }
+
+    @Test
+    void initialValuesOfMissingVariablesAreDiscarded() {
+        var rootNode = new RootNode();
+        rootNode.addInitialValues(Map.of(
+                "Machine/Count", DataValues.of(7),
+                "Removed/Count", DataValues.of(3)));
+
+        var count = rootNode.addFolder("Machine").addVariableReadOnly("Count", Identifiers.Int32);
+
+        assertEquals(
+                7,
+                rootNode.getValueStore()
+                        .get(count.getOrdinal(), null)
+                        .getValue()
+                        .getValue());
+        assertEquals(1, rootNode.discardInitialValues());
+        // A variable that is created later starts without a value
+        var removedCount = rootNode.addFolder("Removed").addVariableReadOnly("Count", Identifiers.Int32);
+        assertNull(rootNode.getValueStore().get(removedCount.getOrdinal(), null));
+    }
+}
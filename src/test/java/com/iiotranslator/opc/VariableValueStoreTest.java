@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.opc;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import org.eclipse.milo.opcua.stack.core.StatusCodes;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DateTime;
+import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
+import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
+import org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.Unsigned;
+import org.junit.jupiter.api.Test;
+
+class VariableValueStoreTest {
+    private static final DateTime SOURCE_TIME = new DateTime(133_000_000_000_000_000L),
+            SERVER_TIME = new DateTime(133_000_000_010_000_000L);
+
+    private final VariableValueStore store = new VariableValueStore();
+
+    @Test
+    void valuesOfAllKindsAreStored() {
+        var values = List.of(21.5, 1.5f, 1L << 40, -7, true, false, "Running", Unsigned.uint(3));
+        for (var value : values) {
+            int ordinal = store.allocateOrdinal();
+            var dataValue = new DataValue(new Variant(value), StatusCode.GOOD, SOURCE_TIME, SERVER_TIME);
+            store.put(ordinal, dataValue);
+            var stored = store.get(ordinal, null);
+            // The value keeps its type, e.g. a Float is not widened to a Double
+            assertEquals(value, stored.getValue().getValue());
+            assertEquals(StatusCode.GOOD, stored.getStatusCode());
+            assertEquals(SOURCE_TIME, stored.getSourceTime());
+            assertEquals(SERVER_TIME, stored.getServerTime());
+        }
+        assertEquals(values.size(), store.size());
+    }
+
+    @Test
+    void statusWithoutValueIsStored() {
+        int ordinal = store.allocateOrdinal();
+        store.put(ordinal, DataValues.BAD_NO_COMMUNICATION);
+        var stored = store.get(ordinal, null);
+        assertNull(stored.getValue().getValue());
+        assertEquals(StatusCodes.Bad_NoCommunication, stored.getStatusCode().getValue());
+        assertNull(stored.getSourceTime());
+        // A value without a server timestamp is stamped when it is stored
+        assertNotNull(stored.getServerTime());
+    }
+
+    @Test
+    void storeGrowsAcrossChunks() {
+        int count = VariableValueStore.CHUNK_SIZE * 2 + 1;
+        for (int i = 0; i < count; i++) {
+            int ordinal = store.allocateOrdinal();
+            assertEquals(i, ordinal);
+            store.put(ordinal, DataValues.of((long) ordinal));
+        }
+        // The values on both sides of the chunk boundaries are kept when the chunk array grows
+        for (int ordinal : new int[] {0, VariableValueStore.CHUNK_SIZE - 1, VariableValueStore.CHUNK_SIZE, count - 1}) {
+            assertEquals((long) ordinal, store.get(ordinal, null).getValue().getValue());
+        }
+        assertThrows(IndexOutOfBoundsException.class, () -> store.get(VariableValueStore.CHUNK_SIZE * 4, null));
+    }
+
+    @Test
+    void clearRestoresDefaultValue() {
+        int ordinal = store.allocateOrdinal();
+        var defaultValue = DataValues.BAD_WAITING_FOR_INITIAL_DATA;
+        assertSame(defaultValue, store.get(ordinal, defaultValue));
+        store.put(ordinal, DataValues.of("Running"));
+        assertEquals("Running", store.get(ordinal, defaultValue).getValue().getValue());
+        store.clear(ordinal);
+        assertSame(defaultValue, store.get(ordinal, defaultValue));
+        // The ordinal can be written again, and is not handed out a second time
+        store.put(ordinal, DataValues.of(1.0));
+        assertEquals(1.0, store.get(ordinal, defaultValue).getValue().getValue());
+        assertEquals(ordinal + 1, store.allocateOrdinal());
+    }
+
+    @Test
+    void materializedValueIsReusedUntilTheSlotIsWritten() {
+        int ordinal = store.allocateOrdinal();
+        store.put(ordinal, DataValues.of(21.5));
+        var first = store.get(ordinal, null);
+        assertSame(first, store.get(ordinal, null));
+        store.put(ordinal, DataValues.of(22.0));
+        var second = store.get(ordinal, null);
+        assertNotSame(first, second);
+        assertEquals(22.0, second.getValue().getValue());
+        store.clear(ordinal);
+        assertNull(store.get(ordinal, null));
+    }
+
+    @Test
+    void releasedOrdinalIsReused() {
+        int first = store.allocateOrdinal();
+        int second = store.allocateOrdinal();
+        store.put(second, DataValues.of("Running"));
+        store.release(second);
+        assertEquals(1, store.size());
+        // The released slot is handed out again, without its old value
+        assertEquals(second, store.allocateOrdinal());
+        assertNull(store.get(second, null));
+        assertEquals(first + 2, store.allocateOrdinal());
+        assertEquals(3, store.capacity());
+    }
+}
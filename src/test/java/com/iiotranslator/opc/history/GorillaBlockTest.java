@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.opc.history;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class GorillaBlockTest {
+    private static final int GOOD = 0, BAD = 0x80000000, UNCERTAIN = 0x40000000;
+
+    @Test
+    void roundTrip() {
+        var random = new Random(42);
+        int count = GorillaBlock.MAX_SAMPLES;
+        long[] timestamps = new long[count];
+        int[] statuses = new int[count];
+        long[] values = new long[count];
+        long timestamp = 1_700_000_000_000L;
+        double value = 21.5;
+        for (int i = 0; i < count; i++) {
+            // Mostly regular intervals with some jitter, gaps and duplicates
+            long interval =
+                    switch (i % 50) {
+                        case 7 -> 0;
+                        case 13 -> 5_000_000_000L;
+                        case 17 -> 300;
+                        default -> 1000 + random.nextInt(3);
+                    };
+            timestamp += interval;
+            value += random.nextInt(4) == 0 ? random.nextGaussian() : 0;
+            timestamps[i] = timestamp;
+            statuses[i] = i % 100 < 5 ? BAD : (i % 100 < 8 ? UNCERTAIN : GOOD);
+            values[i] = i % 3 == 0 ? Double.doubleToRawLongBits(value) : random.nextLong();
+        }
+
+        var block = new GorillaBlock();
+        for (int i = 0; i < count; i++) {
+            block.append(timestamps[i], statuses[i], values[i]);
+        }
+        assertTrue(block.isFull());
+        block.seal();
+
+        var decoder = block.decoder();
+        for (int i = 0; i < count; i++) {
+            assertTrue(decoder.next());
+            assertEquals(timestamps[i], decoder.timestamp(), "timestamp " + i);
+            assertEquals(statuses[i], decoder.status(), "status " + i);
+            if (!GorillaBlock.isBad(statuses[i])) {
+                assertEquals(values[i], decoder.valueBits(), "value " + i);
+            }
+        }
+        assertFalse(decoder.next());
+    }
+
+    @Test
+    void compressesRegularSamples() {
+        var block = new GorillaBlock();
+        for (int i = 0; i < GorillaBlock.MAX_SAMPLES; i++) {
+            block.append(1000L * i, GOOD, Double.doubleToRawLongBits(20.0 + (i / 100) * 0.5));
+        }
+        block.seal();
+        // Uncompressed, the samples would need 20 bytes each
+        assertTrue(block.sizeBytes() < GorillaBlock.MAX_SAMPLES, "size was " + block.sizeBytes());
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.opc.history;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.iiotranslator.opc.CoarseClock;
+import com.iiotranslator.opc.FolderNode;
+import com.iiotranslator.opc.RootNode;
+import com.iiotranslator.opc.VariableNode;
+import java.util.ArrayList;
+import java.util.List;
+import org.eclipse.milo.opcua.stack.core.Identifiers;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
+import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
+import org.junit.jupiter.api.Test;
+
+class HistoryStoreTest {
+    private static final long START = 1_700_000_000_000L;
+
+    private final FolderNode folder = new RootNode().addFolder("Device");
+
+    @Test
+    void activeBlocksCountAgainstTheBudget() {
+        long budget = 64 * 1024;
+        var store = new HistoryStore(budget);
+        var variables = addVariables(2000);
+        for (int sample = 0; sample < 100; sample++) {
+            for (var variable : variables) {
+                store.valueUpdated(variable, value(START + sample * 1000L, Math.random()));
+            }
+            assertTrue(store.getUsedBytes() <= budget, store.getUsedBytes() + " bytes in use");
+        }
+        assertTrue(store.getUsedBytes() > 0);
+    }
+
+    @Test
+    void oldestSealedBlocksAreEvictedFirst() {
+        var store = new HistoryStore(16 * 1024);
+        var variable = addVariables(1).get(0);
+        int samples = 20 * GorillaBlock.MAX_SAMPLES;
+        for (int sample = 0; sample < samples; sample++) {
+            store.valueUpdated(variable, value(START + sample * 1000L, Math.random()));
+        }
+        var values = store.read(variable, START, START + samples * 1000L, 0, 0).values();
+        assertFalse(values.isEmpty());
+        assertTrue(values.size() < samples);
+        // The most recent values are kept
+        assertEquals(
+                START + (samples - 1) * 1000L,
+                values.get(values.size() - 1).getSourceTime().getJavaTime());
+    }
+
+    @Test
+    void removedVariablesReleaseTheirActiveBlock() {
+        var store = new HistoryStore(1024 * 1024);
+        var variable = addVariables(1).get(0);
+        for (int sample = 0; sample < 100; sample++) {
+            store.valueUpdated(variable, value(START + sample * 1000L, sample));
+        }
+        assertTrue(store.getUsedBytes() > 0);
+        store.variableRemoved(variable);
+        assertEquals(0, store.getUsedBytes());
+    }
+
+    private List<VariableNode> addVariables(int count) {
+        var variables = new ArrayList<VariableNode>();
+        for (int i = 0; i < count; i++) {
+            variables.add(folder.addVariableReadOnly("Variable " + i, Identifiers.Double));
+        }
+        return variables;
+    }
+
+    private static DataValue value(long timestamp, double value) {
+        var time = CoarseClock.toDateTime(timestamp);
+        return new DataValue(new Variant(value), StatusCode.GOOD, time, time);
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.opc.history;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class VariableHistoryTest {
+    private static final long START = 1_700_000_000_000L;
+
+    @Test
+    void valuesKeepTheirTypeWhenTheTypeChanges() {
+        var history = new VariableHistory(new AtomicLong());
+        assertNull(history.append(START, 0, VariableHistory.KIND_INTEGER, 7));
+        assertNull(history.append(START + 1000, 0x80000000, (byte) 0, 0L));
+        assertNull(history.append(START + 2000, 0, VariableHistory.KIND_INTEGER, 8));
+        // The block with the integers is sealed, so that they are not decoded as doubles
+        var sealed = history.append(START + 3000, 0, VariableHistory.KIND_DOUBLE, Double.doubleToRawLongBits(8.5));
+        assertNotNull(sealed);
+        assertEquals(3, sealed.getSampleCount());
+        assertNull(history.append(START + 4000, 0, VariableHistory.KIND_DOUBLE, Double.doubleToRawLongBits(9.5)));
+
+        var values = history.read(START, START + 4000, 0, 0).values();
+        assertEquals(5, values.size());
+        assertEquals(7, values.get(0).getValue().getValue());
+        assertTrue(values.get(1).getStatusCode().isBad());
+        assertEquals(8, values.get(2).getValue().getValue());
+        assertEquals(8.5, values.get(3).getValue().getValue());
+        assertEquals(9.5, values.get(4).getValue().getValue());
+    }
+}
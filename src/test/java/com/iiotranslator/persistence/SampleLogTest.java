@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2022-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+package com.iiotranslator.persistence;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SampleLogTest {
+    private static final int BAD = 0x80000000;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recoversAfterReopenAndExportsCsv() throws Exception {
+        long now = System.currentTimeMillis();
+        try (var log = new SampleLog(directory, 1024 * 1024, Duration.ofHours(1), Duration.ofDays(1))) {
+            log.append("Oven/Temperature", now, 0, 21.5);
+            log.append("Oven/Door Open", now, 0, true);
+            log.append("Leak Detector/Leak Rate", now, 0, 3L);
+        }
+        // Simulates a restart: the log must continue after the existing records instead of overwriting them
+        try (var log = new SampleLog(directory, 1024 * 1024, Duration.ofHours(1), Duration.ofDays(1))) {
+            log.append("Oven/Temperature", now + 1000, BAD, null);
+            log.append("Oven/Temperature", now + 2000, 0, 22);
+        }
+
+        var csv = new StringWriter();
+        long count = SampleExporter.exportCsv(directory, "Oven", now, now + 1000, csv);
+        assertEquals(3, count);
+        var lines = csv.toString().split("\n");
+        assertEquals(SampleExporter.CSV_HEADER, lines[0]);
+        assertTrue(lines[1].endsWith(",Oven/Temperature,21.5,0x00000000"), lines[1]);
+        assertTrue(lines[2].endsWith(",Oven/Door Open,true,0x00000000"), lines[2]);
+        assertTrue(lines[3].endsWith(",Oven/Temperature,,0x80000000"), lines[3]);
+    }
+
+    @Test
+    void rollsSegmentsAndEnforcesRetention() throws Exception {
+        int segmentSize = Segment.HEADER_SIZE + 10 * Segment.RECORD_SIZE;
+        long old = System.currentTimeMillis() - Duration.ofDays(2).toMillis();
+        try (var log = new SampleLog(directory, segmentSize, Duration.ofHours(1), Duration.ofDays(1))) {
+            for (int i = 0; i < 25; i++) {
+                log.append("Oven/Temperature", old + i, 0, (double) i);
+            }
+            // The first two segments only contain samples that are older than the retention period
+            log.awaitMaintenance();
+            assertEquals(1, SampleLog.listSegmentFiles(directory).size());
+            log.append("Oven/Temperature", System.currentTimeMillis(), 0, 1.0);
+        }
+        assertEquals(1, SampleLog.listSegmentFiles(directory).size());
+    }
+
+    @Test
+    void concurrentAppendsAreAllKeptAcrossSegments() throws Exception {
+        int segmentSize = Segment.HEADER_SIZE + 100 * Segment.RECORD_SIZE;
+        int threads = 8, samplesPerThread = 1000;
+        long now = System.currentTimeMillis();
+        var executor = Executors.newFixedThreadPool(threads);
+        try (var log = new SampleLog(directory, segmentSize, Duration.ofHours(1), Duration.ofDays(1))) {
+            var tasks = new ArrayList<Callable<Void>>();
+            for (int thread = 0; thread < threads; thread++) {
+                String path = "Device " + thread + "/Temperature";
+                tasks.add(() -> {
+                    for (int i = 0; i < samplesPerThread; i++) {
+                        log.append(path, now + i, 0, (double) i);
+                    }
+                    return null;
+                });
+            }
+            for (var future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(
+                threads * samplesPerThread / 100,
+                SampleLog.listSegmentFiles(directory).size());
+        long count = 0;
+        for (int thread = 0; thread < threads; thread++) {
+            count += SampleExporter.exportCsv(
+                    directory, "Device " + thread, now, now + samplesPerThread, new StringWriter());
+        }
+        assertEquals(threads * samplesPerThread, count);
+    }
+
+    @Test
+    void enforcesRetentionOfExistingSegmentsOnOpen() throws Exception {
+        int segmentSize = Segment.HEADER_SIZE + 10 * Segment.RECORD_SIZE;
+        long old = System.currentTimeMillis() - Duration.ofDays(2).toMillis();
+        try (var log = new SampleLog(directory, segmentSize, Duration.ofHours(1), Duration.ofDays(7))) {
+            for (int i = 0; i < 25; i++) {
+                log.append("Oven/Temperature", old + i, 0, (double) i);
+            }
+        }
+        assertEquals(3, SampleLog.listSegmentFiles(directory).size());
+        // The newest timestamps of the existing segments are read from their headers
+        try (var log = new SampleLog(directory, segmentSize, Duration.ofHours(1), Duration.ofDays(1))) {
+            assertEquals(1, SampleLog.listSegmentFiles(directory).size());
+        }
+    }
+
+    @Test
+    void fractionsOfIntegerSeriesAreKept() throws Exception {
+        long now = System.currentTimeMillis();
+        try (var log = new SampleLog(directory, 1024 * 1024, Duration.ofHours(1), Duration.ofDays(1))) {
+            log.append("Oven/Setpoint", now, 0, 80L);
+            log.append("Oven/Setpoint", now + 1000, BAD, null);
+            // The value type changed, e.g. after a configuration reload, so the path continues in a double series
+            log.append("Oven/Setpoint", now + 2000, 0, 82.5);
+            log.append("Oven/Setpoint", now + 3000, 0, 83L);
+        }
+        try (var dictionary = new SeriesDictionary(directory, true)) {
+            assertEquals(2, dictionary.getAll().size());
+            assertEquals(Series.DOUBLE, dictionary.get("Oven/Setpoint").kind());
+        }
+
+        var csv = new StringWriter();
+        assertEquals(4, SampleExporter.exportCsv(directory, "Oven", now, now + 3000, csv));
+        var lines = csv.toString().split("\n");
+        assertTrue(lines[1].endsWith(",Oven/Setpoint,80,0x00000000"), lines[1]);
+        assertTrue(lines[2].endsWith(",Oven/Setpoint,,0x80000000"), lines[2]);
+        assertTrue(lines[3].endsWith(",Oven/Setpoint,82.5,0x00000000"), lines[3]);
+        assertTrue(lines[4].endsWith(",Oven/Setpoint,83.0,0x00000000"), lines[4]);
+    }
+}